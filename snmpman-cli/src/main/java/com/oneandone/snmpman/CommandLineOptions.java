@@ -1,10 +1,15 @@
 package com.oneandone.snmpman;
 
+import com.oneandone.snmpman.persistence.AgentPersistence;
+import com.oneandone.snmpman.persistence.FilePersistence;
+import com.oneandone.snmpman.persistence.MemoryPersistence;
+import com.oneandone.snmpman.persistence.StateFilePersistence;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.kohsuke.args4j.Option;
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 /** The command-line options for the {@link Main} application. */
 @Slf4j
@@ -14,7 +19,71 @@ public final class CommandLineOptions {
     @Option(name = "-c", aliases = "--configuration", usage = "the path to the configuration YAML", required = true)
     @Getter private File configurationFile;
 
+    /** The number of request worker threads shared by all agents. */
+    @Option(name = "-t", aliases = "--threads", usage = "the number of request worker threads shared by all agents")
+    @Getter private int workerThreads = Snmpman.DEFAULT_WORKER_THREADS;
+
+    /** The number of selector threads that receive the requests of all agents, {@code 0} for a listener thread per agent. */
+    @Option(name = "-s", aliases = "--selectors", usage = "the number of selector threads that receive the requests of all agents, 0 for a listener thread per agent")
+    @Getter private int selectorThreads = 0;
+
+    /** The maximum number of agents that are started or stopped at the same time. */
+    @Option(name = "-p", aliases = "--parallelism", usage = "the number of agents that are started and stopped at the same time")
+    @Getter private int startThreads = Snmpman.DEFAULT_START_THREADS;
+
+    /**
+     * Flag that defines that all agents should be simulated by one multiplexed agent when {@code true}.
+     * <br>
+     * The multiplexed agent keeps its state in memory and does neither evict bindings nor start agents concurrently,
+     * so the options for these features are rejected.
+     */
+    @Option(name = "-m", aliases = "--multiplexed", usage = "simulate all agents in one multiplexed agent",
+            forbids = {"-i", "-f", "-e", "-b", "-p"})
+    @Getter private boolean multiplexed = false;
+
+    /** Flag that defines that the state of the agents is only kept in memory when {@code true}. */
+    @Option(name = "-i", aliases = "--in-memory", usage = "keep the state of the agents in memory instead of two files next to the walk of each agent", forbids = "-f")
+    @Getter private boolean inMemory = false;
+
+    /** The file that contains the state of all agents or {@code null} for two files next to the walk of each agent. */
+    @Option(name = "-f", aliases = "--state-file", usage = "the path to one file with the state of all agents instead of two files next to the walk of each agent", forbids = "-i")
+    @Getter private File stateFile;
+
+    /** The number of seconds after which the bindings of an agent that is not queried are evicted, {@code 0} to keep them. */
+    @Option(name = "-e", aliases = "--evict-after", usage = "evict the bindings of agents that have not been queried for this number of seconds, 0 to keep them in memory")
+    @Getter private long evictAfter = 0;
+
+    /** The estimated memory in megabytes for the bindings of all agents, {@code 0} for no limit. */
+    @Option(name = "-b", aliases = "--memory-budget", usage = "the estimated memory in MB for the bindings of all agents, the least recently queried agents are evicted beyond it, 0 for no limit")
+    @Getter private long memoryBudget = 0;
+
     /** Flag that defines that a help message should be displayed when {@code true}. */
     @Option(name = "-h", aliases = "--help", usage = "print the help message", help = true)
     @Getter private boolean showHelp = false;
+
+    /**
+     * Returns the backend that persists the state of the agents as specified by the options.
+     *
+     * @return the persistence backend
+     */
+    public AgentPersistence getPersistence() {
+        if (stateFile != null) {
+            return new StateFilePersistence(stateFile);
+        } else if (inMemory) {
+            return new MemoryPersistence();
+        }
+        return new FilePersistence();
+    }
+
+    /**
+     * Returns the eviction of the bindings of agents that are not queried as specified by the options.
+     *
+     * @return the eviction or {@code null} if the bindings of all agents are kept in memory
+     */
+    public AgentEviction getEviction() {
+        if (evictAfter <= 0 && memoryBudget <= 0) {
+            return null;
+        }
+        return new AgentEviction(Math.max(0, evictAfter), TimeUnit.SECONDS, Math.max(0, memoryBudget) * 1024 * 1024);
+    }
 }
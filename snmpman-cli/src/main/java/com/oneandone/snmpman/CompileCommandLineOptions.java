@@ -0,0 +1,22 @@
+package com.oneandone.snmpman;
+
+import lombok.Getter;
+import org.kohsuke.args4j.Option;
+
+import java.io.File;
+
+/** The command-line options for the {@value Main#COMPILE_COMMAND} command of the {@link Main} application. */
+public final class CompileCommandLineOptions {
+
+    /** The text walk to compile. */
+    @Option(name = "-w", aliases = "--walk", usage = "the path to the text walk to compile", required = true)
+    @Getter private File walkFile;
+
+    /** The binary snapshot to write. */
+    @Option(name = "-o", aliases = "--output", usage = "the path of the binary snapshot to write", required = true)
+    @Getter private File snapshotFile;
+
+    /** Flag that defines that a help message should be displayed when {@code true}. */
+    @Option(name = "-h", aliases = "--help", usage = "print the help message", help = true)
+    @Getter private boolean showHelp = false;
+}
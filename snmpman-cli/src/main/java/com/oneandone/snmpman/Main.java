@@ -1,10 +1,14 @@
 package com.oneandone.snmpman;
 
+import com.oneandone.snmpman.configuration.WalkSnapshots;
 import com.oneandone.snmpman.exception.InitializationException;
 import lombok.extern.slf4j.Slf4j;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
  * This is the main-class for this application.
  * <br>
@@ -28,10 +32,17 @@ import org.kohsuke.args4j.CmdLineParser;
  * You can find more example within the test resources of this project.
  * <br>
  * The configuration {@code YAML} file defines a list of all agents that should be simulated by the {@code Main}.
+ * <br>
+ * If the first argument is {@value #COMPILE_COMMAND}, a text walk will be compiled into a binary snapshot instead.
+ * See {@link com.oneandone.snmpman.CompileCommandLineOptions} for the options of this command. A snapshot may be used
+ * as the {@code walk} of an agent.
  */
 @Slf4j
 public final class Main {
 
+    /** The command to compile a text walk into a binary snapshot. */
+    public static final String COMPILE_COMMAND = "compile";
+
     /**
      * The application entry-point.
      * <br>
@@ -44,6 +55,10 @@ public final class Main {
      * @param args the command-line arguments
      */
     public static void main(final String... args) {
+        if (args.length > 0 && COMPILE_COMMAND.equals(args[0])) {
+            compile(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         final CommandLineOptions commandLineOptions = new CommandLineOptions();
         final CmdLineParser cmdLineParser = new CmdLineParser(commandLineOptions);
         try {
@@ -51,8 +66,19 @@ public final class Main {
 
             if (commandLineOptions.isShowHelp()) {
                 cmdLineParser.printUsage(System.out);
+            } else if (commandLineOptions.isMultiplexed()) {
+                Snmpman.startMultiplexed(commandLineOptions.getConfigurationFile(), Snmpman.Options.builder()
+                        .workerThreads(commandLineOptions.getWorkerThreads())
+                        .selectorThreads(commandLineOptions.getSelectorThreads())
+                        .build());
             } else {
-                Snmpman.start(commandLineOptions.getConfigurationFile());
+                Snmpman.start(commandLineOptions.getConfigurationFile(), Snmpman.Options.builder()
+                        .workerThreads(commandLineOptions.getWorkerThreads())
+                        .selectorThreads(commandLineOptions.getSelectorThreads())
+                        .startThreads(commandLineOptions.getStartThreads())
+                        .persistence(commandLineOptions.getPersistence())
+                        .eviction(commandLineOptions.getEviction())
+                        .build());
             }
         } catch (final InitializationException | CmdLineException e) {
             log.error("could not parse or process command-line arguments", e);
@@ -65,4 +91,35 @@ public final class Main {
             cmdLineParser.printUsage(System.err);
         }
     }
+
+    /**
+     * Compiles a text walk into a binary snapshot.
+     * <br>
+     * All available command-line arguments are documented in the {@link com.oneandone.snmpman.CompileCommandLineOptions}
+     * class.
+     *
+     * @param args the command-line arguments after the {@value #COMPILE_COMMAND} command
+     */
+    private static void compile(final String... args) {
+        final CompileCommandLineOptions compileOptions = new CompileCommandLineOptions();
+        final CmdLineParser cmdLineParser = new CmdLineParser(compileOptions);
+        try {
+            cmdLineParser.parseArgument(args);
+
+            if (compileOptions.isShowHelp()) {
+                cmdLineParser.printUsage(System.out);
+            } else {
+                final int count = WalkSnapshots.compile(compileOptions.getWalkFile(), compileOptions.getSnapshotFile());
+                System.out.println("compiled " + count + " variable bindings into " + compileOptions.getSnapshotFile());
+            }
+        } catch (final CmdLineException e) {
+            log.error("could not parse command-line arguments", e);
+            System.err.println(e.getMessage());
+            cmdLineParser.printUsage(System.err);
+        } catch (final IOException e) {
+            log.error("could not compile walk " + compileOptions.getWalkFile(), e);
+            System.err.println("could not compile walk because of following error: ");
+            System.err.println(e.getMessage());
+        }
+    }
 }
@@ -1,5 +1,8 @@
 package com.oneandone.snmpman;
 
+import com.oneandone.snmpman.persistence.FilePersistence;
+import com.oneandone.snmpman.persistence.MemoryPersistence;
+import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.testng.annotations.Test;
 
@@ -16,6 +19,87 @@ public class CommandLineOptionsTest {
         assertEquals(commandLineOptions.getConfigurationFile().getName(), "configuration.yaml");
         assertTrue(commandLineOptions.getConfigurationFile().exists());
         assertTrue(commandLineOptions.getConfigurationFile().isFile());
+        assertEquals(commandLineOptions.getWorkerThreads(), Snmpman.DEFAULT_WORKER_THREADS);
+    }
+
+    @Test
+    public void testWorkerThreads() throws Exception {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions();
+        final CmdLineParser cmdLineParser = new CmdLineParser(commandLineOptions);
+        cmdLineParser.parseArgument("-c", "src/test/resources/configuration/configuration.yaml", "-t", "8");
+
+        assertEquals(commandLineOptions.getWorkerThreads(), 8);
+    }
+
+    @Test
+    public void testMultiplexed() throws Exception {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions();
+        final CmdLineParser cmdLineParser = new CmdLineParser(commandLineOptions);
+        cmdLineParser.parseArgument("-c", "src/test/resources/configuration/configuration.yaml", "-m");
+
+        assertTrue(commandLineOptions.isMultiplexed());
+    }
+
+    @Test
+    public void testMultiplexedWithUnsupportedOptions() {
+        final String[][] unsupported = {{"-i"}, {"-f", "agents.state"}, {"-e", "600"}, {"-b", "512"}, {"-p", "16"}};
+        for (final String[] options : unsupported) {
+            final CmdLineParser cmdLineParser = new CmdLineParser(new CommandLineOptions());
+            final String[] args = new String[options.length + 3];
+            args[0] = "-c";
+            args[1] = "src/test/resources/configuration/configuration.yaml";
+            args[2] = "-m";
+            System.arraycopy(options, 0, args, 3, options.length);
+            assertThrows(CmdLineException.class, () -> cmdLineParser.parseArgument(args));
+        }
+    }
+
+    @Test
+    public void testSelectorThreads() throws Exception {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions();
+        final CmdLineParser cmdLineParser = new CmdLineParser(commandLineOptions);
+        cmdLineParser.parseArgument("-c", "src/test/resources/configuration/configuration.yaml", "-s", "2");
+
+        assertEquals(commandLineOptions.getSelectorThreads(), 2);
+    }
+
+    @Test
+    public void testStartThreads() throws Exception {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions();
+        final CmdLineParser cmdLineParser = new CmdLineParser(commandLineOptions);
+        cmdLineParser.parseArgument("-c", "src/test/resources/configuration/configuration.yaml", "-p", "16");
+
+        assertEquals(commandLineOptions.getStartThreads(), 16);
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions();
+        final CmdLineParser cmdLineParser = new CmdLineParser(commandLineOptions);
+        cmdLineParser.parseArgument("-c", "src/test/resources/configuration/configuration.yaml");
+        assertTrue(commandLineOptions.getPersistence() instanceof FilePersistence);
+
+        cmdLineParser.parseArgument("-c", "src/test/resources/configuration/configuration.yaml", "-i");
+        assertTrue(commandLineOptions.getPersistence() instanceof MemoryPersistence);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions();
+        final CmdLineParser cmdLineParser = new CmdLineParser(commandLineOptions);
+        cmdLineParser.parseArgument("-c", "src/test/resources/configuration/configuration.yaml");
+        assertNull(commandLineOptions.getEviction());
+
+        cmdLineParser.parseArgument("-c", "src/test/resources/configuration/configuration.yaml", "-e", "600", "-b", "512");
+        assertEquals(commandLineOptions.getEviction().getIdleTimeout(), 600_000L);
+        assertEquals(commandLineOptions.getEviction().getMemoryBudget(), 512L * 1024 * 1024);
+    }
+
+    @Test(expectedExceptions = CmdLineException.class)
+    public void testInMemoryWithStateFile() throws Exception {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions();
+        final CmdLineParser cmdLineParser = new CmdLineParser(commandLineOptions);
+        cmdLineParser.parseArgument("-c", "src/test/resources/configuration/configuration.yaml", "-i", "-f", "agents.state");
     }
 
     @Test
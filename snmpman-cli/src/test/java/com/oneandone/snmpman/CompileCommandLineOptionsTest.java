@@ -0,0 +1,26 @@
+package com.oneandone.snmpman;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class CompileCommandLineOptionsTest {
+
+    @Test
+    public void testGetFiles() throws Exception {
+        final CompileCommandLineOptions compileOptions = new CompileCommandLineOptions();
+        final CmdLineParser cmdLineParser = new CmdLineParser(compileOptions);
+        cmdLineParser.parseArgument("-w", "src/test/resources/configuration/example.txt", "-o", "target/example.snapshot");
+
+        assertEquals(compileOptions.getWalkFile().getName(), "example.txt");
+        assertEquals(compileOptions.getSnapshotFile().getName(), "example.snapshot");
+    }
+
+    @Test(expectedExceptions = CmdLineException.class)
+    public void testMissingOutput() throws Exception {
+        final CompileCommandLineOptions compileOptions = new CompileCommandLineOptions();
+        new CmdLineParser(compileOptions).parseArgument("-w", "src/test/resources/configuration/example.txt");
+    }
+}
@@ -0,0 +1,89 @@
+package com.oneandone.snmpman.configuration.modifier;
+
+import com.google.common.primitives.UnsignedLong;
+import com.oneandone.snmpman.configuration.type.ModifierProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.smi.Counter64;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link Counter64Modifier} with its former implementation based on {@link UnsignedLong}.
+ * <br>
+ * Run with {@code mvn -P jmh -pl snmpman test-compile exec:java -Dexec.args=Counter64ModifierBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Counter64ModifierBenchmark {
+
+    /** The modifier to benchmark. */
+    private Counter64Modifier modifier;
+
+    /** The variable that gets modified. */
+    private Counter64 variable;
+
+    /** The minimum of the former implementation. */
+    private final UnsignedLong minimum = UnsignedLong.ZERO;
+
+    /** The maximum of the former implementation. */
+    private final UnsignedLong maximum = UnsignedLong.MAX_VALUE;
+
+    /** The minimal step of the former implementation. */
+    private final UnsignedLong minimumStep = UnsignedLong.ZERO;
+
+    /** The maximal step of the former implementation. */
+    private final UnsignedLong maximumStep = UnsignedLong.valueOf(1_000_000L);
+
+    /**
+     * Initializes the modifier with the same steps as the former implementation.
+     */
+    @Setup
+    public void setUp() {
+        final ModifierProperties properties = new ModifierProperties();
+        properties.put("minimumStep", minimumStep);
+        properties.put("maximumStep", maximumStep);
+        modifier = new Counter64Modifier();
+        modifier.init(properties);
+        variable = new Counter64(Long.MAX_VALUE);
+    }
+
+    /**
+     * Modifies the variable with the {@link Counter64Modifier}.
+     *
+     * @return the modified variable
+     */
+    @Benchmark
+    public Counter64 primitive() {
+        variable = modifier.modify(variable);
+        return variable;
+    }
+
+    /**
+     * Modifies the variable like the former implementation.
+     *
+     * @return the modified variable
+     */
+    @Benchmark
+    public Counter64 unsignedLong() {
+        UnsignedLong currentValue = UnsignedLong.valueOf(variable.toString());
+        if (currentValue.compareTo(minimum) < 0 || currentValue.compareTo(maximum) > 0) {
+            currentValue = minimum;
+        }
+        final UnsignedLong step = UnsignedLong.valueOf((long) (Math.random() * maximumStep.minus(minimumStep).longValue())).plus(minimumStep);
+        variable = new Counter64(currentValue.plus(step).longValue());
+        return variable;
+    }
+}
@@ -0,0 +1,178 @@
+package com.oneandone.snmpman.snmp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.util.ThreadPool;
+import org.snmp4j.util.WorkerPool;
+import org.snmp4j.util.WorkerTask;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the throughput and the latency of the request worker pools if {@value #POLLERS} pollers send a request at
+ * the same time to an agent that needs {@code delay} microseconds to answer each request.
+ * <br>
+ * The throughput is reported as the average time per request, the 99th percentile of the latency between the
+ * submission and the completion of a request is printed after each iteration. The {@code virtual} pool requires a
+ * Java 21 runtime. Run with {@code mvn -P jmh -pl snmpman test-compile exec:java -Dexec.args=WorkerPoolBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class WorkerPoolBenchmark {
+
+    /** The number of concurrent pollers. */
+    private static final int POLLERS = 10_000;
+
+    /** The pool to benchmark: the former fixed pool of three threads, the shared pool or virtual threads. */
+    @Param({"threadPool", "shared", "virtual"})
+    private String pool;
+
+    /** The time the simulated device needs to answer a request in microseconds. */
+    @Param({"1000"})
+    private long delay;
+
+    /** The shared pool if {@link #pool} is {@code shared}. */
+    private SharedWorkerPool sharedWorkerPool;
+
+    /** The pool that executes the requests. */
+    private WorkerPool workerPool;
+
+    /** The latencies of the requests of the last invocation in nanoseconds. */
+    private final long[] latencies = new long[POLLERS];
+
+    /** The latencies of the requests of all invocations of the current iteration in nanoseconds. */
+    private long[] iterationLatencies = new long[0];
+
+    /**
+     * Creates the pool.
+     */
+    @Setup
+    public void setUp() {
+        switch (pool) {
+            case "threadPool":
+                workerPool = ThreadPool.create("RequestPool", 3);
+                break;
+            case "shared":
+                sharedWorkerPool = new SharedWorkerPool("RequestPool", 3);
+                workerPool = sharedWorkerPool.register("benchmark");
+                break;
+            case "virtual":
+                workerPool = new VirtualThreadWorkerPool("benchmark");
+                break;
+            default:
+                throw new IllegalArgumentException("unknown pool " + pool);
+        }
+    }
+
+    /**
+     * Prints the 99th percentile of the latencies of the iteration.
+     */
+    @TearDown(Level.Iteration)
+    public void printPercentile() {
+        if (iterationLatencies.length > 0) {
+            Arrays.sort(iterationLatencies);
+            System.out.printf("%n%s p99 latency: %.1f ms%n", pool, percentile(iterationLatencies, 0.99) / 1e6);
+            iterationLatencies = new long[0];
+        }
+    }
+
+    /**
+     * Returns a percentile of sorted values by the nearest-rank method.
+     *
+     * @param sorted   the values in ascending order
+     * @param fraction the percentile as a fraction, e.g. {@code 0.99}
+     * @return the smallest value that is greater than or equal to the fraction of all values
+     */
+    static long percentile(final long[] sorted, final double fraction) {
+        return sorted[Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    /**
+     * Stops the pool.
+     */
+    @TearDown
+    public void tearDown() {
+        workerPool.cancel();
+        if (sharedWorkerPool != null) {
+            sharedWorkerPool.stop();
+        }
+    }
+
+    /**
+     * Submits one request of each poller and waits for all answers.
+     *
+     * @throws InterruptedException if the benchmark was interrupted
+     */
+    @Benchmark
+    @OperationsPerInvocation(POLLERS)
+    public void requests() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(POLLERS);
+        final long delayNanos = TimeUnit.MICROSECONDS.toNanos(delay);
+        for (int i = 0; i < POLLERS; i++) {
+            final int poller = i;
+            final long submitted = System.nanoTime();
+            workerPool.execute(new Request(() -> {
+                LockSupport.parkNanos(delayNanos);
+                latencies[poller] = System.nanoTime() - submitted;
+                done.countDown();
+            }));
+        }
+        done.await();
+
+        final int offset = iterationLatencies.length;
+        iterationLatencies = Arrays.copyOf(iterationLatencies, offset + POLLERS);
+        System.arraycopy(latencies, 0, iterationLatencies, offset, POLLERS);
+    }
+
+    /** A request of a poller. */
+    private static final class Request implements WorkerTask {
+
+        /** The processing of the request. */
+        private final Runnable processing;
+
+        /**
+         * Constructs a new request.
+         *
+         * @param processing the processing of the request
+         */
+        private Request(final Runnable processing) {
+            this.processing = processing;
+        }
+
+        @Override
+        public void run() {
+            processing.run();
+        }
+
+        @Override
+        public void terminate() {
+        }
+
+        @Override
+        public void join() {
+        }
+
+        @Override
+        public void interrupt() {
+        }
+    }
+}
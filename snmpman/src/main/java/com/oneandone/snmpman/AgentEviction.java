@@ -0,0 +1,477 @@
+package com.oneandone.snmpman;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Evicts the bindings of agents that are not queried, so a fleet of agents does not need to keep the data of all
+ * agents on the heap.
+ * <br>
+ * The bindings of an agent are evicted if the agent has not been queried for the {@link #getIdleTimeout() idle
+ * timeout} or, least recently queried agents first, as long as the estimated memory of all resident agents exceeds the
+ * {@link #getMemoryBudget() memory budget}. The next request of an evicted agent reloads its bindings from the cached
+ * walk before it is dispatched. The dynamic variables with the state of their modifiers and the bindings changed by
+ * {@code SET} requests are kept, so the values of an evicted agent continue where they stopped.
+ * <br>
+ * The agents are checked periodically by a thread of {@code this} instance while the {@code Snmpman} instance that
+ * uses it is running.
+ */
+@Slf4j
+public final class AgentEviction {
+
+    /** The longest time between two checks of the agents in milliseconds. */
+    private static final long MAXIMUM_SWEEP_INTERVAL = 1000;
+
+    /** The shortest time between two checks of the agents in milliseconds. */
+    private static final long MINIMUM_SWEEP_INTERVAL = 10;
+
+    /**
+     * Returns the time in milliseconds after which an agent that is not queried is evicted.
+     *
+     * @return the idle timeout in milliseconds or {@code 0} if agents are not evicted because they are idle
+     */
+    @Getter private final long idleTimeout;
+
+    /**
+     * Returns the estimated memory in bytes that the bindings of all resident agents may use.
+     *
+     * @return the memory budget in bytes or {@code 0} if the memory is not limited
+     */
+    @Getter private final long memoryBudget;
+
+    /** The registered agents. */
+    private final Set<Residence> residences = ConcurrentHashMap.newKeySet();
+
+    /** The estimated memory of the bindings of all resident agents in bytes. */
+    private final AtomicLong residentSize = new AtomicLong();
+
+    /** The number of requests that found the bindings of their agent resident. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of requests that had to load the bindings of their agent. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** The number of evictions. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** The total time of all loads by requests in nanoseconds. */
+    private final AtomicLong loadTime = new AtomicLong();
+
+    /** The longest time of a load by a request in nanoseconds. */
+    private final AtomicLong maximumLoadTime = new AtomicLong();
+
+    /** Flag that is {@code true} while a check of the memory budget is scheduled. */
+    private final AtomicBoolean sweepScheduled = new AtomicBoolean();
+
+    /** The thread that checks the agents or {@code null} if {@code this} instance is not started. */
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param idleTimeout  the time after which an agent that is not queried is evicted or {@code 0} to evict agents
+     *                     only if the memory budget is exceeded
+     * @param unit         the unit of the idle timeout
+     * @param memoryBudget the estimated memory in bytes that the bindings of all resident agents may use or {@code 0}
+     *                     to evict agents only if they are idle
+     */
+    public AgentEviction(final long idleTimeout, final TimeUnit unit, final long memoryBudget) {
+        Preconditions.checkArgument(idleTimeout >= 0, "the idle timeout should not be negative");
+        Preconditions.checkArgument(memoryBudget >= 0, "the memory budget should not be negative");
+        Preconditions.checkArgument(idleTimeout > 0 || memoryBudget > 0, "either the idle timeout or the memory budget should be positive");
+        this.idleTimeout = unit.toMillis(idleTimeout);
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Returns the number of requests that found the bindings of their agent resident.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests that had to load the bindings of their agent, either for the first time or after
+     * an eviction.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of evictions.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the average time of the loads by requests.
+     *
+     * @return the average load latency in milliseconds or {@code 0} if there was no miss
+     */
+    public double getAverageLoadTime() {
+        final long count = misses.get();
+        return count == 0 ? 0 : loadTime.get() / 1e6 / count;
+    }
+
+    /**
+     * Returns the longest time of a load by a request.
+     *
+     * @return the maximum load latency in milliseconds
+     */
+    public double getMaximumLoadTime() {
+        return maximumLoadTime.get() / 1e6;
+    }
+
+    /**
+     * Returns the number of agents whose bindings are resident.
+     *
+     * @return the number of resident agents
+     */
+    public int getResidentAgents() {
+        return (int) residences.stream().filter(Residence::isResident).count();
+    }
+
+    /**
+     * Returns the estimated memory of the bindings of all resident agents.
+     *
+     * @return the resident size in bytes
+     */
+    public long getResidentSize() {
+        return residentSize.get();
+    }
+
+    /**
+     * Registers an agent whose bindings are not loaded yet.
+     *
+     * @param name    the name of the agent for logging
+     * @param loader  the load of the bindings, which returns their estimated memory in bytes
+     * @param evictor the eviction of the bindings
+     * @return the residence of the agent
+     */
+    Residence register(final String name, final LongSupplier loader, final Runnable evictor) {
+        final Residence residence = new Residence(name, loader, evictor);
+        residences.add(residence);
+        return residence;
+    }
+
+    /**
+     * Removes a registered agent, e.g. after it was stopped.
+     *
+     * @param residence the residence of the agent
+     */
+    void unregister(final Residence residence) {
+        if (residences.remove(residence)) {
+            residence.lock.writeLock().lock();
+            try {
+                if (residence.resident) {
+                    residence.resident = false;
+                    residentSize.addAndGet(-residence.size);
+                }
+            } finally {
+                residence.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Starts the periodic check of the agents.
+     */
+    void start() {
+        final long interval = idleTimeout > 0 ? Math.max(MINIMUM_SWEEP_INTERVAL, Math.min(MAXIMUM_SWEEP_INTERVAL, idleTimeout / 2))
+                : MAXIMUM_SWEEP_INTERVAL;
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("AgentEviction").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this::sweepInBackground, interval, interval, TimeUnit.MILLISECONDS);
+        scheduler = executor;
+    }
+
+    /**
+     * Stops the periodic check of the agents.
+     */
+    void stop() {
+        final ScheduledExecutorService executor = scheduler;
+        scheduler = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Evicts the agents that are idle and the least recently queried agents as long as the memory budget is exceeded.
+     * <br>
+     * Agents that are queried at the moment are skipped.
+     *
+     * @return the number of evicted agents
+     */
+    public int sweep() {
+        sweepScheduled.set(false);
+        int evicted = 0;
+        final long now = System.nanoTime();
+        if (idleTimeout > 0) {
+            final long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+            for (final Residence residence : residences) {
+                if (residence.isResident() && now - residence.lastAccess >= idleNanos && residence.evict(false)) {
+                    evicted++;
+                }
+            }
+        }
+        if (memoryBudget > 0 && residentSize.get() > memoryBudget) {
+            // requests update the time of the last access meanwhile, so the times are read once before sorting
+            final List<Map.Entry<Long, Residence>> leastRecentlyUsed = residences.stream().filter(Residence::isResident)
+                    .map(residence -> new AbstractMap.SimpleImmutableEntry<>(residence.lastAccess - now, residence))
+                    .sorted(Map.Entry.comparingByKey()).collect(Collectors.toList());
+            for (final Map.Entry<Long, Residence> entry : leastRecentlyUsed) {
+                if (residentSize.get() <= memoryBudget) {
+                    break;
+                }
+                if (entry.getValue().evict(false)) {
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            log.debug("evicted {} agents, {} agents with {} bytes are resident", evicted, getResidentAgents(), residentSize.get());
+        }
+        return evicted;
+    }
+
+    /**
+     * Runs {@link #sweep()} in the thread of {@code this} instance.
+     * <br>
+     * A failure is logged, as it would otherwise suppress all following runs of the periodic check.
+     */
+    private void sweepInBackground() {
+        try {
+            sweep();
+        } catch (final RuntimeException e) {
+            log.error("could not evict the agents", e);
+        }
+    }
+
+    /**
+     * Evicts all agents, e.g. to release the memory of a fleet that is not queried for a while.
+     * <br>
+     * The requests of an agent that are dispatched at the moment are completed before the agent is evicted.
+     *
+     * @return the number of evicted agents
+     */
+    public int evictAll() {
+        int evicted = 0;
+        for (final Residence residence : residences) {
+            if (residence.isResident() && residence.evict(true)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Checks the memory budget in the thread of {@code this} instance, if it is exceeded.
+     */
+    private void checkMemoryBudget() {
+        final ScheduledExecutorService executor = scheduler;
+        if (memoryBudget > 0 && residentSize.get() > memoryBudget && executor != null && sweepScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::sweepInBackground);
+            } catch (final RejectedExecutionException e) {
+                // stopped meanwhile
+                sweepScheduled.set(false);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AgentEviction[" +
+                "idleTimeout=" + idleTimeout +
+                ", memoryBudget=" + memoryBudget +
+                ", residentAgents=" + getResidentAgents() +
+                ", residentSize=" + residentSize.get() +
+                ", hits=" + hits.get() +
+                ", misses=" + misses.get() +
+                ", evictions=" + evictions.get() +
+                ']';
+    }
+
+    /**
+     * The bindings of a registered agent.
+     * <br>
+     * The requests of the agent hold the read lock while they are dispatched, the load and the eviction of the
+     * bindings hold the write lock. An agent is therefore never evicted while one of its requests is dispatched.
+     */
+    final class Residence {
+
+        /** The name of the agent for logging. */
+        private final String name;
+
+        /** The load of the bindings, which returns their estimated memory in bytes. */
+        private final LongSupplier loader;
+
+        /** The eviction of the bindings. */
+        private final Runnable evictor;
+
+        /** The lock that guards the bindings. */
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /** Flag that is {@code true} while the bindings are loaded. */
+        private volatile boolean resident;
+
+        /** The time of the last request or load as returned by {@link System#nanoTime()}. */
+        private volatile long lastAccess;
+
+        /** The estimated memory of the loaded bindings in bytes. */
+        private long size;
+
+        /**
+         * Constructs a new residence.
+         *
+         * @param name    the name of the agent
+         * @param loader  the load of the bindings
+         * @param evictor the eviction of the bindings
+         */
+        private Residence(final String name, final LongSupplier loader, final Runnable evictor) {
+            this.name = name;
+            this.loader = loader;
+            this.evictor = evictor;
+        }
+
+        /**
+         * Returns whether the bindings are loaded.
+         *
+         * @return {@code true} if the bindings are resident
+         */
+        boolean isResident() {
+            return resident;
+        }
+
+        /**
+         * Loads the bindings, if they are not resident, without counting a request.
+         */
+        void load() {
+            lock.writeLock().lock();
+            try {
+                if (!resident) {
+                    doLoad();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Loads the bindings, if they are not resident, and prevents their eviction until {@link #release()} is
+         * called.
+         */
+        void acquire() {
+            lock.readLock().lock();
+            lastAccess = System.nanoTime();
+            if (resident) {
+                hits.incrementAndGet();
+                return;
+            }
+            lock.readLock().unlock();
+            lock.writeLock().lock();
+            try {
+                if (resident) {
+                    hits.incrementAndGet();
+                } else {
+                    final long start = System.nanoTime();
+                    doLoad();
+                    final long duration = System.nanoTime() - start;
+                    misses.incrementAndGet();
+                    loadTime.addAndGet(duration);
+                    maximumLoadTime.accumulateAndGet(duration, Math::max);
+                }
+            } finally {
+                // downgrade to the read lock for the request
+                lock.readLock().lock();
+                lock.writeLock().unlock();
+            }
+            checkMemoryBudget();
+        }
+
+        /**
+         * Allows the eviction of the bindings again after {@link #acquire()}.
+         */
+        void release() {
+            lock.readLock().unlock();
+        }
+
+        /**
+         * Loads the bindings while the write lock is held.
+         * <br>
+         * A failed load is logged and the agent is treated as resident anyway, so the requests are answered with the
+         * bindings that could be loaded.
+         */
+        private void doLoad() {
+            long loaded = 0;
+            try {
+                loaded = loader.getAsLong();
+            } catch (final RuntimeException e) {
+                log.error("could not load the bindings of agent \"" + name + "\"", e);
+            }
+            size = loaded;
+            residentSize.addAndGet(loaded);
+            lastAccess = System.nanoTime();
+            resident = true;
+            log.trace("loaded {} bytes of bindings for agent \"{}\"", loaded, name);
+        }
+
+        /**
+         * Evicts the bindings, if they are resident.
+         *
+         * @param wait {@code true} to wait for the requests of the agent that are dispatched at the moment,
+         *             {@code false} to skip the eviction if a request is dispatched
+         * @return {@code true} if the bindings have been evicted
+         */
+        private boolean evict(final boolean wait) {
+            if (wait) {
+                lock.writeLock().lock();
+            } else if (!lock.writeLock().tryLock()) {
+                return false;
+            }
+            try {
+                if (!resident) {
+                    return false;
+                }
+                evictor.run();
+                resident = false;
+                residentSize.addAndGet(-size);
+                evictions.incrementAndGet();
+                log.trace("evicted {} bytes of bindings of agent \"{}\"", size, name);
+                return true;
+            } catch (final RuntimeException e) {
+                log.error("could not evict the bindings of agent \"" + name + "\"", e);
+                return false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.oneandone.snmpman;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The deferred registration of the managed objects of a lazy agent or device.
+ * <br>
+ * The first request that {@link #await() awaits} the activation runs the registration in its own thread, all requests
+ * that arrive meanwhile wait for the same future. A failed registration is logged and the activation is completed
+ * anyway, so the requests are answered with the managed objects that could be registered.
+ */
+@Slf4j
+final class LazyActivation {
+
+    /** The name of the agent or device for logging. */
+    private final String name;
+
+    /** The registration of the managed objects. */
+    private final Runnable registration;
+
+    /** Flag that is {@code true} as soon as a thread runs the registration. */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /** The future that is completed after the registration. */
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    /**
+     * Constructs a new activation.
+     *
+     * @param name         the name of the agent or device
+     * @param registration the registration of the managed objects
+     */
+    LazyActivation(final String name, final Runnable registration) {
+        this.name = name;
+        this.registration = registration;
+    }
+
+    /**
+     * Returns whether the managed objects have been registered.
+     *
+     * @return {@code true} if the activation is completed
+     */
+    boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * Registers the managed objects on the first call and waits until they are registered.
+     */
+    void await() {
+        if (future.isDone()) {
+            return;
+        }
+        if (started.compareAndSet(false, true)) {
+            final long start = System.nanoTime();
+            try {
+                registration.run();
+                log.debug("activated \"{}\" in {} ms", name, (System.nanoTime() - start) / 1_000_000);
+            } catch (final RuntimeException e) {
+                log.error("could not activate \"" + name + "\"", e);
+            } finally {
+                future.complete(null);
+            }
+        } else {
+            future.join();
+        }
+    }
+}
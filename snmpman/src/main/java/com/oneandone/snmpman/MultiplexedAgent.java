@@ -0,0 +1,333 @@
+package com.oneandone.snmpman;
+
+import com.oneandone.snmpman.configuration.AgentConfiguration;
+import com.oneandone.snmpman.exception.InitializationException;
+import com.oneandone.snmpman.snmp.SelectorUdpTransportMapping;
+import com.oneandone.snmpman.snmp.SharedSelectorLoop;
+import com.oneandone.snmpman.snmp.SharedWorkerPool;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.agent.BaseAgent;
+import org.snmp4j.agent.CommandProcessor;
+import org.snmp4j.agent.DefaultMOServer;
+import org.snmp4j.agent.DuplicateRegistrationException;
+import org.snmp4j.agent.MOServer;
+import org.snmp4j.agent.io.ImportMode;
+import org.snmp4j.agent.mo.snmp.CoexistenceInfo;
+import org.snmp4j.agent.mo.snmp.SnmpCommunityMIB;
+import org.snmp4j.agent.mo.snmp.SnmpNotificationMIB;
+import org.snmp4j.agent.mo.snmp.SnmpTargetMIB;
+import org.snmp4j.agent.mo.snmp.VacmMIB;
+import org.snmp4j.mp.MPv3;
+import org.snmp4j.security.USM;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.TransportMappings;
+import org.snmp4j.util.ThreadPool;
+import org.snmp4j.util.WorkerPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A single SNMP agent that simulates many devices.
+ * <br>
+ * Instead of a {@link SnmpmanAgent} with its own transport, command processor, MIBs and files for each device, all
+ * devices share one agent. Each device is served in its own context, named by the device, and the VLAN contexts of a
+ * device are named {@code <device>@<vlan>}. The agent opens one transport for each distinct address of the devices
+ * and routes each request to the context of the device by the address it was received on and the community it was
+ * sent with. Devices with the same address therefore need distinct communities.
+ * <br>
+ * The managed objects of each device are registered in a server of their own, which is looked up by the context
+ * name, so the cost of a request does not depend on the number of devices. The managed objects of a
+ * {@link AgentConfiguration#isLazy() lazy} device are registered by its first request.
+ * <br>
+ * SNMPv3 requests are not routed and are not supported for multiplexed devices.
+ */
+@Slf4j
+public class MultiplexedAgent extends BaseAgent {
+
+    /** The separator between the device and the VLAN in a context name. */
+    private static final String VLAN_SEPARATOR = "@";
+
+    /**
+     * Returns the configurations of the simulated devices.
+     *
+     * @return the configurations of the devices
+     */
+    @Getter private final List<AgentConfiguration> configurations;
+
+    /** The context names of the devices by the address they listen on and by their community. */
+    private final Map<Address, Map<OctetString, OctetString>> routes = new LinkedHashMap<>();
+
+    /** The servers of the managed objects of the devices by context name. */
+    private final Map<OctetString, MOServer> servers = new ConcurrentHashMap<>();
+
+    /** The deferred registrations of the managed objects of the lazy devices by the context name of the device. */
+    private final Map<OctetString, LazyActivation> activations = new ConcurrentHashMap<>();
+
+    /** The pool that executes the requests of this agent or {@code null} if it has not been started yet. */
+    private WorkerPool workerPool;
+
+    /** The loop that receives the requests of this agent or {@code null} if each transport has a listener thread. */
+    private SharedSelectorLoop selectorLoop;
+
+    /** The number of times this agent has been initialized, which is not persisted. */
+    private int engineBoots;
+
+    /**
+     * Initializes a new agent for the specified devices.
+     *
+     * @param configurations the configurations of the devices
+     * @throws InitializationException thrown if two devices have the same name or the same address and community
+     */
+    public MultiplexedAgent(final List<AgentConfiguration> configurations) {
+        super(null, null, new RoutingCommandProcessor(new OctetString(MPv3.createLocalEngineID())));
+        this.configurations = Collections.unmodifiableList(new ArrayList<>(configurations));
+        ((RoutingCommandProcessor) this.agent).routes = routes;
+        ((RoutingCommandProcessor) this.agent).servers = servers;
+        ((RoutingCommandProcessor) this.agent).activations = activations;
+
+        final Set<String> names = new HashSet<>();
+        for (final AgentConfiguration configuration : configurations) {
+            if (!names.add(configuration.getName())) {
+                throw new InitializationException("multiplexed devices need distinct names, \"" + configuration.getName() + "\" is used twice");
+            }
+            final OctetString context = getContextName(configuration, null);
+            final Map<OctetString, OctetString> communities = routes.computeIfAbsent(configuration.getAddress(), address -> new HashMap<>());
+            if (communities.put(new OctetString(configuration.getCommunity()), context) != null) {
+                throw new InitializationException("multiplexed devices on " + configuration.getAddress()
+                        + " need distinct communities, \"" + configuration.getCommunity() + "\" is used twice");
+            }
+        }
+    }
+
+    /**
+     * Returns the name of {@code this} agent.
+     *
+     * @return the name of {@code this} agent
+     */
+    public String getName() {
+        return "multiplexed agent of " + configurations.size() + " devices";
+    }
+
+    /**
+     * Returns the name of the context of a device.
+     *
+     * @param configuration the configuration of the device
+     * @param vlan          the VLAN of the device or {@code null} for its default context
+     * @return the name of the context
+     */
+    public static OctetString getContextName(final AgentConfiguration configuration, final Long vlan) {
+        return new OctetString(vlan == null ? configuration.getName() : configuration.getName() + VLAN_SEPARATOR + vlan);
+    }
+
+    /**
+     * Starts this agent instance.
+     *
+     * @throws IOException signals that this agent could not be initialized by the {@link #init()} method
+     */
+    public void execute() throws IOException {
+        if (workerPool == null) {
+            workerPool = ThreadPool.create("RequestPool", 3);
+        }
+        this.agent.setWorkerPool(workerPool);
+        this.init();
+        this.loadConfig(ImportMode.REPLACE_CREATE);
+        this.addShutdownHook();
+        this.finishInit();
+        this.run();
+    }
+
+    /**
+     * Executes the requests of this agent in its own queue of the specified shared pool.
+     * <br>
+     * This method has to be called before {@link #execute()}, otherwise the agent creates a pool of its own.
+     *
+     * @param sharedWorkerPool the pool shared by all agents of a {@code Snmpman} instance
+     */
+    void setSharedWorkerPool(final SharedWorkerPool sharedWorkerPool) {
+        this.workerPool = sharedWorkerPool.register(getName());
+    }
+
+    /**
+     * Receives the requests of all addresses in the specified shared loop instead of a listener thread for each address.
+     * <br>
+     * This method has to be called before {@link #execute()}.
+     *
+     * @param selectorLoop the loop shared by all agents of a {@code Snmpman} instance
+     */
+    void setSelectorLoop(final SharedSelectorLoop selectorLoop) {
+        this.selectorLoop = selectorLoop;
+    }
+
+    @Override
+    public void loadConfig(final int importMode) {
+        // the simulated devices have no persistent configuration
+    }
+
+    @Override
+    public void saveConfig() {
+        // the simulated devices have no persistent configuration
+    }
+
+    @Override
+    protected int updateEngineBoots() {
+        return ++engineBoots;
+    }
+
+    @Override
+    protected int getEngineBoots() {
+        return engineBoots;
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        if (workerPool != null) {
+            workerPool.stop();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void initTransportMappings() {
+        log.trace("starting to initialize {} transport mappings for {}", routes.size(), getName());
+        transportMappings = new TransportMapping[routes.size()];
+        int i = 0;
+        for (final Address address : routes.keySet()) {
+            transportMappings[i++] = selectorLoop != null && address instanceof UdpAddress
+                    ? new SelectorUdpTransportMapping((UdpAddress) address, selectorLoop)
+                    : TransportMappings.getInstance().createTransportMapping(address);
+        }
+    }
+
+    @Override
+    protected void registerManagedObjects() {
+        SnmpmanAgent.unregisterDefaultManagedObjects(server, null);
+        SnmpmanAgent.unregisterDefaultManagedObjects(server, new OctetString());
+
+        for (final AgentConfiguration configuration : configurations) {
+            final DefaultMOServer deviceServer = new DefaultMOServer();
+            deviceServer.addContext(getContextName(configuration, null));
+            configuration.getDevice().getVlans().forEach(vlan -> deviceServer.addContext(getContextName(configuration, vlan)));
+
+            final Runnable registration = () -> SnmpmanAgent.registerGroups(deviceServer, configuration, vlan -> getContextName(configuration, vlan), group -> {
+                try {
+                    deviceServer.register(group, null);
+                } catch (final DuplicateRegistrationException e) {
+                    log.warn("could not register {} because another ManagedObject is already registered", group);
+                }
+            });
+            if (configuration.isLazy()) {
+                activations.put(getContextName(configuration, null), new LazyActivation(configuration.getName(), registration));
+            } else {
+                registration.run();
+            }
+            for (final OctetString context : deviceServer.getContexts()) {
+                servers.put(context, deviceServer);
+            }
+        }
+    }
+
+    @Override
+    protected void unregisterManagedObjects() {
+        log.trace("unregistered managed objects for {}", getName());
+        servers.clear();
+        activations.clear();
+    }
+
+    @Override
+    protected void addUsmUser(final USM usm) {
+        // do nothing here
+    }
+
+    @Override
+    protected void addNotificationTargets(final SnmpTargetMIB snmpTargetMIB, final SnmpNotificationMIB snmpNotificationMIB) {
+        // do nothing here
+    }
+
+    @Override
+    protected void addViews(final VacmMIB vacmMIB) {
+        final Set<String> communities = new LinkedHashSet<>();
+        configurations.forEach(configuration -> communities.add(configuration.getCommunity()));
+        SnmpmanAgent.addViews(vacmMIB, communities);
+    }
+
+    @Override
+    protected void addCommunities(final SnmpCommunityMIB snmpCommunityMIB) {
+        final Map<String, Set<Long>> communities = new LinkedHashMap<>();
+        for (final AgentConfiguration configuration : configurations) {
+            communities.computeIfAbsent(configuration.getCommunity(), community -> new TreeSet<>()).addAll(configuration.getDevice().getVlans());
+        }
+        communities.forEach((community, vlans) -> {
+            for (final Long vlan : vlans) {
+                SnmpmanAgent.configureSnmpCommunity(snmpCommunityMIB, getAgent().getContextEngineID(), community, vlan);
+            }
+            SnmpmanAgent.configureSnmpCommunity(snmpCommunityMIB, getAgent().getContextEngineID(), community, null);
+        });
+    }
+
+    /**
+     * The command processor that routes each request to the context of the device it was sent to.
+     */
+    private static final class RoutingCommandProcessor extends CommandProcessor {
+
+        /** The context names of the devices by the address they listen on and by their community. */
+        private Map<Address, Map<OctetString, OctetString>> routes;
+
+        /** The servers of the managed objects of the devices by context name. */
+        private Map<OctetString, MOServer> servers;
+
+        /** The deferred registrations of the lazy devices by the context name of the device. */
+        private Map<OctetString, LazyActivation> activations;
+
+        /**
+         * Constructs a new command processor.
+         *
+         * @param contextEngineID the local engine ID
+         */
+        private RoutingCommandProcessor(final OctetString contextEngineID) {
+            super(contextEngineID);
+        }
+
+        @Override
+        protected void dispatchCommand(final CommandResponderEvent event, final CoexistenceInfo cinfo) {
+            final Map<OctetString, OctetString> communities = routes.get(event.getTransportMapping().getListenAddress());
+            final OctetString device = communities == null ? null : communities.get(cinfo.getSecurityName());
+            if (device == null) {
+                log.debug("dropped request for unknown device with community {} on {}", cinfo.getSecurityName(), event.getTransportMapping().getListenAddress());
+                return;
+            }
+            final LazyActivation activation = activations.get(device);
+            if (activation != null) {
+                activation.await();
+            }
+            final OctetString context = new OctetString(device);
+            if (cinfo.getContextName().length() > 0) {
+                context.append(VLAN_SEPARATOR);
+                context.append(cinfo.getContextName());
+            }
+            super.dispatchCommand(event, new CoexistenceInfo(cinfo.getSecurityName(), cinfo.getContextEngineID(), context, cinfo.getTransportTag()));
+        }
+
+        @Override
+        public MOServer getServer(final OctetString context) {
+            final MOServer server = context == null ? null : servers.get(context);
+            return server != null ? server : super.getServer(context);
+        }
+    }
+}
@@ -1,19 +1,36 @@
 package com.oneandone.snmpman;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.oneandone.snmpman.configuration.AgentConfiguration;
+import com.oneandone.snmpman.configuration.AgentTemplate;
 import com.oneandone.snmpman.exception.InitializationException;
+import com.oneandone.snmpman.persistence.AgentPersistence;
+import com.oneandone.snmpman.persistence.FilePersistence;
+import com.oneandone.snmpman.snmp.SharedSelectorLoop;
+import com.oneandone.snmpman.snmp.SharedWorkerPool;
+import lombok.Builder;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.snmp4j.agent.BaseAgent;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -36,10 +53,33 @@ import java.util.stream.Collectors;
  * You can find more example within the test resources of this project.
  * <br>
  * The configuration {@code YAML} file defines a list of all agents that should be simulated by the {@code Snmpman}.
+ * <br>
+ * The requests of all agents are executed by one {@link SharedWorkerPool}, so the number of threads does not grow with
+ * the number of agents.
+ * <br>
+ * In the multiplexed mode, see {@link #startMultiplexed(File, Options)}, all devices are simulated by one
+ * {@link MultiplexedAgent} instead of an agent for each device.
+ * <br>
+ * With a positive number of selector threads, the requests of all agents are received by one
+ * {@link SharedSelectorLoop} instead of a listener thread for each agent.
+ * <br>
+ * The agents are started and stopped concurrently, up to {@link #DEFAULT_START_THREADS} agents at a time by default.
+ * <br>
+ * The engine boots and the configuration of the agents are persisted by an {@link AgentPersistence}, by default in two
+ * files of each agent next to its walk.
+ * <br>
+ * The bindings of agents that are not queried can be evicted by an {@link AgentEviction} to simulate more agents than
+ * fit on the heap.
  */
 @Slf4j
 public final class Snmpman {
 
+    /** The default number of request worker threads shared by all agents. */
+    public static final int DEFAULT_WORKER_THREADS = Math.max(3, Runtime.getRuntime().availableProcessors());
+
+    /** The default number of agents that are started or stopped at the same time. */
+    public static final int DEFAULT_START_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
     /**
      * Returns the list of SNMP agents for {@code this} instance.
      *
@@ -47,13 +87,62 @@ public final class Snmpman {
      */
     @Getter private final List<SnmpmanAgent> agents;
 
+    /**
+     * Returns the pool that executes the requests of all agents.
+     *
+     * @return the shared request worker pool
+     */
+    @Getter private final SharedWorkerPool workerPool;
+
+    /**
+     * Returns the agent that simulates all devices in the multiplexed mode.
+     *
+     * @return the multiplexed agent or {@code null} if {@code this} instance has an agent for each device
+     */
+    @Getter private final MultiplexedAgent multiplexedAgent;
+
+    /**
+     * Returns the loop that receives the requests of all agents.
+     *
+     * @return the shared selector loop or {@code null} if each agent has a listener thread of its own
+     */
+    @Getter private final SharedSelectorLoop selectorLoop;
+
+    /**
+     * Returns the backend that persists the state of the agents.
+     *
+     * @return the persistence backend
+     */
+    @Getter private final AgentPersistence persistence;
+
+    /**
+     * Returns the eviction of the bindings of agents that are not queried.
+     *
+     * @return the eviction or {@code null} if the bindings of all agents are kept on the heap
+     */
+    @Getter private final AgentEviction eviction;
+
+    /** The maximum number of agents that are started or stopped at the same time. */
+    private final int startThreads;
+
+    /** The hook that saves the state of the agents if the JVM exits before {@link #stop()} is called. */
+    private final Thread shutdownHook = new Thread(this::saveState, "SnmpmanShutdownHook");
+
     /**
      * Constructs an instance by the specified list of agents.
      *
-     * @param agents the agents for {@code this} instance
+     * @param agents           the agents for {@code this} instance
+     * @param multiplexedAgent the agent that simulates all devices or {@code null}
+     * @param options          the options of {@code this} instance
      */
-    private Snmpman(final List<SnmpmanAgent> agents) {
+    private Snmpman(final List<SnmpmanAgent> agents, final MultiplexedAgent multiplexedAgent, final Options options) {
         this.agents = agents;
+        this.persistence = options.getPersistence();
+        this.eviction = options.getEviction();
+        this.startThreads = options.getStartThreads();
+        this.multiplexedAgent = multiplexedAgent;
+        this.selectorLoop = options.getSelectorThreads() > 0 ? new SharedSelectorLoop("SelectorLoop", options.getSelectorThreads()) : null;
+        this.workerPool = new SharedWorkerPool("RequestPool", options.getWorkerThreads());
     }
 
     /**
@@ -64,15 +153,75 @@ public final class Snmpman {
      * @throws com.oneandone.snmpman.exception.InitializationException thrown if any agent, as specified in the configuration, could not be started
      */
     public static Snmpman start(final File configurationFile) {
+        return Snmpman.start(configurationFile, Options.builder().build());
+    }
+
+    /**
+     * Creates an {@code Snmpman} instance by the specified configuration in the {@code configurationFile} and starts all agents.
+     *
+     * @param configurationFile the configuration
+     * @param options           the options of the instance
+     * @return the {@code Snmpman} instance
+     * @throws com.oneandone.snmpman.exception.InitializationException thrown if any agent, as specified in the configuration, could not be started
+     */
+    public static Snmpman start(final File configurationFile, final Options options) {
+        final List<AgentConfiguration> configurations = Snmpman.readConfigurations(configurationFile);
+        return Snmpman.start(configurations.stream().map(SnmpmanAgent::new).collect(Collectors.toList()), options);
+    }
+
+    /**
+     * Creates an {@code Snmpman} instance by the specified configuration in the {@code configurationFile} that
+     * simulates all devices in one {@link MultiplexedAgent} and starts it.
+     *
+     * @param configurationFile the configuration
+     * @param options           the options of the instance, which may not have an eviction
+     * @return the {@code Snmpman} instance
+     * @throws com.oneandone.snmpman.exception.InitializationException thrown if the agent could not be started
+     */
+    public static Snmpman startMultiplexed(final File configurationFile, final Options options) {
+        return Snmpman.startMultiplexed(Snmpman.readConfigurations(configurationFile), options);
+    }
+
+    /**
+     * Creates an {@code Snmpman} instance that simulates the specified devices in one {@link MultiplexedAgent} and
+     * starts it.
+     *
+     * @param configurations the configurations of the devices
+     * @param options        the options of the instance, which may not have an eviction
+     * @return the {@code Snmpman} instance
+     * @throws com.oneandone.snmpman.exception.InitializationException thrown if the agent could not be started
+     */
+    public static Snmpman startMultiplexed(final List<AgentConfiguration> configurations, final Options options) {
+        Preconditions.checkArgument(options.getEviction() == null, "the bindings of the multiplexed agent can not be evicted");
+        final MultiplexedAgent multiplexedAgent = new MultiplexedAgent(configurations);
+        return Snmpman.start(new Snmpman(Collections.emptyList(), multiplexedAgent, options));
+    }
+
+    /**
+     * Reads the agent configurations in the specified {@code configurationFile}.
+     * <br>
+     * An entry with a {@code count} is an {@link AgentTemplate} and is expanded into the configurations of its agents.
+     *
+     * @param configurationFile the configuration
+     * @return the agent configurations
+     * @throws com.oneandone.snmpman.exception.InitializationException thrown if the configuration could not be parsed
+     */
+    private static List<AgentConfiguration> readConfigurations(final File configurationFile) {
         Preconditions.checkNotNull(configurationFile, "the configuration file may not be null");
         Preconditions.checkArgument(configurationFile.exists() && configurationFile.isFile(), "configuration does not exist or is not a file");
 
         log.debug("started with configuration in path {}", configurationFile.getAbsolutePath());
         try {
             final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
-            final AgentConfiguration[] configurations = mapper.readValue(configurationFile, AgentConfiguration[].class);
-
-            return Snmpman.start(Arrays.stream(configurations).map(SnmpmanAgent::new).collect(Collectors.toList()));
+            final List<AgentConfiguration> configurations = new ArrayList<>();
+            for (final JsonNode node : mapper.readTree(configurationFile)) {
+                if (node.has("count")) {
+                    configurations.addAll(mapper.treeToValue(node, AgentTemplate.class).getConfigurations());
+                } else {
+                    configurations.add(mapper.treeToValue(node, AgentConfiguration.class));
+                }
+            }
+            return configurations;
         } catch (final IOException e) {
             throw new InitializationException("could not parse configuration at path: " + configurationFile.getAbsolutePath(), e);
         }
@@ -86,53 +235,303 @@ public final class Snmpman {
      * @throws com.oneandone.snmpman.exception.InitializationException thrown if any agent, as specified in the configuration, could not be started
      */
     public static Snmpman start(final List<SnmpmanAgent> agents) {
-        final Snmpman snmpman = new Snmpman(Collections.unmodifiableList(agents));
-        snmpman.start();
+        return Snmpman.start(agents, Options.builder().build());
+    }
+
+    /**
+     * Creates a {@code Snmpman} instance with the specified list of agents and starts all agents.
+     *
+     * @param agents  the list of agents
+     * @param options the options of the instance
+     * @return the {@code Snmpman} instance
+     * @throws com.oneandone.snmpman.exception.InitializationException thrown if any agent, as specified in the configuration, could not be started
+     */
+    public static Snmpman start(final List<SnmpmanAgent> agents, final Options options) {
+        return Snmpman.start(new Snmpman(Collections.unmodifiableList(agents), null, options));
+    }
+
+    /**
+     * Starts all agents of the specified instance.
+     *
+     * @param snmpman the instance to start
+     * @return the started instance
+     * @throws com.oneandone.snmpman.exception.InitializationException thrown if any agent could not be started
+     */
+    private static Snmpman start(final Snmpman snmpman) {
+        try {
+            snmpman.start();
+        } catch (final InitializationException e) {
+            try {
+                snmpman.stop();
+            } catch (final RuntimeException stopFailure) {
+                e.addSuppressed(stopFailure);
+            }
+            throw e;
+        }
         return snmpman;
     }
 
     /**
-     * Starts all agents as defined in {@link #agents}.
+     * Starts all agents as defined in {@link #agents}, up to {@link #startThreads} agents at a time, and the
+     * {@link #multiplexedAgent}.
+     * <br>
+     * The method returns as soon as all agents are running. If an agent could not be started, the agents that are
+     * still waiting to be started are skipped and the failures of the agents that were started at the same time are
+     * added as suppressed exceptions.
      *
      * @throws com.oneandone.snmpman.exception.InitializationException thrown if any agent could not be started
      */
     private void start() {
-        log.debug("starting to load agents");
-        for (final SnmpmanAgent agent : agents) {
+        log.debug("starting {} agents with {} threads", agents.size(), Math.min(startThreads, agents.size()));
+        runConcurrently(agents, agent -> {
+            agent.setSharedWorkerPool(workerPool);
+            agent.setPersistence(persistence);
+            if (eviction != null) {
+                agent.setEviction(eviction);
+            }
+            if (selectorLoop != null) {
+                agent.setSelectorLoop(selectorLoop);
+            }
             try {
                 agent.execute();
-            } catch (final IOException e) {
+            } catch (final InitializationException e) {
+                throw e;
+            } catch (final IOException | RuntimeException e) {
+                // the transport mappings of snmp4j report a failed bind as a runtime exception
                 throw new InitializationException("failed to start agent \"" + agent.getName() + "\"", e);
             }
+            checkStatus(agent, agent.getName());
+        }, true);
+        if (multiplexedAgent != null) {
+            multiplexedAgent.setSharedWorkerPool(workerPool);
+            if (selectorLoop != null) {
+                multiplexedAgent.setSelectorLoop(selectorLoop);
+            }
+            try {
+                multiplexedAgent.execute();
+            } catch (final IOException | RuntimeException e) {
+                throw new InitializationException("failed to start " + multiplexedAgent.getName(), e);
+            }
+            checkStatus(multiplexedAgent, multiplexedAgent.getName());
         }
-        log.debug("all agents initialized");
-        agents.forEach(this::checkStatus);
+        flushPersistence();
+        if (eviction != null) {
+            eviction.start();
+        }
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
         log.info("all agents are running");
     }
 
     /**
-     * Wait until specified agent is started.
+     * Checks that the specified agent is running after its start.
      * <br>
-     * A call of this method is blocking.
+     * The start of an agent is synchronous, but an agent does not report a failure to listen on its address.
      *
-     * @param agent the agent to wait for
-     * @throws InitializationException if the specified agent is already stopped
+     * @param agent the agent to check
+     * @param name  the name of the agent
+     * @throws InitializationException if the specified agent is not running
      */
-    private void checkStatus(final SnmpmanAgent agent) {
+    private static void checkStatus(final BaseAgent agent, final String name) {
         if (agent.getAgentState() == BaseAgent.STATE_STOPPED) {
-            throw new InitializationException("agent " + agent.getName() + " already stopped while initialization was running");
+            throw new InitializationException("agent " + name + " already stopped while initialization was running");
         } else if (agent.getAgentState() != BaseAgent.STATE_RUNNING) {
-            try {
-                Thread.sleep(100L);
-                checkStatus(agent);
-            } catch (final InterruptedException e) {
-                log.warn("wait was interrupted", e);
+            throw new InitializationException("agent " + name + " could not listen on its address");
+        }
+    }
+
+    /**
+     * Returns whether the specified agent has to be stopped.
+     *
+     * @param agent the agent
+     * @return {@code true} if the agent is running or was initialized, but could not listen on its address
+     */
+    private static boolean isStarted(final BaseAgent agent) {
+        return agent.getAgentState() == BaseAgent.STATE_RUNNING || agent.getAgentState() == BaseAgent.STATE_INIT_FINISHED;
+    }
+
+    /**
+     * Performs the specified action for each agent, up to {@link #startThreads} agents at a time.
+     * <br>
+     * The method returns when the action has been performed for all agents. The first failure is thrown with the
+     * failures of all other agents as suppressed exceptions.
+     *
+     * @param targets  the agents
+     * @param action   the action to perform for each agent
+     * @param failFast {@code true} to skip the agents that are still waiting as soon as an action failed
+     * @throws RuntimeException the first failure of an action
+     */
+    private void runConcurrently(final List<SnmpmanAgent> targets, final Consumer<SnmpmanAgent> action, final boolean failFast) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(startThreads, targets.size()),
+                new ThreadFactoryBuilder().setNameFormat("AgentStarter-%d").setDaemon(true).build());
+        try {
+            final CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+            final List<Future<Void>> futures = new ArrayList<>(targets.size());
+            for (final SnmpmanAgent agent : targets) {
+                futures.add(completionService.submit(() -> action.accept(agent), null));
+            }
+
+            RuntimeException failure = null;
+            for (int i = 0; i < targets.size(); i++) {
+                try {
+                    completionService.take().get();
+                } catch (final CancellationException e) {
+                    // skipped after a failure
+                } catch (final ExecutionException e) {
+                    final RuntimeException cause = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause() : new InitializationException("agent failed", e.getCause());
+                    if (failure == null) {
+                        failure = cause;
+                        if (failFast) {
+                            futures.forEach(future -> future.cancel(false));
+                        }
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    futures.forEach(future -> future.cancel(true));
+                    throw new InitializationException("interrupted while waiting for the agents", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
             }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Writes the state of the agents that has not been written by the {@link #persistence} yet.
+     *
+     * @throws InitializationException thrown if the state could not be written
+     */
+    private void flushPersistence() {
+        try {
+            persistence.flush();
+        } catch (final IOException e) {
+            throw new InitializationException("could not persist the state of the agents", e);
+        }
+    }
+
+    /**
+     * Saves the configuration of all running agents and writes the state of the agents.
+     * <br>
+     * This method is called by the shutdown hook if the JVM exits while the agents are running.
+     */
+    private void saveState() {
+        try {
+            runConcurrently(agents.stream().filter(Snmpman::isStarted).collect(Collectors.toList()), SnmpmanAgent::saveConfig, false);
+            flushPersistence();
+        } catch (final RuntimeException e) {
+            log.warn("could not save the state of the agents", e);
         }
     }
 
-    /** Stops all agents as defined in {@link #agents}. */
+    /**
+     * Stops all agents as defined in {@link #agents}, up to {@link #startThreads} agents at a time, the
+     * {@link #multiplexedAgent}, the {@link #workerPool}, the {@link #selectorLoop} and the {@link #eviction}.
+     * <br>
+     * Agents that are not running are skipped. The configuration of each agent is saved before it is stopped and the
+     * state of all agents is written once all agents are stopped.
+     */
     public void stop() {
-        agents.forEach(SnmpmanAgent::stop);
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (final IllegalStateException e) {
+            // the JVM is already shutting down
+        }
+        try {
+            runConcurrently(agents.stream().filter(Snmpman::isStarted).collect(Collectors.toList()), agent -> {
+                agent.saveConfig();
+                agent.stop();
+            }, false);
+            if (multiplexedAgent != null && isStarted(multiplexedAgent)) {
+                multiplexedAgent.stop();
+            }
+            flushPersistence();
+        } finally {
+            if (eviction != null) {
+                eviction.stop();
+            }
+            workerPool.stop();
+            if (selectorLoop != null) {
+                selectorLoop.stop();
+            }
+        }
+    }
+
+    /**
+     * The options of a {@code Snmpman} instance.
+     * <br>
+     * All options are optional, the defaults are {@link #DEFAULT_WORKER_THREADS} worker threads, a listener thread
+     * per agent, {@link #DEFAULT_START_THREADS} start threads, a {@link FilePersistence} and no eviction.
+     */
+    public static final class Options {
+
+        /**
+         * Returns the number of request worker threads shared by all agents.
+         *
+         * @return the number of worker threads
+         */
+        @Getter private final int workerThreads;
+
+        /**
+         * Returns the number of selector threads shared by all agents.
+         *
+         * @return the number of selector threads or {@code 0} for a listener thread per agent
+         */
+        @Getter private final int selectorThreads;
+
+        /**
+         * Returns the maximum number of agents that are started or stopped at the same time.
+         *
+         * @return the number of start threads
+         */
+        @Getter private final int startThreads;
+
+        /**
+         * Returns the backend that persists the state of the agents.
+         *
+         * @return the persistence backend
+         */
+        @Getter private final AgentPersistence persistence;
+
+        /**
+         * Returns the eviction of the bindings of agents that are not queried.
+         *
+         * @return the eviction or {@code null} to keep the bindings of all agents on the heap
+         */
+        @Getter private final AgentEviction eviction;
+
+        /**
+         * Constructs the options.
+         *
+         * @param workerThreads   the number of request worker threads shared by all agents or {@code null} for
+         *                        {@link #DEFAULT_WORKER_THREADS}
+         * @param selectorThreads the number of selector threads shared by all agents or {@code null} or {@code 0} for a
+         *                        listener thread per agent
+         * @param startThreads    the maximum number of agents that are started or stopped at the same time or
+         *                        {@code null} for {@link #DEFAULT_START_THREADS}
+         * @param persistence     the backend that persists the state of the agents or {@code null} for a
+         *                        {@link FilePersistence}
+         * @param eviction        the eviction of the bindings of agents that are not queried or {@code null} to keep
+         *                        the bindings of all agents on the heap
+         */
+        @Builder
+        private Options(final Integer workerThreads, final Integer selectorThreads, final Integer startThreads,
+                        final AgentPersistence persistence, final AgentEviction eviction) {
+            this.workerThreads = Optional.ofNullable(workerThreads).orElse(DEFAULT_WORKER_THREADS);
+            this.selectorThreads = Optional.ofNullable(selectorThreads).orElse(0);
+            this.startThreads = Optional.ofNullable(startThreads).orElse(DEFAULT_START_THREADS);
+            this.persistence = persistence != null ? persistence : new FilePersistence();
+            this.eviction = eviction;
+            Preconditions.checkArgument(this.workerThreads > 0, "the number of worker threads should be positive");
+            Preconditions.checkArgument(this.selectorThreads >= 0, "the number of selector threads should not be negative");
+            Preconditions.checkArgument(this.startThreads > 0, "the number of start threads should be positive");
+        }
     }
 }
@@ -1,19 +1,31 @@
 package com.oneandone.snmpman;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.primitives.UnsignedLong;
 import com.oneandone.snmpman.configuration.AgentConfiguration;
 import com.oneandone.snmpman.configuration.Device;
-import com.oneandone.snmpman.configuration.Walks;
+import com.oneandone.snmpman.configuration.InstanceValues;
+import com.oneandone.snmpman.configuration.LayeredWalk;
+import com.oneandone.snmpman.configuration.WalkCache;
 import com.oneandone.snmpman.configuration.modifier.CommunityContextModifier;
 import com.oneandone.snmpman.configuration.modifier.ModifiedVariable;
 import com.oneandone.snmpman.configuration.modifier.Modifier;
+import com.oneandone.snmpman.configuration.modifier.ModifierRandom;
 import com.oneandone.snmpman.configuration.modifier.VariableModifier;
+import com.oneandone.snmpman.persistence.AgentPersistence;
+import com.oneandone.snmpman.persistence.FilePersistence;
+import com.oneandone.snmpman.snmp.BindingStore;
 import com.oneandone.snmpman.snmp.MOGroup;
+import com.oneandone.snmpman.snmp.ReusePortUdpTransportMapping;
+import com.oneandone.snmpman.snmp.SelectorUdpTransportMapping;
+import com.oneandone.snmpman.snmp.SharedSelectorLoop;
+import com.oneandone.snmpman.snmp.SharedWorkerPool;
+import com.oneandone.snmpman.snmp.VirtualThreadWorkerPool;
 import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.CommandResponderEvent;
 import org.snmp4j.TransportMapping;
 import org.snmp4j.agent.*;
 import org.snmp4j.agent.io.ImportMode;
-import org.snmp4j.agent.mo.ext.StaticMOGroup;
 import org.snmp4j.agent.mo.snmp.*;
 import org.snmp4j.agent.security.MutableVACM;
 import org.snmp4j.mp.MPv3;
@@ -23,12 +35,14 @@ import org.snmp4j.security.USM;
 import org.snmp4j.smi.*;
 import org.snmp4j.transport.TransportMappings;
 import org.snmp4j.util.ThreadPool;
+import org.snmp4j.util.WorkerPool;
 
 import java.io.*;
-import java.lang.reflect.Field;
-import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -55,7 +69,73 @@ public class SnmpmanAgent extends BaseAgent {
     /**
      * The list of managed object groups.
      */
-    private final List<ManagedObject> groups = new ArrayList<>();
+    private final List<MOGroup> groups = new ArrayList<>();
+
+    /**
+     * The layer of this agent on the bindings of the walk, which is shared by the {@link #groups}, or {@code null} if
+     * the bindings are not loaded.
+     */
+    private BindingStore store;
+
+    /**
+     * The cached walk the {@link #store} has been created from or {@code null} if the walk has not been read.
+     */
+    private Map<OID, Variable> walk;
+
+    /**
+     * The current values of the modified variables of the {@link #store} by their slot while the bindings are evicted,
+     * otherwise {@code null}. The values are the state of the modifiers, a variable that has not been accessed is
+     * {@code null}.
+     */
+    private Variable[] retainedVariables;
+
+    /**
+     * The numbers of random numbers drawn by the modified variables of the {@link #retainedVariables} by their slot.
+     */
+    private long[] retainedDraws;
+
+    /**
+     * The source of random numbers for the modifiers of this agent, which is kept when the bindings are evicted.
+     */
+    private final ModifierRandom random;
+
+    /**
+     * The pool that executes the requests of this agent or {@code null} if it has not been started yet.
+     */
+    private WorkerPool workerPool;
+
+    /**
+     * The loop that receives the requests of this agent or {@code null} if the agent has a listener thread of its own.
+     */
+    private SharedSelectorLoop selectorLoop;
+
+    /**
+     * The backend that persists the state of this agent or {@code null} if the agent persists its state in files of its
+     * own and saves its configuration on shutdown.
+     */
+    private AgentPersistence persistence;
+
+    /**
+     * The deferred registration of the managed objects of the walk or {@code null} if the agent is not
+     * {@link AgentConfiguration#isLazy() lazy}.
+     */
+    private final LazyActivation activation;
+
+    /**
+     * The eviction of the bindings of idle agents or {@code null} if the bindings of this agent are never evicted.
+     */
+    private AgentEviction eviction;
+
+    /**
+     * The residence of the bindings of this agent in the {@link #eviction} or {@code null} if the bindings are never
+     * evicted.
+     */
+    private AgentEviction.Residence residence;
+
+    /**
+     * The number of engine boots of this agent, if its state is persisted by the {@link #persistence}.
+     */
+    private int engineBoots;
 
     /**
      * Initializes a new instance of an SNMP agent.
@@ -63,9 +143,12 @@ public class SnmpmanAgent extends BaseAgent {
      * @param configuration the configuration for this agent
      */
     public SnmpmanAgent(final AgentConfiguration configuration) {
-        super(SnmpmanAgent.getBootCounterFile(configuration), SnmpmanAgent.getConfigurationFile(configuration), new CommandProcessor(new OctetString(MPv3.createLocalEngineID())));
-        this.agent.setWorkerPool(ThreadPool.create("RequestPool", 3));
+        super(FilePersistence.getBootCounterFile(configuration), FilePersistence.getConfigurationFile(configuration),
+                new ActivatingCommandProcessor(new OctetString(MPv3.createLocalEngineID())));
         this.configuration = configuration;
+        this.random = SnmpmanAgent.getRandom(configuration);
+        this.activation = configuration.isLazy() ? new LazyActivation(configuration.getName(), this::registerWalk) : null;
+        ((ActivatingCommandProcessor) this.agent).activation = activation;
     }
 
     /**
@@ -80,53 +163,32 @@ public class SnmpmanAgent extends BaseAgent {
     }
 
     /**
-     * Returns the boot-counter file for the specified agent.
-     * <p>
-     * This file will be created in the same directory as the {@link com.oneandone.snmpman.configuration.AgentConfiguration#getWalk()} file.
-     *
-     * @return the boot-counter file
-     */
-    private static File getBootCounterFile(final AgentConfiguration configuration) {
-        return new File(configuration.getWalk().getParentFile(), SnmpmanAgent.encode(configuration.getName() + ".BC.cfg"));
-    }
-
-    /**
-     * Returns the configuration file for the specified agent.
-     * <p>
-     * This file will be created in the same directory as the {@link com.oneandone.snmpman.configuration.AgentConfiguration#getWalk()} file.
-     *
-     * @return the configuration file
-     */
-    private static File getConfigurationFile(final AgentConfiguration configuration) {
-        return new File(configuration.getWalk().getParentFile(), SnmpmanAgent.encode(configuration.getName() + ".Config.cfg"));
-    }
-
-    /**
-     * Translates a string into {@code x-www-form-urlencoded} format. The method uses the <i>UTF-8</i> encoding scheme.
+     * Returns whether the managed objects of the walk of {@code this} agent are registered.
+     * <br>
+     * A {@link AgentConfiguration#isLazy() lazy} agent is activated by its first request, all other agents are
+     * activated when they are started. An agent whose bindings have been evicted is not activated until its next
+     * request.
      *
-     * @param string {@code String} to be translated
-     * @return the translated {@code String}
+     * @return {@code true} if the walk has been loaded
      */
-    private static String encode(final String string) {
-        try {
-            return URLEncoder.encode(string, "UTF-8");
-        } catch (final UnsupportedEncodingException e) {
-            log.error("UTF-8 encoding is unsupported");
-            return string;
+    public boolean isActivated() {
+        if (residence != null) {
+            return residence.isResident();
         }
+        return activation == null ? agentState >= STATE_INIT_FINISHED : activation.isDone();
     }
 
     /**
      * Returns the root OIDs of the bindings.
      *
-     * @param bindings the variable bindings
+     * @param oids the {@code OID}s of the variable bindings in ascending order
      * @return the roots of the specified variable bindings
      */
-    private static List<OID> getRoots(final SortedMap<OID, Variable> bindings) {
-        final List<OID> potentialRoots = new ArrayList<>(bindings.size());
+    private static List<OID> getRoots(final Collection<OID> oids) {
+        final List<OID> potentialRoots = new ArrayList<>(oids.size());
 
         OID last = null;
-        for (final OID oid : bindings.keySet()) {
+        for (final OID oid : oids) {
             if (last != null) {
                 int min = Math.min(oid.size(), last.size());
                 while (min > 0) {
@@ -163,9 +225,21 @@ public class SnmpmanAgent extends BaseAgent {
      * @throws IOException signals that this agent could not be initialized by the {@link #init()} method
      */
     public void execute() throws IOException {
+        if (configuration.isVirtualThreads()) {
+            workerPool = new VirtualThreadWorkerPool(configuration.getName());
+        } else if (workerPool == null) {
+            workerPool = ThreadPool.create("RequestPool", 3);
+        }
+        this.agent.setWorkerPool(workerPool);
+        if (eviction != null) {
+            residence = eviction.register(configuration.getName(), this::loadWalk, this::evictWalk);
+            ((ActivatingCommandProcessor) this.agent).residence = residence;
+        }
         this.init();
         this.loadConfig(ImportMode.REPLACE_CREATE);
-        this.addShutdownHook();
+        if (persistence == null) {
+            this.addShutdownHook();
+        }
         this.getServer().addContext(new OctetString("public"));
         this.getServer().addContext(new OctetString(""));
         // configure community index contexts
@@ -174,176 +248,383 @@ public class SnmpmanAgent extends BaseAgent {
         }
 
         this.finishInit();
+        if (residence != null && !configuration.isLazy()) {
+            residence.load();
+        }
         this.run();
         this.sendColdStartNotification();
     }
 
+    /**
+     * Executes the requests of this agent in its own queue of the specified shared pool.
+     * <br>
+     * This method has to be called before {@link #execute()}, otherwise the agent creates a pool of its own. The shared
+     * pool is not used if the agent is configured to execute its requests in
+     * {@link AgentConfiguration#isVirtualThreads() virtual threads}.
+     *
+     * @param sharedWorkerPool the pool shared by all agents of a {@code Snmpman} instance
+     */
+    void setSharedWorkerPool(final SharedWorkerPool sharedWorkerPool) {
+        if (!configuration.isVirtualThreads()) {
+            this.workerPool = sharedWorkerPool.register(configuration.getName());
+        }
+    }
+
+    /**
+     * Receives the requests of this agent in the specified shared loop instead of a listener thread of its own.
+     * <br>
+     * This method has to be called before {@link #execute()}. The loop is not used if the agent is configured to
+     * receive its requests in {@link AgentConfiguration#getReceiveThreads() several threads}.
+     *
+     * @param selectorLoop the loop shared by all agents of a {@code Snmpman} instance
+     */
+    void setSelectorLoop(final SharedSelectorLoop selectorLoop) {
+        this.selectorLoop = selectorLoop;
+    }
+
+    /**
+     * Persists the state of this agent in the specified backend, which is shared by all agents of a {@code Snmpman}
+     * instance.
+     * <br>
+     * This method has to be called before {@link #execute()}. The agent then does not save its configuration on
+     * shutdown, the {@code Snmpman} instance saves the configuration of all agents instead.
+     *
+     * @param persistence the backend shared by all agents of a {@code Snmpman} instance
+     */
+    void setPersistence(final AgentPersistence persistence) {
+        this.persistence = persistence;
+    }
+
+    /**
+     * Evicts the bindings of this agent by the specified instance, if it has not been queried for a while.
+     * <br>
+     * This method has to be called before {@link #execute()}. The bindings are then loaded by the residence of the
+     * agent, which also activates a {@link AgentConfiguration#isLazy() lazy} agent.
+     *
+     * @param eviction the eviction shared by all agents of a {@code Snmpman} instance
+     */
+    void setEviction(final AgentEviction eviction) {
+        this.eviction = eviction;
+    }
+
+    /**
+     * Returns the layer of this agent on the shared bindings of its walk.
+     *
+     * @return the layer or {@code null} if the bindings are not loaded
+     */
+    BindingStore getStore() {
+        synchronized (groups) {
+            return store;
+        }
+    }
+
+    @Override
+    public void loadConfig(final int importMode) {
+        if (persistence == null) {
+            super.loadConfig(importMode);
+            return;
+        }
+        try {
+            persistence.restore(configuration, server, importMode);
+        } catch (final IOException e) {
+            log.warn("could not restore the configuration of agent \"{}\": {}", configuration.getName(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void saveConfig() {
+        if (persistence == null) {
+            super.saveConfig();
+            return;
+        }
+        try {
+            persistence.store(configuration, server);
+        } catch (final IOException e) {
+            log.warn("could not store the configuration of agent \"{}\": {}", configuration.getName(), e.getMessage());
+        }
+    }
+
+    @Override
+    protected int updateEngineBoots() {
+        if (persistence == null) {
+            return super.updateEngineBoots();
+        }
+        try {
+            engineBoots = persistence.updateEngineBoots(configuration);
+        } catch (final IOException e) {
+            log.warn("could not persist the engine boots of agent \"{}\": {}", configuration.getName(), e.getMessage());
+            engineBoots++;
+        }
+        return engineBoots;
+    }
+
+    @Override
+    protected int getEngineBoots() {
+        return persistence == null ? super.getEngineBoots() : engineBoots;
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        if (residence != null) {
+            eviction.unregister(residence);
+        }
+        if (workerPool != null) {
+            workerPool.stop();
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     protected void initTransportMappings() {
         log.trace("starting to initialize transport mappings for agent \"{}\"", configuration.getName());
         transportMappings = new TransportMapping[1];
-        TransportMapping tm = TransportMappings.getInstance().createTransportMapping(configuration.getAddress());
+        TransportMapping tm;
+        if (configuration.getReceiveThreads() > 1 && configuration.getAddress() instanceof UdpAddress) {
+            tm = new ReusePortUdpTransportMapping((UdpAddress) configuration.getAddress(), configuration.getReceiveThreads());
+        } else if (selectorLoop != null && configuration.getAddress() instanceof UdpAddress) {
+            tm = new SelectorUdpTransportMapping((UdpAddress) configuration.getAddress(), selectorLoop);
+        } else {
+            tm = TransportMappings.getInstance().createTransportMapping(configuration.getAddress());
+        }
         transportMappings[0] = tm;
     }
 
     @Override
     protected void registerManagedObjects() {
-        unregisterDefaultManagedObjects(null);
-        unregisterDefaultManagedObjects(new OctetString());
+        unregisterDefaultManagedObjects(server, null);
+        unregisterDefaultManagedObjects(server, new OctetString());
         final List<Long> vlans = configuration.getDevice().getVlans();
         for (final Long vlan : vlans) {
-            unregisterDefaultManagedObjects(new OctetString(String.valueOf(vlan)));
+            unregisterDefaultManagedObjects(server, new OctetString(String.valueOf(vlan)));
         }
 
-        log.trace("registering managed objects for agent \"{}\"", configuration.getName());
-        for (final Long vlan : vlans) {
-            try {
-                Map<OID, Variable> bindings = Walks.readWalk(configuration.getWalk());
-
-                final SortedMap<OID, Variable> variableBindings = this.getVariableBindings(configuration.getDevice(), bindings, new OctetString(String.valueOf(vlan)));
-
-                final OctetString context = new OctetString(String.valueOf(vlan));
-
-                final List<OID> roots = SnmpmanAgent.getRoots(variableBindings);
-                for (final OID root : roots) {
-                    MOGroup group = createGroup(root, variableBindings);
-                    final Iterable<VariableBinding> subtree = generateSubtreeBindings(variableBindings, root);
-                    DefaultMOContextScope scope = new DefaultMOContextScope(context, root, true, root.nextPeer(), false);
-                    ManagedObject mo = server.lookup(new DefaultMOQuery(scope, false));
-                    if (mo != null) {
-                        for (final VariableBinding variableBinding : subtree) {
-                            group = new MOGroup(variableBinding.getOid(), variableBinding.getOid(), variableBinding.getVariable());
-                            scope = new DefaultMOContextScope(context, variableBinding.getOid(), true, variableBinding.getOid().nextPeer(), false);
-                            mo = server.lookup(new DefaultMOQuery(scope, false));
-                            if (mo != null) {
-                                log.warn("could not register single OID at {} because ManagedObject {} is already registered.", variableBinding.getOid(), mo);
-                            } else {
-                                groups.add(group);
-                                registerGroupAndContext(group, context);
-                            }
-                        }
-                    } else {
-                        groups.add(group);
-                        registerGroupAndContext(group, context);
+        if (activation == null && residence == null) {
+            registerWalk();
+        } else {
+            log.trace("deferred the registration of managed objects for agent \"{}\" to its first request", configuration.getName());
+        }
+    }
+
+    /**
+     * Registers the managed objects for the walk of this agent.
+     */
+    private void registerWalk() {
+        synchronized (groups) {
+            walk = SnmpmanAgent.readWalk(configuration);
+            if (walk != null) {
+                store = SnmpmanAgent.registerGroups(server, configuration, walk, random, SnmpmanAgent::getContextName, this::registerGroup);
+            }
+        }
+    }
+
+    /**
+     * Loads the bindings of the walk of this agent on behalf of its {@link #residence}.
+     * <br>
+     * The managed objects are registered on the first load. Later loads replace the evicted bindings of the registered
+     * groups by a new layer on the shared bindings of the cached walk and continue the modified variables with their
+     * retained values, unless the walk has changed meanwhile.
+     *
+     * @return the estimated memory of the bindings in bytes
+     */
+    private long loadWalk() {
+        synchronized (groups) {
+            if (groups.isEmpty()) {
+                registerWalk();
+            } else {
+                final Map<OID, Variable> reloaded = SnmpmanAgent.readWalk(configuration);
+                if (reloaded == null) {
+                    return 0;
+                }
+                final BindingTemplate template = BindingTemplate.of(configuration, reloaded);
+                store = template.createLayer(configuration, random);
+                if (reloaded == walk) {
+                    restorePrivateVariables();
+                } else {
+                    log.debug("the walk of agent \"{}\" changed while it was evicted", configuration.getName());
+                    final Map<OctetString, NavigableMap<OID, Variable>> contextBindings = template.getContextBindings(configuration, reloaded, random, SnmpmanAgent::getContextName);
+                    for (final MOGroup group : groups) {
+                        group.setContextBindings(contextBindings);
                     }
                 }
+                walk = reloaded;
+                retainedVariables = null;
+                retainedDraws = null;
+                for (final MOGroup group : groups) {
+                    group.setVariableBindings(store.subtree(group.getRoot()));
+                }
             }
-            catch (IOException e) {
-                log.error("Could not read walk file " + configuration.getWalk().getAbsolutePath(), e);
-            }
+            return store == null ? 0 : store.getMemorySize();
         }
-        createAndRegisterDefaultContext();
     }
 
-    private MOGroup createGroup(final OID root, final SortedMap<OID, Variable> variableBindings) {
-        final SortedMap<OID, Variable> subtree = new TreeMap<>();
-        variableBindings.entrySet().stream().filter(binding -> binding.getKey().size() >= root.size()).filter(
-                binding -> binding.getKey().leftMostCompare(root.size(), root) == 0).forEach(
-                        binding -> subtree.put(binding.getKey(), binding.getValue())
-        );
-
-        return new MOGroup(root, subtree);
+    /**
+     * Evicts the bindings of the walk of this agent on behalf of its {@link #residence}.
+     * <br>
+     * The groups stay registered with their bindings changed by {@code SET} requests, only the current values of the
+     * modified variables are retained for the next load.
+     */
+    private void evictWalk() {
+        synchronized (groups) {
+            if (store == null) {
+                return;
+            }
+            retainedVariables = store.getPrivateVariables();
+            retainedDraws = new long[retainedVariables.length];
+            for (int slot = 0; slot < retainedVariables.length; slot++) {
+                final Variable variable = retainedVariables[slot];
+                if (variable instanceof ModifiedVariable) {
+                    retainedVariables[slot] = ((ModifiedVariable) variable).getCurrentVariable();
+                    retainedDraws[slot] = ((ModifiedVariable) variable).getDraws();
+                } else {
+                    retainedVariables[slot] = null;
+                }
+            }
+            for (final MOGroup group : groups) {
+                group.setVariableBindings(BindingStore.EMPTY);
+            }
+            store = null;
+        }
     }
 
     /**
-     * Creates the {@link StaticMOGroup} with all information necessary to register it to the server.
+     * Continues the modified variables of the {@link #store} with the {@link #retainedVariables}.
      */
-    private void createAndRegisterDefaultContext() {
-        try {
-            Map<OID, Variable> bindings = Walks.readWalk(configuration.getWalk());
-            final SortedMap<OID, Variable> variableBindings = this.getVariableBindings(configuration.getDevice(), bindings, new OctetString());
-            final List<OID> roots = SnmpmanAgent.getRoots(variableBindings);
-            for (final OID root : roots) {
-                MOGroup group = createGroup(root, variableBindings);
-                registerDefaultGroups(group);
-            }
+    private void restorePrivateVariables() {
+        if (retainedVariables == null) {
+            return;
         }
-        catch (IOException e) {
-            log.error("Could not read walk file " + configuration.getWalk().getAbsolutePath(), e);
+        for (int slot = 0; slot < retainedVariables.length && slot < store.getPrivateCount(); slot++) {
+            if (retainedVariables[slot] != null) {
+                final Variable variable = store.getPrivateVariable(slot);
+                if (variable instanceof ModifiedVariable) {
+                    ((ModifiedVariable) variable).setCurrentVariable(retainedVariables[slot], retainedDraws[slot]);
+                }
+            }
         }
     }
 
     /**
-     * Creates a list of {@link VariableBinding} out of a mapping of {@link OID} and {@link Variable}.
+     * Returns the source of random numbers for the modifiers of an agent.
+     * <br>
+     * A seeded agent uses its seed. The random numbers of an agent without a seed are not reproducible, only modifiers
+     * with their own seed draw reproducible numbers, which differ by the name of the agent.
      *
-     * @param variableBindings mapping of {@link OID} and {@link Variable}.
-     * @param root             root SNMP OID.
-     * @return list of {@link VariableBinding}.
+     * @param configuration the agent configuration
+     * @return the source of random numbers of the agent
      */
-    private ArrayList<VariableBinding> generateSubtreeBindings(final SortedMap<OID, Variable> variableBindings, final OID root) {
-        return variableBindings.entrySet().stream().filter(binding -> binding.getKey().size() >= root.size()).
-                filter(binding -> binding.getKey().leftMostCompare(root.size(), root) == 0).
-                map(binding -> new VariableBinding(binding.getKey(), binding.getValue())).collect(Collectors.toCollection(ArrayList::new));
+    private static ModifierRandom getRandom(final AgentConfiguration configuration) {
+        final Long seed = configuration.getSeed();
+        return seed != null ? ModifierRandom.seeded(seed) : ModifierRandom.shared().derive(configuration.getName().hashCode());
     }
 
     /**
-     * Registers a {@link ManagedObject} to the server with an empty {@link OctetString} community context.
+     * Returns the name of the context of a VLAN.
      *
-     * @param group {@link ManagedObject} to register.
+     * @param vlan the VLAN or {@code null} for the default context
+     * @return the name of the context
      */
-    private void registerDefaultGroups(final MOGroup group) {
-        groups.add(group);
-        registerGroupAndContext(group, new OctetString(""));
+    private static OctetString getContextName(final Long vlan) {
+        return vlan == null ? new OctetString() : new OctetString(String.valueOf(vlan));
     }
 
     /**
-     * Registers a {@link ManagedObject} to the server with a {@link OctetString} community context.
+     * Creates and registers the managed object groups for the walk and the device of an agent configuration.
+     * <br>
+     * The groups serve the default context and all VLAN contexts of the device. A group whose scope is already
+     * occupied in the server is split into a group for each of its bindings.
      *
-     * @param group   {@link ManagedObject} to register.
-     * @param context community context.
+     * @param server        the server the groups will be registered at
+     * @param configuration the agent configuration
+     * @param contextName   the function that returns the name of the context of a VLAN or of the default context for
+     *                      {@code null}
+     * @param registration  the registration of a group for all contexts
      */
-    private void registerGroupAndContext(final MOGroup group, final OctetString context) {
-        try {
-            if (context == null || context.toString().equals("")) {
-                MOContextScope contextScope = new DefaultMOContextScope(new OctetString(), group.getScope());
-                ManagedObject other = server.lookup(new DefaultMOQuery(contextScope, false));
-                if (other != null) {
-                    log.warn("group {} already existed", group);
-                    return;
-                }
+    static void registerGroups(final MOServer server, final AgentConfiguration configuration, final Function<Long, OctetString> contextName,
+                               final Consumer<MOGroup> registration) {
+        final Map<OID, Variable> walk = SnmpmanAgent.readWalk(configuration);
+        if (walk != null) {
+            SnmpmanAgent.registerGroups(server, configuration, walk, SnmpmanAgent.getRandom(configuration), contextName, registration);
+        }
+    }
 
-                contextScope = new DefaultMOContextScope(null, group.getScope());
-                other = server.lookup(new DefaultMOQuery(contextScope, false));
-                if (other != null) {
-                    registerHard(group);
-                    return;
+    /**
+     * Creates and registers the managed object groups for the specified walk and the device of an agent configuration.
+     *
+     * @param server        the server the groups will be registered at
+     * @param configuration the agent configuration
+     * @param walk          the bindings of the walk
+     * @param random        the source of random numbers for the modifiers
+     * @param contextName   the function that returns the name of the context of a VLAN or of the default context for
+     *                      {@code null}
+     * @param registration  the registration of a group for all contexts
+     * @return the layer of the agent on the shared bindings of the walk, which is shared by the groups
+     */
+    private static BindingStore registerGroups(final MOServer server, final AgentConfiguration configuration, final Map<OID, Variable> walk,
+                                               final ModifierRandom random, final Function<Long, OctetString> contextName,
+                                               final Consumer<MOGroup> registration) {
+        log.trace("registering managed objects for agent \"{}\"", configuration.getName());
+        final BindingTemplate template = BindingTemplate.of(configuration, walk);
+        final BindingStore store = template.createLayer(configuration, random);
+        final Map<OctetString, NavigableMap<OID, Variable>> contextBindings = template.getContextBindings(configuration, walk, random, contextName);
+        for (final OID root : template.getRoots(walk)) {
+            final MOGroup group = new MOGroup(root, store.subtree(root), contextBindings);
+            final ManagedObject mo = server.lookup(new DefaultMOQuery(new DefaultMOContextScope(null, group.getScope()), false));
+            if (mo != null) {
+                final SortedSet<OID> oids = new TreeSet<>();
+                final BindingStore subtree = store.subtree(root);
+                for (int i = 0; i < subtree.size(); i++) {
+                    oids.add(subtree.getOid(i));
+                }
+                if (walk instanceof LayeredWalk) {
+                    ((LayeredWalk) walk).getDelta().keySet().stream().filter(oid -> oid.startsWith(root)).forEach(oids::add);
+                }
+                for (final OID oid : oids) {
+                    registration.accept(new MOGroup(oid, store.subtree(oid), contextBindings));
                 }
-                this.server.register(group, new OctetString());
             } else {
-                this.server.register(group, context);
+                registration.accept(group);
             }
-        } catch (final DuplicateRegistrationException e) {
-            log.error("duplicate registrations are not allowed", e);
+        }
+        return store;
+    }
+
+    /**
+     * Returns the cached walk of an agent configuration with its overlays applied.
+     *
+     * @param configuration the agent configuration
+     * @return the bindings of the walk or {@code null} if the walk could not be read
+     */
+    private static Map<OID, Variable> readWalk(final AgentConfiguration configuration) {
+        try {
+            return WalkCache.readWalk(configuration.getWalk(), configuration.getOverlays());
+        } catch (final IOException e) {
+            log.error("Could not read walk file " + configuration.getWalk().getAbsolutePath() + " or its overlays " + configuration.getOverlays(), e);
+            return null;
         }
     }
 
     /**
-     * Sets the private registry value of {@link DefaultMOServer} via reflection.
-     * FIXME
-     * If there is any possibility to avoid this, then replace!
+     * Registers a {@link ManagedObject} to the server for all contexts.
      *
      * @param group {@link ManagedObject} to register.
      */
-    private void registerHard(final MOGroup group) {
+    private void registerGroup(final MOGroup group) {
         try {
-            final Field registry = server.getClass().getDeclaredField("registry");
-            registry.setAccessible(true);
-            final SortedMap<MOScope, ManagedObject> reg = server.getRegistry();
-            DefaultMOContextScope contextScope = new DefaultMOContextScope(new OctetString(""), group.getScope());
-            reg.put(contextScope, group);
-            registry.set(server, reg);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            log.warn("could not set server registry", e);
+            this.server.register(group, null);
+            groups.add(group);
+        } catch (final DuplicateRegistrationException e) {
+            log.warn("could not register {} because another ManagedObject is already registered", group);
         }
     }
 
     /**
      * Unregisters all default managed objects in the specified context {@code ctx}.
      *
+     * @param server the server to unregister the managed objects from
      * @param ctx the context from which all default managed objects should be unregistred
      */
-    private void unregisterDefaultManagedObjects(final OctetString ctx) {
+    static void unregisterDefaultManagedObjects(final MOServer server, final OctetString ctx) {
         final OID startOID = new OID(".1");
         final DefaultMOContextScope hackScope = new DefaultMOContextScope(ctx, startOID, true, startOID.nextPeer(), false);
         ManagedObject query;
@@ -353,22 +634,26 @@ public class SnmpmanAgent extends BaseAgent {
     }
 
     /**
-     * Returns the variable bindings for a device configuration and a list of bindings.
+     * Returns the variable bindings of the default context for a device configuration and a list of bindings.
      * <p>
-     * In this step the {@link ModifiedVariable} instances will be created as a wrapper for dynamic variables.
+     * In this step the {@link ModifiedVariable} instances will be created as a wrapper for dynamic variables. The
+     * variable bindings are shared by all contexts, the {@link CommunityContextModifier} instances of bindings that
+     * differ by context are collected in the specified map. The {@link InstanceValues} of the agent are not applied,
+     * see {@link BindingTemplate#createLayer(AgentConfiguration, ModifierRandom)}.
      *
-     * @param device   the device configuration
-     * @param bindings the bindings as the base
-     * @return the variable bindings for the specified device configuration
+     * @param configuration    the agent configuration
+     * @param bindings         the bindings as the base
+     * @param contextModifiers the map to collect the community context modifiers by {@code OID} in
+     * @param random           the source of random numbers for the modifiers
+     * @return the variable bindings for the device configuration of the agent
      */
-    @SuppressWarnings("unchecked")
-    private SortedMap<OID, Variable> getVariableBindings(final Device device, final Map<OID, Variable> bindings, final OctetString context) {
+    private static SortedMap<OID, Variable> getVariableBindings(final AgentConfiguration configuration, final Map<OID, Variable> bindings,
+                                                                final Map<OID, List<CommunityContextModifier>> contextModifiers, final ModifierRandom random) {
         log.trace("get variable bindings for agent \"{}\"", configuration.getName());
+        final Device device = configuration.getDevice();
         final SortedMap<OID, Variable> result = new TreeMap<>();
         for (final Map.Entry<OID, Variable> binding : bindings.entrySet()) {
-            final List<VariableModifier> modifiers;
-
-            modifiers = device.getModifiers().stream().filter(modifier -> modifier.isApplicable(binding.getKey())).collect(Collectors.toList());
+            final List<VariableModifier> modifiers = Collections.unmodifiableList(device.getApplicableModifiers(binding.getKey()));
 
             if (modifiers.isEmpty()) {
                 result.put(binding.getKey(), binding.getValue());
@@ -376,12 +661,13 @@ public class SnmpmanAgent extends BaseAgent {
                 log.trace("created modified variable for OID {}", binding.getKey());
                 try {
                     if (modifiers.stream().filter(m -> m instanceof Modifier).map(m -> (Modifier) m).anyMatch(m -> m.getModifier() instanceof CommunityContextModifier)) {
-                        final List<CommunityContextModifier> contextModifiers = modifiers.stream().filter(m -> m instanceof Modifier).map(m -> (Modifier) m).filter(m -> m.getModifier() instanceof CommunityContextModifier).map(m -> (CommunityContextModifier) m.getModifier()).collect(Collectors.toList());
-                        for (final CommunityContextModifier contextModifier : contextModifiers) {
-                            result.putAll(contextModifier.getVariableBindings(context, binding.getKey()));
+                        final List<CommunityContextModifier> communityContextModifiers = modifiers.stream().filter(m -> m instanceof Modifier).map(m -> (Modifier) m).filter(m -> m.getModifier() instanceof CommunityContextModifier).map(m -> (CommunityContextModifier) m.getModifier()).collect(Collectors.toList());
+                        for (final CommunityContextModifier contextModifier : communityContextModifiers) {
+                            result.putAll(contextModifier.getVariableBindings(new OctetString(), binding.getKey()));
                         }
+                        contextModifiers.put(binding.getKey(), communityContextModifiers);
                     } else {
-                        result.put(binding.getKey(), new ModifiedVariable(binding.getValue(), modifiers));
+                        result.put(binding.getKey(), new ModifiedVariable(binding.getValue(), modifiers, random));
                     }
                 } catch (final ClassCastException e) {
                     log.error("could not create variable binding for " + binding.getKey().toString() + " and file " + configuration.getWalk().getAbsolutePath(), e);
@@ -392,11 +678,48 @@ public class SnmpmanAgent extends BaseAgent {
         return result;
     }
 
+    /**
+     * Returns the bindings that differ from the default context for each context.
+     * <p>
+     * The bindings of a VLAN context are provided by the {@link CommunityContextModifier} instances. A binding of the
+     * default context that is not provided for a VLAN context is mapped to {@code null}, which removes it from the
+     * context.
+     *
+     * @param vlans            the VLANs of the device
+     * @param contextModifiers the community context modifiers by {@code OID}
+     * @param contextName      the function that returns the name of the context of a VLAN or of the default context
+     *                         for {@code null}
+     * @return the bindings that differ by context name, including the default context
+     */
+    private static Map<OctetString, NavigableMap<OID, Variable>> getContextBindings(final List<Long> vlans, final Map<OID, List<CommunityContextModifier>> contextModifiers,
+                                                                                    final Function<Long, OctetString> contextName) {
+        final Map<OctetString, NavigableMap<OID, Variable>> result = new HashMap<>();
+        result.put(contextName.apply(null), Collections.emptyNavigableMap());
+        for (final Long vlan : vlans) {
+            final OctetString context = new OctetString(String.valueOf(vlan));
+            if (contextModifiers.isEmpty()) {
+                result.put(contextName.apply(vlan), Collections.emptyNavigableMap());
+                continue;
+            }
+            final NavigableMap<OID, Variable> bindings = new TreeMap<>();
+            for (final Map.Entry<OID, List<CommunityContextModifier>> binding : contextModifiers.entrySet()) {
+                bindings.put(binding.getKey(), null);
+                for (final CommunityContextModifier contextModifier : binding.getValue()) {
+                    bindings.putAll(contextModifier.getVariableBindings(context, binding.getKey()));
+                }
+            }
+            result.put(contextName.apply(vlan), Collections.unmodifiableNavigableMap(bindings));
+        }
+        return result;
+    }
+
     @Override
     protected void unregisterManagedObjects() {
         log.trace("unregistered managed objects for agent \"{}\"", agent);
-        for (final ManagedObject mo : groups) {
-            server.unregister(mo, null);
+        synchronized (groups) {
+            for (final ManagedObject mo : groups) {
+                server.unregister(mo, null);
+            }
         }
     }
 
@@ -415,21 +738,28 @@ public class SnmpmanAgent extends BaseAgent {
     @Override
     protected void addViews(final VacmMIB vacmMIB) {
         log.trace("adding views in the vacm MIB {} for agent \"{}\"", vacmMIB.toString(), configuration.getName());
-        vacmMIB.addGroup(SecurityModel.SECURITY_MODEL_SNMPv1, new OctetString(configuration.getCommunity()), new OctetString("v1v2group"), StorageType.nonVolatile);
-        vacmMIB.addGroup(SecurityModel.SECURITY_MODEL_SNMPv2c, new OctetString(configuration.getCommunity()), new OctetString("v1v2group"), StorageType.nonVolatile);
+        SnmpmanAgent.addViews(vacmMIB, Collections.singleton(configuration.getCommunity()));
+    }
+
+    /**
+     * Adds the groups, access rights and views of the simulated agents to the VACM MIB.
+     *
+     * @param vacmMIB     the VACM MIB
+     * @param communities the communities that get full access to all contexts
+     */
+    static void addViews(final VacmMIB vacmMIB, final Collection<String> communities) {
+        for (final String community : communities) {
+            vacmMIB.addGroup(SecurityModel.SECURITY_MODEL_SNMPv1, new OctetString(community), new OctetString("v1v2group"), StorageType.nonVolatile);
+            vacmMIB.addGroup(SecurityModel.SECURITY_MODEL_SNMPv2c, new OctetString(community), new OctetString("v1v2group"), StorageType.nonVolatile);
+        }
         vacmMIB.addGroup(SecurityModel.SECURITY_MODEL_USM, new OctetString("SHADES"), new OctetString("v3group"), StorageType.nonVolatile);
         vacmMIB.addGroup(SecurityModel.SECURITY_MODEL_USM, new OctetString("TEST"), new OctetString("v3test"), StorageType.nonVolatile);
         vacmMIB.addGroup(SecurityModel.SECURITY_MODEL_USM, new OctetString("SHA"), new OctetString("v3restricted"), StorageType.nonVolatile);
         vacmMIB.addGroup(SecurityModel.SECURITY_MODEL_USM, new OctetString("v3notify"), new OctetString("v3restricted"), StorageType.nonVolatile);
 
-        // configure community index contexts
-        for (final Long vlan : configuration.getDevice().getVlans()) {
-            vacmMIB.addGroup(SecurityModel.SECURITY_MODEL_SNMPv1, new OctetString(configuration.getCommunity() + "@" + vlan), new OctetString("v1v2group"), StorageType.nonVolatile);
-            vacmMIB.addGroup(SecurityModel.SECURITY_MODEL_SNMPv2c, new OctetString(configuration.getCommunity() + "@" + vlan), new OctetString("v1v2group"), StorageType.nonVolatile);
-            vacmMIB.addAccess(new OctetString("v1v2group"), new OctetString(String.valueOf(vlan)), SecurityModel.SECURITY_MODEL_ANY, SecurityLevel.NOAUTH_NOPRIV, MutableVACM.VACM_MATCH_EXACT, new OctetString("fullReadView"), new OctetString("fullWriteView"), new OctetString("fullNotifyView"), StorageType.nonVolatile);
-        }
-
-        vacmMIB.addAccess(new OctetString("v1v2group"), new OctetString(), SecurityModel.SECURITY_MODEL_ANY, SecurityLevel.NOAUTH_NOPRIV, MutableVACM.VACM_MATCH_EXACT, new OctetString("fullReadView"), new OctetString("fullWriteView"), new OctetString("fullNotifyView"), StorageType.nonVolatile);
+        // the community index contexts share the security name of the community, so the empty context prefix grants
+        // access to the default context and all VLAN contexts with a single entry
+        vacmMIB.addAccess(new OctetString("v1v2group"), new OctetString(), SecurityModel.SECURITY_MODEL_ANY, SecurityLevel.NOAUTH_NOPRIV, MutableVACM.VACM_MATCH_PREFIX, new OctetString("fullReadView"), new OctetString("fullWriteView"), new OctetString("fullNotifyView"), StorageType.nonVolatile);
         vacmMIB.addAccess(new OctetString("v3group"), new OctetString(), SecurityModel.SECURITY_MODEL_USM, SecurityLevel.AUTH_PRIV, MutableVACM.VACM_MATCH_EXACT, new OctetString("fullReadView"), new OctetString("fullWriteView"), new OctetString("fullNotifyView"), StorageType.nonVolatile);
         vacmMIB.addAccess(new OctetString("v3restricted"), new OctetString(), SecurityModel.SECURITY_MODEL_USM, SecurityLevel.NOAUTH_NOPRIV, MutableVACM.VACM_MATCH_EXACT, new OctetString("restrictedReadView"), new OctetString("restrictedWriteView"), new OctetString("restrictedNotifyView"), StorageType.nonVolatile);
         vacmMIB.addAccess(new OctetString("v3test"), new OctetString(), SecurityModel.SECURITY_MODEL_USM, SecurityLevel.AUTH_PRIV, MutableVACM.VACM_MATCH_EXACT, new OctetString("testReadView"), new OctetString("testWriteView"), new OctetString("testNotifyView"), StorageType.nonVolatile);
@@ -454,31 +784,35 @@ public class SnmpmanAgent extends BaseAgent {
         log.trace("adding communities {} for agent \"{}\"", snmpCommunityMIB.toString(), configuration.getName());
         // configure community index contexts
         for (final Long vlan : configuration.getDevice().getVlans()) {
-            configureSnmpCommunity(snmpCommunityMIB, vlan);
+            configureSnmpCommunity(snmpCommunityMIB, getAgent().getContextEngineID(), configuration.getCommunity(), vlan);
         }
-        configureSnmpCommunity(snmpCommunityMIB, null);
+        configureSnmpCommunity(snmpCommunityMIB, getAgent().getContextEngineID(), configuration.getCommunity(), null);
     }
 
     /**
      * Configures an SNMP community for a given SNMP community context.
+     * <br>
+     * The security name of all contexts is the community itself.
      *
      * @param snmpCommunityMIB SNMP community.
+     * @param contextEngineID  the local engine ID.
+     * @param community        the community of the agent.
      * @param context          SNMP community context.
      */
-    private void configureSnmpCommunity(final SnmpCommunityMIB snmpCommunityMIB, final Long context) {
+    static void configureSnmpCommunity(final SnmpCommunityMIB snmpCommunityMIB, final OctetString contextEngineID, final String community, final Long context) {
         String communityString;
         OctetString contextName;
         if (context != null) {
-            communityString = configuration.getCommunity() + "@" + context;
+            communityString = community + "@" + context;
             contextName = new OctetString(String.valueOf(context));
         } else {
-            communityString = configuration.getCommunity();
+            communityString = community;
             contextName = new OctetString();
         }
         final Variable[] com2sec = new Variable[]{
                 new OctetString(communityString),       // community name
-                new OctetString(communityString),       // security name
-                getAgent().getContextEngineID(),        // local engine ID
+                new OctetString(community),             // security name
+                contextEngineID,                        // local engine ID
                 contextName,                            // default context name
                 new OctetString(),                      // transport tag
                 new Integer32(StorageType.readOnly),    // storage type
@@ -488,4 +822,221 @@ public class SnmpmanAgent extends BaseAgent {
                 new OctetString(communityString + "2" + communityString).toSubIndex(true), com2sec);
         snmpCommunityMIB.getSnmpCommunityEntry().addRow(row);
     }
+
+    /**
+     * The bindings of a walk for a device, which are shared by all agents with the same walk, device and
+     * {@link InstanceValues}.
+     * <br>
+     * Each agent uses its own layer on the shared {@link BindingStore}, which only holds the modified variables and the
+     * values derived from the instance of the agent, see {@link #createLayer(AgentConfiguration, ModifierRandom)}.
+     * The bindings changed by {@code SET} requests are kept by the {@link MOGroup} instances of the agent.
+     * <br>
+     * The template of a {@link LayeredWalk} is created from its base walk, so all agents with overlays on the same base
+     * walk share it. The bindings added, replaced or deleted by the overlays of an agent are served from its context
+     * bindings, see {@link #getContextBindings(AgentConfiguration, Map, ModifierRandom, Function)}.
+     */
+    private static final class BindingTemplate {
+
+        /** The templates by base walk and by device and instance values. The walks are weakly referenced and compared by identity. */
+        private static final Map<Map<OID, Variable>, Map<List<Object>, BindingTemplate>> TEMPLATES =
+                CacheBuilder.newBuilder().weakKeys().<Map<OID, Variable>, Map<List<Object>, BindingTemplate>>build().asMap();
+
+        /** The shared bindings, of which the modified variables and the derived values are private to each agent. */
+        private final BindingStore store;
+
+        /** The community context modifiers by {@code OID}. */
+        private final Map<OID, List<CommunityContextModifier>> contextModifiers;
+
+        /** The roots of the groups of the bindings. */
+        private final List<OID> roots;
+
+        /**
+         * Creates the template of an agent configuration.
+         *
+         * @param configuration the agent configuration
+         * @param walk          the bindings of the base walk
+         */
+        private BindingTemplate(final AgentConfiguration configuration, final Map<OID, Variable> walk) {
+            log.trace("creating shared bindings for the walk {} and device {}", configuration.getWalk(), configuration.getDevice());
+            final Map<OID, List<CommunityContextModifier>> contextModifiers = new HashMap<>();
+            final SortedMap<OID, Variable> variableBindings = SnmpmanAgent.getVariableBindings(configuration, walk, contextModifiers, ModifierRandom.shared());
+            final Map<OctetString, NavigableMap<OID, Variable>> contextBindings = SnmpmanAgent.getContextBindings(configuration.getDevice().getVlans(), contextModifiers, SnmpmanAgent::getContextName);
+            this.store = new BindingStore(variableBindings, configuration.getInstanceValues()::isDerived);
+            this.contextModifiers = contextModifiers;
+
+            // the roots are computed once for all contexts
+            Collection<OID> oids = variableBindings.keySet();
+            final SortedSet<OID> contextOids = new TreeSet<>();
+            contextBindings.values().forEach(context -> contextOids.addAll(context.keySet()));
+            if (!variableBindings.keySet().containsAll(contextOids)) {
+                contextOids.addAll(variableBindings.keySet());
+                oids = contextOids;
+            }
+            this.roots = Collections.unmodifiableList(SnmpmanAgent.getRoots(oids));
+        }
+
+        /**
+         * Returns the shared template of an agent configuration.
+         *
+         * @param configuration the agent configuration
+         * @param walk          the cached bindings of the walk of the agent, possibly with overlays
+         * @return the template for the base walk, the device and the instance values of the agent
+         */
+        private static BindingTemplate of(final AgentConfiguration configuration, final Map<OID, Variable> walk) {
+            final Map<OID, Variable> base = walk instanceof LayeredWalk ? ((LayeredWalk) walk).getBase() : walk;
+            return TEMPLATES.computeIfAbsent(base, key -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(Arrays.asList(configuration.getDevice(), configuration.getInstanceValues()), key -> new BindingTemplate(configuration, base));
+        }
+
+        /**
+         * Creates the layer of an agent on the shared bindings.
+         * <br>
+         * A private variable is copied on its first access. A modified variable gets the random numbers of the agent
+         * derived for its {@code OID}, and the values derived from the instance of the agent replace the values of the
+         * walk.
+         *
+         * @param configuration the agent configuration
+         * @param random        the source of random numbers for the modifiers of the agent
+         * @return the bindings of the agent
+         */
+        private BindingStore createLayer(final AgentConfiguration configuration, final ModifierRandom random) {
+            return store.withPrivateVariables((oid, variable) -> BindingTemplate.copy(configuration, random, oid, variable));
+        }
+
+        /**
+         * Returns the bindings of an agent that differ by context name.
+         * <br>
+         * The bindings of a {@link LayeredWalk} that are added or replaced by its overlays and the deleted bindings of
+         * the base walk, which are mapped to {@code null}, are contained in each context. They are the only bindings
+         * of the agent that are not shared, so the memory of an agent with overlays scales with its overlays.
+         *
+         * @param configuration the agent configuration
+         * @param walk          the cached bindings of the walk of the agent, possibly with overlays
+         * @param random        the source of random numbers for the modifiers of the agent
+         * @param contextName   the function that returns the name of the context of a VLAN or of the default context for
+         *                      {@code null}
+         * @return the bindings that differ by context name, including the default context
+         */
+        private Map<OctetString, NavigableMap<OID, Variable>> getContextBindings(final AgentConfiguration configuration, final Map<OID, Variable> walk,
+                                                                                final ModifierRandom random, final Function<Long, OctetString> contextName) {
+            final List<Long> vlans = configuration.getDevice().getVlans();
+            if (!(walk instanceof LayeredWalk)) {
+                return SnmpmanAgent.getContextBindings(vlans, contextModifiers, contextName);
+            }
+            final LayeredWalk layered = (LayeredWalk) walk;
+            final NavigableMap<OID, Variable> overlay = new TreeMap<>();
+            final Map<OID, List<CommunityContextModifier>> modifiers = new HashMap<>(contextModifiers);
+            for (final OID root : layered.getDeletions()) {
+                final BindingStore deleted = store.subtree(root);
+                for (int i = 0; i < deleted.size(); i++) {
+                    overlay.put(deleted.getOid(i), null);
+                }
+                modifiers.keySet().removeIf(oid -> oid.startsWith(root));
+            }
+            // the replaced bindings get the context modifiers of their new value
+            modifiers.keySet().removeAll(layered.getDelta().keySet());
+            SnmpmanAgent.getVariableBindings(configuration, layered.getDelta(), modifiers, ModifierRandom.shared())
+                    .forEach((oid, variable) -> overlay.put(oid, BindingTemplate.copy(configuration, random, oid, variable)));
+
+            final NavigableMap<OID, Variable> shared = Collections.unmodifiableNavigableMap(overlay);
+            final Map<OctetString, NavigableMap<OID, Variable>> result = new HashMap<>();
+            SnmpmanAgent.getContextBindings(vlans, modifiers, contextName).forEach((context, bindings) -> {
+                if (bindings.isEmpty()) {
+                    result.put(context, shared);
+                } else {
+                    final NavigableMap<OID, Variable> merged = new TreeMap<>(overlay);
+                    merged.putAll(bindings);
+                    result.put(context, Collections.unmodifiableNavigableMap(merged));
+                }
+            });
+            return result;
+        }
+
+        /**
+         * Returns the roots of the groups of an agent.
+         * <br>
+         * The bindings added by the overlays of a {@link LayeredWalk} outside of the roots of this template get roots of
+         * their own.
+         *
+         * @param walk the cached bindings of the walk of the agent, possibly with overlays
+         * @return the roots of the groups
+         */
+        private List<OID> getRoots(final Map<OID, Variable> walk) {
+            if (!(walk instanceof LayeredWalk)) {
+                return roots;
+            }
+            final List<OID> result = new ArrayList<>(roots);
+            OID added = null;
+            for (final OID oid : ((LayeredWalk) walk).getDelta().keySet()) {
+                if ((added == null || !oid.startsWith(added)) && roots.stream().noneMatch(oid::startsWith)) {
+                    added = oid;
+                    result.add(oid);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Copies a shared variable for an agent.
+         * <br>
+         * A modified variable gets the random numbers of the agent derived for its {@code OID}, and the values derived
+         * from the instance of the agent replace the values of the walk.
+         *
+         * @param configuration the agent configuration
+         * @param random        the source of random numbers for the modifiers of the agent
+         * @param oid           the {@code OID} of the binding
+         * @param variable      the shared variable
+         * @return the variable of the agent
+         */
+        private static Variable copy(final AgentConfiguration configuration, final ModifierRandom random, final OID oid, final Variable variable) {
+            final InstanceValues instanceValues = configuration.getInstanceValues();
+            if (variable instanceof ModifiedVariable) {
+                final ModifiedVariable shared = (ModifiedVariable) variable;
+                return shared.copy(instanceValues.derive(oid, shared.getCurrentVariable(), configuration), random.derive(oid.hashCode()));
+            }
+            return instanceValues.derive(oid, variable, configuration);
+        }
+    }
+
+    /**
+     * The command processor of an agent, which activates a lazy agent before it dispatches the first request and loads
+     * evicted bindings before it dispatches a request.
+     * <br>
+     * The requests are dispatched in the threads of the worker pool, so the threads that receive the requests are
+     * not blocked while the walk is loaded.
+     */
+    private static final class ActivatingCommandProcessor extends CommandProcessor {
+
+        /** The activation of the agent or {@code null} if the agent is not lazy. */
+        private LazyActivation activation;
+
+        /** The residence of the bindings of the agent or {@code null} if the bindings are never evicted. */
+        private AgentEviction.Residence residence;
+
+        /**
+         * Constructs a new command processor.
+         *
+         * @param contextEngineID the local engine ID
+         */
+        private ActivatingCommandProcessor(final OctetString contextEngineID) {
+            super(contextEngineID);
+        }
+
+        @Override
+        protected void dispatchCommand(final CommandResponderEvent event, final CoexistenceInfo cinfo) {
+            if (residence != null) {
+                residence.acquire();
+                try {
+                    super.dispatchCommand(event, cinfo);
+                } finally {
+                    residence.release();
+                }
+                return;
+            }
+            if (activation != null) {
+                activation.await();
+            }
+            super.dispatchCommand(event, cinfo);
+        }
+    }
 }
@@ -1,11 +1,14 @@
 package com.oneandone.snmpman.configuration;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.google.common.base.Preconditions;
 import com.oneandone.snmpman.Snmpman;
 import com.oneandone.snmpman.SnmpmanAgent;
 import com.oneandone.snmpman.configuration.modifier.Modifier;
+import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
@@ -15,7 +18,10 @@ import org.snmp4j.smi.GenericAddress;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -62,6 +68,16 @@ public class AgentConfiguration {
      */
     @Getter private final File walk; // real walk: /opt/snmpman/...
 
+    /**
+     * Returns the overlay files that are applied to the {@link #walk} in their order.
+     * <br>
+     * An overlay adds, replaces or deletes bindings of the base walk, see {@link WalkOverlay}. The base walk is shared
+     * by all agents that refer to it, so only the overlays are held per device. The list is empty by default.
+     *
+     * @return the unmodifiable list of overlay files
+     */
+    @Getter private final List<File> overlays;
+
     /**
      * Returns the community for the agent.
      * <br>
@@ -71,6 +87,53 @@ public class AgentConfiguration {
      */
     @Getter private final String community; // e.g. 'public'
 
+    /** The seed for the random numbers of the modifiers of the agent. Can be {@code null}. */
+    private final Long seed;
+
+    /**
+     * Returns whether each request of the agent is executed in its own virtual thread instead of the shared request
+     * worker pool.
+     * <br>
+     * Virtual threads require a Java 21 runtime, the default is {@code false}.
+     *
+     * @return {@code true} if the requests are executed in virtual threads
+     */
+    @Getter private final boolean virtualThreads;
+
+    /**
+     * Returns the number of threads that receive the requests of the agent.
+     * <br>
+     * With more than one thread, the agent listens on several sockets bound with {@code SO_REUSEPORT}, so a heavily
+     * polled agent can receive and decode its requests on several cores. The default is {@code 1}.
+     *
+     * @return the number of receiving threads
+     */
+    @Getter private final int receiveThreads;
+
+    /**
+     * Returns whether the walk of the agent is loaded on its first request.
+     * <br>
+     * A lazy agent binds its address when it is started, but reads its walk and registers its managed objects only
+     * when the first request arrives. The default is {@code false}.
+     *
+     * @return {@code true} if the agent is activated by its first request
+     */
+    @Getter private final boolean lazy;
+
+    /**
+     * Returns the index of the agent in its {@link AgentTemplate}.
+     *
+     * @return the index of the agent or {@code null} if the agent was not expanded from a template
+     */
+    @Getter private final Integer index;
+
+    /**
+     * Returns the values of the agent that are derived from its instance of an {@link AgentTemplate}.
+     *
+     * @return the instance values, {@link InstanceValues#NONE} if the agent was not expanded from a template
+     */
+    @Getter private final InstanceValues instanceValues;
+
     /**
      * The device factory creates all {@link Device} representations.
      * <br>
@@ -93,7 +156,7 @@ public class AgentConfiguration {
          * @param path the path of the device configuration
          * @return the {@link Device} representation for the specified configuration in {@code path}
          */
-        public Device getDevice(final File path) {
+        public synchronized Device getDevice(final File path) {
             if (path == null) {
                 return DEFAULT_DEVICE;
             }
@@ -127,21 +190,102 @@ public class AgentConfiguration {
      * @param port the port of the agent
      * @param community the community of the agent or {@code null} will set it to {@code public}
      */
+    public AgentConfiguration(final String name, final File deviceConfiguration, final File walk, final String ip,
+                              final int port, final String community) {
+        this(name, deviceConfiguration, walk, ip, port, community, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Constructs a new agent configuration.
+     * <br>
+     * The list of agent configurations will be parsed from within {@link Snmpman}.
+     *
+     * @param name the name of the agent or {@code null} to set the address as the name
+     * @param deviceConfiguration the device configuration or {@code null} will set it to
+     *                            {@link DeviceFactory#DEFAULT_DEVICE}
+     * @param walk the base walk file (e.g. dump of SNMP walks)
+     * @param ip the IP the agent should bind to
+     * @param port the port of the agent
+     * @param community the community of the agent or {@code null} will set it to {@code public}
+     * @param seed the seed for the random numbers of the modifiers or {@code null}
+     * @param virtualThreads {@code true} to execute each request in its own virtual thread, {@code null} will set it
+     *                       to {@code false}
+     * @param receiveThreads the number of threads that receive the requests, {@code null} will set it to {@code 1}
+     * @param lazy {@code true} to load the walk on the first request, {@code null} will set it to {@code false}
+     * @param overlays the overlay files to apply to the base walk in their order or {@code null} for none
+     */
+    @JsonCreator
     public AgentConfiguration(@JsonProperty(value = "name") final String name,
                               @JsonProperty(value = "device") final File deviceConfiguration,
                               @JsonProperty(value = "walk", required = true) final File walk,
                               @JsonProperty(value = "ip", required = true) final String ip,
                               @JsonProperty(value = "port", required = true) final int port,
-                              @JsonProperty(value = "community") final String community) {
+                              @JsonProperty(value = "community") final String community,
+                              @JsonProperty(value = "seed") final Long seed,
+                              @JsonProperty(value = "virtualThreads") final Boolean virtualThreads,
+                              @JsonProperty(value = "receiveThreads") final Integer receiveThreads,
+                              @JsonProperty(value = "lazy") final Boolean lazy,
+                              @JsonProperty(value = "overlays") final List<File> overlays) {
+        this(name, deviceConfiguration, walk, ip, port, community, seed, virtualThreads, receiveThreads, lazy, overlays, null, null);
+    }
+
+    /**
+     * Constructs a new agent configuration with all optional settings, see {@link #builder()}.
+     *
+     * @param name the name of the agent or {@code null} to set the address as the name
+     * @param deviceConfiguration the device configuration or {@code null} will set it to
+     *                            {@link DeviceFactory#DEFAULT_DEVICE}
+     * @param walk the base walk file (e.g. dump of SNMP walks)
+     * @param ip the IP the agent should bind to
+     * @param port the port of the agent
+     * @param community the community of the agent or {@code null} will set it to {@code public}
+     * @param seed the seed for the random numbers of the modifiers or {@code null}
+     * @param virtualThreads {@code true} to execute each request in its own virtual thread, {@code null} will set it
+     *                       to {@code false}
+     * @param receiveThreads the number of threads that receive the requests, {@code null} will set it to {@code 1}
+     * @param lazy {@code true} to load the walk on the first request, {@code null} will set it to {@code false}
+     * @param overlays the overlay files to apply to the base walk in their order or {@code null} for none
+     * @param index the index of the agent in its {@link AgentTemplate} or {@code null}
+     * @param instanceValues the values derived from the instance of the agent or {@code null} will set it to
+     *                       {@link InstanceValues#NONE}
+     */
+    @Builder
+    private AgentConfiguration(final String name, final File deviceConfiguration, final File walk, final String ip, final int port,
+                               final String community, final Long seed, final Boolean virtualThreads, final Integer receiveThreads,
+                               final Boolean lazy, final List<File> overlays, final Integer index, final InstanceValues instanceValues) {
+        this.index = index;
+        this.instanceValues = Optional.ofNullable(instanceValues).orElse(InstanceValues.NONE);
+        this.seed = seed;
+        this.virtualThreads = Optional.ofNullable(virtualThreads).orElse(false);
+        this.receiveThreads = Optional.ofNullable(receiveThreads).orElse(1);
+        this.lazy = Optional.ofNullable(lazy).orElse(false);
+        Preconditions.checkArgument(this.receiveThreads > 0, "the number of receive threads has to be positive, but is %s", this.receiveThreads);
         this.name = Optional.ofNullable(name).orElse(ip + ":" + port);
         this.address = GenericAddress.parse(ip + "/" + port);
 
         this.deviceConfiguration = deviceConfiguration;
         this.walk = walk;
+        this.overlays = overlays == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(overlays));
 
         this.community = Optional.ofNullable(community).orElse("public");
     }
 
+    /**
+     * Returns the seed for the random numbers of the modifiers of the agent.
+     * <br>
+     * If the agent configuration has no seed, the seed will be derived from the seed of the {@link #getDevice() device}
+     * and the {@link #name}, so agents of the same device type draw different but reproducible numbers.
+     *
+     * @return the seed or {@code null} if neither the agent nor the device configuration specify a seed
+     */
+    public Long getSeed() {
+        if (seed != null) {
+            return seed;
+        }
+        final Long deviceSeed = getDevice().getSeed();
+        return deviceSeed == null ? null : deviceSeed * 31 + name.hashCode();
+    }
+
     /**
      * FIXME
      * Lazy initialization of {@link #device} required as nested use of {@link ObjectMapper}
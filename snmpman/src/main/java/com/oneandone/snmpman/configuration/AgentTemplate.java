@@ -0,0 +1,339 @@
+package com.oneandone.snmpman.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Preconditions;
+import com.google.common.net.InetAddresses;
+import lombok.EqualsAndHashCode;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+/**
+ * Representation of a template for many agents of the same device type and walk.
+ * <br>
+ * The template expands into {@link #getCount() count} agent configurations. The agents listen on
+ * {@link #getPortCount() portCount} consecutive ports from the {@link #getPort() first port} on, and on consecutive IPs
+ * from the {@link #getIp() first IP} on, if the agents need more than one IP. E.g. 10,000 agents with the same port
+ * and a port count of {@code 1} listen on 10,000 consecutive IPs.
+ * <br>
+ * All agents of a template share the parsed walk and device. Values that differ between the agents, e.g. the
+ * {@code sysName}, can be derived from the instance of each agent, see {@link InstanceValues}.
+ * <br>
+ * An entry of the configuration {@code YAML} is a template if it specifies a {@code count}:
+ * <pre>
+ * {@code
+ *     - name: "switch-${index}"
+ *       device: "src/test/resources/configuration/cisco.yaml"
+ *       walk: "src/test/resources/configuration/example.txt"
+ *       ip: "127.0.0.1"
+ *       port: 20000
+ *       count: 10000
+ *       values:
+ *         .1.3.6.1.2.1.1.5.0: "switch-${index}"
+ * }
+ * </pre>
+ * Bindings that cannot be derived from the instance can be provided by a {@link WalkOverlay} per agent:
+ * <pre>
+ * {@code
+ *       overlays:
+ *         - "overlays/switch-${index}.txt"
+ * }
+ * </pre>
+ */
+@ToString(exclude = "community") @EqualsAndHashCode
+public class AgentTemplate {
+
+    /**
+     * Returns the name of the agents.
+     * <br>
+     * The name may contain the placeholder {@code ${index}}, otherwise the index is appended to the name.
+     *
+     * @return the name of the agents
+     */
+    @Getter private final String name;
+
+    /** The device configuration file path. */
+    private final File deviceConfiguration;
+
+    /**
+     * Returns the base walk file of the agents.
+     *
+     * @return the base walk file of the agents
+     */
+    @Getter private final File walk;
+
+    /**
+     * Returns the overlay files of the agents, which may contain the placeholder {@code ${index}}.
+     *
+     * @return the unmodifiable list of overlay files
+     */
+    @Getter private final List<File> overlays;
+
+    /**
+     * Returns the IP of the first agent.
+     *
+     * @return the first IP
+     */
+    @Getter private final String ip;
+
+    /**
+     * Returns the port of the first agent.
+     *
+     * @return the first port
+     */
+    @Getter private final int port;
+
+    /**
+     * Returns the number of agents.
+     *
+     * @return the number of agents
+     */
+    @Getter private final int count;
+
+    /**
+     * Returns the number of consecutive ports per IP.
+     * <br>
+     * The default is the {@link #count}, so all agents listen on the same IP.
+     *
+     * @return the number of ports per IP
+     */
+    @Getter private final int portCount;
+
+    /**
+     * Returns the community of the agents.
+     * <br>
+     * The community may contain the placeholder {@code ${index}}, it is {@code public} by default.
+     *
+     * @return the community of the agents
+     */
+    @Getter private final String community;
+
+    /** The seed for the random numbers of the modifiers of the first agent. Can be {@code null}. */
+    private final Long seed;
+
+    /**
+     * Returns whether the agents load the walk on their first request.
+     *
+     * @return {@code true} if the agents are activated by their first request
+     */
+    @Getter private final boolean lazy;
+
+    /**
+     * Returns whether each request of the agents is executed in its own virtual thread, see
+     * {@link AgentConfiguration#isVirtualThreads()}.
+     *
+     * @return {@code true} if the requests are executed in virtual threads
+     */
+    @Getter private final boolean virtualThreads;
+
+    /**
+     * Returns the number of threads that receive the requests of each agent, see
+     * {@link AgentConfiguration#getReceiveThreads()}.
+     *
+     * @return the number of receiving threads
+     */
+    @Getter private final int receiveThreads;
+
+    /**
+     * Returns the values that are derived from the instance of each agent.
+     *
+     * @return the instance values
+     */
+    @Getter private final InstanceValues values;
+
+    /**
+     * Constructs a new agent template.
+     *
+     * @param name the name of the agents, which may contain the placeholder {@code ${index}}
+     * @param deviceConfiguration the device configuration or {@code null} for the default device
+     * @param walk the base walk file (e.g. dump of SNMP walks)
+     * @param ip the IP of the first agent
+     * @param port the port of the first agent
+     * @param count the number of agents
+     * @param portCount the number of consecutive ports per IP or {@code null} for the {@code count}
+     * @param community the community of the agents or {@code null} will set it to {@code public}
+     * @param seed the seed for the random numbers of the modifiers of the first agent or {@code null}, the following
+     *             agents use the following seeds
+     * @param values the expressions of the values that are derived from the instance by {@code OID} or {@code null}
+     * @param lazy {@code true} to load the walk of each agent on its first request, {@code null} will set it to
+     *             {@code false}
+     */
+    public AgentTemplate(final String name, final File deviceConfiguration, final File walk, final String ip, final int port,
+                         final int count, final Integer portCount, final String community, final Long seed,
+                         final Map<String, String> values, final Boolean lazy) {
+        this(name, deviceConfiguration, walk, ip, port, count, portCount, community, seed, values, lazy, null, null, null);
+    }
+
+    /**
+     * Constructs a new agent template.
+     *
+     * @param name the name of the agents, which may contain the placeholder {@code ${index}}
+     * @param deviceConfiguration the device configuration or {@code null} for the default device
+     * @param walk the base walk file (e.g. dump of SNMP walks)
+     * @param ip the IP of the first agent
+     * @param port the port of the first agent
+     * @param count the number of agents
+     * @param portCount the number of consecutive ports per IP or {@code null} for the {@code count}
+     * @param community the community of the agents or {@code null} will set it to {@code public}
+     * @param seed the seed for the random numbers of the modifiers of the first agent or {@code null}, the following
+     *             agents use the following seeds
+     * @param values the expressions of the values that are derived from the instance by {@code OID} or {@code null}
+     * @param lazy {@code true} to load the walk of each agent on its first request, {@code null} will set it to
+     *             {@code false}
+     * @param overlays the overlay files of the agents, which may contain the placeholder {@code ${index}}, or
+     *                 {@code null} for none
+     * @param virtualThreads {@code true} to execute each request in its own virtual thread, {@code null} will set it
+     *                       to {@code false}
+     * @param receiveThreads the number of threads that receive the requests of each agent, {@code null} will set it
+     *                       to {@code 1}
+     */
+    @JsonCreator @Builder
+    public AgentTemplate(@JsonProperty(value = "name", required = true) final String name,
+                         @JsonProperty(value = "device") final File deviceConfiguration,
+                         @JsonProperty(value = "walk", required = true) final File walk,
+                         @JsonProperty(value = "ip", required = true) final String ip,
+                         @JsonProperty(value = "port", required = true) final int port,
+                         @JsonProperty(value = "count", required = true) final int count,
+                         @JsonProperty(value = "portCount") final Integer portCount,
+                         @JsonProperty(value = "community") final String community,
+                         @JsonProperty(value = "seed") final Long seed,
+                         @JsonProperty(value = "values") final Map<String, String> values,
+                         @JsonProperty(value = "lazy") final Boolean lazy,
+                         @JsonProperty(value = "overlays") final List<File> overlays,
+                         @JsonProperty(value = "virtualThreads") final Boolean virtualThreads,
+                         @JsonProperty(value = "receiveThreads") final Integer receiveThreads) {
+        Preconditions.checkArgument(count > 0, "the count of template \"%s\" should be positive", name);
+        this.name = name;
+        this.deviceConfiguration = deviceConfiguration;
+        this.walk = walk;
+        this.overlays = overlays == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(overlays));
+        this.ip = ip;
+        this.port = port;
+        this.count = count;
+        this.portCount = Optional.ofNullable(portCount).orElse(count);
+        this.community = Optional.ofNullable(community).orElse("public");
+        this.seed = seed;
+        this.values = new InstanceValues(Optional.ofNullable(values).orElse(Collections.emptyMap()));
+        this.lazy = Optional.ofNullable(lazy).orElse(false);
+        this.virtualThreads = Optional.ofNullable(virtualThreads).orElse(false);
+        this.receiveThreads = Optional.ofNullable(receiveThreads).orElse(1);
+
+        Preconditions.checkArgument(this.receiveThreads > 0, "the number of receive threads of template \"%s\" should be positive", name);
+        Preconditions.checkArgument(this.portCount > 0, "the port count of template \"%s\" should be positive", name);
+        Preconditions.checkArgument(port > 0 && port + Math.min(count, this.portCount) - 1 <= 0xFFFF,
+                "the ports of template \"%s\" should be between 1 and 65535", name);
+        Preconditions.checkArgument(InetAddresses.isInetAddress(ip), "the IP of template \"%s\" should be an IP address", name);
+        final InetAddress first = InetAddresses.forString(ip);
+        final BigInteger last = InetAddresses.toBigInteger(first).add(BigInteger.valueOf((count - 1) / this.portCount));
+        Preconditions.checkArgument(last.bitLength() <= (first instanceof Inet4Address ? 32 : 128),
+                "the IPs of template \"%s\" should not exceed the range of IP addresses", name);
+    }
+
+    /**
+     * Returns the configurations of the agents of this template.
+     * <br>
+     * The configurations are created on access and are not retained by the list.
+     *
+     * @return the unmodifiable list of agent configurations
+     */
+    public List<AgentConfiguration> getConfigurations() {
+        return new Configurations();
+    }
+
+    /**
+     * Returns the configuration of an agent of this template.
+     *
+     * @param index the index of the agent
+     * @return the configuration of the agent
+     */
+    public AgentConfiguration getConfiguration(final int index) {
+        Preconditions.checkElementIndex(index, count);
+        final String agentName = name.contains("${") ? InstanceValues.expand(name, placeholder -> getPlaceholder(placeholder, index))
+                : name + "-" + index;
+        return AgentConfiguration.builder()
+                .name(agentName)
+                .deviceConfiguration(deviceConfiguration)
+                .walk(walk)
+                .ip(getIp(ip, index / portCount))
+                .port(port + index % portCount)
+                .community(InstanceValues.expand(community, placeholder -> getPlaceholder(placeholder, index)))
+                .seed(seed == null ? null : seed + index)
+                .virtualThreads(virtualThreads)
+                .receiveThreads(receiveThreads)
+                .lazy(lazy)
+                .overlays(getOverlays(index))
+                .index(index)
+                .instanceValues(values)
+                .build();
+    }
+
+    /**
+     * Returns the overlay files of an agent of this template.
+     *
+     * @param index the index of the agent
+     * @return the overlay files with the placeholders expanded
+     */
+    private List<File> getOverlays(final int index) {
+        final List<File> result = new ArrayList<>(overlays.size());
+        for (final File overlay : overlays) {
+            final String path = overlay.getPath();
+            result.add(path.contains("${") ? new File(InstanceValues.expand(path, placeholder -> getPlaceholder(placeholder, index))) : overlay);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value of a placeholder in the name, the community or the overlay files.
+     *
+     * @param placeholder the name of the placeholder
+     * @param index       the index of the agent
+     * @return the value or {@code null} if the placeholder is unknown
+     */
+    private static Object getPlaceholder(final String placeholder, final int index) {
+        return "index".equals(placeholder) ? index : null;
+    }
+
+    /**
+     * Returns the IP that follows the specified IP by an offset.
+     *
+     * @param ip     the first IP
+     * @param offset the offset
+     * @return the IP at the offset
+     */
+    static String getIp(final String ip, final int offset) {
+        if (offset == 0) {
+            return ip;
+        }
+        final InetAddress first = InetAddresses.forString(ip);
+        final BigInteger address = InetAddresses.toBigInteger(first).add(BigInteger.valueOf(offset));
+        return InetAddresses.toAddrString(first instanceof Inet4Address
+                ? InetAddresses.fromIPv4BigInteger(address) : InetAddresses.fromIPv6BigInteger(address));
+    }
+
+    /** The configurations of the agents, which are created on access. */
+    private final class Configurations extends AbstractList<AgentConfiguration> implements RandomAccess {
+
+        @Override
+        public AgentConfiguration get(final int index) {
+            return getConfiguration(index);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
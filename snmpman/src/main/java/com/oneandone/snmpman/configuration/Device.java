@@ -1,10 +1,12 @@
 package com.oneandone.snmpman.configuration;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.oneandone.snmpman.configuration.modifier.Modifier;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
+import org.snmp4j.smi.OID;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -15,7 +17,7 @@ import java.util.List;
  * <br>
  * You can find example configurations within the test resources of this project.
  */
-@ToString(of = "name") @EqualsAndHashCode
+@ToString(of = "name") @EqualsAndHashCode(exclude = "modifierIndex")
 public class Device {
 
     /**
@@ -41,23 +43,64 @@ public class Device {
      */
     @Getter private final List<Long> vlans;
 
+    /**
+     * The seed for the random numbers of the modifiers of all agents of this device type.
+     * <br>
+     * Each agent derives its own stream from this seed and its name, see {@link AgentConfiguration#getSeed()}.
+     *
+     * @return the seed or {@code null} if the random numbers should not be reproducible
+     */
+    @Getter private final Long seed;
+
+    /**
+     * The modifiers compiled into a prefix trie.
+     */
+    private final ModifierIndex modifierIndex;
+
     /**
      * Constructs a new device type.
      *
      * @param name the name of the device
      * @param modifiers the modifiers
+     * @param vlans the vlans
      */
-    Device(@JsonProperty("name") final String name, @JsonProperty("modifiers") final Modifier[] modifiers, @JsonProperty(value = "vlans") final Long[] vlans) {
+    Device(final String name, final Modifier[] modifiers, final Long[] vlans) {
+        this(name, modifiers, vlans, null);
+    }
+
+    /**
+     * Constructs a new device type.
+     *
+     * @param name the name of the device
+     * @param modifiers the modifiers
+     * @param vlans the vlans
+     * @param seed the seed for the random numbers of the modifiers or {@code null}
+     */
+    @JsonCreator
+    Device(@JsonProperty("name") final String name, @JsonProperty("modifiers") final Modifier[] modifiers,
+           @JsonProperty(value = "vlans") final Long[] vlans, @JsonProperty(value = "seed") final Long seed) {
         this.name = name;
+        this.seed = seed;
         if (modifiers != null) {
             this.modifiers = Collections.unmodifiableList(Arrays.asList(modifiers));
         } else {
             this.modifiers = Collections.emptyList();
         }
+        this.modifierIndex = new ModifierIndex(this.modifiers);
         if (vlans != null) {
             this.vlans = Collections.unmodifiableList(Arrays.asList(vlans));
         } else {
             this.vlans = Collections.emptyList();
         }
     }
+
+    /**
+     * Returns the modifiers that are applicable for the specified {@code OID}.
+     *
+     * @param oid the {@code OID} to look up
+     * @return the applicable modifiers in the order of {@link #getModifiers()}
+     */
+    public List<Modifier> getApplicableModifiers(final OID oid) {
+        return modifierIndex.getApplicableModifiers(oid);
+    }
 }
@@ -0,0 +1,200 @@
+package com.oneandone.snmpman.configuration;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.smi.AssignableFromString;
+import org.snmp4j.smi.IpAddress;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
+
+import java.util.Collections;
+import java.util.IllegalFormatException;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The values of the agents of an {@link AgentTemplate} that are derived from the instance of each agent.
+ * <br>
+ * Each value is an expression for an {@code OID} of the walk, e.g. {@code "switch-${index}"} for the
+ * {@code sysName}. An expression for an {@code OID} that is not a binding of the walk applies to all bindings in its
+ * subtree, e.g. to all rows of a table column. The following placeholders are supported:
+ * <ul>
+ *     <li>{@code ${index}} the index of the agent in its template</li>
+ *     <li>{@code ${name}} the name of the agent</li>
+ *     <li>{@code ${ip}} the IP of the agent</li>
+ *     <li>{@code ${port}} the port of the agent</li>
+ *     <li>{@code ${row}} the last sub-identifier of the binding</li>
+ * </ul>
+ * A placeholder can have a format, e.g. {@code ${index:08x}} for the index as eight hexadecimal digits. The expanded
+ * expression is converted to the type of the binding of the walk. A binary {@code OCTET STRING}, like the
+ * {@code ifPhysAddress}, is read as hexadecimal digits, which may be separated by {@code :}, {@code -} or spaces.
+ * <br>
+ * The values replace the bindings of the walk only for the agent, the walk itself is shared by all agents.
+ */
+@Slf4j
+@ToString @EqualsAndHashCode
+public final class InstanceValues {
+
+    /** The instance values of agents without template. */
+    public static final InstanceValues NONE = new InstanceValues(Collections.emptyMap());
+
+    /** The pattern of a placeholder with an optional format. */
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{(\\w+)(?::([^}]+))?}");
+
+    /** The pattern of the separators of hexadecimal digits. */
+    private static final Pattern HEX_SEPARATOR = Pattern.compile("[:\\-\\s]");
+
+    /** The expressions by the {@code OID} of the binding or of the subtree they apply to. */
+    private final NavigableMap<OID, String> expressions;
+
+    /**
+     * Constructs new instance values.
+     *
+     * @param expressions the expressions by the {@code OID} of the binding or of the subtree they apply to
+     */
+    public InstanceValues(final Map<String, String> expressions) {
+        final NavigableMap<OID, String> parsed = new TreeMap<>();
+        expressions.forEach((oid, expression) -> parsed.put(new OID(oid.startsWith(".") ? oid.substring(1) : oid), expression));
+        this.expressions = Collections.unmodifiableNavigableMap(parsed);
+    }
+
+    /**
+     * Returns whether there are no instance values.
+     *
+     * @return {@code true} if no binding is derived from the instance
+     */
+    public boolean isEmpty() {
+        return expressions.isEmpty();
+    }
+
+    /**
+     * Returns the value of a binding for the specified agent.
+     *
+     * @param oid           the {@code OID} of the binding
+     * @param variable      the value of the binding in the walk
+     * @param configuration the configuration of the agent
+     * @return the value derived from the instance of the agent or the specified {@code variable} if the binding is not
+     * derived from the instance
+     */
+    public Variable derive(final OID oid, final Variable variable, final AgentConfiguration configuration) {
+        final Map.Entry<OID, String> entry = getExpression(oid);
+        if (entry == null) {
+            return variable;
+        }
+        try {
+            return convert(expand(entry.getValue(), placeholder -> getPlaceholder(placeholder, oid, configuration)), variable);
+        } catch (final RuntimeException e) {
+            log.warn("could not derive value \"{}\" of {} for agent \"{}\": {}", entry.getValue(), oid, configuration.getName(), e.getMessage());
+            return variable;
+        }
+    }
+
+    /**
+     * Returns whether the value of a binding is derived from the instance of the agent.
+     *
+     * @param oid the {@code OID} of the binding
+     * @return {@code true} if an expression applies to the binding
+     */
+    public boolean isDerived(final OID oid) {
+        return getExpression(oid) != null;
+    }
+
+    /**
+     * Returns the expression that applies to a binding.
+     *
+     * @param oid the {@code OID} of the binding
+     * @return the expression by the {@code OID} of the binding or its subtree or {@code null} if there is none
+     */
+    private Map.Entry<OID, String> getExpression(final OID oid) {
+        Map.Entry<OID, String> entry = expressions.floorEntry(oid);
+        while (entry != null && !oid.startsWith(entry.getKey())) {
+            entry = expressions.lowerEntry(entry.getKey());
+        }
+        return entry;
+    }
+
+    /**
+     * Expands the placeholders of an expression.
+     *
+     * @param expression   the expression
+     * @param placeholders the values of the placeholders by name
+     * @return the expanded expression
+     * @throws IllegalArgumentException thrown if a placeholder is unknown or its format is invalid
+     */
+    static String expand(final String expression, final Function<String, Object> placeholders) {
+        final Matcher matcher = PLACEHOLDER.matcher(expression);
+        final StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            final Object value = placeholders.apply(matcher.group(1));
+            if (value == null) {
+                throw new IllegalArgumentException("unknown placeholder \"" + matcher.group() + "\" in \"" + expression + "\"");
+            }
+            try {
+                final String replacement = matcher.group(2) == null ? String.valueOf(value) : String.format("%" + matcher.group(2), value);
+                matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+            } catch (final IllegalFormatException e) {
+                throw new IllegalArgumentException("invalid format of placeholder \"" + matcher.group() + "\" in \"" + expression + "\"", e);
+            }
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * Returns the value of a placeholder.
+     *
+     * @param placeholder   the name of the placeholder
+     * @param oid           the {@code OID} of the binding
+     * @param configuration the configuration of the agent
+     * @return the value or {@code null} if the placeholder is unknown
+     */
+    private static Object getPlaceholder(final String placeholder, final OID oid, final AgentConfiguration configuration) {
+        switch (placeholder) {
+            case "index":
+                return configuration.getIndex();
+            case "name":
+                return configuration.getName();
+            case "ip":
+                return configuration.getAddress() instanceof UdpAddress
+                        ? ((UdpAddress) configuration.getAddress()).getInetAddress().getHostAddress() : null;
+            case "port":
+                return configuration.getAddress() instanceof UdpAddress ? ((UdpAddress) configuration.getAddress()).getPort() : null;
+            case "row":
+                return oid.lastUnsigned();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Converts a text to the type of the specified variable.
+     *
+     * @param text     the text
+     * @param variable the variable of the walk
+     * @return the converted variable
+     * @throws IllegalArgumentException thrown if the text could not be converted
+     */
+    static Variable convert(final String text, final Variable variable) {
+        if (variable instanceof OctetString && !((OctetString) variable).isPrintable()) {
+            return OctetString.fromHexStringPairs(HEX_SEPARATOR.matcher(text).replaceAll(""));
+        } else if (variable instanceof IpAddress) {
+            final IpAddress address = new IpAddress();
+            if (!address.parseAddress(text)) {
+                throw new IllegalArgumentException("invalid IP address");
+            }
+            return address;
+        } else if (variable instanceof AssignableFromString) {
+            final Variable result = (Variable) variable.clone();
+            ((AssignableFromString) result).setValue(text);
+            return result;
+        }
+        throw new IllegalArgumentException("values of type " + variable.getSyntaxString() + " can not be derived");
+    }
+}
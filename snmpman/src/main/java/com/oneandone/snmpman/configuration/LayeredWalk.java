@@ -0,0 +1,231 @@
+package com.oneandone.snmpman.configuration;
+
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An unmodifiable view of a base walk with a sequence of {@link WalkOverlay}s applied to it.
+ * <br>
+ * The base walk is shared and will not be copied. Only the combined differences of the overlays are held by this
+ * walk, so its memory scales with the size of the overlays. The bindings are iterated in the order of their
+ * {@code OID}s.
+ */
+public final class LayeredWalk extends AbstractMap<OID, Variable> {
+
+    /** The shared base walk. */
+    private final SortedMap<OID, Variable> base;
+
+    /** The added or replaced bindings of all overlays. */
+    private final SortedMap<OID, Variable> delta;
+
+    /** The disjoint roots of the subtrees of the {@link #base} that are deleted. */
+    private final NavigableSet<OID> deletions;
+
+    /** The number of bindings, which is computed on construction. */
+    private final int size;
+
+    /** The entry set view of this walk. */
+    private final Set<Entry<OID, Variable>> entrySet = new EntrySet();
+
+    /**
+     * Constructs a new layered walk.
+     * <br>
+     * The overlays are applied in their order, i.e. a later overlay may override, delete or re-add bindings of an
+     * earlier overlay.
+     *
+     * @param base     the shared base walk
+     * @param overlays the overlays to apply
+     */
+    public LayeredWalk(final SortedMap<OID, Variable> base, final List<WalkOverlay> overlays) {
+        this.base = base;
+        final SortedMap<OID, Variable> delta = new TreeMap<>();
+        final NavigableSet<OID> deletions = new TreeSet<>();
+        for (final WalkOverlay overlay : overlays) {
+            for (final OID root : overlay.getDeletions()) {
+                delta.tailMap(root).keySet().removeIf(oid -> oid.startsWith(root));
+                if (!LayeredWalk.isDeleted(deletions, root)) {
+                    deletions.tailSet(root).removeIf(oid -> oid.startsWith(root));
+                    deletions.add(root);
+                }
+            }
+            delta.putAll(overlay.getBindings());
+        }
+        this.delta = Collections.unmodifiableSortedMap(delta);
+        this.deletions = Collections.unmodifiableNavigableSet(deletions);
+        this.size = LayeredWalk.size(base, delta, deletions);
+    }
+
+    /**
+     * Returns the number of bindings of the merged view without iterating the base walk.
+     * <br>
+     * The size is the size of the base walk minus its bindings within the deleted subtrees plus the bindings of the
+     * delta that do not replace a remaining binding of the base walk.
+     *
+     * @param base      the shared base walk
+     * @param delta     the added or replaced bindings of all overlays
+     * @param deletions the disjoint roots of the deleted subtrees
+     * @return the number of bindings
+     */
+    private static int size(final SortedMap<OID, Variable> base, final SortedMap<OID, Variable> delta, final NavigableSet<OID> deletions) {
+        int result = base.size();
+        for (final OID root : deletions) {
+            for (final OID oid : base.tailMap(root).keySet()) {
+                if (!oid.startsWith(root)) {
+                    break;
+                }
+                result--;
+            }
+        }
+        for (final OID oid : delta.keySet()) {
+            if (!base.containsKey(oid) || LayeredWalk.isDeleted(deletions, oid)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the shared base walk.
+     *
+     * @return the base walk
+     */
+    public SortedMap<OID, Variable> getBase() {
+        return base;
+    }
+
+    /**
+     * Returns the bindings of all overlays that are added to the base walk or replace its bindings.
+     *
+     * @return the unmodifiable and sorted map of oid to variable binding
+     */
+    public SortedMap<OID, Variable> getDelta() {
+        return delta;
+    }
+
+    /**
+     * Returns the roots of the subtrees of the base walk that are deleted by the overlays.
+     * <br>
+     * The bindings of the {@link #getDelta() delta} take precedence over the deletions.
+     *
+     * @return the unmodifiable and sorted set of the disjoint deleted roots
+     */
+    public NavigableSet<OID> getDeletions() {
+        return deletions;
+    }
+
+    /**
+     * Returns whether the specified {@code OID} is within one of the deleted subtrees.
+     *
+     * @param deletions the disjoint roots of the deleted subtrees
+     * @param oid       the {@code OID} to check
+     * @return {@code true} if the {@code OID} is deleted
+     */
+    private static boolean isDeleted(final NavigableSet<OID> deletions, final OID oid) {
+        final OID root = deletions.floor(oid);
+        return root != null && oid.startsWith(root);
+    }
+
+    @Override
+    public Variable get(final Object key) {
+        if (!(key instanceof OID)) {
+            return null;
+        }
+        final Variable variable = delta.get(key);
+        if (variable != null || LayeredWalk.isDeleted(deletions, (OID) key)) {
+            return variable;
+        }
+        return base.get(key);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<OID, Variable>> entrySet() {
+        return entrySet;
+    }
+
+    /** The entry set view that merges the {@link #base} and the {@link #delta}. */
+    private final class EntrySet extends AbstractSet<Entry<OID, Variable>> {
+
+        @Override
+        public Iterator<Entry<OID, Variable>> iterator() {
+            return new MergeIterator();
+        }
+
+        @Override
+        public int size() {
+            return LayeredWalk.this.size();
+        }
+    }
+
+    /** Iterates the bindings of the {@link #base} and the {@link #delta} in the order of their {@code OID}s. */
+    private final class MergeIterator implements Iterator<Entry<OID, Variable>> {
+
+        /** The iterator of the base walk. */
+        private final Iterator<Entry<OID, Variable>> baseIterator = base.entrySet().iterator();
+
+        /** The iterator of the overlay bindings. */
+        private final Iterator<Entry<OID, Variable>> deltaIterator = delta.entrySet().iterator();
+
+        /** The next remaining entry of the base walk or {@code null} if exhausted. */
+        private Entry<OID, Variable> nextBase = nextBase();
+
+        /** The next remaining entry of the overlays or {@code null} if exhausted. */
+        private Entry<OID, Variable> nextDelta = deltaIterator.hasNext() ? deltaIterator.next() : null;
+
+        /**
+         * Returns the next entry of the base walk that is neither deleted nor replaced.
+         *
+         * @return the next entry or {@code null} if exhausted
+         */
+        private Entry<OID, Variable> nextBase() {
+            while (baseIterator.hasNext()) {
+                final Entry<OID, Variable> entry = baseIterator.next();
+                if (!LayeredWalk.isDeleted(deletions, entry.getKey()) && !delta.containsKey(entry.getKey())) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextBase != null || nextDelta != null;
+        }
+
+        @Override
+        public Entry<OID, Variable> next() {
+            final Entry<OID, Variable> result;
+            if (nextBase != null && (nextDelta == null || nextBase.getKey().compareTo(nextDelta.getKey()) < 0)) {
+                result = nextBase;
+                nextBase = nextBase();
+            } else if (nextDelta != null) {
+                result = nextDelta;
+                nextDelta = deltaIterator.hasNext() ? deltaIterator.next() : null;
+            } else {
+                throw new NoSuchElementException();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.oneandone.snmpman.configuration;
+
+import com.oneandone.snmpman.configuration.modifier.Modifier;
+import org.snmp4j.smi.OID;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix trie of modifiers keyed on the first part of their {@link com.oneandone.snmpman.configuration.type.WildcardOID}.
+ * <br>
+ * Each modifier is attached to the node of its prefix. A lookup walks down the trie along the arcs of an {@code OID}
+ * and only checks the second part of the wildcard of the modifiers it passes, so resolving the modifiers of an
+ * {@code OID} costs {@code O(OID length)} instead of one wildcard match per modifier.
+ */
+final class ModifierIndex {
+
+    /** The root node for the empty prefix. */
+    private final Node root = new Node();
+
+    /**
+     * Compiles the specified modifiers into a trie.
+     *
+     * @param modifiers the modifiers in the order they should be applied
+     */
+    ModifierIndex(final List<Modifier> modifiers) {
+        for (int i = 0; i < modifiers.size(); i++) {
+            final Modifier modifier = modifiers.get(i);
+            Node node = root;
+            for (final int arc : modifier.getOid().getStartsWith().getValue()) {
+                node = node.children.computeIfAbsent(arc, key -> new Node());
+            }
+            node.entries.add(new Entry(i, modifier));
+        }
+    }
+
+    /**
+     * Returns all modifiers that are applicable for the specified {@code OID}.
+     *
+     * @param oid the {@code OID} to look up
+     * @return the applicable modifiers in the order they were specified
+     */
+    List<Modifier> getApplicableModifiers(final OID oid) {
+        List<Entry> matches = null;
+        Node node = root;
+        final int[] arcs = oid.getValue();
+        for (int i = 0; node != null; i++) {
+            for (final Entry entry : node.entries) {
+                if (entry.modifier.getOid().matchesEnd(oid)) {
+                    if (matches == null) {
+                        matches = new ArrayList<>(2);
+                    }
+                    matches.add(entry);
+                }
+            }
+            node = i < arcs.length ? node.children.get(arcs[i]) : null;
+        }
+        if (matches == null) {
+            return Collections.emptyList();
+        }
+        if (matches.size() > 1) {
+            matches.sort((first, second) -> Integer.compare(first.index, second.index));
+        }
+        final List<Modifier> result = new ArrayList<>(matches.size());
+        for (final Entry entry : matches) {
+            result.add(entry.modifier);
+        }
+        return result;
+    }
+
+    /** A node of the trie. */
+    private static final class Node {
+
+        /** The child nodes by the next arc. */
+        private final Map<Integer, Node> children = new HashMap<>();
+
+        /** The modifiers with the prefix of this node. */
+        private final List<Entry> entries = new ArrayList<>(1);
+    }
+
+    /** A modifier with its position in the device configuration. */
+    private static final class Entry {
+
+        /** The position of the modifier in the device configuration. */
+        private final int index;
+
+        /** The modifier. */
+        private final Modifier modifier;
+
+        /**
+         * Constructs a new entry.
+         *
+         * @param index    the position of the modifier in the device configuration
+         * @param modifier the modifier
+         */
+        private Entry(final int index, final Modifier modifier) {
+            this.index = index;
+            this.modifier = modifier;
+        }
+    }
+}
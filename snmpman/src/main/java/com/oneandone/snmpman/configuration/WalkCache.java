@@ -0,0 +1,187 @@
+package com.oneandone.snmpman.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of parsed walk files.
+ * <br>
+ * Each walk file will be parsed only once per process and the resulting immutable snapshot is shared between all
+ * agents, community contexts and the default context that refer to the same walk. A cache entry is identified by the
+ * canonical path of the walk file and will be replaced if the modification time or the size of the file changed.
+ * <br>
+ * Overlay files are cached the same way, and a {@link LayeredWalk} of a base walk and its overlays is shared by all
+ * agents that refer to the same files as long as none of the files changed.
+ */
+@Slf4j
+public final class WalkCache {
+
+    /** The cached snapshots by the canonical path of the walk file. */
+    private static final Map<String, Snapshot<SortedMap<OID, Variable>>> SNAPSHOTS = new ConcurrentHashMap<>();
+
+    /** The cached overlays by the canonical path of the overlay file. */
+    private static final Map<String, Snapshot<WalkOverlay>> OVERLAYS = new ConcurrentHashMap<>();
+
+    /** The cached layered walks by the canonical paths of the base walk file and the overlay files. */
+    private static final Map<List<String>, Layers> LAYERS = new ConcurrentHashMap<>();
+
+    private WalkCache() {
+
+    }
+
+    /**
+     * Returns the immutable snapshot of the specified walk file.
+     * <br>
+     * The walk will be read by {@link Walks#readWalk(File)} if it was not cached before or if the file changed since
+     * it was cached.
+     *
+     * @param walk the walk file to read
+     * @return the unmodifiable and sorted map of oid to variable binding from the file
+     * @throws IOException if the file could not be read
+     */
+    public static SortedMap<OID, Variable> readWalk(final File walk) throws IOException {
+        return WalkCache.read(SNAPSHOTS, walk, () -> Collections.unmodifiableSortedMap(new TreeMap<>(Walks.readWalk(walk))));
+    }
+
+    /**
+     * Returns the unmodifiable view of the specified walk file with the specified overlay files applied to it.
+     * <br>
+     * The base walk and each overlay will be read only once as long as the files do not change, and the same
+     * {@link LayeredWalk} instance will be returned for the same files.
+     *
+     * @param walk     the base walk file to read
+     * @param overlays the overlay files to apply in their order
+     * @return the unmodifiable map of oid to variable binding, iterated in the order of the oids
+     * @throws IOException if one of the files could not be read
+     * @see WalkOverlay
+     */
+    public static Map<OID, Variable> readWalk(final File walk, final List<File> overlays) throws IOException {
+        final SortedMap<OID, Variable> base = WalkCache.readWalk(walk);
+        if (overlays.isEmpty()) {
+            return base;
+        }
+        final List<String> key = new ArrayList<>(overlays.size() + 1);
+        key.add(walk.getCanonicalPath());
+        final List<WalkOverlay> layers = new ArrayList<>(overlays.size());
+        for (final File overlay : overlays) {
+            key.add(overlay.getCanonicalPath());
+            layers.add(WalkCache.read(OVERLAYS, overlay, () -> WalkOverlay.read(overlay)));
+        }
+        return LAYERS.compute(key, (k, cached) -> {
+            if (cached != null && cached.base == base && cached.overlays.equals(layers)) {
+                log.trace("using cached layers of walk {}", k);
+                return cached;
+            }
+            return new Layers(base, layers);
+        }).walk;
+    }
+
+    /**
+     * Returns the cached snapshot of a file or reads it if it was not cached before or if it changed since.
+     *
+     * @param snapshots the snapshots of the files by their canonical path
+     * @param file      the file to read
+     * @param reader    reads the file
+     * @param <T>       the type of the content of the file
+     * @return the content of the file
+     * @throws IOException if the file could not be read
+     */
+    private static <T> T read(final Map<String, Snapshot<T>> snapshots, final File file, final Reader<T> reader) throws IOException {
+        final String path = file.getCanonicalPath();
+        try {
+            return snapshots.compute(path, (key, cached) -> {
+                final long lastModified = file.lastModified();
+                final long length = file.length();
+                if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+                    log.trace("using cached snapshot of {}", key);
+                    return cached;
+                }
+                try {
+                    return new Snapshot<>(lastModified, length, reader.read());
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).content;
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Removes all cached snapshots. */
+    public static void clear() {
+        SNAPSHOTS.clear();
+        OVERLAYS.clear();
+        LAYERS.clear();
+    }
+
+    /**
+     * Reads the content of a file.
+     *
+     * @param <T> the type of the content
+     */
+    @FunctionalInterface
+    private interface Reader<T> {
+
+        /**
+         * Reads the content.
+         *
+         * @return the content of the file
+         * @throws IOException if the file could not be read
+         */
+        T read() throws IOException;
+    }
+
+    /**
+     * The parsed content of a file together with the file attributes it was parsed from.
+     *
+     * @param <T> the type of the content
+     */
+    private static final class Snapshot<T> {
+
+        /** The modification time of the file at parse time. */
+        private final long lastModified;
+
+        /** The size of the file at parse time. */
+        private final long length;
+
+        /** The immutable content of the file. */
+        private final T content;
+
+        private Snapshot(final long lastModified, final long length, final T content) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.content = content;
+        }
+    }
+
+    /** A layered walk together with the snapshots it was created from. */
+    private static final class Layers {
+
+        /** The snapshot of the base walk. */
+        private final SortedMap<OID, Variable> base;
+
+        /** The snapshots of the overlays. */
+        private final List<WalkOverlay> overlays;
+
+        /** The layered walk of the {@link #base} and the {@link #overlays}. */
+        private final LayeredWalk walk;
+
+        private Layers(final SortedMap<OID, Variable> base, final List<WalkOverlay> overlays) {
+            this.base = base;
+            this.overlays = overlays;
+            this.walk = new LayeredWalk(base, overlays);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.oneandone.snmpman.configuration;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * The differences of a device to a shared base walk.
+ * <br>
+ * An overlay file has the format of a text walk. Its bindings are added to the base walk or replace the bindings of
+ * the base walk. In addition, a line that consists of a {@code -} followed by an {@code OID} deletes the binding with
+ * this {@code OID} and all bindings in its subtree from the base walk and from the preceding overlays:
+ * <pre>
+ * {@code
+ *     .1.3.6.1.2.1.1.5.0 = STRING: "switch-0042"
+ *     .1.3.6.1.2.1.4.20.1.1.10.0.0.42 = IpAddress: 10.0.0.42
+ *     -.1.3.6.1.2.1.2.2.1.1.10104
+ * }
+ * </pre>
+ * Instances are immutable, see {@link LayeredWalk} for a walk with overlays.
+ */
+@Slf4j
+public final class WalkOverlay {
+
+    /** The pattern of a line that deletes a subtree. */
+    private static final Pattern DELETION = Pattern.compile("-\\s*\\.?\\d+(\\.\\d+)*\\s*");
+
+    /**
+     * Returns the bindings that are added or replaced.
+     *
+     * @return the unmodifiable and sorted map of oid to variable binding
+     */
+    @Getter private final SortedMap<OID, Variable> bindings;
+
+    /**
+     * Returns the roots of the subtrees that are deleted.
+     *
+     * @return the unmodifiable and sorted set of the deleted roots
+     */
+    @Getter private final SortedSet<OID> deletions;
+
+    /**
+     * Constructs a new overlay.
+     *
+     * @param bindings  the bindings that are added or replaced
+     * @param deletions the roots of the subtrees that are deleted
+     */
+    public WalkOverlay(final SortedMap<OID, Variable> bindings, final SortedSet<OID> deletions) {
+        this.bindings = Collections.unmodifiableSortedMap(new TreeMap<>(bindings));
+        this.deletions = Collections.unmodifiableSortedSet(new TreeSet<>(deletions));
+    }
+
+    /**
+     * Reads an overlay from a file.
+     *
+     * @param overlay the overlay file to read
+     * @return the overlay
+     * @throws IOException if the file could not be read
+     */
+    public static WalkOverlay read(final File overlay) throws IOException {
+        log.debug("Reading walk overlay from file {}", overlay);
+        final WalkParser parser = new WalkParser(overlay.getAbsolutePath());
+        final SortedSet<OID> deletions = new TreeSet<>();
+        try (final BufferedReader reader = Files.newBufferedReader(overlay.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (DELETION.matcher(line).matches()) {
+                    final String oid = line.substring(1).trim();
+                    deletions.add(new OID(oid.startsWith(".") ? oid.substring(1) : oid));
+                } else {
+                    parser.parseLine(line, 0, line.length(), lineNumber);
+                }
+            }
+        }
+        return new WalkOverlay(new TreeMap<>(parser.getBindings()), deletions);
+    }
+
+    @Override
+    public String toString() {
+        return "WalkOverlay[" +
+                "bindings=" + bindings.size() +
+                ", deletions=" + deletions.size() +
+                ']';
+    }
+}
@@ -0,0 +1,668 @@
+package com.oneandone.snmpman.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Gauge32;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.IpAddress;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.TimeTicks;
+import org.snmp4j.smi.Variable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single-pass scanner for the lines of a walk file.
+ * <br>
+ * A line of the form {@code <oid> = <type>: <value>} (or {@code <oid> = ""}) starts a new variable binding. The
+ * {@code OID} may use the {@code iso} prefix, which is translated to {@code .1}. Lines that do not start a new binding
+ * are continuation lines of a preceding multi-line {@code STRING} or {@code Hex-STRING}. Continuation lines are
+ * accumulated in a builder and the value is finalized once when the next binding starts or the bindings are requested.
+ * <br>
+ * The scanner works on the characters of each line directly, so {@code OID}s are parsed into an {@code int} array and
+ * numbers are parsed without any intermediate {@code String} or regular expression.
+ * <br>
+ * Instances are not thread-safe.
+ */
+@Slf4j
+final class WalkParser {
+
+    /** The line starts a binding of an unsupported type. */
+    private static final int TYPE_UNKNOWN = 0;
+
+    /** {@code STRING} binding. */
+    private static final int TYPE_STRING = 1;
+
+    /** {@code OID} binding. */
+    private static final int TYPE_OID = 2;
+
+    /** {@code Gauge32} binding. */
+    private static final int TYPE_GAUGE32 = 3;
+
+    /** {@code Timeticks} binding. */
+    private static final int TYPE_TIMETICKS = 4;
+
+    /** {@code Counter32} binding. */
+    private static final int TYPE_COUNTER32 = 5;
+
+    /** {@code Counter64} binding. */
+    private static final int TYPE_COUNTER64 = 6;
+
+    /** {@code INTEGER} binding. */
+    private static final int TYPE_INTEGER = 7;
+
+    /** {@code Hex-STRING} binding. */
+    private static final int TYPE_HEX_STRING = 8;
+
+    /** {@code IpAddress} binding. */
+    private static final int TYPE_IP_ADDRESS = 9;
+
+    /** The type names as used in a walk file, indexed by the type constants above. */
+    private static final String[] TYPE_NAMES = {
+            null, "STRING", "OID", "Gauge32", "Timeticks", "Counter32", "Counter64", "INTEGER", "Hex-STRING", "IpAddress"
+    };
+
+    /** The maximum capacity of the builders that will be kept for the next multi-line value. */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    /** The separator between the {@code OID} and the value of a binding. */
+    private static final String ASSIGNMENT = " = ";
+
+    /** The maximum value of a sub-identifier of an {@code OID}, which is an unsigned 32 bit value. */
+    private static final long MAXIMUM_SUB_IDENTIFIER = 0xFFFFFFFFL;
+
+    /** The description of the parsed walk for log messages. */
+    private final String source;
+
+    /** The map of oid to variable binding parsed so far. */
+    private final Map<OID, Variable> bindings = new HashMap<>();
+
+    /** Reusable buffer for the sub-identifiers of the current {@code OID}. */
+    private int[] subIdentifiers = new int[32];
+
+    /** Reusable buffer for the bytes of the current {@code Hex-STRING}. */
+    private byte[] hexBytes = new byte[64];
+
+    /** The number of sub-identifiers of the {@code OID} parsed by {@link #parseHeader}. */
+    private int headerOidLength;
+
+    /** Whether a sub-identifier of the {@code OID} parsed by {@link #parseHeader} exceeds {@link #MAXIMUM_SUB_IDENTIFIER}. */
+    private boolean headerOidOverflow;
+
+    /** The type parsed by {@link #parseHeader}. */
+    private int headerType;
+
+    /** The index of the first character of the type name parsed by {@link #parseHeader}. */
+    private int headerTypeStart;
+
+    /** Whether the value of {@link #lastOid} has continuation lines that are not in the bindings yet. */
+    private boolean pending;
+
+    /** The accumulated value of a pending multi-line {@code STRING}. */
+    private StringBuilder pendingString = new StringBuilder();
+
+    /** The accumulated value of a pending multi-line {@code Hex-STRING}. */
+    private byte[] pendingBytes = new byte[64];
+
+    /** The number of used bytes in {@link #pendingBytes}. */
+    private int pendingByteCount;
+
+    /** The {@code OID} of the last binding line. */
+    private OID lastOid;
+
+    /** The type of the last binding line. */
+    private int lastType = TYPE_UNKNOWN;
+
+    /**
+     * Constructs a new parser.
+     *
+     * @param source the description of the parsed walk for log messages
+     */
+    WalkParser(final String source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns the map of oid to variable binding parsed so far.
+     * <br>
+     * A pending multi-line value will be finalized first.
+     *
+     * @return the map of oid to variable binding
+     */
+    Map<OID, Variable> getBindings() {
+        finishPending();
+        return bindings;
+    }
+
+    /**
+     * Starts accumulating the continuation lines of the value of {@link #lastOid} if not done yet.
+     * <br>
+     * The value parsed from the binding line is copied into {@link #pendingString} or {@link #pendingBytes} once, so
+     * each continuation line only appends to the builder instead of rebuilding the whole value.
+     *
+     * @param lineNumber the line number for log messages
+     * @return {@code true} if the value is pending, {@code false} if there is no previous value to extend
+     */
+    private boolean startPending(final int lineNumber) {
+        if (pending) {
+            return true;
+        }
+        final OctetString octetStringToExtend = (OctetString) bindings.get(lastOid);
+        if (octetStringToExtend == null) {
+            log.warn("Could not find the previous octet string of OID {} in walk file {} at line {}", lastOid, source, lineNumber);
+            return false;
+        }
+        if (lastType == TYPE_STRING) {
+            pendingString.setLength(0);
+            pendingString.append(new String(octetStringToExtend.getValue()));
+        } else {
+            final byte[] bytes = octetStringToExtend.getValue();
+            if (pendingBytes.length < bytes.length) {
+                pendingBytes = Arrays.copyOf(pendingBytes, bytes.length * 2);
+            }
+            System.arraycopy(bytes, 0, pendingBytes, 0, bytes.length);
+            pendingByteCount = bytes.length;
+        }
+        pending = true;
+        return true;
+    }
+
+    /** Puts the accumulated value of {@link #lastOid} into the bindings, if a multi-line value is pending. */
+    private void finishPending() {
+        if (!pending) {
+            return;
+        }
+        pending = false;
+        if (lastType == TYPE_STRING) {
+            bindings.put(lastOid, new OctetString(pendingString.toString()));
+            // do not keep the memory of a huge value alive
+            if (pendingString.capacity() > MAX_RETAINED_CAPACITY) {
+                pendingString = new StringBuilder();
+            }
+        } else {
+            bindings.put(lastOid, new OctetString(Arrays.copyOf(pendingBytes, pendingByteCount)));
+            if (pendingBytes.length > MAX_RETAINED_CAPACITY) {
+                pendingBytes = new byte[64];
+            }
+        }
+    }
+
+    /**
+     * Parses the line {@code text[start, end)}.
+     *
+     * @param text       the text that contains the line
+     * @param start      the index of the first character of the line
+     * @param end        the index after the last character of the line (excluding line terminators)
+     * @param lineNumber the line number for log messages
+     */
+    void parseLine(final CharSequence text, final int start, final int end, final int lineNumber) {
+        boolean match = parseBinding(text, start, end, lineNumber);
+
+        // if we have a continuation line for a STRING, append to it
+        if (!match && lastOid != null && lastType == TYPE_STRING) {
+            if (startPending(lineNumber)) {
+                match = true;
+                final int newEnd = end > start && text.charAt(end - 1) == '"' ? end - 1 : end;
+                pendingString.append('\n').append(text, start, newEnd);
+            }
+        }
+
+        // if we have a continuation line for a Hex-STRING, append to it
+        if (!match && lastOid != null && lastType == TYPE_HEX_STRING) {
+            final int count = parseHexContinuation(text, start, end);
+            if (count >= 0) {
+                match = true;
+                if (startPending(lineNumber)) {
+                    if (pendingBytes.length - pendingByteCount < count) {
+                        pendingBytes = Arrays.copyOf(pendingBytes, Math.max(pendingBytes.length * 2, pendingByteCount + count));
+                    }
+                    System.arraycopy(hexBytes, 0, pendingBytes, pendingByteCount, count);
+                    pendingByteCount += count;
+                }
+            }
+        }
+
+        if (!match) {
+            log.warn("Could not parse line number {} with content \"{}\" of walk file {}", lineNumber, text.subSequence(start, end), source);
+        }
+    }
+
+    /**
+     * Returns whether the line {@code text[start, end)} starts a new variable binding.
+     * <br>
+     * A line that starts a binding is never treated as a continuation line, so a walk can be split in front of such a
+     * line without changing the parse result.
+     *
+     * @param text  the text that contains the line
+     * @param start the index of the first character of the line
+     * @param end   the index after the last character of the line
+     * @return {@code true} if the line starts a variable binding, otherwise {@code false}
+     */
+    boolean isBindingLine(final CharSequence text, final int start, final int end) {
+        return parseHeader(text, start, end) >= 0;
+    }
+
+    /**
+     * Parses the line {@code text[start, end)} as a variable binding.
+     *
+     * @param text       the text that contains the line
+     * @param start      the index of the first character of the line
+     * @param end        the index after the last character of the line
+     * @param lineNumber the line number for log messages
+     * @return {@code true} if the line is a variable binding line, otherwise {@code false}
+     */
+    private boolean parseBinding(final CharSequence text, final int start, final int end, final int lineNumber) {
+        final int valueStart = parseHeader(text, start, end);
+        if (valueStart < 0) {
+            return false;
+        }
+        finishPending();
+        if (headerOidOverflow) {
+            // the continuation lines of the line are not appended to the previous binding either
+            lastOid = null;
+            lastType = TYPE_UNKNOWN;
+            log.warn("could not parse line {} with \"{}\" of walk file {} with exception: {}", lineNumber, text.subSequence(start, end), source,
+                    "sub-identifier of OID exceeds " + MAXIMUM_SUB_IDENTIFIER);
+            return true;
+        }
+        final OID oid = new OID(subIdentifiers, 0, headerOidLength);
+        lastOid = oid;
+        lastType = headerType;
+        if (headerType == TYPE_UNKNOWN) {
+            log.warn("could not parse line {} with \"{}\" of walk file {} with exception: {}", lineNumber, text.subSequence(start, end), source,
+                    "illegal type \"" + text.subSequence(headerTypeStart, valueStart - 2) + "\" in walk detected");
+            return true;
+        }
+
+        try {
+            final Variable variable = getVariable(headerType, text, valueStart, end);
+            bindings.put(oid, variable);
+            log.trace("added binding from line {} with oid \"{}\" and variable \"{}\"", lineNumber, oid, variable);
+        } catch (final Exception e) {
+            log.warn("could not parse line {} with \"{}\" of walk file {} with exception: {}", lineNumber, text.subSequence(start, end), source, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Parses the {@code <oid> = <type>: } header of the line {@code text[start, end)}.
+     * <br>
+     * On success the {@code OID} is stored in {@link #subIdentifiers} and {@link #headerOidLength}, the type in
+     * {@link #headerType} and the start of the type name in {@link #headerTypeStart}.
+     *
+     * @param text  the text that contains the line
+     * @param start the index of the first character of the line
+     * @param end   the index after the last character of the line
+     * @return the index of the first character of the value or {@code -1} if the line does not start a binding
+     */
+    private int parseHeader(final CharSequence text, final int start, final int end) {
+        final int oidEnd = parseOid(text, start, end);
+        if (oidEnd < 0) {
+            return -1;
+        }
+        final int index = oidEnd + ASSIGNMENT.length();
+        headerTypeStart = index;
+
+        if (end - index == 2 && text.charAt(index) == '"' && text.charAt(index + 1) == '"') {
+            headerType = TYPE_STRING;
+            return end;
+        }
+        int typeEnd = index;
+        while (typeEnd < end && isTypeCharacter(text.charAt(typeEnd))) {
+            typeEnd++;
+        }
+        if (typeEnd == index || typeEnd + 1 >= end || text.charAt(typeEnd) != ':' || text.charAt(typeEnd + 1) != ' ') {
+            return -1;
+        }
+        headerType = typeOf(text, index, typeEnd);
+        return typeEnd + 2;
+    }
+
+    /**
+     * Parses the {@code OID} at the beginning of the line into {@link #subIdentifiers} and {@link #headerOidLength}.
+     * <br>
+     * The {@code OID} has to be followed by {@value #ASSIGNMENT}. A sub-identifier above
+     * {@link #MAXIMUM_SUB_IDENTIFIER} sets {@link #headerOidOverflow}, so the line is reported as a malformed binding.
+     *
+     * @param text  the text that contains the line
+     * @param start the index of the first character of the line
+     * @param end   the index after the last character of the line
+     * @return the index of the {@value #ASSIGNMENT} after the {@code OID} or {@code -1} if the line does not start
+     * with an {@code OID}
+     */
+    private int parseOid(final CharSequence text, final int start, final int end) {
+        int index = start;
+        int count = 0;
+        headerOidOverflow = false;
+        do {
+            if (index + 3 <= end && text.charAt(index) == 'i' && text.charAt(index + 1) == 's' && text.charAt(index + 2) == 'o') {
+                index += 3;
+                count = appendSubIdentifier(count, 1);
+            }
+            if (index >= end || text.charAt(index) != '.') {
+                return -1;
+            }
+            index++;
+            final int digitsStart = index;
+            long value = 0;
+            while (index < end && isDigit(text.charAt(index))) {
+                if (value <= MAXIMUM_SUB_IDENTIFIER) {
+                    value = value * 10 + text.charAt(index) - '0';
+                }
+                index++;
+            }
+            if (index == digitsStart) {
+                return -1;
+            }
+            headerOidOverflow |= value > MAXIMUM_SUB_IDENTIFIER;
+            count = appendSubIdentifier(count, (int) value);
+        } while (index < end && text.charAt(index) != ' ');
+
+        if (end - index < ASSIGNMENT.length() || text.charAt(index + 1) != '=' || text.charAt(index + 2) != ' ') {
+            return -1;
+        }
+        headerOidLength = count;
+        return index;
+    }
+
+    /**
+     * Appends a sub-identifier to {@link #subIdentifiers}.
+     *
+     * @param count the current number of sub-identifiers
+     * @param value the sub-identifier to append
+     * @return the new number of sub-identifiers
+     */
+    private int appendSubIdentifier(final int count, final int value) {
+        if (count == subIdentifiers.length) {
+            subIdentifiers = Arrays.copyOf(subIdentifiers, count * 2);
+        }
+        subIdentifiers[count] = value;
+        return count + 1;
+    }
+
+    /**
+     * Parses a {@code Hex-STRING} continuation line (pairs of hex digits separated by single spaces, optionally
+     * followed by spaces) into {@link #hexBytes}.
+     *
+     * @param text  the text that contains the line
+     * @param start the index of the first character of the line
+     * @param end   the index after the last character of the line
+     * @return the number of parsed bytes or {@code -1} if the line is not a {@code Hex-STRING} continuation line
+     */
+    private int parseHexContinuation(final CharSequence text, final int start, final int end) {
+        if (end - start < 2 || !isHexPair(text, start)) {
+            return -1;
+        }
+        int count = appendHexByte(0, text, start);
+        int index = start + 2;
+        while (index + 3 <= end && text.charAt(index) == ' ' && isHexPair(text, index + 1)) {
+            count = appendHexByte(count, text, index + 1);
+            index += 3;
+        }
+        while (index < end) {
+            if (text.charAt(index++) != ' ') {
+                return -1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Appends the byte of the hex pair at {@code index} to {@link #hexBytes}.
+     *
+     * @param count the current number of bytes
+     * @param text  the text that contains the hex pair
+     * @param index the index of the hex pair
+     * @return the new number of bytes
+     */
+    private int appendHexByte(final int count, final CharSequence text, final int index) {
+        if (count == hexBytes.length) {
+            hexBytes = Arrays.copyOf(hexBytes, count * 2);
+        }
+        hexBytes[count] = (byte) (Character.digit(text.charAt(index), 16) << 4 | Character.digit(text.charAt(index + 1), 16));
+        return count + 1;
+    }
+
+    /**
+     * Returns a {@link Variable} instance for the specified parameters.
+     *
+     * @param type  the type of the variable
+     * @param text  the text that contains the value
+     * @param start the index of the first character of the value
+     * @param end   the index after the last character of the value
+     * @return a {@link Variable} instance with the specified type and value
+     * @throws NumberFormatException    if a numeric value could not be parsed
+     * @throws IllegalArgumentException if the value is invalid for the type
+     */
+    private Variable getVariable(final int type, final CharSequence text, final int start, final int end) {
+        switch (type) {
+            // TODO add "BITS" support
+            case TYPE_STRING:
+                int stringStart = start;
+                int stringEnd = end;
+                if (stringStart < stringEnd && text.charAt(stringStart) == '"') {
+                    stringStart++;
+                }
+                if (stringStart < stringEnd && text.charAt(stringEnd - 1) == '"') {
+                    stringEnd--;
+                }
+                if (stringStart == stringEnd) {
+                    return new OctetString();
+                }
+                return new OctetString(text.subSequence(stringStart, stringEnd).toString());
+            case TYPE_OID:
+                return new OID(text.subSequence(start, end).toString());
+            case TYPE_GAUGE32:
+                return new Gauge32(parseDigits(text, start, end));
+            case TYPE_TIMETICKS:
+                final int openBracket = indexOf(text, start, end, '(') + 1;
+                final int closeBracket = indexOf(text, start, end, ')');
+                if (openBracket == 0 || closeBracket < 0 || closeBracket < openBracket) {
+                    throw new IllegalArgumentException("could not parse time tick value in " + text.subSequence(start, end));
+                }
+                return new TimeTicks(parseLong(text, openBracket, closeBracket));
+            case TYPE_COUNTER32:
+                return new Counter32(parseDigits(text, start, end));
+            case TYPE_COUNTER64:
+                return new Counter64(parseUnsignedLong(text, start, end));
+            case TYPE_INTEGER:
+                final long value = parseDigits(text, start, end);
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw new NumberFormatException("Value out of range. Value:\"" + value + "\" Radix:10");
+                }
+                return new Integer32((int) value);
+            case TYPE_HEX_STRING:
+                return new OctetString(parseHexString(text, start, end));
+            case TYPE_IP_ADDRESS:
+                return new IpAddress(text.subSequence(start, end).toString());
+            default:
+                throw new IllegalArgumentException("illegal type \"" + TYPE_NAMES[type] + "\" in walk detected");
+        }
+    }
+
+    /**
+     * Parses a {@code Hex-STRING} value, which are hex numbers separated by spaces.
+     *
+     * @param text  the text that contains the value
+     * @param start the index of the first character of the value
+     * @param end   the index after the last character of the value
+     * @return the parsed bytes
+     * @throws NumberFormatException if a token is not a hex number
+     */
+    private byte[] parseHexString(final CharSequence text, final int start, final int end) {
+        int count = 0;
+        int index = start;
+        while (index < end) {
+            if (text.charAt(index) == ' ') {
+                index++;
+                continue;
+            }
+            int tokenEnd = index;
+            while (tokenEnd < end && text.charAt(tokenEnd) != ' ') {
+                tokenEnd++;
+            }
+            if (count == hexBytes.length) {
+                hexBytes = Arrays.copyOf(hexBytes, count * 2);
+            }
+            if (tokenEnd - index == 2 && isHexPair(text, index)) {
+                hexBytes[count++] = (byte) (Character.digit(text.charAt(index), 16) << 4 | Character.digit(text.charAt(index + 1), 16));
+            } else {
+                hexBytes[count++] = (byte) Integer.parseInt(text.subSequence(index, tokenEnd).toString(), 16);
+            }
+            index = tokenEnd;
+        }
+        return Arrays.copyOf(hexBytes, count);
+    }
+
+    /**
+     * Parses all digits and minus signs within the value as a decimal number and ignores all other characters
+     * (e.g. {@code up(1)} will be parsed as {@code 1}).
+     *
+     * @param text  the text that contains the value
+     * @param start the index of the first character of the value
+     * @param end   the index after the last character of the value
+     * @return the parsed number
+     * @throws NumberFormatException if the digits do not form a valid number
+     */
+    private static long parseDigits(final CharSequence text, final int start, final int end) {
+        boolean negative = false;
+        boolean digits = false;
+        long result = 0;
+        for (int index = start; index < end; index++) {
+            final char c = text.charAt(index);
+            if (isDigit(c)) {
+                final int digit = c - '0';
+                if (result < (Long.MIN_VALUE + digit) / 10) {
+                    throw numberFormatException(text, start, end);
+                }
+                result = result * 10 - digit;
+                digits = true;
+            } else if (c == '-' && !negative && !digits) {
+                negative = true;
+            } else if (c == '-' || c == '?') {
+                throw numberFormatException(text, start, end);
+            }
+        }
+        if (!digits || (!negative && result == Long.MIN_VALUE)) {
+            throw numberFormatException(text, start, end);
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses a signed decimal number like {@link Long#parseLong(String)}.
+     *
+     * @param text  the text that contains the number
+     * @param start the index of the first character of the number
+     * @param end   the index after the last character of the number
+     * @return the parsed number
+     * @throws NumberFormatException if the characters do not form a valid number
+     */
+    private static long parseLong(final CharSequence text, final int start, final int end) {
+        int index = start;
+        boolean negative = false;
+        if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+            negative = text.charAt(index) == '-';
+            index++;
+        }
+        if (index == end) {
+            throw numberFormatException(text, start, end);
+        }
+        long result = 0;
+        for (; index < end; index++) {
+            final int digit = Character.digit(text.charAt(index), 10);
+            if (digit < 0 || result < (Long.MIN_VALUE + digit) / 10) {
+                throw numberFormatException(text, start, end);
+            }
+            result = result * 10 - digit;
+        }
+        if (!negative && result == Long.MIN_VALUE) {
+            throw numberFormatException(text, start, end);
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses an unsigned decimal number like {@link com.google.common.primitives.UnsignedLong#valueOf(String)}.
+     *
+     * @param text  the text that contains the number
+     * @param start the index of the first character of the number
+     * @param end   the index after the last character of the number
+     * @return the bits of the parsed unsigned number
+     * @throws NumberFormatException if the characters do not form a valid unsigned 64-bit number
+     */
+    private static long parseUnsignedLong(final CharSequence text, final int start, final int end) {
+        if (start == end) {
+            throw numberFormatException(text, start, end);
+        }
+        long result = 0;
+        for (int index = start; index < end; index++) {
+            final int digit = Character.digit(text.charAt(index), 10);
+            if (digit < 0 || Long.compareUnsigned(result, Long.divideUnsigned(-1L - digit, 10)) > 0) {
+                throw numberFormatException(text, start, end);
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the type constant for the type name {@code text[start, end)}.
+     *
+     * @param text  the text that contains the type name
+     * @param start the index of the first character of the type name
+     * @param end   the index after the last character of the type name
+     * @return the type constant or {@link #TYPE_UNKNOWN}
+     */
+    private static int typeOf(final CharSequence text, final int start, final int end) {
+        for (int type = TYPE_STRING; type < TYPE_NAMES.length; type++) {
+            final String name = TYPE_NAMES[type];
+            if (name.length() == end - start && regionMatches(text, start, name)) {
+                return type;
+            }
+        }
+        return TYPE_UNKNOWN;
+    }
+
+    private static boolean regionMatches(final CharSequence text, final int start, final String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (text.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(final CharSequence text, final int start, final int end, final char c) {
+        for (int index = start; index < end; index++) {
+            if (text.charAt(index) == c) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isHexPair(final CharSequence text, final int index) {
+        return isHexDigit(text.charAt(index)) && isHexDigit(text.charAt(index + 1));
+    }
+
+    private static boolean isHexDigit(final char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isTypeCharacter(final char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-';
+    }
+
+    private static NumberFormatException numberFormatException(final CharSequence text, final int start, final int end) {
+        return new NumberFormatException("For input string: \"" + text.subSequence(start, end) + "\"");
+    }
+}
@@ -0,0 +1,332 @@
+package com.oneandone.snmpman.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.asn1.BERInputStream;
+import org.snmp4j.smi.AbstractVariable;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Helper class for reading and writing precompiled binary walk snapshots.
+ * <br>
+ * A snapshot contains the bindings of a walk sorted by {@code OID}, so it can be loaded without tokenizing the text
+ * format again. The layout is:
+ * <pre>
+ * header  magic "SNMPSNAP", version (int), bindings per block (int), binding count (int), block count (int)
+ * index   the file offset of each block (long)
+ * blocks  per binding: shared prefix arcs with the previous OID (varint), number of remaining arcs (varint),
+ *         the remaining arcs (varint each) and the BER encoding of the variable
+ * </pre>
+ * The first {@code OID} of each block is stored without prefix, so blocks can be decoded independently and in
+ * parallel. Snapshots are read through a read-only {@link MappedByteBuffer} and decoded completely, as the bindings of
+ * a walk are kept in a {@link com.oneandone.snmpman.snmp.BindingStore} anyway. The mapping is not used after reading.
+ */
+@Slf4j
+public final class WalkSnapshots {
+
+    /** The magic bytes at the start of each snapshot. */
+    private static final byte[] MAGIC = "SNMPSNAP".getBytes(StandardCharsets.US_ASCII);
+
+    /** The version of the snapshot format. */
+    private static final int VERSION = 1;
+
+    /** The number of bindings per block. */
+    private static final int BLOCK_SIZE = 256;
+
+    /** The size of the header in bytes. */
+    private static final int HEADER_SIZE = MAGIC.length + 4 * Integer.BYTES;
+
+    /** The maximum size of a snapshot in bytes, as a snapshot is mapped into a single {@link MappedByteBuffer}. */
+    private static final long MAXIMUM_SIZE = Integer.MAX_VALUE;
+
+    private WalkSnapshots() {
+
+    }
+
+    /**
+     * Compiles a text walk into a binary snapshot.
+     *
+     * @param walk     the walk file to read
+     * @param snapshot the snapshot file to write
+     * @return the number of bindings written
+     * @throws IOException if the walk could not be read or the snapshot could not be written
+     */
+    public static int compile(final File walk, final File snapshot) throws IOException {
+        final SortedMap<OID, Variable> bindings = new TreeMap<>(Walks.readWalk(walk));
+        write(bindings, snapshot);
+        return bindings.size();
+    }
+
+    /**
+     * Writes the specified bindings as a binary snapshot.
+     * <br>
+     * The snapshot is written to a temporary file next to the target and then moved into place, so processes that
+     * map the previous snapshot are not affected. The temporary file is deleted if the snapshot could not be written.
+     *
+     * @param bindings the bindings to write
+     * @param snapshot the snapshot file to write
+     * @throws IOException if the snapshot could not be written or would exceed the maximum size of 2 GB
+     */
+    public static void write(final SortedMap<OID, Variable> bindings, final File snapshot) throws IOException {
+        final int blockCount = (bindings.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final byte[][] blocks = new byte[blockCount][];
+        final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        OID previous = null;
+        int index = 0;
+        for (final Map.Entry<OID, Variable> binding : bindings.entrySet()) {
+            if (index % BLOCK_SIZE == 0) {
+                previous = null;
+            }
+            final int[] arcs = binding.getKey().getValue();
+            final int prefix = previous == null ? 0 : commonPrefix(previous.getValue(), arcs);
+            writeVarint(block, prefix);
+            writeVarint(block, arcs.length - prefix);
+            for (int i = prefix; i < arcs.length; i++) {
+                writeVarint(block, arcs[i]);
+            }
+            binding.getValue().encodeBER(block);
+            previous = binding.getKey();
+            index++;
+            if (index % BLOCK_SIZE == 0 || index == bindings.size()) {
+                blocks[(index - 1) / BLOCK_SIZE] = block.toByteArray();
+                block.reset();
+            }
+        }
+
+        long size = HEADER_SIZE + (long) blockCount * Long.BYTES;
+        for (final byte[] bytes : blocks) {
+            size += bytes.length;
+        }
+        if (size > MAXIMUM_SIZE) {
+            throw new IOException("snapshot " + snapshot + " would have " + size + " bytes, but a snapshot is mapped as a whole and limited to " + MAXIMUM_SIZE + " bytes");
+        }
+
+        final Path target = snapshot.getAbsoluteFile().toPath();
+        final Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(BLOCK_SIZE);
+                out.writeInt(bindings.size());
+                out.writeInt(blockCount);
+                long offset = HEADER_SIZE + (long) blockCount * Long.BYTES;
+                for (final byte[] bytes : blocks) {
+                    out.writeLong(offset);
+                    offset += bytes.length;
+                }
+                for (final byte[] bytes : blocks) {
+                    out.write(bytes);
+                }
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        log.debug("wrote snapshot {} with {} variable bindings in {} blocks", snapshot, bindings.size(), blockCount);
+    }
+
+    /**
+     * Returns whether the specified file is a binary snapshot.
+     *
+     * @param file the file to check
+     * @return {@code true} if the file starts with the snapshot magic, otherwise {@code false}
+     * @throws IOException if the file could not be read
+     */
+    public static boolean isSnapshot(final File file) throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (final InputStream in = Files.newInputStream(file.toPath())) {
+            final byte[] magic = new byte[MAGIC.length];
+            return in.read(magic) == MAGIC.length && Arrays.equals(magic, MAGIC);
+        }
+    }
+
+    /**
+     * Reads a binary snapshot.
+     * <br>
+     * The blocks of the snapshot are decoded in parallel.
+     *
+     * @param snapshot the snapshot file to read
+     * @return the sorted map of oid to variable binding from the snapshot
+     * @throws IOException if the file could not be read or is not a valid snapshot
+     */
+    public static SortedMap<OID, Variable> read(final File snapshot) throws IOException {
+        log.debug("Reading snapshot from file {}", snapshot);
+        final MappedByteBuffer buffer;
+        try (final FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > MAXIMUM_SIZE) {
+                throw new IOException("snapshot " + snapshot + " has " + channel.size() + " bytes, but a snapshot is mapped as a whole and limited to " + MAXIMUM_SIZE + " bytes");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        final byte[] magic = new byte[MAGIC.length];
+        if (buffer.limit() < HEADER_SIZE || !Arrays.equals(get(buffer, magic), MAGIC)) {
+            throw new IOException("file " + snapshot + " is not a walk snapshot");
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("snapshot " + snapshot + " has unsupported version " + version);
+        }
+        final int blockSize = buffer.getInt();
+        final int count = buffer.getInt();
+        final int blockCount = buffer.getInt();
+        if (blockSize <= 0 || count < 0 || blockCount != (count + blockSize - 1) / blockSize
+                || buffer.remaining() < (long) blockCount * Long.BYTES) {
+            throw new IOException("snapshot " + snapshot + " has an invalid header");
+        }
+        final long[] offsets = new long[blockCount + 1];
+        for (int i = 0; i < blockCount; i++) {
+            offsets[i] = buffer.getLong();
+        }
+        offsets[blockCount] = buffer.limit();
+
+        final OID[] oids = new OID[count];
+        final Variable[] variables = new Variable[count];
+        try {
+            IntStream.range(0, blockCount).parallel().forEach(block -> {
+                try {
+                    readBlock(buffer, offsets[block], offsets[block + 1], block * blockSize, Math.min(count, (block + 1) * blockSize), oids, variables);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw new IOException("snapshot " + snapshot + " is corrupt", e.getCause());
+        }
+
+        final SortedMap<OID, Variable> result = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            result.put(oids[i], variables[i]);
+        }
+        log.debug("Snapshot contains {} variable bindings", result.size());
+        return result;
+    }
+
+    /**
+     * Decodes the bindings {@code [from, to)} of a single block.
+     *
+     * @param snapshot  the buffer of the snapshot
+     * @param start     the offset of the block
+     * @param end       the offset after the block
+     * @param from      the index of the first binding of the block
+     * @param to        the index after the last binding of the block
+     * @param oids      the array to store the decoded {@code OID}s in
+     * @param variables the array to store the decoded variables in
+     * @throws IOException if the block is corrupt
+     */
+    private static void readBlock(final ByteBuffer snapshot, final long start, final long end, final int from, final int to,
+                                  final OID[] oids, final Variable[] variables) throws IOException {
+        if (start < HEADER_SIZE || start > end || end > snapshot.limit()) {
+            throw new IOException("invalid block offset " + start);
+        }
+        final ByteBuffer block = snapshot.duplicate();
+        block.limit((int) end).position((int) start);
+        final BERInputStream in = new BERInputStream(block);
+        int[] previous = new int[0];
+        try {
+            for (int i = from; i < to; i++) {
+                final int prefix = readVarint(block);
+                final int suffix = readVarint(block);
+                if (prefix > previous.length || suffix < 0 || suffix > block.remaining()) {
+                    throw new IOException("invalid OID encoding at offset " + block.position());
+                }
+                final int[] arcs = Arrays.copyOf(previous, prefix + suffix);
+                for (int j = prefix; j < arcs.length; j++) {
+                    arcs[j] = readVarint(block);
+                }
+                oids[i] = new OID(arcs);
+                variables[i] = AbstractVariable.createFromBER(in);
+                previous = arcs;
+            }
+        } catch (final RuntimeException e) {
+            throw new IOException("invalid binding encoding at offset " + block.position(), e);
+        }
+    }
+
+    /**
+     * Returns the number of leading arcs that two {@code OID}s have in common.
+     *
+     * @param first  the arcs of the first {@code OID}
+     * @param second the arcs of the second {@code OID}
+     * @return the length of the common prefix
+     */
+    private static int commonPrefix(final int[] first, final int[] second) {
+        final int length = Math.min(first.length, second.length);
+        int prefix = 0;
+        while (prefix < length && first[prefix] == second[prefix]) {
+            prefix++;
+        }
+        return prefix;
+    }
+
+    /**
+     * Writes an unsigned 32 bit value with seven bits per byte, least significant group first.
+     *
+     * @param out   the stream to write to
+     * @param value the value to write, interpreted as unsigned
+     */
+    private static void writeVarint(final ByteArrayOutputStream out, final int value) {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    /**
+     * Reads an unsigned 32 bit value written by {@link #writeVarint(ByteArrayOutputStream, int)}.
+     *
+     * @param in the buffer to read from
+     * @return the value
+     * @throws IOException if the encoding is invalid
+     */
+    private static int readVarint(final ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            final byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("invalid varint at offset " + in.position());
+    }
+
+    /**
+     * Reads bytes from the buffer.
+     *
+     * @param buffer the buffer to read from
+     * @param bytes  the array to fill
+     * @return the filled array
+     */
+    private static byte[] get(final ByteBuffer buffer, final byte[] bytes) {
+        buffer.get(bytes);
+        return bytes;
+    }
+}
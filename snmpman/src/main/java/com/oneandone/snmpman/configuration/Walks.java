@@ -1,15 +1,7 @@
 package com.oneandone.snmpman.configuration;
 
-import com.google.common.primitives.UnsignedLong;
 import lombok.extern.slf4j.Slf4j;
-import org.snmp4j.smi.Counter32;
-import org.snmp4j.smi.Counter64;
-import org.snmp4j.smi.Gauge32;
-import org.snmp4j.smi.Integer32;
-import org.snmp4j.smi.IpAddress;
 import org.snmp4j.smi.OID;
-import org.snmp4j.smi.OctetString;
-import org.snmp4j.smi.TimeTicks;
 import org.snmp4j.smi.Variable;
 
 import java.io.BufferedReader;
@@ -18,11 +10,21 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /** Helper class for reading SNMP walks.
  * */
@@ -34,26 +36,44 @@ public class Walks {
      */
     private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
 
-    /**
-     * The pattern of variable bindings in a walk file.
-     */
-    private static final Pattern VARIABLE_BINDING_PATTERN = Pattern.compile("(((iso)?\\.[0-9]+)+) = ((([a-zA-Z0-9-]+): (.*)$)|(\"\"$))");
+    /** Walk files of at least this size will be read in parallel by {@link #readWalk(File)}. */
+    private static final long PARALLEL_THRESHOLD = 32L * 1024 * 1024;
 
-    /**
-     * The pattern of a Hex-STRING continuation line in a walk file.
-     */
-    private static final Pattern HEX_STRING_PATTERN = Pattern.compile("([0-9a-fA-F]{2})( [0-9a-fA-F]{2})* *");
+    /** The minimum size of a chunk for parallel reading. */
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+
+    /** The maximum size of a chunk for parallel reading. */
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /** The number of chunks per available worker for parallel reading. */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /** The size of the buffer to search for chunk boundaries. */
+    private static final int BOUNDARY_BUFFER_SIZE = 8 * 1024;
+
+    /** The initial number of characters a chunk is decoded into at a time, the buffer grows for longer lines. */
+    private static final int DECODE_BUFFER_SIZE = 64 * 1024;
 
     private Walks() {
 
     }
 
     /** Reads a walk from a file.
+     * <br>
+     * Binary snapshots compiled by {@link WalkSnapshots#compile(File, File)} will be loaded by
+     * {@link WalkSnapshots#read(File)}. Large text walk files will be read by {@link #readWalkParallel(File)} if more
+     * than one worker is available.
      * @param walk the walk file to read.
      * @return the map of oid to variable binding from the file.
      * @throws IOException if the file could not be read.
      * */
     public static Map<OID, Variable> readWalk(final File walk) throws IOException {
+        if (WalkSnapshots.isSnapshot(walk)) {
+            return WalkSnapshots.read(walk);
+        }
+        if (walk.length() >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            return readWalkParallel(walk);
+        }
         log.debug("Reading walk from file {}", walk);
         try (final FileInputStream fileInputStream = new FileInputStream(walk);
              final BufferedReader reader = new BufferedReader(new InputStreamReader(fileInputStream, DEFAULT_CHARSET))) {
@@ -71,137 +91,277 @@ public class Walks {
     }
 
     /**
-     * Reads all variable bindings using {@link #VARIABLE_BINDING_PATTERN}.
+     * Reads all variable bindings line by line with a {@link WalkParser}.
      *
+     * @param walk the walk file for log messages.
      * @param reader the reader to read the bindings from.
      * @return the map of oid to variable binding.
      */
     private static Map<OID, Variable> readVariableBindings(final File walk, final BufferedReader reader) throws IOException {
-        final Map<OID, Variable> bindings = new HashMap<>();
-        OID lastOid = null;
-        String lastType = null;
+        final WalkParser parser = new WalkParser(walk.getAbsolutePath());
         String line;
         int lineNumber = 0;
         while ((line = reader.readLine()) != null) {
             lineNumber++;
-            boolean match = false;
-            Matcher matcher = VARIABLE_BINDING_PATTERN.matcher(line);
-            if (matcher.matches()) {
-                match = true;
-                final OID oid = new OID(matcher.group(1).replace("iso", ".1"));
-                lastOid = oid;
-
-                try {
-                    final Variable variable;
-                    if (matcher.group(7) == null) {
-                        lastType = "STRING";
-                        variable = getVariable("STRING", "\"\"");
-                    } else {
-                        lastType = matcher.group(6);
-                        variable = getVariable(lastType, matcher.group(7));
-                    }
+            parser.parseLine(line, 0, line.length(), lineNumber);
+        }
+        return parser.getBindings();
+    }
 
-                    bindings.put(oid, variable);
-                    log.trace("added binding from line {} with oid \"{}\" and variable \"{}\"", lineNumber, oid, variable);
-                } catch (final Exception e) {
-                    log.warn("could not parse line {} with \"{}\" of walk file {} with exception: {}", lineNumber, line, walk.getCanonicalPath(), e.getMessage());
-                }
+    /** Reads a walk from a file in parallel.
+     * <br>
+     * The file will be memory-mapped and split into chunks in front of lines that start a new variable binding, so no
+     * chunk boundary falls into a multi-line {@code STRING} or {@code Hex-STRING}. The chunks are parsed on the
+     * common {@link ForkJoinPool} and the partial results are merged in file order, so a binding that occurs more than
+     * once keeps its last value just like with {@link #readWalk(File)}. Each chunk is decoded into a small buffer a
+     * few lines at a time, so the heap used by parallel chunks does not grow with the chunk size.
+     * @param walk the walk file to read.
+     * @return the map of oid to variable binding from the file.
+     * @throws IOException if the file could not be read.
+     * */
+    public static Map<OID, Variable> readWalkParallel(final File walk) throws IOException {
+        final long chunkSize = walk.length() / (ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_WORKER) + 1;
+        return readWalkParallel(walk, (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize)));
+    }
+
+    /** Reads a walk from a file in parallel with the specified target chunk size.
+     * @param walk the walk file to read.
+     * @param chunkSize the minimum size of a chunk in bytes.
+     * @return the map of oid to variable binding from the file.
+     * @throws IOException if the file could not be read.
+     * */
+    static Map<OID, Variable> readWalkParallel(final File walk, final int chunkSize) throws IOException {
+        return readWalkParallel(walk, chunkSize, DECODE_BUFFER_SIZE);
+    }
+
+    /** Reads a walk from a file in parallel with the specified target chunk size and decode buffer size.
+     * @param walk the walk file to read.
+     * @param chunkSize the minimum size of a chunk in bytes.
+     * @param bufferSize the initial number of characters a chunk is decoded into at a time.
+     * @return the map of oid to variable binding from the file.
+     * @throws IOException if the file could not be read.
+     * */
+    static Map<OID, Variable> readWalkParallel(final File walk, final int chunkSize, final int bufferSize) throws IOException {
+        log.debug("Reading walk from file {} in parallel", walk);
+        try (final FileChannel channel = FileChannel.open(walk.toPath(), StandardOpenOption.READ)) {
+            final List<Long> boundaries = findChunkBoundaries(walk, channel, chunkSize);
+            final List<MappedByteBuffer> chunks = new ArrayList<>(boundaries.size() - 1);
+            for (int i = 1; i < boundaries.size(); i++) {
+                chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, boundaries.get(i - 1), boundaries.get(i) - boundaries.get(i - 1)));
             }
+            log.debug("Split walk {} into {} chunks", walk, chunks.size());
 
-            // if we have a continuation line for a Hex-STRING, append to it
-            if (!match && lastType != null && lastOid != null && lastType.equals("STRING")) {
-                OctetString octetStringToExtend = (OctetString) bindings.get(lastOid);
-                if (octetStringToExtend != null) {
-                    match = true;
-                    String oldString = octetStringToExtend.toString();
-                    String newString;
-                    if (line.endsWith("\"")) {
-                        newString = line.substring(0, line.length() - 1);
-                    } else {
-                        newString = line;
-                    }
-                    String combined = oldString + "\n" + newString;
-                    bindings.put(lastOid, new OctetString(combined));
-                } else {
-                    log.warn("Could not find the previous octet string of OID {} in walk file {} at line {}",
-                            lastOid, walk.getAbsolutePath(), lineNumber);
-                }
+            // the line numbers of each chunk continue the line numbers of the previous chunks
+            final long[] lineCounts = chunks.parallelStream().mapToLong(Walks::countLines).toArray();
+            final int[] firstLineNumbers = new int[chunks.size()];
+            int lineNumber = 1;
+            for (int i = 0; i < chunks.size(); i++) {
+                firstLineNumbers[i] = lineNumber;
+                lineNumber += (int) lineCounts[i];
             }
 
-            // if we have a continuation line for a Hex-STRING, append to it
-            if (!match && lastType != null && lastOid != null && lastType.equals("Hex-STRING")) {
-                matcher = HEX_STRING_PATTERN.matcher(line);
-                if (matcher.matches()) {
-                    match = true;
-                    OctetString octetStringToExtend = (OctetString) bindings.get(lastOid);
-                    if (octetStringToExtend != null) {
-                        byte[] oldBytes = octetStringToExtend.getValue();
-                        byte[] newBytes = OctetString.fromHexString(matcher.group(0), ' ').toByteArray();
-                        byte[] combined = new byte[oldBytes.length + newBytes.length];
-                        System.arraycopy(oldBytes, 0, combined, 0, oldBytes.length);
-                        System.arraycopy(newBytes, 0, combined, oldBytes.length, newBytes.length);
-                        bindings.put(lastOid, new OctetString(combined));
-                    } else {
-                        log.warn("Could not find the previous octet string of OID {} in walk file {} at line {}",
-                                lastOid, walk.getAbsolutePath(), lineNumber);
+            final Map<OID, Variable> result = ForkJoinPool.commonPool().invoke(new ChunkTask(walk.getAbsolutePath(), chunks, firstLineNumbers, bufferSize, 0, chunks.size()));
+            log.debug("Walk contains {} variable bindings", result.size());
+            return result;
+        } catch (final IOException e) {
+            log.error("could not read walk file " + walk.getAbsolutePath(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the chunk boundaries of a walk file.
+     * <br>
+     * A boundary is placed at the first line that starts a new variable binding at or after every {@code chunkSize}
+     * bytes of the previous boundary.
+     *
+     * @param walk the walk file for log messages.
+     * @param channel the channel of the walk file.
+     * @param chunkSize the minimum size of a chunk in bytes.
+     * @return the file offsets of the chunk boundaries, starting with {@code 0} and ending with the file size.
+     */
+    private static List<Long> findChunkBoundaries(final File walk, final FileChannel channel, final int chunkSize) throws IOException {
+        final long size = channel.size();
+        final List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        final WalkParser parser = new WalkParser(walk.getAbsolutePath());
+        final ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_BUFFER_SIZE);
+        long position = chunkSize;
+        while (position < size) {
+            final long boundary = findNextBindingLine(channel, parser, buffer, position);
+            if (boundary < 0) {
+                break;
+            }
+            boundaries.add(boundary);
+            position = boundary + chunkSize;
+        }
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    /**
+     * Finds the start of the first line after {@code position} that starts a new variable binding.
+     *
+     * @param channel the channel of the walk file.
+     * @param parser the parser to check the lines with.
+     * @param buffer the buffer to read into.
+     * @param position the file offset to start searching at.
+     * @return the file offset of the line or {@code -1} if there is no such line.
+     */
+    private static long findNextBindingLine(final FileChannel channel, final WalkParser parser, final ByteBuffer buffer, final long position) throws IOException {
+        long lineStart = -1;
+        final StringBuilder line = new StringBuilder();
+        long offset = position;
+        while (true) {
+            buffer.clear();
+            final int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                return lineStart >= 0 && parser.isBindingLine(line, 0, line.length()) ? lineStart : -1;
+            }
+            final byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                final byte b = bytes[i];
+                if (b == '\n') {
+                    if (lineStart >= 0 && parser.isBindingLine(line, 0, line.length())) {
+                        return lineStart;
                     }
+                    lineStart = offset + i + 1;
+                    line.setLength(0);
+                } else if (lineStart >= 0 && b != '\r') {
+                    // the binding header is plain ASCII, so any other byte just has to mismatch
+                    line.append((char) (b & 0xff));
                 }
             }
+            offset += read;
+        }
+    }
 
-            if (!match) {
-                log.warn("Could not parse line number {} with content \"{}\" of walk file {}", lineNumber, line, walk.getAbsolutePath());
+    /**
+     * Returns the number of line terminators in the chunk {@code [0, chunk.limit())}.
+     * <br>
+     * A line is terminated by {@code \n}, {@code \r} or {@code \r\n} like in {@link #readChunk}. As a chunk starts
+     * at a line, this is the number of lines in front of the next chunk.
+     *
+     * @param chunk the bytes of the chunk.
+     * @return the number of line terminators.
+     */
+    private static long countLines(final ByteBuffer chunk) {
+        final int limit = chunk.limit();
+        long count = 0;
+        for (int i = 0; i < limit; i++) {
+            final byte b = chunk.get(i);
+            if (b == '\n' || b == '\r' && (i + 1 == limit || chunk.get(i + 1) != '\n')) {
+                count++;
             }
         }
-        return bindings;
+        return count;
     }
 
     /**
-     * Returns a {@link Variable} instance for the specified parameters.
+     * Parses the chunk {@code [0, chunk.limit())} line by line with a {@link WalkParser}.
+     * <br>
+     * The chunk is decoded into a buffer of {@code bufferSize} characters at a time. Only complete lines are parsed,
+     * the rest of the buffer is kept for the next round and the buffer is doubled if a single line does not fit.
      *
-     * @param type  the type of the variable
-     * @param value the value of this variable
-     * @return a a {@link Variable} instance with the specified type and value
-     * @throws IllegalArgumentException if the type could not be mapped to a {@link Variable} implementation
+     * @param source the description of the walk for log messages.
+     * @param chunk the bytes of the chunk.
+     * @param firstLineNumber the line number of the first line of the chunk in the walk.
+     * @param bufferSize the initial number of characters the chunk is decoded into at a time.
+     * @return the map of oid to variable binding.
      */
-    private static Variable getVariable(final String type, final String value) {
-        switch (type) {
-            // TODO add "BITS" support
-            case "STRING":
-                String use = value;
-                if (use.startsWith("\"")) {
-                    use = use.substring(1);
-                }
-                if (use.endsWith("\"")) {
-                    use = use.substring(0, use.length() - 1);
+    private static Map<OID, Variable> readChunk(final String source, final ByteBuffer chunk, final int firstLineNumber, final int bufferSize) {
+        final CharsetDecoder decoder = DEFAULT_CHARSET.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final ByteBuffer bytes = chunk.duplicate();
+        final WalkParser parser = new WalkParser(source);
+        CharBuffer text = CharBuffer.allocate(bufferSize);
+        int lineNumber = firstLineNumber;
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            CoderResult result = decoder.decode(bytes, text, true);
+            if (result.isUnderflow()) {
+                result = decoder.flush(text);
+                endOfInput = result.isUnderflow();
+            }
+            text.flip();
+            final int length = text.length();
+            int start = 0;
+            while (start < length) {
+                int end = start;
+                char c = 0;
+                while (end < length && (c = text.charAt(end)) != '\n' && c != '\r') {
+                    end++;
                 }
-                if (use.length() == 0) {
-                    return new OctetString();
+                // a line at the end of the buffer may continue or a \r may be followed by a \n in the next round
+                if (!endOfInput && (end == length || c == '\r' && end + 1 == length)) {
+                    break;
                 }
-                return new OctetString(use);
-            case "OID":
-                return new OID(value);
-            case "Gauge32":
-                return new Gauge32(Long.parseLong(value.replaceAll("[^-?0-9]+", "")));
-            case "Timeticks":
-                final int openBracket = value.indexOf("(") + 1;
-                final int closeBracket = value.indexOf(")");
-                if (openBracket == 0 || closeBracket < 0) {
-                    throw new IllegalArgumentException("could not parse time tick value in " + value);
+                parser.parseLine(text, start, end, lineNumber++);
+                start = end + (c == '\r' && end + 1 < length && text.charAt(end + 1) == '\n' ? 2 : 1);
+            }
+            text.position(Math.min(start, length));
+            text.compact();
+            if (!text.hasRemaining()) {
+                text.flip();
+                text = CharBuffer.allocate(text.capacity() * 2).put(text);
+            }
+        }
+        return parser.getBindings();
+    }
+
+    /** Parses a range of chunks and merges the results in file order. */
+    private static final class ChunkTask extends RecursiveTask<Map<OID, Variable>> {
+
+        /** The description of the walk for log messages. */
+        private final String source;
+
+        /** The memory-mapped chunks of the walk. */
+        private final List<MappedByteBuffer> chunks;
+
+        /** The line number of the first line of each chunk. */
+        private final int[] firstLineNumbers;
+
+        /** The initial number of characters a chunk is decoded into at a time. */
+        private final int bufferSize;
+
+        /** The index of the first chunk of this task. */
+        private final int from;
+
+        /** The index after the last chunk of this task. */
+        private final int to;
+
+        private ChunkTask(final String source, final List<MappedByteBuffer> chunks, final int[] firstLineNumbers, final int bufferSize,
+                          final int from, final int to) {
+            this.source = source;
+            this.chunks = chunks;
+            this.firstLineNumbers = firstLineNumbers;
+            this.bufferSize = bufferSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<OID, Variable> compute() {
+            if (to - from <= 1) {
+                if (from == to) {
+                    return new HashMap<>();
                 }
-                return new TimeTicks(Long.parseLong(value.substring(openBracket, closeBracket)));
-            case "Counter32":
-                return new Counter32(Long.parseLong(value.replaceAll("[^-?0-9]+", "")));
-            case "Counter64":
-                // Parse unsigned long
-                return new Counter64(UnsignedLong.valueOf(value).longValue());
-            case "INTEGER":
-                return new Integer32(Integer.parseInt(value.replaceAll("[^-?0-9]+", "")));
-            case "Hex-STRING":
-                return OctetString.fromHexString(value, ' ');
-            case "IpAddress":
-                return new IpAddress(value);
-            default:
-                throw new IllegalArgumentException("illegal type \"" + type + "\" in walk detected");
+                return readChunk(source, chunks.get(from), firstLineNumbers[from], bufferSize);
+            }
+            final int middle = (from + to) >>> 1;
+            final ChunkTask head = new ChunkTask(source, chunks, firstLineNumbers, bufferSize, from, middle);
+            final ChunkTask tail = new ChunkTask(source, chunks, firstLineNumbers, bufferSize, middle, to);
+            tail.fork();
+            final Map<OID, Variable> headBindings = head.compute();
+            final Map<OID, Variable> tailBindings = tail.join();
+            // merge the smaller into the larger map, the bindings of the tail always win
+            if (headBindings.size() >= tailBindings.size()) {
+                headBindings.putAll(tailBindings);
+                return headBindings;
+            }
+            headBindings.forEach(tailBindings::putIfAbsent);
+            return tailBindings;
         }
     }
 }
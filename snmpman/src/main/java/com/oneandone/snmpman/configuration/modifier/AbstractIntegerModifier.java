@@ -25,6 +25,12 @@ abstract class AbstractIntegerModifier<T extends UnsignedInteger32> implements V
     /** The maximal step by which a variable will be incremented. */
     @Getter private long maximumStep;
 
+    /**
+     * The seed configured by the {@code seed} property or {@code null} if not configured. The seed is combined with the
+     * identity of the specified source of random numbers, so each variable of each agent gets its own stream.
+     */
+    private Long seed;
+
     @Override
     public void init(final ModifierProperties properties) {
         this.minimum = Optional.ofNullable(properties.getLong("minimum")).orElse(0L);
@@ -32,6 +38,7 @@ abstract class AbstractIntegerModifier<T extends UnsignedInteger32> implements V
 
         this.minimumStep = Optional.ofNullable(properties.getLong("minimumStep")).orElse(0L);
         this.maximumStep = Optional.ofNullable(properties.getLong("maximumStep")).orElse(1L);
+        this.seed = properties.getLong("seed");
 
         Preconditions.checkArgument(minimum >= 0, "minimum should not be negative");
         Preconditions.checkArgument(maximum >= 0, "maximum should not be negative");
@@ -50,11 +57,16 @@ abstract class AbstractIntegerModifier<T extends UnsignedInteger32> implements V
 
     @Override
     public final T modify(final T variable) {
+        return modify(variable, ModifierRandom.shared());
+    }
+
+    @Override
+    public final T modify(final T variable, final ModifierRandom random) {
         long currentValue = variable.getValue();
         if (currentValue < minimum || currentValue > maximum) {
             currentValue = minimum;
         }
-        long step = (Math.round(Math.random() * (maximumStep - minimumStep)) + minimumStep);
+        long step = (Math.round(random.nextDouble(seed) * (maximumStep - minimumStep)) + minimumStep);
 
         long stepUntilMaximum = maximum - currentValue;
         long newValue;
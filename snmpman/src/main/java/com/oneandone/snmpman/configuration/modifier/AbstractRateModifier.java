@@ -0,0 +1,225 @@
+package com.oneandone.snmpman.configuration.modifier;
+
+import com.google.common.base.Preconditions;
+import com.oneandone.snmpman.configuration.type.ModifierProperties;
+import lombok.Getter;
+import org.snmp4j.smi.Variable;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * This modifier has all utility methods to construct counter modifiers whose value is a function of the elapsed time.
+ * <br>
+ * The counter increases by {@code rate} units per second since the initialization of the modifier. The optional
+ * {@code profile} defines a factor for the rate of each hour of the day (24 values, in the local time of the system
+ * default time zone, including daylight saving time), the optional {@code jitter} defines a fraction of the rate of
+ * the current second that will be added randomly. The random part only depends on the current second, the specified
+ * value and the identity of the variable, so all pollers see the same value at the same time and different variables
+ * get different jitter. Unless the binding has other modifiers that change the specified value, see
+ * {@link TimeBasedModifier}, the counter never decreases. The value wraps around at the width of the counter type.
+ *
+ * @param <T> the variable type that gets modified by this instance.
+ */
+abstract class AbstractRateModifier<T extends Variable> implements TimeBasedModifier<T> {
+
+    /** The number of seconds per hour. */
+    private static final int SECONDS_PER_HOUR = 3600;
+
+    /** The number of hours of a daily profile. */
+    private static final int HOURS_PER_DAY = 24;
+
+    /** The number of seconds per day. */
+    private static final int SECONDS_PER_DAY = SECONDS_PER_HOUR * HOURS_PER_DAY;
+
+    /** The clock that returns the current time in milliseconds. */
+    private final LongSupplier clock;
+
+    /** The rules of the time zone of the {@link #profile}. */
+    private final ZoneRules zoneRules;
+
+    /** The increase per second. */
+    @Getter private double rate;
+
+    /** The fraction of the rate that will be added randomly. */
+    @Getter private double jitter;
+
+    /** The factors of the rate for each hour of the day or {@code null} if the rate is constant. */
+    @Getter private double[] profile;
+
+    /** The sum of the factors of all hours before each hour, multiplied by the seconds per hour. */
+    private double[] cumulativeProfile;
+
+    /** The epoch second of the initialization. */
+    private long startSecond;
+
+    /** The period of the time zone of the last request, which is replaced when the zone offset changes. */
+    private volatile Period period;
+
+    /**
+     * Constructs a modifier that uses the system clock.
+     */
+    AbstractRateModifier() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * Constructs a modifier that uses the specified clock.
+     *
+     * @param clock the clock that returns the current time in milliseconds
+     */
+    AbstractRateModifier(final LongSupplier clock) {
+        this(clock, ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructs a modifier that uses the specified clock and time zone.
+     *
+     * @param clock the clock that returns the current time in milliseconds
+     * @param zone  the time zone of the profile
+     */
+    AbstractRateModifier(final LongSupplier clock, final ZoneId zone) {
+        this.clock = clock;
+        this.zoneRules = zone.getRules();
+    }
+
+    @Override
+    public void init(final ModifierProperties properties) {
+        this.rate = Optional.ofNullable(properties.getDouble("rate")).orElse(1.0);
+        this.jitter = Optional.ofNullable(properties.getDouble("jitter")).orElse(0.0);
+        this.profile = properties.getDoubles("profile");
+
+        Preconditions.checkArgument(rate >= 0, "rate should not be negative");
+        Preconditions.checkArgument(jitter >= 0 && jitter <= 1, "jitter should be between 0 and 1");
+        if (profile != null) {
+            Preconditions.checkArgument(profile.length == HOURS_PER_DAY, "profile should contain a factor for each of the 24 hours");
+            cumulativeProfile = new double[HOURS_PER_DAY + 1];
+            for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+                Preconditions.checkArgument(profile[hour] >= 0, "profile should not contain negative factors");
+                cumulativeProfile[hour + 1] = cumulativeProfile[hour] + profile[hour] * SECONDS_PER_HOUR;
+            }
+        }
+
+        this.startSecond = Math.floorDiv(clock.getAsLong(), 1000L);
+        this.period = null;
+    }
+
+    /**
+     * Casts the long value to the specified output type of the implementing modifier.
+     * <br>
+     * The value may exceed the width of the type and has to be wrapped around.
+     *
+     * @param value the value to cast
+     * @return the casted value
+     */
+    protected abstract T cast(long value);
+
+    @Override
+    public final T modify(final T variable) {
+        return modify(variable, ModifierRandom.shared());
+    }
+
+    @Override
+    public final T modify(final T variable, final ModifierRandom random) {
+        final long initial = variable.toLong();
+        final long second = Math.max(startSecond, Math.floorDiv(clock.getAsLong(), 1000L));
+        double increase = rate * (second - startSecond);
+        double currentRate = rate;
+        if (profile != null) {
+            final Period current = getPeriod(second);
+            increase = current.increase + integrate(current.start + current.offset, second + current.offset);
+            currentRate = rate * profile[Math.floorMod(second + current.offset, SECONDS_PER_DAY) / SECONDS_PER_HOUR];
+        }
+        if (jitter > 0) {
+            increase += jitter * currentRate * random.noise(second * 0x9E3779B97F4A7C15L + initial);
+        }
+        return cast(initial + (long) increase);
+    }
+
+    /**
+     * Returns the period of constant zone offset that contains the specified second.
+     *
+     * @param second the epoch second, not before the {@link #startSecond}
+     * @return the period
+     */
+    private Period getPeriod(final long second) {
+        Period result = period;
+        if (result != null && second >= result.start && second < result.end) {
+            return result;
+        }
+        long start = startSecond;
+        double increase = 0;
+        while (true) {
+            final Instant instant = Instant.ofEpochSecond(start);
+            final int offset = zoneRules.getOffset(instant).getTotalSeconds();
+            final ZoneOffsetTransition transition = zoneRules.nextTransition(instant);
+            final long end = transition == null ? Long.MAX_VALUE : transition.toEpochSecond();
+            if (second < end) {
+                result = new Period(start, end, offset, increase);
+                period = result;
+                return result;
+            }
+            increase += integrate(start + offset, end + offset);
+            start = end;
+        }
+    }
+
+    /**
+     * Returns the increase between two local seconds of the same zone offset.
+     *
+     * @param from the first second
+     * @param to   the last second
+     * @return the increase without jitter
+     */
+    private double integrate(final long from, final long to) {
+        final long days = Math.floorDiv(to, SECONDS_PER_DAY) - Math.floorDiv(from, SECONDS_PER_DAY);
+        return rate * (days * cumulativeProfile[HOURS_PER_DAY]
+                + integrateDay(Math.floorMod(to, SECONDS_PER_DAY)) - integrateDay(Math.floorMod(from, SECONDS_PER_DAY)));
+    }
+
+    /**
+     * Returns the sum of the profile factors from the start of the day up to the specified second of the day.
+     *
+     * @param second the second of the day
+     * @return the sum of the factors
+     */
+    private double integrateDay(final int second) {
+        final int hour = second / SECONDS_PER_HOUR;
+        return cumulativeProfile[hour] + profile[hour] * (second - hour * SECONDS_PER_HOUR);
+    }
+
+    /** A period of constant zone offset. */
+    private static final class Period {
+
+        /** The first epoch second of the period, not before the {@link AbstractRateModifier#startSecond}. */
+        private final long start;
+
+        /** The epoch second after the period. */
+        private final long end;
+
+        /** The zone offset of the period in seconds. */
+        private final int offset;
+
+        /** The increase from the {@link AbstractRateModifier#startSecond} to the {@link #start} of the period. */
+        private final double increase;
+
+        /**
+         * Constructs a new period.
+         *
+         * @param start    the first epoch second of the period
+         * @param end      the epoch second after the period
+         * @param offset   the zone offset of the period in seconds
+         * @param increase the increase up to the start of the period
+         */
+        private Period(final long start, final long end, final int offset, final double increase) {
+            this.start = start;
+            this.end = end;
+            this.offset = offset;
+            this.increase = increase;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.oneandone.snmpman.configuration.modifier;
+
+import org.snmp4j.smi.Counter32;
+
+import java.time.ZoneId;
+import java.util.function.LongSupplier;
+
+/** This modifier instance computes {@link org.snmp4j.smi.Counter32} variables from the elapsed time. */
+public class Counter32RateModifier extends AbstractRateModifier<Counter32> {
+
+    /**
+     * Constructs a modifier that uses the system clock.
+     */
+    public Counter32RateModifier() {
+        super();
+    }
+
+    /**
+     * Constructs a modifier that uses the specified clock.
+     *
+     * @param clock the clock that returns the current time in milliseconds
+     */
+    Counter32RateModifier(final LongSupplier clock) {
+        super(clock);
+    }
+
+    /**
+     * Constructs a modifier that uses the specified clock and time zone.
+     *
+     * @param clock the clock that returns the current time in milliseconds
+     * @param zone  the time zone of the profile
+     */
+    Counter32RateModifier(final LongSupplier clock, final ZoneId zone) {
+        super(clock, zone);
+    }
+
+    @Override
+    protected Counter32 cast(final long value) {
+        return new Counter32(value & 0xFFFFFFFFL);
+    }
+}
@@ -1,5 +1,6 @@
 package com.oneandone.snmpman.configuration.modifier;
 
+import com.google.common.base.Preconditions;
 import com.google.common.primitives.UnsignedLong;
 import com.oneandone.snmpman.configuration.type.ModifierProperties;
 import lombok.Getter;
@@ -7,7 +8,13 @@ import org.snmp4j.smi.Counter64;
 
 import java.util.Optional;
 
-/** This modifier instance modifies {@link Counter64} variables. */
+/**
+ * This modifier instance modifies {@link Counter64} variables.
+ * <br>
+ * All values are handled as unsigned 64 bit numbers. The modification works on primitive {@code long} values, it
+ * wraps around from {@link #getMaximum() maximum} to {@link #getMinimum() minimum} just like the
+ * {@link AbstractIntegerModifier}.
+ */
 public class Counter64Modifier implements VariableModifier<Counter64> {
 
     /** The minimum allowed number for the resulting modified variable. */
@@ -22,6 +29,24 @@ public class Counter64Modifier implements VariableModifier<Counter64> {
     /** The maximal step by which a variable will be incremented. */
     @Getter private UnsignedLong maximumStep;
 
+    /** The {@link #minimum} as unsigned {@code long}. */
+    private long minimumValue;
+
+    /** The {@link #maximum} as unsigned {@code long}. */
+    private long maximumValue;
+
+    /** The {@link #minimumStep} as unsigned {@code long}. */
+    private long minimumStepValue;
+
+    /** The {@link #maximumStep} as unsigned {@code long}. */
+    private long maximumStepValue;
+
+    /**
+     * The seed configured by the {@code seed} property or {@code null} if not configured. The seed is combined with the
+     * identity of the specified source of random numbers, so each variable of each agent gets its own stream.
+     */
+    private Long seed;
+
     @Override
     public void init(final ModifierProperties properties) {
         this.minimum = Optional.ofNullable(properties.getUnsignedLong("minimum")).orElse(UnsignedLong.ZERO);
@@ -29,19 +54,61 @@ public class Counter64Modifier implements VariableModifier<Counter64> {
 
         this.minimumStep = Optional.ofNullable(properties.getUnsignedLong("minimumStep")).orElse(UnsignedLong.ZERO);
         this.maximumStep = Optional.ofNullable(properties.getUnsignedLong("maximumStep")).orElse(UnsignedLong.ONE);
+        this.seed = properties.getLong("seed");
+
+        Preconditions.checkArgument(minimum.compareTo(maximum) <= 0, "minimum should not exceed maximum");
+        Preconditions.checkArgument(minimumStep.compareTo(maximumStep) <= 0, "minimumStep should not exceed maximumStep");
+
+        this.minimumValue = minimum.longValue();
+        this.maximumValue = maximum.longValue();
+        this.minimumStepValue = minimumStep.longValue();
+        this.maximumStepValue = maximumStep.longValue();
     }
 
     @Override
     public Counter64 modify(final Counter64 variable) {
-        UnsignedLong currentValue = UnsignedLong.valueOf(variable.toString());
-        if (currentValue.compareTo(minimum) < 0 || currentValue.compareTo(maximum) > 0) {
-            currentValue = minimum;
+        return modify(variable, ModifierRandom.shared());
+    }
+
+    @Override
+    public Counter64 modify(final Counter64 variable, final ModifierRandom random) {
+        long currentValue = variable.getValue();
+        if (Long.compareUnsigned(currentValue, minimumValue) < 0 || Long.compareUnsigned(currentValue, maximumValue) > 0) {
+            currentValue = minimumValue;
         }
+        final long step = nextStep(random);
 
-        final UnsignedLong step = UnsignedLong.valueOf((long) (Math.random() * maximumStep.minus(minimumStep).longValue())).plus(minimumStep);
-        final UnsignedLong newValue = currentValue.plus(step);
+        final long stepUntilMaximum = maximumValue - currentValue;
+        final long newValue;
+        if (Long.compareUnsigned(step, stepUntilMaximum) > 0) {
+            newValue = minimumValue + (step - stepUntilMaximum - 1);
+        } else {
+            newValue = currentValue + step;
+        }
 
-        return new Counter64(newValue.longValue());
+        if (Long.compareUnsigned(newValue, minimumValue) < 0) {
+            return new Counter64(minimumValue);
+        } else if (Long.compareUnsigned(newValue, maximumValue) > 0) {
+            return new Counter64(maximumValue);
+        }
+        return new Counter64(newValue);
     }
 
+    /**
+     * Draws the next step between {@link #minimumStep} and {@link #maximumStep} (both inclusive).
+     * <br>
+     * The step is drawn as unsigned {@code long}, a {@code double} cannot represent all steps above {@code 2^53}.
+     *
+     * @param random the source of random numbers
+     * @return the step as unsigned {@code long}
+     */
+    private long nextStep(final ModifierRandom random) {
+        final long bound = maximumStepValue - minimumStepValue + 1;
+        final long value = random.nextLong(seed);
+        if (bound == 0) {
+            // the steps span all 2^64 values
+            return value;
+        }
+        return minimumStepValue + Long.remainderUnsigned(value, bound);
+    }
 }
@@ -0,0 +1,41 @@
+package com.oneandone.snmpman.configuration.modifier;
+
+import org.snmp4j.smi.Counter64;
+
+import java.time.ZoneId;
+import java.util.function.LongSupplier;
+
+/** This modifier instance computes {@link org.snmp4j.smi.Counter64} variables from the elapsed time. */
+public class Counter64RateModifier extends AbstractRateModifier<Counter64> {
+
+    /**
+     * Constructs a modifier that uses the system clock.
+     */
+    public Counter64RateModifier() {
+        super();
+    }
+
+    /**
+     * Constructs a modifier that uses the specified clock.
+     *
+     * @param clock the clock that returns the current time in milliseconds
+     */
+    Counter64RateModifier(final LongSupplier clock) {
+        super(clock);
+    }
+
+    /**
+     * Constructs a modifier that uses the specified clock and time zone.
+     *
+     * @param clock the clock that returns the current time in milliseconds
+     * @param zone  the time zone of the profile
+     */
+    Counter64RateModifier(final LongSupplier clock, final ZoneId zone) {
+        super(clock, zone);
+    }
+
+    @Override
+    protected Counter64 cast(final long value) {
+        return new Counter64(value);
+    }
+}
@@ -23,6 +23,12 @@ public class Integer32Modifier implements VariableModifier<Integer32> {
     /** The maximal step by which a variable will be incremented. */
     @Getter private Integer maximumStep;
 
+    /**
+     * The seed configured by the {@code seed} property or {@code null} if not configured. The seed is combined with the
+     * identity of the specified source of random numbers, so each variable of each agent gets its own stream.
+     */
+    private Long seed;
+
     @Override
     public void init(final ModifierProperties properties) {
         this.minimum = Optional.ofNullable(properties.getInteger("minimum")).orElse(Integer.MIN_VALUE);
@@ -30,6 +36,7 @@ public class Integer32Modifier implements VariableModifier<Integer32> {
 
         this.minimumStep = Optional.ofNullable(properties.getInteger("minimumStep")).orElse(-1);
         this.maximumStep = Optional.ofNullable(properties.getInteger("maximumStep")).orElse(1);
+        this.seed = properties.getLong("seed");
     }
 
     /**
@@ -45,11 +52,28 @@ public class Integer32Modifier implements VariableModifier<Integer32> {
      * @return the modified variable value
      */
     protected int modify(final int currentValue, final int minimum, final int maximum, final int minimumStep, final int maximumStep) {
+        return modify(currentValue, minimum, maximum, minimumStep, maximumStep, ModifierRandom.shared());
+    }
+
+    /**
+     * Increments the current value by a random number between the minimum and maximum step.
+     * <p>
+     * An overflow can occur and will be considered in the minimum and maximum interval.
+     *
+     * @param currentValue the current value to modify
+     * @param minimum      {@link #minimum}
+     * @param maximum      {@link #maximum}
+     * @param minimumStep  {@link #minimumStep}
+     * @param maximumStep  {@link #maximumStep}
+     * @param random       the source of random numbers, combined with the own seed of this modifier if configured
+     * @return the modified variable value
+     */
+    protected int modify(final int currentValue, final int minimum, final int maximum, final int minimumStep, final int maximumStep, final ModifierRandom random) {
         int currentValidValue = currentValue;
         if (currentValue < minimum || currentValue > maximum) {
             currentValidValue = minimum;
         }
-        int step = (int) (Math.round(Math.random() * (maximumStep - minimumStep)) + minimumStep);
+        int step = (int) (Math.round(random.nextDouble(seed) * (maximumStep - minimumStep)) + minimumStep);
 
         int stepUntilMaximum = maximum - currentValidValue;
         int newValue;
@@ -70,7 +94,12 @@ public class Integer32Modifier implements VariableModifier<Integer32> {
 
     @Override
     public Integer32 modify(final Integer32 variable) {
-        final int newValue = this.modify(variable.getValue(), minimum, maximum, minimumStep, maximumStep);
+        return modify(variable, ModifierRandom.shared());
+    }
+
+    @Override
+    public Integer32 modify(final Integer32 variable, final ModifierRandom random) {
+        final int newValue = this.modify(variable.getValue(), minimum, maximum, minimumStep, maximumStep, random);
         log.trace("Counter32 variable {} will be tuned to {}", variable.getValue(), newValue);
         return new Integer32(newValue);
     }
@@ -7,11 +7,25 @@ import org.snmp4j.smi.Variable;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * A modified variable will change it's value on every value call.
+ * <br>
+ * The modifiers are applied in two steps: all modifiers except the {@link TimeBasedModifier} instances modify the
+ * stored variable in order, then the {@link TimeBasedModifier} instances compute the returned value from it without
+ * storing the result. A variable with time based modifiers only is therefore never mutated by a read.
+ * <br>
+ * The stored variable is replaced atomically by a compare-and-set, so concurrent requests never lose an update and
+ * each request works on a single consistent value without locking. Modifiers have to return new instances instead of
+ * changing the specified variable.
+ * <br>
+ * The number of random numbers drawn is stored together with the variable. An update draws from the position after
+ * the draws of the value it modifies, so a seeded variable reaches the same values in the same order of updates, no
+ * matter which threads request it and how their updates interleave.
  */
 @Slf4j
 public class ModifiedVariable implements Variable, Cloneable {
@@ -19,8 +33,18 @@ public class ModifiedVariable implements Variable, Cloneable {
     /** The list of modifiers that modify the {@link #variable}. */
     private final List<VariableModifier> modifiers;
 
-    /** The variable. */
-    private Variable variable;
+    /** The list of modifiers that compute the returned value from the {@link #variable}. */
+    private final List<VariableModifier> timeBasedModifiers;
+
+    /** The updater of the {@link #state}, which saves an {@code AtomicReference} per variable. */
+    private static final AtomicReferenceFieldUpdater<ModifiedVariable, State> STATE =
+            AtomicReferenceFieldUpdater.newUpdater(ModifiedVariable.class, State.class, "state");
+
+    /** The current variable and the number of random numbers drawn to reach it. */
+    private volatile State state;
+
+    /** The source of random numbers for the {@link #modifiers}. */
+    private final ModifierRandom random;
 
     /**
      * Constructs a new modified variable.
@@ -31,111 +55,257 @@ public class ModifiedVariable implements Variable, Cloneable {
      * @param modifiers the list of modifiers that should modify this variable
      */
     public ModifiedVariable(final Variable variable, final List<VariableModifier> modifiers) {
-        this.variable = variable;
-        this.modifiers = Collections.unmodifiableList(modifiers);
+        this(variable, modifiers, ModifierRandom.shared());
+    }
+
+    /**
+     * Constructs a new modified variable that passes the specified source of random numbers to its modifiers.
+     *
+     * @param variable  the initial variable to modify
+     * @param modifiers the list of modifiers that should modify this variable
+     * @param random    the source of random numbers, e.g. of the agent derived for the {@code OID} of the variable
+     */
+    public ModifiedVariable(final Variable variable, final List<VariableModifier> modifiers, final ModifierRandom random) {
+        this.state = new State(variable, 0);
+        this.random = random;
+        final List<VariableModifier> stateful = new ArrayList<>(modifiers.size());
+        final List<VariableModifier> timeBased = new ArrayList<>(modifiers.size());
+        for (final VariableModifier modifier : modifiers) {
+            if (isTimeBased(modifier)) {
+                timeBased.add(modifier);
+            } else {
+                stateful.add(modifier);
+            }
+        }
+        this.modifiers = stateful.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(stateful);
+        this.timeBasedModifiers = timeBased.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(timeBased);
+    }
+
+    /**
+     * Constructs a new modified variable that shares the modifiers of the specified variable.
+     *
+     * @param template the modified variable to share the modifiers with
+     * @param variable the initial variable to modify
+     * @param random   the source of random numbers
+     */
+    private ModifiedVariable(final ModifiedVariable template, final Variable variable, final ModifierRandom random) {
+        this.state = new State(variable, 0);
+        this.random = random;
+        this.modifiers = template.modifiers;
+        this.timeBasedModifiers = template.timeBasedModifiers;
+    }
+
+    /**
+     * Returns a new modified variable with the modifiers of this variable, e.g. for an agent that shares the bindings
+     * of its walk with other agents.
+     *
+     * @param initial the initial variable to modify
+     * @param random  the source of random numbers of the new variable, e.g. of the agent derived for the {@code OID}
+     * @return the new modified variable
+     */
+    public ModifiedVariable copy(final Variable initial, final ModifierRandom random) {
+        return new ModifiedVariable(this, initial, random);
+    }
+
+    /**
+     * Returns {@code true} if the specified modifier or the modifier wrapped by it is a {@link TimeBasedModifier}.
+     *
+     * @param modifier the modifier to check
+     * @return {@code true} if the modifier is time based, otherwise {@code false}
+     */
+    private static boolean isTimeBased(final VariableModifier modifier) {
+        if (modifier instanceof Modifier) {
+            return isTimeBased(((Modifier) modifier).getModifier());
+        }
+        return modifier instanceof TimeBasedModifier;
+    }
+
+    /**
+     * Returns the current variable, which is the state of the modifiers.
+     *
+     * @return the current variable
+     */
+    public Variable getCurrentVariable() {
+        return state.variable;
+    }
+
+    /**
+     * Returns the number of random numbers drawn to reach the current variable.
+     *
+     * @return the number of draws
+     */
+    public long getDraws() {
+        return state.draws;
+    }
+
+    /**
+     * Replaces the current variable and keeps the number of draws.
+     *
+     * @param current the variable to continue with
+     */
+    public void setCurrentVariable(final Variable current) {
+        setCurrentVariable(current, state.draws);
+    }
+
+    /**
+     * Replaces the current variable and the number of draws, e.g. to restore the state of the modifiers of an evicted
+     * agent.
+     *
+     * @param current the variable to continue with
+     * @param draws   the number of random numbers drawn to reach the variable
+     */
+    public void setCurrentVariable(final Variable current, final long draws) {
+        state = new State(current, draws);
     }
 
     @Override
     public int compareTo(final Variable variable) {
-        return this.variable.compareTo(variable);
+        return state.variable.compareTo(variable);
     }
 
     @SuppressWarnings({"CloneDoesntCallSuperClone", "unchecked"})
     @Override
     public Object clone() {
-        log.trace("variable {} will be cloned", variable);
-        for (final VariableModifier modifier : modifiers) {
-            this.variable = modifier.modify(variable);
+        State current;
+        Variable next;
+        ModifierRandom draws;
+        do {
+            current = state;
+            log.trace("variable {} will be cloned", current.variable);
+            next = current.variable;
+            draws = random.at(current.draws);
+            for (final VariableModifier modifier : modifiers) {
+                next = modifier.modify(next, draws);
+            }
+        } while (next != current.variable && !STATE.compareAndSet(this, current, new State(next, draws.getDraws())));
+
+        Variable result = next;
+        for (final VariableModifier modifier : timeBasedModifiers) {
+            result = modifier.modify(result, random);
         }
-        return this.variable.clone();
+        return result == next ? result.clone() : result;
     }
 
     @Override
     public int getSyntax() {
-        log.trace("syntax of variable {} will be retrieved", variable);
-        return variable.getSyntax();
+        final Variable current = state.variable;
+        log.trace("syntax of variable {} will be retrieved", current);
+        return current.getSyntax();
     }
 
     @Override
     public boolean isException() {
-        log.trace("asking if variable {} is an exception", variable);
-        return variable.isException();
+        final Variable current = state.variable;
+        log.trace("asking if variable {} is an exception", current);
+        return current.isException();
     }
 
     @Override
     public String toString() {
-        log.trace("toString() called for variable {}", variable);
-        return variable.toString();
+        final Variable current = state.variable;
+        log.trace("toString() called for variable {}", current);
+        return current.toString();
     }
 
     @Override
     public int toInt() {
-        log.trace("integer value of variable {} will be returned", variable);
-        return variable.toInt();
+        final Variable current = state.variable;
+        log.trace("integer value of variable {} will be returned", current);
+        return current.toInt();
     }
 
     @Override
     public long toLong() {
-        log.trace("long value of variable {} will be returned", variable);
-        return variable.toLong();
+        final Variable current = state.variable;
+        log.trace("long value of variable {} will be returned", current);
+        return current.toLong();
     }
 
     @Override
     public String getSyntaxString() {
-        log.trace("syntax string of variable {} will be retrieved", variable);
-        return variable.getSyntaxString();
+        final Variable current = state.variable;
+        log.trace("syntax string of variable {} will be retrieved", current);
+        return current.getSyntaxString();
     }
 
     @Override
     public OID toSubIndex(final boolean b) {
-        return variable.toSubIndex(b);
+        return state.variable.toSubIndex(b);
     }
 
     @Override
     public void fromSubIndex(final OID oid, final boolean b) {
-        variable.fromSubIndex(oid, b);
+        final Variable changed = (Variable) state.variable.clone();
+        changed.fromSubIndex(oid, b);
+        setCurrentVariable(changed);
     }
 
     @Override
     public boolean isDynamic() {
-        log.trace("asking if variable {} is dynamic", variable);
-        return variable.isDynamic();
+        // the value changes on every call of clone()
+        return true;
     }
 
     @Override
     public int getBERLength() {
-        log.trace("BER length of variable {} will be retrieved", variable);
-        return variable.getBERLength();
+        final Variable current = state.variable;
+        log.trace("BER length of variable {} will be retrieved", current);
+        return current.getBERLength();
     }
 
     @Override
     public int getBERPayloadLength() {
-        log.trace("BER payload length of variable {} will be retrieved", variable);
-        return variable.getBERPayloadLength();
+        final Variable current = state.variable;
+        log.trace("BER payload length of variable {} will be retrieved", current);
+        return current.getBERPayloadLength();
     }
 
     @Override
     public void decodeBER(final BERInputStream berInputStream) throws IOException {
-        log.trace("BER will be decoded for variable {}", variable);
-        variable.decodeBER(berInputStream);
+        final Variable decoded = (Variable) state.variable.clone();
+        log.trace("BER will be decoded for variable {}", decoded);
+        decoded.decodeBER(berInputStream);
+        setCurrentVariable(decoded);
     }
 
     @Override
     public void encodeBER(final OutputStream outputStream) throws IOException {
-        log.trace("BER will be encoded for variable {}", variable);
-        variable.encodeBER(outputStream);
+        final Variable current = state.variable;
+        log.trace("BER will be encoded for variable {}", current);
+        current.encodeBER(outputStream);
     }
 
     @Override
     public boolean equals(final Object o) {
         if (o instanceof ModifiedVariable) {
-            return variable.equals(((ModifiedVariable) o).variable);
+            return state.variable.equals(((ModifiedVariable) o).state.variable);
         }
-        return variable.equals(o);
+        return state.variable.equals(o);
     }
 
     @Override
     public int hashCode() {
-        return variable.hashCode();
+        return state.variable.hashCode();
+    }
+
+    /** The immutable state of a modified variable. */
+    private static final class State {
+
+        /** The current variable. */
+        private final Variable variable;
+
+        /** The number of random numbers drawn to reach the {@link #variable}. */
+        private final long draws;
+
+        /**
+         * Constructs a new state.
+         *
+         * @param variable the current variable
+         * @param draws    the number of random numbers drawn to reach the variable
+         */
+        private State(final Variable variable, final long draws) {
+            this.variable = variable;
+            this.draws = draws;
+        }
     }
 }
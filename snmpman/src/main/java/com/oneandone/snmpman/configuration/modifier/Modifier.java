@@ -19,8 +19,12 @@ import java.lang.reflect.InvocationTargetException;
  */
 public class Modifier<T extends Variable> implements VariableModifier<T> {
 
-    /** The OID range {@code this} modifier should process. */
-    private final WildcardOID oid;
+    /**
+     * The OID range {@code this} modifier should process.
+     *
+     * @return the wildcard OID of the range
+     */
+    @Getter private final WildcardOID oid;
 
     /**
      * The wrapped variable modifier for this generic modifier.
@@ -64,4 +68,9 @@ public class Modifier<T extends Variable> implements VariableModifier<T> {
     public T modify(T variable) {
         return modifier.modify(variable);
     }
+
+    @Override
+    public T modify(final T variable, final ModifierRandom random) {
+        return modifier.modify(variable, random);
+    }
 }
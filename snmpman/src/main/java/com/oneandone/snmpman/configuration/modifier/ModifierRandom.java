@@ -0,0 +1,178 @@
+package com.oneandone.snmpman.configuration.modifier;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Source of random numbers for variable modifiers.
+ * <br>
+ * The {@link #shared() shared} instance uses {@link ThreadLocalRandom}. A {@link #seeded(long) seeded} instance does
+ * not keep a mutable stream, the {@code n}-th number is computed from the seed, the identity of the instance and
+ * {@code n} only. Each modified variable draws from its own instance {@link #derive(long) derived} from the identity of
+ * its agent and its {@code OID}, starting at the number of draws of its previous value, see {@link #at(long)}. The
+ * numbers of a variable therefore neither depend on the thread that serves a request nor on the order in which
+ * requests of different variables are served, and no state is shared between threads.
+ */
+public final class ModifierRandom {
+
+    /** The increment of the positions of the stream, as used by {@link java.util.SplittableRandom}. */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /** The updater of the {@link #draws}. */
+    private static final AtomicLongFieldUpdater<ModifierRandom> DRAWS = AtomicLongFieldUpdater.newUpdater(ModifierRandom.class, "draws");
+
+    /** The instance without a seed. */
+    private static final ModifierRandom SHARED = new ModifierRandom(null, 0, 0);
+
+    /** The seed or {@code null} if this instance is not seeded. */
+    private final Long seed;
+
+    /** The identity of the stream, e.g. of the agent and the {@code OID} of a variable. */
+    private final long identity;
+
+    /** The number of numbers drawn from this instance so far. */
+    private volatile long draws;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param seed     the seed or {@code null} to use {@link ThreadLocalRandom}
+     * @param identity the identity of the stream
+     * @param draws    the number of numbers drawn so far
+     */
+    private ModifierRandom(final Long seed, final long identity, final long draws) {
+        this.seed = seed;
+        this.identity = identity;
+        this.draws = draws;
+    }
+
+    /**
+     * Returns the instance without a seed.
+     *
+     * @return the shared instance
+     */
+    public static ModifierRandom shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns a new instance with the specified seed.
+     *
+     * @param seed the seed
+     * @return the seeded instance
+     */
+    public static ModifierRandom seeded(final long seed) {
+        return new ModifierRandom(seed, 0, 0);
+    }
+
+    /**
+     * Returns a seeded instance if the specified seed is not {@code null}, otherwise the {@link #shared()} instance.
+     *
+     * @param seed the seed or {@code null}
+     * @return the seeded or the shared instance
+     */
+    public static ModifierRandom of(final Long seed) {
+        return seed == null ? SHARED : seeded(seed);
+    }
+
+    /**
+     * Returns a new instance with the seed of this instance for the specified identity, e.g. the hash code of the
+     * {@code OID} of a variable.
+     *
+     * @param identity the identity to mix into the identity of this instance
+     * @return the derived instance, which has not drawn any number yet
+     */
+    public ModifierRandom derive(final long identity) {
+        return new ModifierRandom(seed, mix(this.identity * GOLDEN_GAMMA + identity), 0);
+    }
+
+    /**
+     * Returns a new instance with the seed and identity of this instance that continues after the specified number of
+     * draws.
+     * <br>
+     * A modified variable draws the numbers of an update from the position after the draws of its current value, so
+     * a retried update draws the same numbers again.
+     *
+     * @param position the number of numbers drawn before
+     * @return the instance at the specified position
+     */
+    public ModifierRandom at(final long position) {
+        return new ModifierRandom(seed, identity, position);
+    }
+
+    /**
+     * Returns the number of numbers drawn from this instance so far.
+     *
+     * @return the number of draws
+     */
+    public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Returns the next pseudo random number.
+     *
+     * @return a number between {@code 0} (inclusive) and {@code 1} (exclusive)
+     */
+    public double nextDouble() {
+        return nextDouble(seed);
+    }
+
+    /**
+     * Returns the next pseudo random number of the stream of the specified seed, e.g. the seed of a single modifier.
+     * <br>
+     * The stream has the identity of this instance and advances its number of draws.
+     *
+     * @param seed the seed or {@code null} for the seed of this instance
+     * @return a number between {@code 0} (inclusive) and {@code 1} (exclusive)
+     */
+    public double nextDouble(final Long seed) {
+        return (nextLong(seed) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Returns the next pseudo random number of the stream of the specified seed.
+     *
+     * @param seed the seed or {@code null} for the seed of this instance
+     * @return a uniformly distributed {@code long}
+     */
+    public long nextLong(final Long seed) {
+        final Long effectiveSeed = seed != null ? seed : this.seed;
+        if (effectiveSeed == null) {
+            return ThreadLocalRandom.current().nextLong();
+        }
+        final long position = DRAWS.getAndIncrement(this);
+        return mix(mix(effectiveSeed ^ identity) + (position + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Returns a pseudo random number for the specified key that only depends on the identity of this instance.
+     * <br>
+     * Unlike {@link #nextDouble()} the number neither depends on the seed nor advances the draws, so all threads get
+     * the same number for the same key, e.g. for the jitter of a time based modifier in the current second.
+     *
+     * @param key the key of the number
+     * @return a number between {@code 0} (inclusive) and {@code 1} (exclusive)
+     */
+    public double noise(final long key) {
+        return (mix(mix(identity) + key) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Mixes the bits of a value like {@link java.util.SplittableRandom} does.
+     *
+     * @param value the value to mix
+     * @return the mixed value
+     */
+    private static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public String toString() {
+        return seed == null ? "ModifierRandom[shared]" : "ModifierRandom[seeded]";
+    }
+}
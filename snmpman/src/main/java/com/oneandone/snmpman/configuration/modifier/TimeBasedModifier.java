@@ -0,0 +1,26 @@
+package com.oneandone.snmpman.configuration.modifier;
+
+import org.snmp4j.smi.Variable;
+
+/**
+ * Definition of a variable modifier whose result is a pure function of the specified variable and the current time.
+ * <br>
+ * {@link #modify(Variable)} will be called with the stored variable of a binding and its result will not be stored.
+ * The stored variable is the initial variable, unless the binding also has modifiers that are not time based, which
+ * step the stored variable on each read before it is passed to this modifier. A binding with time based modifiers
+ * only therefore neither mutates nor depends on shared state and its value does not depend on how often it is read,
+ * see {@link ModifiedVariable}.
+ *
+ * @param <T> the variable type that gets modified by this instance.
+ */
+public interface TimeBasedModifier<T extends Variable> extends VariableModifier<T> {
+
+    /**
+     * Returns the value of the specified stored {@code variable} at the current time.
+     *
+     * @param variable the stored variable of the binding
+     * @return the value at the current time
+     */
+    @Override
+    T modify(final T variable);
+}
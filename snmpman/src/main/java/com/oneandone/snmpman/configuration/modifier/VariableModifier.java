@@ -16,6 +16,20 @@ public interface VariableModifier<T extends Variable> {
      */
     T modify(final T variable);
 
+    /**
+     * Modifies the specified {@code variable} with the specified source of random numbers and returns a copy of it.
+     * <br>
+     * Modifiers that draw random numbers should draw them from the specified source, with their own {@code seed} if
+     * they were configured with one. The default implementation ignores the source.
+     *
+     * @param variable the variable to modify
+     * @param random   the source of random numbers of the variable
+     * @return the modified variable
+     */
+    default T modify(final T variable, final ModifierRandom random) {
+        return modify(variable);
+    }
+
     /**
      * Initialize {@code this} variable modifier by the specified {@code properties}.
      *
@@ -2,6 +2,8 @@ package com.oneandone.snmpman.configuration.type;
 
 import com.google.common.primitives.UnsignedLong;
 
+import java.math.BigInteger;
+import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
 
@@ -40,8 +42,82 @@ public class ModifierProperties extends Properties {
      * @throws java.lang.ClassCastException thrown if the value for the specified key could not be casted
      */
     public UnsignedLong getUnsignedLong(final String key) {
+        final Object value = this.get(key);
+        if (value instanceof UnsignedLong) {
+            return (UnsignedLong) value;
+        } else if (value instanceof BigInteger) {
+            // numbers above Long.MAX_VALUE are parsed as BigInteger
+            return UnsignedLong.valueOf((BigInteger) value);
+        } else if (value instanceof String) {
+            return UnsignedLong.valueOf((String) value);
+        }
         final Optional<Number> number = getNumber(key);
-        return number.map(value -> UnsignedLong.valueOf(value.longValue())).orElse(null);
+        return number.map(n -> UnsignedLong.valueOf(n.longValue())).orElse(null);
+    }
+
+    /**
+     * Returns the double value for the specified property {@code key}.
+     *
+     * @param key the property key
+     * @return the double value for the specified key or {@code null} if not existing.
+     * @throws java.lang.ClassCastException thrown if the value for the specified key could not be casted
+     */
+    public Double getDouble(final String key) {
+        if (!this.containsKey(key)) {
+            return null;
+        }
+        return toDouble(key, this.get(key));
+    }
+
+    /**
+     * Returns the double values for the specified property {@code key}.
+     * <br>
+     * The value may either be a list of numbers or a string of comma separated numbers.
+     *
+     * @param key the property key
+     * @return the double values for the specified key or {@code null} if not existing.
+     * @throws java.lang.ClassCastException thrown if the value for the specified key could not be casted
+     */
+    public double[] getDoubles(final String key) {
+        if (!this.containsKey(key)) {
+            return null;
+        }
+        final Object value = this.get(key);
+        final Object[] elements;
+        if (value instanceof List) {
+            elements = ((List<?>) value).toArray();
+        } else if (value instanceof String) {
+            elements = ((String) value).split(",");
+        } else {
+            throw new ClassCastException("property \"" + key + "\" is not a list of numbers");
+        }
+        final double[] result = new double[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            result[i] = toDouble(key, elements[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Converts the specified value of a property to a double.
+     *
+     * @param key   the property key
+     * @param value the value to convert
+     * @return the double value
+     * @throws java.lang.ClassCastException thrown if the value could not be casted
+     */
+    private static double toDouble(final String key, final Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+            try {
+                return Double.parseDouble(((String) value).trim());
+            } catch (final NumberFormatException e) {
+                throw new ClassCastException("property \"" + key + "\" is not a number");
+            }
+        } else {
+            throw new ClassCastException("property \"" + key + "\" is not a number");
+        }
     }
 
     /**
@@ -2,6 +2,7 @@ package com.oneandone.snmpman.configuration.type;
 
 import com.google.common.base.Preconditions;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import org.snmp4j.smi.OID;
 
 import java.util.regex.Matcher;
@@ -21,8 +22,12 @@ public class WildcardOID {
     /** The wildcard OID pattern. */
     private static final Pattern WILDCARD_OID_PATTERN = Pattern.compile("((\\.)?[0-9]+(\\.[0-9]+)*)(\\.\\*)?((\\.[0-9]+)*)");
 
-    /** The first part of the wildcard {@code OID} (before the "{@code *}" character). */
-    private final OID startsWith;
+    /**
+     * The first part of the wildcard {@code OID} (before the "{@code *}" character).
+     *
+     * @return the first part of the wildcard {@code OID}
+     */
+    @Getter private final OID startsWith;
 
     /** The second part of the wildcard {@code OID} (after the "{@code *}" character). Can be {@code null}. */
     private final OID endsWith;
@@ -64,7 +69,19 @@ public class WildcardOID {
      * @return {@code true} if the {@code OID}s are matching, otherwise {@code false}
      */
     public boolean matches(final OID oid) {
-        return oid.startsWith(startsWith) && (endsWith == null || oid.size() >= endsWith.size() && oid.rightMostCompare(endsWith.size(), endsWith) == 0);
+        return oid.startsWith(startsWith) && matchesEnd(oid);
+    }
+
+    /**
+     * Returns {@code true} if the specified {@code OID} ends with the second part of this wildcard {@code OID}.
+     * <br>
+     * The first part will not be checked, see {@link #matches(org.snmp4j.smi.OID)}.
+     *
+     * @param oid the {@code OID} to test
+     * @return {@code true} if this wildcard has no second part or the {@code OID} ends with it, otherwise {@code false}
+     */
+    public boolean matchesEnd(final OID oid) {
+        return endsWith == null || oid.size() >= endsWith.size() && oid.rightMostCompare(endsWith.size(), endsWith) == 0;
     }
 
     @Override
@@ -0,0 +1,57 @@
+package com.oneandone.snmpman.persistence;
+
+import com.oneandone.snmpman.configuration.AgentConfiguration;
+import org.snmp4j.agent.MOServer;
+
+import java.io.IOException;
+
+/**
+ * The backend that persists the state of the agents between their starts.
+ * <br>
+ * The state of an agent is its number of engine boots and the configuration of its managed objects, e.g. of the
+ * {@code SNMP-COMMUNITY-MIB}. The state is identified by the name of the agent. A backend is shared by all agents of a
+ * {@code Snmpman} instance, so all methods may be called concurrently.
+ */
+public interface AgentPersistence {
+
+    /**
+     * Increments the number of engine boots of the specified agent.
+     *
+     * @param configuration the configuration of the agent
+     * @return the incremented number of engine boots
+     * @throws IOException signals that the engine boots could not be persisted
+     */
+    int updateEngineBoots(AgentConfiguration configuration) throws IOException;
+
+    /**
+     * Restores the stored configuration of the specified agent into its server.
+     * <br>
+     * Nothing is restored if no configuration has been stored for the agent yet.
+     *
+     * @param configuration the configuration of the agent
+     * @param server        the server of the agent
+     * @param importMode    the import mode, see {@link org.snmp4j.agent.io.ImportMode}
+     * @throws IOException signals that the stored configuration could not be read
+     */
+    void restore(AgentConfiguration configuration, MOServer server, int importMode) throws IOException;
+
+    /**
+     * Stores the configuration of the managed objects in the server of the specified agent.
+     *
+     * @param configuration the configuration of the agent
+     * @param server        the server of the agent
+     * @throws IOException signals that the configuration could not be stored
+     */
+    void store(AgentConfiguration configuration, MOServer server) throws IOException;
+
+    /**
+     * Writes the state that has been updated or stored since the last flush.
+     * <br>
+     * Backends that persist each update immediately do not need to flush.
+     *
+     * @throws IOException signals that the state could not be written
+     */
+    default void flush() throws IOException {
+        // each update is persisted immediately
+    }
+}
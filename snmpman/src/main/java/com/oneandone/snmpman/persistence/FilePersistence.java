@@ -0,0 +1,79 @@
+package com.oneandone.snmpman.persistence;
+
+import com.oneandone.snmpman.configuration.AgentConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.agent.MOServer;
+import org.snmp4j.agent.cfg.EngineBootsCounterFile;
+import org.snmp4j.agent.io.DefaultMOPersistenceProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * Persists the state of each agent in two files of its own.
+ * <br>
+ * The number of engine boots is stored in the file {@code <name>.BC.cfg} and the configuration in the file
+ * {@code <name>.Config.cfg}, both in the directory of the walk of the agent. This is the default backend.
+ */
+@Slf4j
+public final class FilePersistence implements AgentPersistence {
+
+    @Override
+    public int updateEngineBoots(final AgentConfiguration configuration) {
+        return new EngineBootsCounterFile(getBootCounterFile(configuration)).updateEngineBoots();
+    }
+
+    @Override
+    public void restore(final AgentConfiguration configuration, final MOServer server, final int importMode) throws IOException {
+        final File configurationFile = getConfigurationFile(configuration);
+        if (configurationFile.isFile()) {
+            new DefaultMOPersistenceProvider(new MOServer[]{server}, configurationFile.getPath()).restore(null, importMode);
+        }
+    }
+
+    @Override
+    public void store(final AgentConfiguration configuration, final MOServer server) throws IOException {
+        new DefaultMOPersistenceProvider(new MOServer[]{server}, getConfigurationFile(configuration).getPath()).store(null);
+    }
+
+    /**
+     * Returns the boot-counter file for the specified agent.
+     * <p>
+     * This file will be created in the same directory as the {@link com.oneandone.snmpman.configuration.AgentConfiguration#getWalk()} file.
+     *
+     * @param configuration the configuration of the agent
+     * @return the boot-counter file
+     */
+    public static File getBootCounterFile(final AgentConfiguration configuration) {
+        return new File(configuration.getWalk().getParentFile(), FilePersistence.encode(configuration.getName() + ".BC.cfg"));
+    }
+
+    /**
+     * Returns the configuration file for the specified agent.
+     * <p>
+     * This file will be created in the same directory as the {@link com.oneandone.snmpman.configuration.AgentConfiguration#getWalk()} file.
+     *
+     * @param configuration the configuration of the agent
+     * @return the configuration file
+     */
+    public static File getConfigurationFile(final AgentConfiguration configuration) {
+        return new File(configuration.getWalk().getParentFile(), FilePersistence.encode(configuration.getName() + ".Config.cfg"));
+    }
+
+    /**
+     * Translates a string into {@code x-www-form-urlencoded} format. The method uses the <i>UTF-8</i> encoding scheme.
+     *
+     * @param string {@code String} to be translated
+     * @return the translated {@code String}
+     */
+    private static String encode(final String string) {
+        try {
+            return URLEncoder.encode(string, "UTF-8");
+        } catch (final UnsupportedEncodingException e) {
+            log.error("UTF-8 encoding is unsupported");
+            return string;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.oneandone.snmpman.persistence;
+
+import com.oneandone.snmpman.configuration.AgentConfiguration;
+import org.snmp4j.agent.MOServer;
+import org.snmp4j.agent.io.DefaultMOInput;
+import org.snmp4j.agent.io.DefaultMOOutput;
+import org.snmp4j.agent.io.MOServerPersistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the state of the agents in memory only.
+ * <br>
+ * The state survives a restart of the agents with the same instance, but nothing is written to disk, so the agents can
+ * be started from read-only directories.
+ */
+public class MemoryPersistence implements AgentPersistence {
+
+    /** The state of the agents by name. */
+    final Map<String, AgentState> states = new ConcurrentHashMap<>();
+
+    @Override
+    public int updateEngineBoots(final AgentConfiguration configuration) {
+        final AgentState state = states.compute(configuration.getName(), (name, last) -> last == null
+                ? new AgentState(1, null) : new AgentState(nextEngineBoots(last.getEngineBoots()), last.getConfiguration()));
+        changed();
+        return state.getEngineBoots();
+    }
+
+    @Override
+    public void restore(final AgentConfiguration configuration, final MOServer server, final int importMode) throws IOException {
+        final AgentState state = states.get(configuration.getName());
+        if (state == null || state.getConfiguration() == null) {
+            return;
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(state.getConfiguration()))) {
+            final DefaultMOInput moInput = new DefaultMOInput(input);
+            moInput.setOverwriteMode(importMode);
+            new MOServerPersistence(new MOServer[]{server}).loadData(moInput);
+        }
+    }
+
+    @Override
+    public void store(final AgentConfiguration configuration, final MOServer server) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            new MOServerPersistence(new MOServer[]{server}).saveData(new DefaultMOOutput(output));
+        }
+        final byte[] stored = bytes.toByteArray();
+        states.compute(configuration.getName(), (name, last) -> new AgentState(last == null ? 0 : last.getEngineBoots(), stored));
+        changed();
+    }
+
+    /**
+     * Called after the state of an agent has changed.
+     */
+    void changed() {
+        // the state is only kept in memory
+    }
+
+    /**
+     * Returns the number of engine boots that follows the specified number.
+     * <br>
+     * The number of engine boots stays at its maximum value as required by RFC 3414.
+     *
+     * @param engineBoots the last number of engine boots
+     * @return the next number of engine boots
+     */
+    private static int nextEngineBoots(final int engineBoots) {
+        return engineBoots == Integer.MAX_VALUE ? engineBoots : Math.max(1, engineBoots + 1);
+    }
+
+    /** The immutable state of an agent. */
+    static final class AgentState {
+
+        /** The number of engine boots. */
+        private final int engineBoots;
+
+        /** The serialized configuration or {@code null} if no configuration has been stored. */
+        private final byte[] configuration;
+
+        /**
+         * Constructs a new state.
+         *
+         * @param engineBoots   the number of engine boots
+         * @param configuration the serialized configuration or {@code null}
+         */
+        AgentState(final int engineBoots, final byte[] configuration) {
+            this.engineBoots = engineBoots;
+            this.configuration = configuration;
+        }
+
+        /**
+         * Returns the number of engine boots.
+         *
+         * @return the number of engine boots
+         */
+        int getEngineBoots() {
+            return engineBoots;
+        }
+
+        /**
+         * Returns the serialized configuration.
+         *
+         * @return the serialized configuration or {@code null} if no configuration has been stored
+         */
+        byte[] getConfiguration() {
+            return configuration;
+        }
+    }
+}
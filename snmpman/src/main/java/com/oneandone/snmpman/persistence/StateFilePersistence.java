@@ -0,0 +1,155 @@
+package com.oneandone.snmpman.persistence;
+
+import com.google.common.base.Preconditions;
+import com.oneandone.snmpman.exception.InitializationException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persists the state of all agents in one file.
+ * <br>
+ * The state is kept in memory and written by {@link #flush()}, which the {@code Snmpman} calls once after all agents
+ * have been started and once after they have been stopped. The file is replaced atomically, so a crash while writing
+ * leaves the previous state intact.
+ */
+@Slf4j
+public final class StateFilePersistence extends MemoryPersistence {
+
+    /** The magic number at the beginning of a state file. */
+    private static final int MAGIC = 0x534D5354;
+
+    /** The version of the format of the state file. */
+    private static final int VERSION = 1;
+
+    /**
+     * Returns the file that contains the state of all agents.
+     *
+     * @return the state file
+     */
+    @Getter private final File file;
+
+    /** Flag that is {@code true} if the state has changed since the last flush. */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * Constructs a new instance with the state in the specified file.
+     * <br>
+     * The file is created on the first flush if it does not exist yet.
+     *
+     * @param file the state file
+     * @throws InitializationException thrown if the existing state file could not be read
+     */
+    public StateFilePersistence(final File file) {
+        Preconditions.checkNotNull(file, "the state file may not be null");
+        this.file = file;
+        if (file.isFile()) {
+            try (InputStream input = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+                states.putAll(read(input));
+            } catch (final IOException e) {
+                throw new InitializationException("could not read state file " + file.getAbsolutePath(), e);
+            }
+            log.debug("read the state of {} agents from {}", states.size(), file);
+        }
+    }
+
+    @Override
+    void changed() {
+        dirty.set(true);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        final Path target = file.getAbsoluteFile().toPath();
+        final Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                write(new HashMap<>(states), output);
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (final IOException | RuntimeException e) {
+            dirty.set(true);
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        log.debug("wrote the state of {} agents to {}", states.size(), file);
+    }
+
+    /**
+     * Reads the state of the agents.
+     *
+     * @param stream the stream to read from
+     * @return the state of the agents by name
+     * @throws IOException signals that the stream could not be read or is not a state file
+     */
+    static Map<String, AgentState> read(final InputStream stream) throws IOException {
+        final DataInputStream input = new DataInputStream(stream);
+        if (input.readInt() != MAGIC) {
+            throw new IOException("not a state file");
+        }
+        final int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported state file version " + version);
+        }
+        final int count = input.readInt();
+        final Map<String, AgentState> result = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            final String name = input.readUTF();
+            final int engineBoots = input.readInt();
+            final int length = input.readInt();
+            byte[] configuration = null;
+            if (length >= 0) {
+                configuration = new byte[length];
+                input.readFully(configuration);
+            }
+            result.put(name, new AgentState(engineBoots, configuration));
+        }
+        return result;
+    }
+
+    /**
+     * Writes the state of the agents.
+     *
+     * @param states the state of the agents by name
+     * @param stream the stream to write to
+     * @throws IOException signals that the stream could not be written
+     */
+    static void write(final Map<String, AgentState> states, final OutputStream stream) throws IOException {
+        final DataOutputStream output = new DataOutputStream(stream);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(states.size());
+        for (final Map.Entry<String, AgentState> entry : states.entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeInt(entry.getValue().getEngineBoots());
+            final byte[] configuration = entry.getValue().getConfiguration();
+            output.writeInt(configuration == null ? -1 : configuration.length);
+            if (configuration != null) {
+                output.write(configuration);
+            }
+        }
+        output.flush();
+    }
+}
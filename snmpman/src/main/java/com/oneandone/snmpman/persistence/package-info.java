@@ -0,0 +1,2 @@
+/** The backends that persist the engine boots and the configuration of the agents. */
+package com.oneandone.snmpman.persistence;
\ No newline at end of file
@@ -0,0 +1,482 @@
+package com.oneandone.snmpman.snmp;
+
+import com.google.common.base.Preconditions;
+import org.snmp4j.asn1.BEROutputStream;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Compact and immutable store of variable bindings sorted by {@code OID}.
+ * <br>
+ * The arcs of all {@code OID}s are packed into a single {@code int} array, the variables are kept in a parallel array
+ * and lookups use a binary search on the packed arcs. Arcs are compared as unsigned values just like by
+ * {@link OID#compareTo(org.snmp4j.smi.Variable)}.
+ * <br>
+ * Static variables, i.e. all variables that are not {@link Variable#isDynamic() dynamic}, are stored as
+ * {@link EncodedVariable} with their {@code BER} encoding packed into a single {@code byte} array. Responses can use
+ * the encoding without cloning or encoding the variable again.
+ * <br>
+ * A store may be a view on a range of another store, see {@link #subtree(OID)}, so groups of the same walk share
+ * the same arrays.
+ * <br>
+ * The dynamic variables and the bindings marked as private on construction are the private bindings of the store.
+ * A store may be shared by many agents as an immutable template, each agent then uses its own layer of private
+ * variables, see {@link #withPrivateVariables(BiFunction)}. The private variables are copied from the template on
+ * their first access, so an agent only holds the state of the bindings it has served.
+ */
+public final class BindingStore {
+
+    /** The store without bindings. */
+    public static final BindingStore EMPTY = new BindingStore(Collections.emptySortedMap());
+
+    /** The estimated size of the header of an object or an array on the heap in bytes. */
+    private static final int HEADER_SIZE = 16;
+
+    /** The estimated size of a reference on the heap in bytes. */
+    private static final int REFERENCE_SIZE = 8;
+
+    /** The estimated size of an {@link EncodedVariable} on the heap in bytes, without its encoding. */
+    private static final int ENCODED_VARIABLE_SIZE = 32;
+
+    /** The estimated size of a dynamic variable and the state of its modifiers on the heap in bytes. */
+    private static final int DYNAMIC_VARIABLE_SIZE = 96;
+
+    /** The packed arcs of all {@code OID}s. */
+    private final int[] arcs;
+
+    /** The start of the arcs of each {@code OID} in {@link #arcs}, followed by the end of the last {@code OID}. */
+    private final int[] offsets;
+
+    /** The variables by the index of their {@code OID}. */
+    private final Variable[] variables;
+
+    /** The number of bytes of the shared encoding buffer of the static variables. */
+    private final int encodedSize;
+
+    /** The index of the private variable of each binding or {@code -1} if the binding is shared. */
+    private final int[] slots;
+
+    /** The index of the binding of each private variable. */
+    private final int[] privateIndexes;
+
+    /** The private variables of the layer by their slot or {@code null} if this store is not a layer. */
+    private final AtomicReferenceArray<Variable> privateVariables;
+
+    /** Copies the private variable of a binding from the {@link #variables} or {@code null} if this store is not a layer. */
+    private final BiFunction<OID, Variable, Variable> copy;
+
+    /** The index of the first binding of this view. */
+    private final int from;
+
+    /** The index after the last binding of this view. */
+    private final int to;
+
+    /**
+     * Constructs a new store with the specified bindings.
+     *
+     * @param bindings the sorted bindings to store
+     */
+    public BindingStore(final SortedMap<OID, Variable> bindings) {
+        this(bindings, oid -> false);
+    }
+
+    /**
+     * Constructs a new store with the specified bindings, of which the dynamic bindings and the bindings matching the
+     * specified predicate are private.
+     * <br>
+     * Private bindings are neither encoded nor shared by the layers of the store.
+     *
+     * @param bindings  the sorted bindings to store
+     * @param isPrivate whether a static binding is private, e.g. because its value differs between agents
+     */
+    public BindingStore(final SortedMap<OID, Variable> bindings, final Predicate<OID> isPrivate) {
+        int arcCount = 0;
+        long encodedLength = 0;
+        int privateCount = 0;
+        this.slots = new int[bindings.size()];
+        int index = 0;
+        for (final Map.Entry<OID, Variable> binding : bindings.entrySet()) {
+            arcCount += binding.getKey().size();
+            if (binding.getValue().isDynamic() || isPrivate.test(binding.getKey())) {
+                slots[index] = privateCount++;
+            } else {
+                slots[index] = -1;
+                encodedLength += binding.getValue().getBERLength();
+            }
+            index++;
+        }
+        // variables that do not fit anymore are stored as they are
+        final ByteBuffer encodings = ByteBuffer.allocate((int) Math.min(encodedLength, Integer.MAX_VALUE - 8));
+        final BEROutputStream encodingStream = new BEROutputStream(encodings);
+        this.arcs = new int[arcCount];
+        this.offsets = new int[bindings.size() + 1];
+        this.variables = new Variable[bindings.size()];
+        this.privateIndexes = new int[privateCount];
+        index = 0;
+        int offset = 0;
+        for (final Map.Entry<OID, Variable> binding : bindings.entrySet()) {
+            final OID oid = binding.getKey();
+            System.arraycopy(oid.getValue(), 0, arcs, offset, oid.size());
+            offsets[index] = offset;
+            if (slots[index] < 0) {
+                variables[index] = encode(binding.getValue(), encodings, encodingStream);
+            } else {
+                variables[index] = binding.getValue();
+                privateIndexes[slots[index]] = index;
+            }
+            offset += oid.size();
+            index++;
+        }
+        offsets[index] = offset;
+        this.encodedSize = encodings.position();
+        this.from = 0;
+        this.to = index;
+        this.privateVariables = null;
+        this.copy = null;
+    }
+
+    /**
+     * Constructs a view on the bindings {@code [from, to)} of the specified store.
+     *
+     * @param store the store to share the arrays with
+     * @param from  the index of the first binding of the view
+     * @param to    the index after the last binding of the view
+     */
+    private BindingStore(final BindingStore store, final int from, final int to) {
+        this(store, from, to, store.privateVariables, store.copy);
+    }
+
+    /**
+     * Constructs a view on the bindings {@code [from, to)} of the specified store with the specified private variables.
+     *
+     * @param store            the store to share the arrays with
+     * @param from             the index of the first binding of the view
+     * @param to               the index after the last binding of the view
+     * @param privateVariables the private variables of the layer or {@code null}
+     * @param copy             copies the private variables of the layer or {@code null}
+     */
+    private BindingStore(final BindingStore store, final int from, final int to, final AtomicReferenceArray<Variable> privateVariables,
+                         final BiFunction<OID, Variable, Variable> copy) {
+        this.arcs = store.arcs;
+        this.offsets = store.offsets;
+        this.variables = store.variables;
+        this.encodedSize = store.encodedSize;
+        this.slots = store.slots;
+        this.privateIndexes = store.privateIndexes;
+        this.from = from;
+        this.to = to;
+        this.privateVariables = privateVariables;
+        this.copy = copy;
+    }
+
+    /**
+     * Returns a layer of this store with its own private variables.
+     * <br>
+     * The layer shares all arrays of this store. The private variable of a binding is created by the specified function
+     * from the {@code OID} and the variable of this store on its first access. Views on the layer share its private
+     * variables.
+     *
+     * @param copy creates the private variable of a binding from its {@code OID} and the variable of this store
+     * @return the layer with its own private variables
+     */
+    public BindingStore withPrivateVariables(final BiFunction<OID, Variable, Variable> copy) {
+        return new BindingStore(this, from, to, new AtomicReferenceArray<>(privateIndexes.length), copy);
+    }
+
+    /**
+     * Returns whether this store shares its bindings with the specified store, i.e. whether both are layers or views
+     * of the same store.
+     *
+     * @param store the other store
+     * @return {@code true} if both stores share their arrays
+     */
+    public boolean sharesBindings(final BindingStore store) {
+        return arcs == store.arcs;
+    }
+
+    /**
+     * Encodes a static variable into the shared encoding buffer.
+     *
+     * @param variable       the variable to encode
+     * @param encodings      the shared encoding buffer
+     * @param encodingStream the stream that writes into the buffer
+     * @return the encoded variable or the variable itself, if it is dynamic or could not be encoded
+     */
+    private static Variable encode(final Variable variable, final ByteBuffer encodings, final BEROutputStream encodingStream) {
+        if (variable.isDynamic()) {
+            return variable;
+        }
+        final int start = encodings.position();
+        try {
+            variable.encodeBER(encodingStream);
+        } catch (final IOException | RuntimeException e) {
+            encodings.position(start);
+            return variable;
+        }
+        return new EncodedVariable(encodings.array(), start, encodings.position() - start);
+    }
+
+    /**
+     * Returns the number of bindings in this store.
+     *
+     * @return the number of bindings
+     */
+    public int size() {
+        return to - from;
+    }
+
+    /**
+     * Returns the {@code OID} of the binding at the specified index.
+     * <br>
+     * A new {@code OID} instance will be created for each call.
+     *
+     * @param index the index of the binding
+     * @return the {@code OID} of the binding
+     */
+    public OID getOid(final int index) {
+        final int position = from + index;
+        return new OID(arcs, offsets[position], offsets[position + 1] - offsets[position]);
+    }
+
+    /**
+     * Returns the variable of the binding at the specified index.
+     *
+     * @param index the index of the binding
+     * @return the variable of the binding
+     */
+    public Variable getVariable(final int index) {
+        final int position = from + index;
+        final int slot = slots[position];
+        if (privateVariables == null || slot < 0) {
+            return variables[position];
+        }
+        return getPrivateVariable(slot);
+    }
+
+    /**
+     * Returns the number of private variables of this store, including those outside of this view.
+     *
+     * @return the number of private variables
+     */
+    public int getPrivateCount() {
+        return privateIndexes.length;
+    }
+
+    /**
+     * Returns the private variable of the specified slot and copies it first if it was not accessed before.
+     *
+     * @param slot the slot of the private variable
+     * @return the private variable of the layer or the variable of the template, if this store is not a layer
+     */
+    public Variable getPrivateVariable(final int slot) {
+        final int position = privateIndexes[slot];
+        if (privateVariables == null) {
+            return variables[position];
+        }
+        final Variable variable = privateVariables.get(slot);
+        if (variable != null) {
+            return variable;
+        }
+        final Variable copied = copy.apply(getOid(position - from), variables[position]);
+        return privateVariables.compareAndSet(slot, null, copied) ? copied : privateVariables.get(slot);
+    }
+
+    /**
+     * Replaces the private variable of the specified slot.
+     *
+     * @param slot     the slot of the private variable
+     * @param variable the new private variable
+     * @throws IllegalStateException if this store is not a layer
+     */
+    public void setPrivateVariable(final int slot, final Variable variable) {
+        Preconditions.checkState(privateVariables != null, "the store has no private variables");
+        privateVariables.set(slot, variable);
+    }
+
+    /**
+     * Returns the private variables that have been accessed so far.
+     *
+     * @return the private variables by slot, {@code null} for the variables that have not been copied yet
+     */
+    public Variable[] getPrivateVariables() {
+        final Variable[] result = new Variable[privateIndexes.length];
+        if (privateVariables != null) {
+            for (int slot = 0; slot < result.length; slot++) {
+                result[slot] = privateVariables.get(slot);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the variable bound to the specified {@code OID}.
+     *
+     * @param oid the {@code OID} to look up
+     * @return the variable or {@code null} if there is no binding for the {@code OID}
+     */
+    public Variable get(final OID oid) {
+        final int index = indexOf(oid);
+        return index >= 0 ? getVariable(index) : null;
+    }
+
+    /**
+     * Searches the specified {@code OID}.
+     *
+     * @param oid the {@code OID} to search
+     * @return the index of the binding, if it is contained, otherwise {@code (-(insertion point) - 1)}
+     */
+    public int indexOf(final OID oid) {
+        final int[] value = oid.getValue();
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = compare(middle, value);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle - from;
+            }
+        }
+        return -(low - from) - 1;
+    }
+
+    /**
+     * Returns the index of the first binding with an {@code OID} greater than (or equal to if {@code inclusive})
+     * the specified {@code OID}.
+     *
+     * @param oid       the lower bound
+     * @param inclusive whether a binding with the lower bound itself is included
+     * @return the index of the binding or {@link #size()} if there is none
+     */
+    public int ceilingIndex(final OID oid, final boolean inclusive) {
+        final int index = indexOf(oid);
+        if (index >= 0) {
+            return inclusive ? index : index + 1;
+        }
+        return -index - 1;
+    }
+
+    /**
+     * Returns a view on all bindings within the subtree of the specified {@code OID}.
+     * <br>
+     * The view shares the arrays of this store.
+     *
+     * @param root the root of the subtree
+     * @return the bindings of the subtree
+     */
+    public BindingStore subtree(final OID root) {
+        final int start = ceilingIndex(root, true);
+        int end = start;
+        while (from + end < to && isInSubtree(from + end, root.getValue())) {
+            end++;
+        }
+        return new BindingStore(this, from + start, from + end);
+    }
+
+    /**
+     * Returns the dynamic variables of this store in the order of their {@code OID}s.
+     * <br>
+     * The dynamic variables, e.g. the {@code ModifiedVariable} instances, carry the state of their modifiers. The
+     * dynamic variables of a layer are its private variables, which will be copied if not done yet.
+     *
+     * @return the dynamic variables
+     */
+    public List<Variable> getDynamicVariables() {
+        final List<Variable> result = new ArrayList<>();
+        for (int position = from; position < to; position++) {
+            if (variables[position].isDynamic()) {
+                result.add(getVariable(position - from));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an estimate of the heap memory retained by this store.
+     * <br>
+     * The estimate includes all arrays of the store, even if this store is a view on a range of them. It does not
+     * include the {@code OID}s and variables of the walk the store was created from, which may be shared by other
+     * stores. The estimate of a layer only includes its private variables, as the arrays are shared with its template.
+     *
+     * @return the estimated size in bytes
+     */
+    public long getMemorySize() {
+        if (privateVariables != null) {
+            long size = 2L * HEADER_SIZE + (long) REFERENCE_SIZE * privateVariables.length();
+            for (int slot = 0; slot < privateVariables.length(); slot++) {
+                if (privateVariables.get(slot) != null) {
+                    size += DYNAMIC_VARIABLE_SIZE;
+                }
+            }
+            return size;
+        }
+        long size = 6L * HEADER_SIZE + 4L * arcs.length + 4L * offsets.length + 4L * slots.length + 4L * privateIndexes.length
+                + (long) REFERENCE_SIZE * variables.length + encodedSize;
+        for (final Variable variable : variables) {
+            size += variable instanceof EncodedVariable ? ENCODED_VARIABLE_SIZE : DYNAMIC_VARIABLE_SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * Compares the {@code OID} at the specified position with the specified arcs.
+     *
+     * @param position the absolute position of the binding
+     * @param value    the arcs to compare with
+     * @return a negative value, zero or a positive value if the {@code OID} is less than, equal to or greater than the
+     * arcs
+     */
+    private int compare(final int position, final int[] value) {
+        final int start = offsets[position];
+        final int length = offsets[position + 1] - start;
+        final int min = Math.min(length, value.length);
+        for (int i = 0; i < min; i++) {
+            if (arcs[start + i] != value[i]) {
+                return Integer.compareUnsigned(arcs[start + i], value[i]);
+            }
+        }
+        return length - value.length;
+    }
+
+    /**
+     * Checks whether the {@code OID} at the specified position starts with the specified arcs.
+     *
+     * @param position the absolute position of the binding
+     * @param root     the arcs of the root
+     * @return {@code true} if the {@code OID} is within the subtree of the root
+     */
+    private boolean isInSubtree(final int position, final int[] root) {
+        final int start = offsets[position];
+        if (offsets[position + 1] - start < root.length) {
+            return false;
+        }
+        for (int i = 0; i < root.length; i++) {
+            if (arcs[start + i] != root[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "BindingStore[" +
+                "size=" + size() +
+                (size() > 0 ? ", first=" + getOid(0) + ", last=" + getOid(size() - 1) : "") +
+                ']';
+    }
+}
@@ -0,0 +1,84 @@
+package com.oneandone.snmpman.snmp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.security.SecurityLevel;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.UdpTransportMapping;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Receives the requests of datagram channels in buffers that are reused for all requests.
+ * <br>
+ * An instance is used by a single receiving thread, which may serve the channels of several transport mappings.
+ */
+@Slf4j
+final class DatagramReceiver {
+
+    /** The buffer the requests are received in. */
+    private final ByteBuffer buffer;
+
+    /**
+     * The array the received requests are copied to.
+     * <br>
+     * The message processing models require array-backed buffers.
+     */
+    private final byte[] message;
+
+    /**
+     * Constructs a new receiver.
+     *
+     * @param maxMessageSize the maximum size of a received request
+     */
+    DatagramReceiver(final int maxMessageSize) {
+        this.buffer = ByteBuffer.allocateDirect(maxMessageSize);
+        this.message = new byte[maxMessageSize];
+    }
+
+    /**
+     * Receives a request from the specified channel of a transport mapping and passes it to the listener.
+     * <br>
+     * The request is passed in the reused array, unless the mapping supports asynchronous message processing.
+     *
+     * @param mapping  the transport mapping the channel belongs to
+     * @param channel  the channel to receive from
+     * @param listener the listener of the transport mapping, usually its {@code fireProcessMessage} method
+     * @return {@code true} if a request was received, {@code false} if a non-blocking channel had no request
+     * @throws IOException if the request could not be received
+     */
+    boolean receive(final UdpTransportMapping mapping, final DatagramChannel channel, final Listener listener) throws IOException {
+        buffer.clear();
+        final InetSocketAddress source = (InetSocketAddress) channel.receive(buffer);
+        if (source == null) {
+            return false;
+        }
+        buffer.flip();
+        final int length = buffer.remaining();
+        final byte[] bytes = mapping.isAsyncMsgProcessingSupported() ? new byte[length] : message;
+        buffer.get(bytes, 0, length);
+
+        final UdpAddress sourceAddress = new UdpAddress(source.getAddress(), source.getPort());
+        log.trace("received message from {} with length {}", sourceAddress, length);
+        listener.processMessage(sourceAddress, ByteBuffer.wrap(bytes, 0, length), new TransportStateReference(
+                mapping, mapping.getListenAddress(), null, SecurityLevel.undefined, SecurityLevel.undefined, false, channel));
+        return true;
+    }
+
+    /** The listener a received request is passed to. */
+    @FunctionalInterface
+    interface Listener {
+
+        /**
+         * Processes a received request.
+         *
+         * @param sourceAddress    the address the request was received from
+         * @param message          the request
+         * @param tmStateReference the state reference with the channel as session
+         */
+        void processMessage(UdpAddress sourceAddress, ByteBuffer message, TransportStateReference tmStateReference);
+    }
+}
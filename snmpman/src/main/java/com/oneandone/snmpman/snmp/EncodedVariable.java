@@ -0,0 +1,178 @@
+package com.oneandone.snmpman.snmp;
+
+import org.snmp4j.asn1.BERInputStream;
+import org.snmp4j.asn1.BEROutputStream;
+import org.snmp4j.smi.AbstractVariable;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Variable that holds the {@code BER} encoding of a static value.
+ * <br>
+ * The encoding is written into responses as it is, so a request does not have to re-encode the value. All other
+ * methods decode the value on demand.
+ * <br>
+ * The encoding is a range of an array that may be shared with other instances, see {@link BindingStore}. The array is
+ * never modified: {@link #clone()} returns a copy that refers to the same range, and an instance that is modified by
+ * {@link #decodeBER(BERInputStream)} or {@link #fromSubIndex(OID, boolean)} holds the new encoding in an array of its
+ * own. A copy can therefore be modified without changing the bindings of the store.
+ */
+final class EncodedVariable extends AbstractVariable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The array that contains the encoding. */
+    private byte[] encoding;
+
+    /** The index of the first byte of the encoding. */
+    private int offset;
+
+    /** The length of the encoding. */
+    private int length;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param encoding the array that contains the encoding, it must not be modified afterwards
+     * @param offset   the index of the first byte of the encoding
+     * @param length   the length of the encoding
+     */
+    EncodedVariable(final byte[] encoding, final int offset, final int length) {
+        this.encoding = encoding;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Decodes the value.
+     *
+     * @return a new instance of the value
+     */
+    Variable decode() {
+        try {
+            return AbstractVariable.createFromBER(new BERInputStream(ByteBuffer.wrap(encoding, offset, length)));
+        } catch (final IOException e) {
+            throw new IllegalStateException("could not decode variable", e);
+        }
+    }
+
+    @Override
+    public int getSyntax() {
+        return encoding[offset] & 0xFF;
+    }
+
+    @Override
+    public int getBERLength() {
+        return length;
+    }
+
+    @Override
+    public int getBERPayloadLength() {
+        return decode().getBERPayloadLength();
+    }
+
+    @Override
+    public void encodeBER(final OutputStream outputStream) throws IOException {
+        outputStream.write(encoding, offset, length);
+    }
+
+    /**
+     * Replaces the encoding with the encoding of the specified variable.
+     *
+     * @param variable the new value
+     */
+    private void setEncoding(final Variable variable) {
+        final ByteBuffer buffer = ByteBuffer.allocate(variable.getBERLength());
+        try {
+            variable.encodeBER(new BEROutputStream(buffer));
+        } catch (final IOException e) {
+            throw new IllegalStateException("could not encode variable", e);
+        }
+        this.encoding = buffer.array();
+        this.offset = 0;
+        this.length = encoding.length;
+    }
+
+    @Override
+    public void decodeBER(final BERInputStream inputStream) throws IOException {
+        final Variable variable = AbstractVariable.createFromBER(inputStream);
+        if (variable.getSyntax() != getSyntax()) {
+            throw new IOException("Wrong type encountered: " + variable.getSyntax());
+        }
+        setEncoding(variable);
+    }
+
+    /**
+     * Returns a copy that refers to the same encoding.
+     * <br>
+     * {@link org.snmp4j.smi.VariableBinding} clones each variable of a response, so the copy neither decodes nor
+     * re-encodes the value.
+     *
+     * @return a new instance with the same encoding
+     */
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Object clone() {
+        return new EncodedVariable(encoding, offset, length);
+    }
+
+    /**
+     * Returns whether the specified object is an encoded variable with the same encoding.
+     * <br>
+     * An encoded variable never equals a decoded value, as the decoded value would not equal the encoded variable.
+     * Use {@link #decode()} to compare the value.
+     *
+     * @param o the object to compare with
+     * @return {@code true} if the encodings are equal
+     */
+    @Override
+    public boolean equals(final Object o) {
+        if (o instanceof EncodedVariable) {
+            final EncodedVariable other = (EncodedVariable) o;
+            return Arrays.equals(encoding, offset, offset + length, other.encoding, other.offset, other.offset + other.length);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return decode().hashCode();
+    }
+
+    @Override
+    public int compareTo(final Variable variable) {
+        return decode().compareTo(variable instanceof EncodedVariable ? ((EncodedVariable) variable).decode() : variable);
+    }
+
+    @Override
+    public String toString() {
+        return decode().toString();
+    }
+
+    @Override
+    public int toInt() {
+        return decode().toInt();
+    }
+
+    @Override
+    public long toLong() {
+        return decode().toLong();
+    }
+
+    @Override
+    public OID toSubIndex(final boolean impliedLength) {
+        return decode().toSubIndex(impliedLength);
+    }
+
+    @Override
+    public void fromSubIndex(final OID subIndex, final boolean impliedLength) {
+        final Variable variable = decode();
+        variable.fromSubIndex(subIndex, impliedLength);
+        setEncoding(variable);
+    }
+}
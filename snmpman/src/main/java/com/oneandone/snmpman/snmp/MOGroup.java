@@ -1,26 +1,56 @@
 package com.oneandone.snmpman.snmp;
 
+import com.google.common.base.Preconditions;
 import lombok.extern.slf4j.Slf4j;
 import org.snmp4j.agent.DefaultMOScope;
+import org.snmp4j.agent.MOContextScope;
 import org.snmp4j.agent.MOScope;
 import org.snmp4j.agent.ManagedObject;
 import org.snmp4j.agent.request.SubRequest;
 import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.smi.Null;
 import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
 import org.snmp4j.smi.Variable;
 
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 @Slf4j
 public class MOGroup implements ManagedObject {
 
     /**
-     * Sorted map of the variable bindings for this group.
+     * The name of the default context.
      */
-    private final SortedMap<OID, Variable> variableBindings;
+    private static final OctetString DEFAULT_CONTEXT = new OctetString();
+
+    /**
+     * The immutable variable bindings for this group.
+     * <br>
+     * The bindings may be replaced, e.g. by {@link BindingStore#EMPTY} while the data of an agent is evicted. The
+     * {@link #overlays} are kept.
+     */
+    private volatile BindingStore variableBindings;
+
+    /**
+     * The bindings that differ from {@link #variableBindings} by context name, or {@code null} if this group does not
+     * distinguish contexts.
+     * <br>
+     * The map may be shared between groups and contain bindings outside of the {@link #scope}. A {@code null} value
+     * removes the binding from the context. Contexts that are not contained do not have any bindings.
+     */
+    private volatile Map<OctetString, NavigableMap<OID, Variable>> contextBindings;
+
+    /**
+     * The bindings changed by {@code SET} requests by context name, which take precedence over all other bindings.
+     */
+    private final Map<OctetString, ConcurrentNavigableMap<OID, Variable>> overlays = new ConcurrentHashMap<>();
 
     /**
      * The root {@code OID} for this group.
@@ -36,29 +66,95 @@ public class MOGroup implements ManagedObject {
      * Constructs a new instance of this class.
      * <br>
      * The specified {@code OID} and variable will be set as the only data stored
-     * in the map of {@link #variableBindings}.
+     * in the {@link #variableBindings}.
      *
      * @param root     the root {@code OID}
      * @param oid      the {@code OID} for a variable binding
      * @param variable the variable of the variable binding
      */
     public MOGroup(final OID root, final OID oid, final Variable variable) {
-        this.root = root;
-        this.scope = new DefaultMOScope(root, true, root.nextPeer(), false);
-        this.variableBindings = new TreeMap<>();
-        this.variableBindings.put(oid, variable);
+        this(root, new BindingStore(new TreeMap<>(Collections.singletonMap(oid, variable))));
     }
 
     /**
      * Constructs a new instance of this class.
+     * <br>
+     * The specified map will be copied into a {@link BindingStore}.
      *
      * @param root             the root {@code OID}
      * @param variableBindings the map of variable bindings for this instance
      */
     public MOGroup(final OID root, final SortedMap<OID, Variable> variableBindings) {
+        this(root, new BindingStore(variableBindings));
+    }
+
+    /**
+     * Constructs a new instance of this class.
+     *
+     * @param root             the root {@code OID}
+     * @param variableBindings the variable bindings for this instance
+     */
+    public MOGroup(final OID root, final BindingStore variableBindings) {
+        this(root, variableBindings, null);
+    }
+
+    /**
+     * Constructs a new instance of this class, that serves multiple contexts.
+     * <br>
+     * All contexts share the specified variable bindings, only the bindings that differ by context are looked up in
+     * the map of context bindings. The group is meant to be registered for all contexts.
+     *
+     * @param root             the root {@code OID}
+     * @param variableBindings the variable bindings shared by all contexts
+     * @param contextBindings  the bindings that differ by context name, a {@code null} value removes the binding from
+     *                         the context, contexts that are not contained do not have any bindings
+     */
+    public MOGroup(final OID root, final BindingStore variableBindings, final Map<OctetString, NavigableMap<OID, Variable>> contextBindings) {
         this.root = root;
         this.scope = new DefaultMOScope(root, true, root.nextPeer(), false);
         this.variableBindings = variableBindings;
+        this.contextBindings = contextBindings;
+    }
+
+    /**
+     * Returns the root {@code OID} for this group.
+     *
+     * @return the root {@code OID}
+     */
+    public OID getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the variable bindings that are shared by all contexts.
+     *
+     * @return the variable bindings
+     */
+    public BindingStore getVariableBindings() {
+        return variableBindings;
+    }
+
+    /**
+     * Replaces the variable bindings that are shared by all contexts.
+     * <br>
+     * The bindings of the contexts and the bindings changed by {@code SET} requests are kept.
+     *
+     * @param variableBindings the new variable bindings, which should be within the subtree of the {@link #root}
+     */
+    public void setVariableBindings(final BindingStore variableBindings) {
+        this.variableBindings = variableBindings;
+    }
+
+    /**
+     * Replaces the bindings that differ by context name, e.g. after the overlays of the walk changed.
+     *
+     * @param contextBindings the bindings that differ by context name, a {@code null} value removes the binding from
+     *                        the context, contexts that are not contained do not have any bindings
+     * @throws IllegalStateException if this group does not distinguish contexts
+     */
+    public void setContextBindings(final Map<OctetString, NavigableMap<OID, Variable>> contextBindings) {
+        Preconditions.checkState(this.contextBindings != null, "the group does not distinguish contexts");
+        this.contextBindings = contextBindings;
     }
 
     @Override
@@ -68,24 +164,13 @@ public class MOGroup implements ManagedObject {
 
     @Override
     public OID find(final MOScope range) {
-        final SortedMap<OID, Variable> tail = variableBindings.tailMap(range.getLowerBound());
-        final OID first = tail.firstKey();
-        if (range.getLowerBound().equals(first) && !range.isLowerIncluded()) {
-            if (tail.size() > 1) {
-                final Iterator<OID> it = tail.keySet().iterator();
-                it.next();
-                return it.next();
-            }
-        } else {
-            return first;
-        }
-        return null;
+        return findNext(getContext(range), range.getLowerBound(), range.isLowerIncluded());
     }
 
     @Override
     public void get(final SubRequest request) {
         final OID oid = request.getVariableBinding().getOid();
-        final Variable variable = variableBindings.get(oid);
+        final Variable variable = getVariable(getContext(request), oid);
         if (variable == null) {
             request.getVariableBinding().setVariable(Null.noSuchInstance);
         } else {
@@ -97,19 +182,10 @@ public class MOGroup implements ManagedObject {
     @Override
     public boolean next(final SubRequest request) {
         final MOScope scope = request.getQuery().getScope();
-        final SortedMap<OID, Variable> tail = variableBindings.tailMap(scope.getLowerBound());
-        OID first = tail.firstKey();
-        if (scope.getLowerBound().equals(first) && !scope.isLowerIncluded()) {
-            if (tail.size() > 1) {
-                final Iterator<OID> it = tail.keySet().iterator();
-                it.next();
-                first = it.next();
-            } else {
-                return false;
-            }
-        }
+        final OctetString context = getContext(scope);
+        final OID first = findNext(context, scope.getLowerBound(), scope.isLowerIncluded());
         if (first != null) {
-            final Variable variable = variableBindings.get(first);
+            final Variable variable = getVariable(context, first);
             // TODO remove try / catch if no more errors occur
             // TODO add configuration check with types though (e.g. UInt32 == UInt32 Modifier?)
             try {
@@ -130,6 +206,124 @@ public class MOGroup implements ManagedObject {
         return false;
     }
 
+    /**
+     * Returns the context name of the specified scope.
+     *
+     * @param scope the scope of a query
+     * @return the context name, the default context if the scope has no context or this group does not distinguish
+     * contexts
+     */
+    private OctetString getContext(final MOScope scope) {
+        if (contextBindings == null || !(scope instanceof MOContextScope) || ((MOContextScope) scope).getContext() == null) {
+            return DEFAULT_CONTEXT;
+        }
+        return ((MOContextScope) scope).getContext();
+    }
+
+    /**
+     * Returns the context name of the specified request.
+     *
+     * @param request the request
+     * @return the context name, the default context if the request has no context or this group does not distinguish
+     * contexts
+     */
+    private OctetString getContext(final SubRequest request) {
+        return request.getQuery() == null ? DEFAULT_CONTEXT : getContext(request.getQuery().getScope());
+    }
+
+    /**
+     * Returns the current variable of the specified {@code OID}.
+     *
+     * @param context the context name
+     * @param oid     the {@code OID} to look up
+     * @return the variable or {@code null} if there is no binding for the {@code OID}
+     */
+    private Variable getVariable(final OctetString context, final OID oid) {
+        final ConcurrentNavigableMap<OID, Variable> overlay = overlays.get(context);
+        final Variable changed = overlay != null ? overlay.get(oid) : null;
+        if (changed != null) {
+            return changed;
+        }
+        final Map<OctetString, NavigableMap<OID, Variable>> contextBindings = this.contextBindings;
+        if (contextBindings != null) {
+            final NavigableMap<OID, Variable> bindings = contextBindings.get(context);
+            if (bindings == null) {
+                return null;
+            }
+            if (bindings.containsKey(oid)) {
+                return bindings.get(oid);
+            }
+        }
+        return variableBindings.get(oid);
+    }
+
+    /**
+     * Returns the first {@code OID} of this group after the specified lower bound.
+     *
+     * @param context       the context name
+     * @param lowerBound    the lower bound
+     * @param lowerIncluded whether the lower bound itself may be returned
+     * @return the first {@code OID} or {@code null} if there is none
+     */
+    private OID findNext(final OctetString context, final OID lowerBound, final boolean lowerIncluded) {
+        final Map<OctetString, NavigableMap<OID, Variable>> contextBindings = this.contextBindings;
+        final NavigableMap<OID, Variable> bindings = contextBindings != null ? contextBindings.get(context) : null;
+        OID next = null;
+        if (contextBindings == null || bindings != null) {
+            final BindingStore store = variableBindings;
+            for (int index = store.ceilingIndex(lowerBound, lowerIncluded); index < store.size(); index++) {
+                final OID oid = store.getOid(index);
+                if (bindings == null || !bindings.containsKey(oid)) {
+                    next = oid;
+                    break;
+                }
+            }
+            if (bindings != null && !bindings.isEmpty()) {
+                next = min(next, findNextContextBinding(bindings, lowerBound, lowerIncluded));
+            }
+        }
+        final ConcurrentNavigableMap<OID, Variable> overlay = overlays.get(context);
+        if (overlay != null && !overlay.isEmpty()) {
+            next = min(next, lowerIncluded ? overlay.ceilingKey(lowerBound) : overlay.higherKey(lowerBound));
+        }
+        return next;
+    }
+
+    /**
+     * Returns the first {@code OID} of the context bindings within this group after the specified lower bound.
+     *
+     * @param bindings      the bindings of the context
+     * @param lowerBound    the lower bound
+     * @param lowerIncluded whether the lower bound itself may be returned
+     * @return the first {@code OID} or {@code null} if there is none
+     */
+    private OID findNextContextBinding(final NavigableMap<OID, Variable> bindings, final OID lowerBound, final boolean lowerIncluded) {
+        final SortedMap<OID, Variable> tail = lowerBound.compareTo(root) < 0 ? bindings.tailMap(root, true) : bindings.tailMap(lowerBound, lowerIncluded);
+        for (final Map.Entry<OID, Variable> binding : tail.entrySet()) {
+            if (!binding.getKey().startsWith(root)) {
+                return null;
+            }
+            if (binding.getValue() != null) {
+                return binding.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the smaller of two {@code OID}s.
+     *
+     * @param first  the first {@code OID} or {@code null}
+     * @param second the second {@code OID} or {@code null}
+     * @return the smaller {@code OID} or {@code null} if both are {@code null}
+     */
+    private static OID min(final OID first, final OID second) {
+        if (first == null || (second != null && second.compareTo(first) < 0)) {
+            return second;
+        }
+        return first;
+    }
+
     /**
      * Sets UnDo-Value for the OID to SubRequest which is replaced when commit fails.
      *
@@ -138,7 +332,8 @@ public class MOGroup implements ManagedObject {
     @Override
     public void prepare(SubRequest request) {
         OID oid = request.getVariableBinding().getOid();
-        request.setUndoValue(variableBindings.get(oid));
+        final Variable variable = getVariable(getContext(request), oid);
+        request.setUndoValue(variable instanceof EncodedVariable ? ((EncodedVariable) variable).decode() : variable);
         request.getStatus().setPhaseComplete(true);
     }
 
@@ -153,8 +348,10 @@ public class MOGroup implements ManagedObject {
     public void commit(final SubRequest request) {
         Variable newValue = request.getVariableBinding().getVariable();
         OID oid = request.getVariableBinding().getOid();
-        if (variableBindings.getOrDefault(oid, newValue).getSyntax() == newValue.getSyntax()) {
-            variableBindings.put(oid, newValue);
+        final OctetString context = getContext(request);
+        final Variable oldValue = getVariable(context, oid);
+        if (oldValue == null || oldValue.getSyntax() == newValue.getSyntax()) {
+            overlays.computeIfAbsent(context, key -> new ConcurrentSkipListMap<>()).put(oid, newValue);
         } else {
             request.getStatus().setErrorStatus(SnmpConstants.SNMP_ERROR_INCONSISTENT_VALUE);
         }
@@ -169,10 +366,11 @@ public class MOGroup implements ManagedObject {
      */
     @Override
     public void undo(final SubRequest request) {
+        final ConcurrentNavigableMap<OID, Variable> overlay = overlays.computeIfAbsent(getContext(request), key -> new ConcurrentSkipListMap<>());
         if (request.getUndoValue() instanceof Variable) {
-            variableBindings.put(request.getVariableBinding().getOid(), (Variable) request.getUndoValue());
+            overlay.put(request.getVariableBinding().getOid(), (Variable) request.getUndoValue());
         } else {
-            variableBindings.remove(request.getVariableBinding().getOid());
+            overlay.remove(request.getVariableBinding().getOid());
         }
         request.getStatus().setPhaseComplete(true);
     }
@@ -186,6 +384,7 @@ public class MOGroup implements ManagedObject {
     public String toString() {
         return "MOGroup[" +
                 "variableBindings=" + variableBindings +
+                ", overlays=" + overlays +
                 ", root=" + root +
                 ", scope=" + scope +
                 ']';
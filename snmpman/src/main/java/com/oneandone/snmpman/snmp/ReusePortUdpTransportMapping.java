@@ -0,0 +1,283 @@
+package com.oneandone.snmpman.snmp;
+
+import com.google.common.base.Preconditions;
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.SNMP4JSettings;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.UdpTransportMapping;
+import org.snmp4j.util.WorkerTask;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A UDP transport mapping that receives the requests of one address in several threads.
+ * <br>
+ * The {@link org.snmp4j.transport.DefaultUdpTransportMapping} receives and decodes all requests of an agent in a
+ * single thread. This mapping opens one {@link DatagramChannel} for each receiver, all bound to the same address with
+ * {@link StandardSocketOptions#SO_REUSEPORT}, so the operating system distributes the requests among the receivers.
+ * Each receiver has its own thread and reuses its buffers for all requests.
+ * <br>
+ * If the operating system does not support {@code SO_REUSEPORT}, all receivers share a single channel. The receiving
+ * is serialized then, but the decoding of the requests is still done concurrently.
+ * <br>
+ * {@code SO_REUSEPORT} would also let two misconfigured agents or a second process bind the same address silently and
+ * split its requests. Like a plain datagram socket, {@link #listen()} fails instead: the address is reserved in a
+ * registry of this process and probed with an exclusive channel before the channels of the receivers are bound.
+ */
+@Slf4j
+public class ReusePortUdpTransportMapping extends UdpTransportMapping {
+
+    /** The addresses of the listening mappings of this process. */
+    private static final Set<InetSocketAddress> BOUND_ADDRESSES = ConcurrentHashMap.newKeySet();
+
+    /** The number of receivers. */
+    private final int receiverCount;
+
+    /** The channels of the receivers or {@code null} if this mapping is not listening. */
+    private volatile DatagramChannel[] channels;
+
+    /** The threads of the receivers or {@code null} if this mapping is not listening. */
+    private WorkerTask[] receivers;
+
+    /**
+     * Constructs a new transport mapping.
+     *
+     * @param udpAddress    the address to listen on
+     * @param receiverCount the number of receivers
+     */
+    public ReusePortUdpTransportMapping(final UdpAddress udpAddress, final int receiverCount) {
+        super(udpAddress);
+        Preconditions.checkArgument(receiverCount > 0, "the number of receivers has to be positive, but is %s", receiverCount);
+        this.receiverCount = receiverCount;
+        // the message dispatcher decodes each message before the next one is received, so the buffers can be reused
+        this.asyncMsgProcessingSupported = false;
+    }
+
+    /**
+     * Returns whether the channels of the receivers are bound with {@code SO_REUSEPORT}.
+     *
+     * @return {@code true} if the operating system supports {@code SO_REUSEPORT} for datagram channels
+     */
+    public static boolean isReusePortSupported() {
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of receivers.
+     *
+     * @return the number of receivers
+     */
+    public int getReceiverCount() {
+        return receiverCount;
+    }
+
+    /**
+     * Returns the number of open channels.
+     *
+     * @return the number of open channels or {@code 0} if this mapping is not listening
+     */
+    public int getChannelCount() {
+        final DatagramChannel[] current = channels;
+        return current == null ? 0 : current.length;
+    }
+
+    @Override
+    public synchronized void listen() throws IOException {
+        if (channels != null) {
+            throw new SocketException("port already listening");
+        }
+        final boolean reusePort = receiverCount > 1 && isReusePortSupported();
+        if (receiverCount > 1 && !reusePort) {
+            log.warn("SO_REUSEPORT is not supported, the {} receivers of {} share one channel", receiverCount, udpAddress);
+        }
+
+        final InetSocketAddress address = new InetSocketAddress(udpAddress.getInetAddress(), udpAddress.getPort());
+        if (!BOUND_ADDRESSES.add(address)) {
+            throw new BindException("address " + udpAddress + " is already in use by another agent");
+        }
+        final DatagramChannel[] opened = new DatagramChannel[reusePort ? receiverCount : 1];
+        try {
+            if (reusePort) {
+                // fails if any other socket, even one with SO_REUSEPORT of another process, is bound to the address
+                openChannel(false).close();
+            }
+            for (int i = 0; i < opened.length; i++) {
+                opened[i] = openChannel(reusePort);
+            }
+        } catch (final IOException e) {
+            closeChannels(opened);
+            BOUND_ADDRESSES.remove(address);
+            throw e;
+        }
+        channels = opened;
+
+        receivers = new WorkerTask[receiverCount];
+        for (int i = 0; i < receiverCount; i++) {
+            receivers[i] = SNMP4JSettings.getThreadFactory().createWorkerThread(
+                    "ReusePortUdpTransportMapping_" + getAddress() + "-" + i, new Receiver(opened[i % opened.length]), true);
+            receivers[i].run();
+        }
+        listenWorkerTask = receivers[0];
+    }
+
+    /**
+     * Opens a channel bound to the address of this mapping.
+     *
+     * @param reusePort {@code true} to bind the channel with {@code SO_REUSEPORT}
+     * @return the bound channel
+     * @throws IOException if the channel could not be opened or bound
+     */
+    private DatagramChannel openChannel(final boolean reusePort) throws IOException {
+        final DatagramChannel channel = udpAddress.getInetAddress() instanceof Inet6Address
+                ? DatagramChannel.open(StandardProtocolFamily.INET6) : DatagramChannel.open(StandardProtocolFamily.INET);
+        try {
+            if (reusePort) {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            channel.bind(new InetSocketAddress(udpAddress.getInetAddress(), udpAddress.getPort()));
+            return channel;
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isListening() {
+        return channels != null;
+    }
+
+    @Override
+    public void sendMessage(final UdpAddress targetAddress, final byte[] message, final TransportStateReference tmStateReference,
+                            final long timeoutMillis, final int maxRetries) throws IOException {
+        DatagramChannel channel = tmStateReference == null || !(tmStateReference.getSessionID() instanceof DatagramChannel)
+                ? null : (DatagramChannel) tmStateReference.getSessionID();
+        if (channel == null || !channel.isOpen()) {
+            final DatagramChannel[] current = channels;
+            if (current == null) {
+                throw new SocketException("transport mapping of " + udpAddress + " is not listening");
+            }
+            channel = current[0];
+        }
+        log.trace("sending message to {} with length {}", targetAddress, message.length);
+        channel.send(ByteBuffer.wrap(message), new InetSocketAddress(targetAddress.getInetAddress(), targetAddress.getPort()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        final WorkerTask[] stopped;
+        synchronized (this) {
+            if (channels == null) {
+                return;
+            }
+            for (final WorkerTask receiver : receivers) {
+                receiver.terminate();
+            }
+            closeChannels(channels);
+            BOUND_ADDRESSES.remove(new InetSocketAddress(udpAddress.getInetAddress(), udpAddress.getPort()));
+            stopped = receivers;
+            channels = null;
+            receivers = null;
+            listenWorkerTask = null;
+        }
+        for (final WorkerTask receiver : stopped) {
+            try {
+                receiver.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closes the specified channels.
+     *
+     * @param toClose the channels to close, which may contain {@code null} elements
+     */
+    private static void closeChannels(final DatagramChannel[] toClose) {
+        for (final DatagramChannel channel : toClose) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (final IOException e) {
+                    log.warn("could not close channel " + channel, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A receiver that reads the requests of one channel and passes them to the transport listeners.
+     */
+    private final class Receiver implements WorkerTask {
+
+        /** The channel to read from. */
+        private final DatagramChannel channel;
+
+        /** The receiver of the requests with the buffers of this receiver. */
+        private final DatagramReceiver receiver = new DatagramReceiver(getMaxInboundMessageSize());
+
+        /** The listener the requests are passed to. */
+        private final DatagramReceiver.Listener listener = ReusePortUdpTransportMapping.this::fireProcessMessage;
+
+        /** Whether this receiver was terminated. */
+        private volatile boolean stop;
+
+        /**
+         * Constructs a new receiver.
+         *
+         * @param channel the channel to read from
+         */
+        private Receiver(final DatagramChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            while (!stop) {
+                try {
+                    receiver.receive(ReusePortUdpTransportMapping.this, channel, listener);
+                } catch (final ClosedChannelException e) {
+                    stop = true;
+                } catch (final IOException | RuntimeException e) {
+                    if (!stop) {
+                        log.warn("could not process message received on " + udpAddress, e);
+                    }
+                }
+            }
+            log.trace("receiver of {} stopped", udpAddress);
+        }
+
+        @Override
+        public void terminate() {
+            stop = true;
+        }
+
+        @Override
+        public void join() {
+            // the thread is joined by the worker thread
+        }
+
+        @Override
+        public void interrupt() {
+            stop = true;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.oneandone.snmpman.snmp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.UdpTransportMapping;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * A UDP transport mapping without a thread of its own.
+ * <br>
+ * The {@link org.snmp4j.transport.DefaultUdpTransportMapping} of each agent blocks a listener thread of its own in
+ * receiving requests. The channel of this mapping is served by a {@link SharedSelectorLoop} instead, which receives
+ * the requests of the channels of many agents in a few threads.
+ */
+@Slf4j
+public class SelectorUdpTransportMapping extends UdpTransportMapping {
+
+    /** The loop that receives the requests of this mapping. */
+    private final SharedSelectorLoop selectorLoop;
+
+    /** The channel of this mapping or {@code null} if this mapping is not listening. */
+    private volatile DatagramChannel channel;
+
+    /**
+     * Constructs a new transport mapping.
+     *
+     * @param udpAddress   the address to listen on
+     * @param selectorLoop the loop that receives the requests of this mapping
+     */
+    public SelectorUdpTransportMapping(final UdpAddress udpAddress, final SharedSelectorLoop selectorLoop) {
+        super(udpAddress);
+        this.selectorLoop = selectorLoop;
+        // the message dispatcher decodes each message before the next one is received, so the buffers can be reused
+        this.asyncMsgProcessingSupported = false;
+    }
+
+    @Override
+    public synchronized void listen() throws IOException {
+        if (channel != null) {
+            throw new SocketException("port already listening");
+        }
+        final DatagramChannel opened = udpAddress.getInetAddress() instanceof Inet6Address
+                ? DatagramChannel.open(StandardProtocolFamily.INET6) : DatagramChannel.open(StandardProtocolFamily.INET);
+        try {
+            opened.configureBlocking(false);
+            opened.bind(new InetSocketAddress(udpAddress.getInetAddress(), udpAddress.getPort()));
+            selectorLoop.register(this, opened);
+        } catch (final IOException e) {
+            opened.close();
+            throw e;
+        }
+        channel = opened;
+    }
+
+    @Override
+    public boolean isListening() {
+        return channel != null;
+    }
+
+    @Override
+    public void sendMessage(final UdpAddress targetAddress, final byte[] message, final TransportStateReference tmStateReference,
+                            final long timeoutMillis, final int maxRetries) throws IOException {
+        final DatagramChannel current = channel;
+        if (current == null) {
+            throw new SocketException("transport mapping of " + udpAddress + " is not listening");
+        }
+        log.trace("sending message to {} with length {}", targetAddress, message.length);
+        if (current.send(ByteBuffer.wrap(message), new InetSocketAddress(targetAddress.getInetAddress(), targetAddress.getPort())) == 0) {
+            log.warn("dropped message to {} because the send buffer of {} is full", targetAddress, udpAddress);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        final DatagramChannel closed;
+        synchronized (this) {
+            closed = channel;
+            channel = null;
+        }
+        if (closed != null) {
+            selectorLoop.unregister(closed);
+        }
+    }
+
+    /**
+     * Receives a request from the specified channel of this mapping and passes it to the transport listeners.
+     *
+     * @param receiver the receiver of the calling thread
+     * @param channel  the channel to receive from
+     * @return {@code true} if a request was received, {@code false} if the channel had no request
+     * @throws IOException if the request could not be received
+     */
+    boolean receive(final DatagramReceiver receiver, final DatagramChannel channel) throws IOException {
+        return receiver.receive(this, channel, this::fireProcessMessage);
+    }
+}
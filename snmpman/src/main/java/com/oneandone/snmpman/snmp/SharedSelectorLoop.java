@@ -0,0 +1,312 @@
+package com.oneandone.snmpman.snmp;
+
+import com.google.common.base.Preconditions;
+import com.oneandone.snmpman.exception.InitializationException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed number of receiver threads that is shared by all agents of a {@code Snmpman} instance.
+ * <br>
+ * Each thread waits on a {@link Selector} for the channels of many {@link SelectorUdpTransportMapping}s and passes
+ * the received requests to the message dispatcher of the agent the channel belongs to. The number of threads that
+ * receive requests therefore does not depend on the number of agents.
+ * <br>
+ * The requests are decoded by the receiver thread, so the command processors of the agents have to hand the requests
+ * to a pool that does not block, like the {@link SharedWorkerPool}. At most {@value #BATCH_SIZE} requests are read
+ * from a channel in turn, so a heavily polled agent does not delay the requests of the other agents.
+ */
+@Slf4j
+public final class SharedSelectorLoop {
+
+    /** The maximum number of requests that are read from one channel before the next channel is served. */
+    private static final int BATCH_SIZE = 16;
+
+    /** The maximum size of a received request. */
+    private static final int MAX_MESSAGE_SIZE = 65535;
+
+    /** The time to wait for a channel to be closed by its receiver thread in seconds. */
+    private static final long CLOSE_TIMEOUT = 5L;
+
+    /** The receiver threads. */
+    private final List<Receiver> receivers;
+
+    /** Flag that is {@code true} as soon as {@code this} loop has been stopped. */
+    private volatile boolean stopped;
+
+    /** The number of received requests over all channels. */
+    private final AtomicLong receivedCount = new AtomicLong();
+
+    /**
+     * Constructs a new loop and starts its receiver threads.
+     *
+     * @param name    the name prefix of the receiver threads
+     * @param threads the number of receiver threads
+     * @throws InitializationException thrown if a selector could not be opened
+     */
+    public SharedSelectorLoop(final String name, final int threads) {
+        Preconditions.checkArgument(threads > 0, "the number of selector threads should be positive");
+        final List<Receiver> receiverList = new ArrayList<>(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                receiverList.add(new Receiver(Selector.open()));
+            }
+        } catch (final IOException e) {
+            receiverList.forEach(Receiver::close);
+            throw new InitializationException("could not open selector", e);
+        }
+        for (int i = 0; i < threads; i++) {
+            final Thread thread = new Thread(receiverList.get(i), name + "-" + i);
+            receiverList.get(i).thread = thread;
+            thread.start();
+        }
+        this.receivers = Collections.unmodifiableList(receiverList);
+        log.debug("started {} shared selector threads", threads);
+    }
+
+    /**
+     * Returns the number of receiver threads.
+     *
+     * @return the number of receiver threads
+     */
+    public int getThreadCount() {
+        return receivers.size();
+    }
+
+    /**
+     * Returns the number of registered channels.
+     *
+     * @return the number of registered channels over all receiver threads
+     */
+    public int getChannelCount() {
+        return receivers.stream().mapToInt(receiver -> receiver.channelCount.get()).sum();
+    }
+
+    /**
+     * Returns the number of received requests.
+     *
+     * @return the number of received requests over all channels
+     */
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    /**
+     * Registers the channel of a transport mapping with the receiver thread that serves the fewest channels.
+     *
+     * @param mapping the transport mapping the received requests are passed to
+     * @param channel the bound, non-blocking channel of the mapping
+     * @throws IOException if {@code this} loop has been stopped
+     */
+    void register(final SelectorUdpTransportMapping mapping, final DatagramChannel channel) throws IOException {
+        if (stopped) {
+            throw new IOException("selector loop is stopped");
+        }
+        Receiver receiver = receivers.get(0);
+        for (final Receiver candidate : receivers) {
+            if (candidate.channelCount.get() < receiver.channelCount.get()) {
+                receiver = candidate;
+            }
+        }
+        receiver.register(mapping, channel);
+    }
+
+    /**
+     * Unregisters and closes the specified channel.
+     * <br>
+     * The method waits until the channel is deregistered from its selector, so the address of the channel can be bound
+     * again as soon as the method returns.
+     *
+     * @param channel the channel to close
+     * @throws IOException if the channel could not be closed
+     */
+    void unregister(final DatagramChannel channel) throws IOException {
+        for (final Receiver receiver : receivers) {
+            final SelectionKey key = channel.keyFor(receiver.selector);
+            if (key != null) {
+                receiver.unregister(key);
+                return;
+            }
+        }
+        // the channel is not registered yet or the loop has been stopped
+        channel.close();
+    }
+
+    /**
+     * Stops the receiver threads.
+     * <br>
+     * The channels stay open until their transport mappings are closed.
+     */
+    public void stop() {
+        stopped = true;
+        receivers.forEach(receiver -> receiver.selector.wakeup());
+        log.debug("stopped shared selector threads after {} requests", receivedCount.get());
+    }
+
+    /** A receiver thread with its own selector and buffers. */
+    private final class Receiver implements Runnable {
+
+        /** The selector of the channels of this receiver. */
+        private final Selector selector;
+
+        /** The registrations and deregistrations that have to be done by the receiver thread. */
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+        /** The number of channels of this receiver. */
+        private final AtomicInteger channelCount = new AtomicInteger();
+
+        /** The receiver of the requests with the buffers of this receiver thread. */
+        private final DatagramReceiver receiver = new DatagramReceiver(MAX_MESSAGE_SIZE);
+
+        /** The thread of this receiver. */
+        private Thread thread;
+
+        /**
+         * Constructs a new receiver.
+         *
+         * @param selector the selector of the channels of this receiver
+         */
+        private Receiver(final Selector selector) {
+            this.selector = selector;
+        }
+
+        /**
+         * Registers the specified channel with the selector of this receiver.
+         *
+         * @param mapping the transport mapping the received requests are passed to
+         * @param channel the channel to register
+         */
+        private void register(final SelectorUdpTransportMapping mapping, final DatagramChannel channel) {
+            channelCount.incrementAndGet();
+            pending.add(() -> {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, mapping);
+                } catch (final IOException e) {
+                    channelCount.decrementAndGet();
+                    log.warn("could not register channel of " + mapping.getListenAddress(), e);
+                }
+            });
+            selector.wakeup();
+        }
+
+        /**
+         * Cancels the specified key and closes its channel.
+         *
+         * @param key the key of the channel
+         * @throws IOException if the channel could not be closed
+         */
+        private void unregister(final SelectionKey key) throws IOException {
+            if (Thread.currentThread() == thread || stopped) {
+                key.cancel();
+                key.channel().close();
+                channelCount.decrementAndGet();
+                return;
+            }
+            final CountDownLatch closed = new CountDownLatch(1);
+            pending.add(() -> {
+                key.cancel();
+                try {
+                    // deregisters the cancelled key, so the socket is released as soon as the channel is closed
+                    selector.selectNow();
+                } catch (final IOException | ClosedSelectorException e) {
+                    log.debug("could not deregister channel {}", key.channel());
+                }
+                try {
+                    key.channel().close();
+                } catch (final IOException e) {
+                    log.warn("could not close channel " + key.channel(), e);
+                } finally {
+                    channelCount.decrementAndGet();
+                    closed.countDown();
+                }
+            });
+            selector.wakeup();
+            try {
+                if (!closed.await(CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+                    key.channel().close();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                key.channel().close();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped) {
+                    selector.select();
+                    Runnable task;
+                    while ((task = pending.poll()) != null) {
+                        task.run();
+                    }
+                    final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        final SelectionKey key = keys.next();
+                        keys.remove();
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                    }
+                }
+            } catch (final IOException | ClosedSelectorException e) {
+                log.error("selector loop failed", e);
+            } finally {
+                Runnable task;
+                while ((task = pending.poll()) != null) {
+                    task.run();
+                }
+                close();
+            }
+        }
+
+        /**
+         * Reads the pending requests of the channel of the specified key and passes them to its transport mapping.
+         *
+         * @param key the key of a readable channel
+         */
+        private void read(final SelectionKey key) {
+            final DatagramChannel channel = (DatagramChannel) key.channel();
+            final SelectorUdpTransportMapping mapping = (SelectorUdpTransportMapping) key.attachment();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                try {
+                    if (!mapping.receive(receiver, channel)) {
+                        return;
+                    }
+                    receivedCount.incrementAndGet();
+                } catch (final IOException e) {
+                    if (channel.isOpen()) {
+                        log.warn("could not receive message on " + mapping.getListenAddress(), e);
+                    }
+                    return;
+                } catch (final RuntimeException e) {
+                    log.warn("could not process message received on " + mapping.getListenAddress(), e);
+                }
+            }
+        }
+
+        /** Closes the selector of this receiver. */
+        private void close() {
+            try {
+                selector.close();
+            } catch (final IOException e) {
+                log.warn("could not close selector", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.oneandone.snmpman.snmp;
+
+import com.google.common.base.Preconditions;
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.util.WorkerPool;
+import org.snmp4j.util.WorkerTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed number of request worker threads that is shared by all agents of a {@code Snmpman} instance.
+ * <br>
+ * Each agent {@link #register(String) registers} its own {@link AgentQueue}, which is the {@link WorkerPool} of its
+ * command processor. The tasks of an agent are queued in its own queue and the workers serve all queues with pending
+ * tasks in turn, one task at a time. An agent that receives a lot of requests therefore only delays its own requests
+ * and cannot starve the other agents. The number of threads does not depend on the number of agents.
+ */
+@Slf4j
+public final class SharedWorkerPool {
+
+    /** The queues of the agents that have pending tasks, in the order in which they will be served. */
+    private final BlockingQueue<AgentQueue> ready = new LinkedBlockingQueue<>();
+
+    /** The registered queues by agent name. */
+    private final Map<String, AgentQueue> queues = new ConcurrentHashMap<>();
+
+    /** The worker threads. */
+    private final List<Thread> workers;
+
+    /** Flag that is {@code true} as soon as {@code this} pool has been stopped. */
+    private volatile boolean stopped;
+
+    /** The number of pending tasks over all agents. */
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    /** The highest number of pending tasks over all agents. */
+    private final AtomicInteger maximumQueueDepth = new AtomicInteger();
+
+    /** The number of executed tasks over all agents. */
+    private final AtomicLong completedTaskCount = new AtomicLong();
+
+    /**
+     * Constructs a new pool and starts its worker threads.
+     *
+     * @param name    the name prefix of the worker threads
+     * @param threads the number of worker threads
+     */
+    public SharedWorkerPool(final String name, final int threads) {
+        Preconditions.checkArgument(threads > 0, "the number of worker threads should be positive");
+        final List<Thread> threadList = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            final Thread thread = new Thread(this::work, name + "-" + i);
+            thread.start();
+            threadList.add(thread);
+        }
+        this.workers = Collections.unmodifiableList(threadList);
+        log.debug("started {} shared request worker threads", threads);
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return the number of worker threads
+     */
+    public int getThreadCount() {
+        return workers.size();
+    }
+
+    /**
+     * Returns the number of pending tasks over all agents.
+     *
+     * @return the number of pending tasks
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns the highest number of pending tasks over all agents since the start of {@code this} pool.
+     *
+     * @return the highest number of pending tasks
+     */
+    public int getMaximumQueueDepth() {
+        return maximumQueueDepth.get();
+    }
+
+    /**
+     * Returns the number of pending tasks of each registered agent.
+     *
+     * @return the number of pending tasks by agent name
+     */
+    public Map<String, Integer> getQueueDepths() {
+        final Map<String, Integer> depths = new LinkedHashMap<>();
+        queues.forEach((name, queue) -> depths.put(name, queue.getQueueDepth()));
+        return depths;
+    }
+
+    /**
+     * Returns the number of executed tasks over all agents.
+     *
+     * @return the number of executed tasks
+     */
+    public long getCompletedTaskCount() {
+        return completedTaskCount.get();
+    }
+
+    /**
+     * Creates the queue of an agent in {@code this} pool.
+     * <br>
+     * The queue is removed from the pool again when it gets stopped or cancelled.
+     *
+     * @param name the name of the agent
+     * @return the worker pool view for the agent
+     * @throws IllegalArgumentException if an agent with the same name is already registered
+     */
+    public AgentQueue register(final String name) {
+        Preconditions.checkState(!stopped, "the worker pool has already been stopped");
+        final AgentQueue queue = new AgentQueue(name);
+        Preconditions.checkArgument(queues.putIfAbsent(name, queue) == null, "an agent named \"%s\" is already registered", name);
+        return queue;
+    }
+
+    /**
+     * Stops all worker threads.
+     * <br>
+     * Pending tasks will be dropped, tasks that are currently executed will be interrupted.
+     */
+    public void stop() {
+        stopped = true;
+        workers.forEach(Thread::interrupt);
+        queues.values().forEach(AgentQueue::cancel);
+        log.debug("stopped shared request worker threads after {} tasks", completedTaskCount.get());
+    }
+
+    /** The loop of each worker thread. */
+    private void work() {
+        while (!stopped) {
+            final AgentQueue queue;
+            try {
+                queue = ready.take();
+            } catch (final InterruptedException e) {
+                continue;
+            }
+            final WorkerTask task = queue.next();
+            if (task != null) {
+                try {
+                    task.run();
+                } catch (final Throwable e) {
+                    // an error of a single task, e.g. a StackOverflowError, must not stop the worker of all agents
+                    log.warn("request task of agent \"" + queue.name + "\" failed", e);
+                } finally {
+                    completedTaskCount.incrementAndGet();
+                    queue.completedTaskCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * The queue of a single agent within the shared pool.
+     * <br>
+     * The queue is in the {@link #ready} queue of the pool at most once, so each agent gets at most one task executed
+     * per round.
+     */
+    public final class AgentQueue implements WorkerPool {
+
+        /** The name of the agent. */
+        private final String name;
+
+        /** The pending tasks. */
+        private final Queue<WorkerTask> tasks = new ConcurrentLinkedQueue<>();
+
+        /** Flag that is {@code true} while {@code this} queue is in the {@link #ready} queue or being served. */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /** The number of pending tasks. */
+        private final AtomicInteger depth = new AtomicInteger();
+
+        /** The number of executed tasks. */
+        private final AtomicLong completedTaskCount = new AtomicLong();
+
+        /** The highest number of pending tasks. */
+        private final AtomicInteger maximumQueueDepth = new AtomicInteger();
+
+        /** Flag that is {@code true} as soon as {@code this} queue does not accept new tasks anymore. */
+        private volatile boolean closed;
+
+        /**
+         * Constructs a new queue.
+         *
+         * @param name the name of the agent
+         */
+        private AgentQueue(final String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the number of pending tasks of the agent.
+         *
+         * @return the number of pending tasks
+         */
+        public int getQueueDepth() {
+            return depth.get();
+        }
+
+        /**
+         * Returns the highest number of pending tasks of the agent.
+         *
+         * @return the highest number of pending tasks
+         */
+        public int getMaximumQueueDepth() {
+            return maximumQueueDepth.get();
+        }
+
+        /**
+         * Returns the number of executed tasks of the agent.
+         *
+         * @return the number of executed tasks
+         */
+        public long getCompletedTaskCount() {
+            return completedTaskCount.get();
+        }
+
+        @Override
+        public void execute(final WorkerTask task) {
+            if (closed || stopped) {
+                log.warn("dropped request task of stopped agent \"{}\"", name);
+                return;
+            }
+            tasks.add(task);
+            maximumQueueDepth.accumulateAndGet(depth.incrementAndGet(), Math::max);
+            SharedWorkerPool.this.maximumQueueDepth.accumulateAndGet(queueDepth.incrementAndGet(), Math::max);
+            schedule();
+        }
+
+        @Override
+        public boolean tryToExecute(final WorkerTask task) {
+            if (closed || stopped) {
+                return false;
+            }
+            execute(task);
+            return true;
+        }
+
+        /**
+         * Does not accept any new tasks, the pending tasks will still be executed.
+         */
+        @Override
+        public void stop() {
+            closed = true;
+            queues.remove(name, this);
+        }
+
+        /**
+         * Does not accept any new tasks and drops the pending tasks.
+         */
+        @Override
+        public void cancel() {
+            stop();
+            WorkerTask task;
+            while ((task = tasks.poll()) != null) {
+                depth.decrementAndGet();
+                queueDepth.decrementAndGet();
+                task.terminate();
+            }
+        }
+
+        @Override
+        public boolean isIdle() {
+            return depth.get() == 0;
+        }
+
+        /** Puts {@code this} queue into the {@link #ready} queue unless it is already there. */
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                ready.add(this);
+            }
+        }
+
+        /**
+         * Takes the next task and puts {@code this} queue back at the end of the {@link #ready} queue if more tasks
+         * are pending.
+         *
+         * @return the next task or {@code null} if there is none
+         */
+        private WorkerTask next() {
+            final WorkerTask task = tasks.poll();
+            if (task != null) {
+                depth.decrementAndGet();
+                queueDepth.decrementAndGet();
+            }
+            if (tasks.isEmpty()) {
+                scheduled.set(false);
+                // a task may have been added after the check above, but before the flag was reset
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            } else {
+                ready.add(this);
+            }
+            return task;
+        }
+
+        @Override
+        public String toString() {
+            return "AgentQueue[" + name + ", depth=" + depth.get() + "]";
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.oneandone.snmpman.snmp;
+
+import com.oneandone.snmpman.exception.InitializationException;
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.util.WorkerPool;
+import org.snmp4j.util.WorkerTask;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link WorkerPool} that executes each task in its own virtual thread.
+ * <br>
+ * Requests that block, e.g. in a slow modifier, do not occupy one of a fixed number of worker threads, so the number
+ * of concurrently processed requests of an agent is not limited. Virtual threads are available since Java 21, the
+ * executor is looked up reflectively as the library is compiled for older runtimes. Check {@link #isSupported()}
+ * before construction.
+ */
+@Slf4j
+public final class VirtualThreadWorkerPool implements WorkerPool {
+
+    /** The factory method of the executor or {@code null} if the runtime does not support virtual threads. */
+    private static final Method NEW_EXECUTOR = findExecutorFactory();
+
+    /** The name of the agent. */
+    private final String name;
+
+    /** The executor that starts a new virtual thread for each task. */
+    private final ExecutorService executor;
+
+    /** The number of tasks that are currently executed. */
+    private final AtomicInteger activeTaskCount = new AtomicInteger();
+
+    /** The number of executed tasks. */
+    private final AtomicLong completedTaskCount = new AtomicLong();
+
+    /**
+     * Constructs a new pool.
+     *
+     * @param name the name of the agent
+     * @throws InitializationException thrown if the runtime does not support virtual threads
+     */
+    public VirtualThreadWorkerPool(final String name) {
+        if (NEW_EXECUTOR == null) {
+            throw new InitializationException("virtual threads for agent \"" + name + "\" require a Java 21 runtime, but "
+                    + System.getProperty("java.version") + " is running");
+        }
+        this.name = name;
+        try {
+            this.executor = (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (final IllegalAccessException | InvocationTargetException e) {
+            throw new InitializationException("could not create virtual thread executor for agent \"" + name + "\"", e);
+        }
+    }
+
+    /**
+     * Returns whether the runtime supports virtual threads.
+     *
+     * @return {@code true} if virtual threads are supported
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * Returns the factory method of the virtual thread executor.
+     *
+     * @return the factory method or {@code null} if the runtime does not support virtual threads
+     */
+    private static Method findExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of tasks that are currently executed.
+     *
+     * @return the number of active tasks
+     */
+    public int getActiveTaskCount() {
+        return activeTaskCount.get();
+    }
+
+    /**
+     * Returns the number of executed tasks.
+     *
+     * @return the number of executed tasks
+     */
+    public long getCompletedTaskCount() {
+        return completedTaskCount.get();
+    }
+
+    @Override
+    public void execute(final WorkerTask task) {
+        if (!tryToExecute(task)) {
+            log.warn("dropped request task of stopped agent \"{}\"", name);
+        }
+    }
+
+    @Override
+    public boolean tryToExecute(final WorkerTask task) {
+        activeTaskCount.incrementAndGet();
+        try {
+            executor.execute(() -> run(task));
+            return true;
+        } catch (final RejectedExecutionException e) {
+            activeTaskCount.decrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Runs the specified task and updates the counters.
+     *
+     * @param task the task to run
+     */
+    private void run(final WorkerTask task) {
+        try {
+            task.run();
+        } catch (final RuntimeException e) {
+            log.warn("request task of agent \"" + name + "\" failed", e);
+        } finally {
+            completedTaskCount.incrementAndGet();
+            activeTaskCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Does not accept any new tasks, the active tasks will still be completed.
+     */
+    @Override
+    public void stop() {
+        executor.shutdown();
+    }
+
+    /**
+     * Does not accept any new tasks and interrupts the active tasks.
+     */
+    @Override
+    public void cancel() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isIdle() {
+        return activeTaskCount.get() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualThreadWorkerPool[" + name + ", active=" + activeTaskCount.get() + "]";
+    }
+}
@@ -0,0 +1,144 @@
+package com.oneandone.snmpman;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class AgentEvictionTest {
+
+    @Test
+    public void testReloadAfterEviction() {
+        final AgentEviction eviction = new AgentEviction(1, TimeUnit.HOURS, 0);
+        final AtomicInteger loads = new AtomicInteger();
+        final AtomicInteger evictions = new AtomicInteger();
+        final AgentEviction.Residence residence = eviction.register("agent", () -> {
+            loads.incrementAndGet();
+            return 100;
+        }, evictions::incrementAndGet);
+
+        residence.acquire();
+        residence.release();
+        residence.acquire();
+        residence.release();
+        assertEquals(loads.get(), 1);
+        assertEquals(eviction.getMisses(), 1);
+        assertEquals(eviction.getHits(), 1);
+        assertEquals(eviction.getResidentSize(), 100);
+
+        assertEquals(eviction.sweep(), 0);
+        assertEquals(eviction.evictAll(), 1);
+        assertFalse(residence.isResident());
+        assertEquals(evictions.get(), 1);
+        assertEquals(eviction.getResidentSize(), 0);
+
+        residence.acquire();
+        residence.release();
+        assertEquals(loads.get(), 2);
+        assertEquals(eviction.getMisses(), 2);
+        assertTrue(eviction.getMaximumLoadTime() >= eviction.getAverageLoadTime());
+    }
+
+    @Test
+    public void testNoEvictionWhileQueried() throws Exception {
+        final AgentEviction eviction = new AgentEviction(1, TimeUnit.MILLISECONDS, 0);
+        final AgentEviction.Residence residence = eviction.register("agent", () -> 100, () -> { });
+
+        residence.acquire();
+        try {
+            Thread.sleep(5);
+            assertEquals(eviction.sweep(), 0);
+            assertTrue(residence.isResident());
+        } finally {
+            residence.release();
+        }
+        assertEquals(eviction.sweep(), 1);
+        assertEquals(eviction.getEvictions(), 1);
+    }
+
+    @Test
+    public void testMemoryBudgetEvictsLeastRecentlyUsed() throws Exception {
+        final AgentEviction eviction = new AgentEviction(0, TimeUnit.SECONDS, 250);
+        final AgentEviction.Residence first = eviction.register("first", () -> 100, () -> { });
+        final AgentEviction.Residence second = eviction.register("second", () -> 100, () -> { });
+        final AgentEviction.Residence third = eviction.register("third", () -> 100, () -> { });
+        for (final AgentEviction.Residence residence : new AgentEviction.Residence[]{first, second, third, first}) {
+            residence.acquire();
+            residence.release();
+            Thread.sleep(2);
+        }
+        assertEquals(eviction.getResidentAgents(), 3);
+
+        assertEquals(eviction.sweep(), 1);
+        assertTrue(first.isResident());
+        assertFalse(second.isResident());
+        assertTrue(third.isResident());
+        assertEquals(eviction.getResidentSize(), 200);
+    }
+
+    @Test
+    public void testUnregister() {
+        final AgentEviction eviction = new AgentEviction(0, TimeUnit.SECONDS, 1000);
+        final AgentEviction.Residence residence = eviction.register("agent", () -> 100, () -> { });
+        residence.load();
+        assertEquals(eviction.getResidentSize(), 100);
+        assertEquals(eviction.getMisses(), 0);
+
+        eviction.unregister(residence);
+        assertEquals(eviction.getResidentSize(), 0);
+        assertEquals(eviction.getResidentAgents(), 0);
+    }
+
+    @Test
+    public void testSweepWhileQueried() throws Exception {
+        final AgentEviction eviction = new AgentEviction(0, TimeUnit.SECONDS, 50 * 100);
+        final AgentEviction.Residence[] residences = new AgentEviction.Residence[500];
+        for (int i = 0; i < residences.length; i++) {
+            residences[i] = eviction.register("agent" + i, () -> 100, () -> { });
+        }
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> requests = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                requests.add(executor.submit(() -> {
+                    while (running.get()) {
+                        final AgentEviction.Residence residence = residences[ThreadLocalRandom.current().nextInt(residences.length)];
+                        residence.acquire();
+                        residence.release();
+                    }
+                }));
+            }
+            for (int i = 0; i < 500; i++) {
+                eviction.sweep();
+            }
+            running.set(false);
+            for (final Future<?> request : requests) {
+                request.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+
+        eviction.sweep();
+        assertTrue(eviction.getResidentSize() <= 50 * 100);
+        assertEquals(eviction.getResidentSize(), eviction.getResidentAgents() * 100L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWithoutLimit() {
+        new AgentEviction(0, TimeUnit.SECONDS, 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.oneandone.snmpman;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class LazyActivationTest {
+
+    @Test
+    public void testConcurrentActivation() throws Exception {
+        final AtomicInteger registrations = new AtomicInteger();
+        final CountDownLatch registering = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final LazyActivation activation = new LazyActivation("test", () -> {
+            registrations.incrementAndGet();
+            registering.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(activation::await));
+            assertTrue(registering.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                futures.add(executor.submit(activation::await));
+            }
+            assertFalse(activation.isDone());
+
+            release.countDown();
+            for (final Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(activation.isDone());
+        assertEquals(registrations.get(), 1);
+    }
+
+    @Test
+    public void testFailedActivation() {
+        final LazyActivation activation = new LazyActivation("test", () -> {
+            throw new IllegalStateException("walk not readable");
+        });
+        activation.await();
+        assertTrue(activation.isDone());
+    }
+}
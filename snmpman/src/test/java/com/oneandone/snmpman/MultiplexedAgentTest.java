@@ -0,0 +1,105 @@
+package com.oneandone.snmpman;
+
+import com.oneandone.snmpman.configuration.AgentConfiguration;
+import com.oneandone.snmpman.exception.InitializationException;
+import org.snmp4j.smi.OID;
+import org.snmp4j.util.TableEvent;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.oneandone.snmpman.AbstractSnmpmanTest.containsColumn;
+import static com.oneandone.snmpman.AbstractSnmpmanTest.getResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class MultiplexedAgentTest {
+
+    private static final int PORT = 10030;
+
+    private static final int OTHER_PORT = 10031;
+
+    private static final File CISCO = new File("src/test/resources/configuration/cisco.yaml");
+
+    private static final File EMPTY = new File("src/test/resources/configuration/empty.yaml");
+
+    private static final File EXAMPLE = new File("src/test/resources/configuration/example.txt");
+
+    private static final File DIFFERENT_STARTING_OID = new File("src/test/resources/configuration/differentStartingOID.txt");
+
+    private Snmpman snmpman;
+
+    @BeforeMethod
+    public void setUp() {
+        snmpman = Snmpman.startMultiplexed(Arrays.asList(
+                new AgentConfiguration("first", CISCO, EXAMPLE, "127.0.0.1", PORT, "public"),
+                new AgentConfiguration("second", EMPTY, DIFFERENT_STARTING_OID, "127.0.0.1", PORT, "private"),
+                new AgentConfiguration("third", CISCO, EXAMPLE, "127.0.0.1", OTHER_PORT, "public")), Snmpman.Options.builder().workerThreads(2).build());
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        snmpman.stop();
+    }
+
+    @Test
+    public void testOneAgent() {
+        assertTrue(snmpman.getAgents().isEmpty());
+        assertNotNull(snmpman.getMultiplexedAgent());
+        assertEquals(snmpman.getMultiplexedAgent().getConfigurations().size(), 3);
+        assertEquals(snmpman.getWorkerPool().getQueueDepths().size(), 1);
+    }
+
+    @Test
+    public void testRoutingByCommunity() throws Exception {
+        assertEquals(getResponse(new OID("1.3.6.1.2.1"), PORT, "public").size(), 19);
+        assertEquals(getResponse(new OID(".1.3"), PORT, "private").size(), 30);
+    }
+
+    @Test
+    public void testRoutingByAddress() throws Exception {
+        assertEquals(getResponse(new OID("1.3.6.1.2.1"), OTHER_PORT, "public").size(), 19);
+        assertTrue(getResponse(new OID(".1.3"), OTHER_PORT, "private").get(0).isError());
+    }
+
+    @Test
+    public void testVlanContexts() throws Exception {
+        final String oid = "1.3.6.1.2.1.17.2.4";
+        final List<TableEvent> vlan42 = getResponse(new OID(oid), PORT, "public@42");
+        assertEquals(vlan42.size(), 1);
+        assertTrue(containsColumn(vlan42, oid, "150"));
+
+        final List<TableEvent> vlan9 = getResponse(new OID(oid), OTHER_PORT, "public@9");
+        assertEquals(vlan9.size(), 1);
+        assertTrue(containsColumn(vlan9, oid, "120"));
+
+        assertTrue(containsColumn(getResponse(new OID(oid), PORT, "public"), oid, "0"));
+    }
+
+    @Test
+    public void testLazyDevice() throws Exception {
+        final Snmpman lazy = Snmpman.startMultiplexed(Arrays.asList(
+                new AgentConfiguration("eager", CISCO, EXAMPLE, "127.0.0.1", 10152, "public"),
+                AgentConfiguration.builder().name("lazy").deviceConfiguration(CISCO).walk(EXAMPLE).ip("127.0.0.1").port(10152)
+                        .community("private").lazy(true).build()), Snmpman.Options.builder().workerThreads(2).build());
+        try {
+            final String oid = "1.3.6.1.2.1.17.2.4";
+            assertTrue(containsColumn(getResponse(new OID(oid), 10152, "private@42"), oid, "150"));
+            assertEquals(getResponse(new OID("1.3.6.1.2.1"), 10152, "private").size(), 19);
+        } finally {
+            lazy.stop();
+        }
+    }
+
+    @Test(expectedExceptions = InitializationException.class)
+    public void testDuplicateCommunity() {
+        new MultiplexedAgent(Arrays.asList(
+                new AgentConfiguration("first", CISCO, EXAMPLE, "127.0.0.1", PORT + 10, "public"),
+                new AgentConfiguration("second", CISCO, EXAMPLE, "127.0.0.1", PORT + 10, "public")));
+    }
+}
@@ -1,21 +1,48 @@
 package com.oneandone.snmpman;
 
+import com.oneandone.snmpman.configuration.AgentConfiguration;
 import com.oneandone.snmpman.exception.InitializationException;
+import com.oneandone.snmpman.persistence.FilePersistence;
+import com.oneandone.snmpman.persistence.MemoryPersistence;
+import com.oneandone.snmpman.persistence.StateFilePersistence;
 import org.mockito.Mockito;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
 import org.snmp4j.agent.BaseAgent;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.GenericAddress;
 import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
 import org.snmp4j.util.TableEvent;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class SnmpmanTest extends AbstractSnmpmanTest {
 
+    private static final File EXAMPLE = new File("src/test/resources/configuration/example.txt");
+
     @Test
     public void testSnmpGetBulk() throws Exception {
         assertEquals(snmpman.getAgents().size(), 11);
@@ -36,6 +63,16 @@ public class SnmpmanTest extends AbstractSnmpmanTest {
         assertEquals(responses.size(), 8);
     }
 
+    @Test
+    public void testSharedWorkerPool() throws Exception {
+        assertEquals(snmpman.getWorkerPool().getThreadCount(), Snmpman.DEFAULT_WORKER_THREADS);
+        assertEquals(snmpman.getWorkerPool().getQueueDepths().size(), snmpman.getAgents().size());
+
+        final long completed = snmpman.getWorkerPool().getCompletedTaskCount();
+        getResponse(new OID("1.3.6.1.2.1"), 10000);
+        assertTrue(snmpman.getWorkerPool().getCompletedTaskCount() > completed);
+    }
+
     @Test
     public void testWithCommunityIndex() throws Exception {
         assertEquals(snmpman.getAgents().size(), 11);
@@ -54,6 +91,21 @@ public class SnmpmanTest extends AbstractSnmpmanTest {
         assertTrue(containsColumn(responses3, oid, "0"));
     }
 
+    @Test
+    public void testDefaultOptions() {
+        final Snmpman.Options options = Snmpman.Options.builder().build();
+        assertEquals(options.getWorkerThreads(), Snmpman.DEFAULT_WORKER_THREADS);
+        assertEquals(options.getSelectorThreads(), 0);
+        assertEquals(options.getStartThreads(), Snmpman.DEFAULT_START_THREADS);
+        assertTrue(options.getPersistence() instanceof FilePersistence);
+        assertNull(options.getEviction());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidOptions() {
+        Snmpman.Options.builder().workerThreads(0).build();
+    }
+
     @Test(expectedExceptions = InitializationException.class)
     public void startWithAlreadyStoppedAgent() {
         final SnmpmanAgent mock = Mockito.mock(SnmpmanAgent.class);
@@ -63,6 +115,244 @@ public class SnmpmanTest extends AbstractSnmpmanTest {
         Snmpman.start(snmpmanAgents);
     }
 
+    @Test
+    public void testConcurrentStartAndStop() {
+        final List<SnmpmanAgent> agents = createAgents(10110, 8);
+        final Snmpman concurrent = Snmpman.start(agents, Snmpman.Options.builder().workerThreads(2).startThreads(4).build());
+        assertTrue(agents.stream().allMatch(agent -> agent.getAgentState() == BaseAgent.STATE_RUNNING));
+
+        concurrent.stop();
+        assertTrue(agents.stream().allMatch(agent -> agent.getAgentState() == BaseAgent.STATE_STOPPED));
+    }
+
+    @Test
+    public void testStartFailureStopsStartedAgents() {
+        final List<SnmpmanAgent> agents = new ArrayList<>(createAgents(10120, 4));
+        agents.add(new SnmpmanAgent(new AgentConfiguration("conflict", null, EXAMPLE, "127.0.0.1", 10120, "public")));
+        try {
+            Snmpman.start(agents, Snmpman.Options.builder().workerThreads(2).startThreads(4).build());
+            fail("the agents on the same port should not start");
+        } catch (final InitializationException e) {
+            assertTrue(agents.stream().noneMatch(agent -> agent.getAgentState() == BaseAgent.STATE_RUNNING));
+        }
+
+        // all ports are released again
+        Snmpman.start(createAgents(10120, 4), Snmpman.Options.builder().workerThreads(2).startThreads(4).build()).stop();
+    }
+
+    @Test
+    public void testTemplate() throws Exception {
+        final Snmpman templated = Snmpman.start(new File("src/test/resources/configuration/template.yaml"));
+        try {
+            assertEquals(templated.getAgents().size(), 4);
+            assertEquals(templated.getAgents().get(1).getName(), "template-1");
+
+            assertTrue(containsColumn(getResponse(new OID("1.3.6.1.2.1.1.5"), 10130), "1.3.6.1.2.1.1.5.0", "switch-000"));
+            assertTrue(containsColumn(getResponse(new OID("1.3.6.1.2.1.1.5"), 10132), "1.3.6.1.2.1.1.5.0", "switch-002"));
+            assertTrue(containsColumn(getResponse(new OID("1.3.6.1.2.1.2.2.1.2"), 10131), "1.3.6.1.2.1.2.2.1.2.10101", "port-10131-10101"));
+            assertTrue(containsColumn(getResponse(new OID("1.3.6.1.2.1.1.5"), 10133), "1.3.6.1.2.1.1.5.0", "device"));
+        } finally {
+            templated.stop();
+        }
+    }
+
+    @Test
+    public void testMemoryPersistence() throws Exception {
+        final Path directory = Files.createTempDirectory("snmpman-memory");
+        try {
+            final File walk = Files.copy(EXAMPLE.toPath(), directory.resolve(EXAMPLE.getName())).toFile();
+            final MemoryPersistence persistence = new MemoryPersistence();
+            Snmpman.start(createAgents(walk, 10140, 2), Snmpman.Options.builder().workerThreads(2).startThreads(2).persistence(persistence).build()).stop();
+
+            final List<SnmpmanAgent> restarted = createAgents(walk, 10140, 2);
+            final Snmpman snmpman = Snmpman.start(restarted, Snmpman.Options.builder().workerThreads(2).startThreads(2).persistence(persistence).build());
+            try {
+                assertTrue(restarted.stream().allMatch(agent -> agent.getEngineBoots() == 2));
+                assertTrue(containsColumn(getResponse(new OID("1.3.6.1.2.1.1.5"), 10141), "1.3.6.1.2.1.1.5.0", "device"));
+            } finally {
+                snmpman.stop();
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(files.count(), 1L);
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testStateFilePersistence() throws Exception {
+        final Path directory = Files.createTempDirectory("snmpman-state");
+        try {
+            final File walk = Files.copy(EXAMPLE.toPath(), directory.resolve(EXAMPLE.getName())).toFile();
+            final File state = directory.resolve("agents.state").toFile();
+            Snmpman.start(createAgents(walk, 10142, 2), Snmpman.Options.builder().workerThreads(2).startThreads(2).persistence(new StateFilePersistence(state)).build()).stop();
+            assertTrue(state.isFile());
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(files.count(), 2L);
+            }
+
+            final List<SnmpmanAgent> restarted = createAgents(walk, 10142, 2);
+            Snmpman.start(restarted, Snmpman.Options.builder().workerThreads(2).startThreads(2).persistence(new StateFilePersistence(state)).build()).stop();
+            assertTrue(restarted.stream().allMatch(agent -> agent.getEngineBoots() == 2));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testLazyActivation() throws Exception {
+        final List<SnmpmanAgent> agents = Arrays.asList(
+                new SnmpmanAgent(AgentConfiguration.builder().name("lazy1").walk(EXAMPLE).ip("127.0.0.1").port(10150).lazy(true).build()),
+                new SnmpmanAgent(AgentConfiguration.builder().name("lazy2").walk(EXAMPLE).ip("127.0.0.1").port(10151).lazy(true).build()));
+        final Snmpman lazy = Snmpman.start(agents, Snmpman.Options.builder().workerThreads(2).startThreads(2).persistence(new MemoryPersistence()).build());
+        try {
+            assertTrue(agents.stream().allMatch(agent -> agent.getAgentState() == BaseAgent.STATE_RUNNING));
+            assertTrue(agents.stream().noneMatch(SnmpmanAgent::isActivated));
+
+            assertEquals(getResponse(new OID("1.3.6.1.2.1"), 10150).size(), 19);
+            assertTrue(agents.get(0).isActivated());
+            assertFalse(agents.get(1).isActivated());
+        } finally {
+            lazy.stop();
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        final OID counter = new OID("1.3.6.1.2.1.2.2.1.13.10101");
+        final OID ifName = new OID("1.3.6.1.2.1.31.1.1.1.1.10101");
+        final SnmpmanAgent agent = new SnmpmanAgent(AgentConfiguration.builder().name("evicted").deviceConfiguration(new File("src/test/resources/configuration/cisco.yaml"))
+                .walk(EXAMPLE).ip("127.0.0.1").port(10160).seed(42L).build());
+        final AgentEviction eviction = new AgentEviction(1, TimeUnit.HOURS, 0);
+        final Snmpman evicting = Snmpman.start(Collections.singletonList(agent), Snmpman.Options.builder()
+                .workerThreads(2).startThreads(1).persistence(new MemoryPersistence()).eviction(eviction).build());
+        try {
+            assertTrue(agent.isActivated());
+            assertTrue(eviction.getResidentSize() > 0);
+            long last = 0;
+            for (int i = 0; i < 5; i++) {
+                last = request(PDU.GET, 10160, new VariableBinding(counter)).toLong();
+            }
+            assertTrue(last > 0);
+            assertEquals(request(PDU.SET, 10160, new VariableBinding(ifName, new OctetString("evicted"))).toString(), "evicted");
+
+            assertEquals(eviction.evictAll(), 1);
+            assertFalse(agent.isActivated());
+            assertEquals(eviction.getResidentSize(), 0);
+
+            // the counter continues and the changed value is kept
+            assertTrue(request(PDU.GET, 10160, new VariableBinding(counter)).toLong() >= last);
+            assertEquals(request(PDU.GET, 10160, new VariableBinding(ifName)).toString(), "evicted");
+            assertTrue(agent.isActivated());
+            assertEquals(getResponse(new OID("1.3.6.1.2.1"), 10160).size(), 19);
+            assertEquals(eviction.getEvictions(), 1);
+            assertEquals(eviction.getMisses(), 1);
+            assertTrue(eviction.getHits() >= 7);
+        } finally {
+            evicting.stop();
+        }
+    }
+
+    @Test
+    public void testOverlays() throws Exception {
+        final List<File> overlays = Collections.singletonList(new File("src/test/resources/configuration/overlay.txt"));
+        final List<SnmpmanAgent> agents = Arrays.asList(
+                new SnmpmanAgent(AgentConfiguration.builder().name("overlay1").walk(EXAMPLE).ip("127.0.0.1").port(10170).overlays(overlays).build()),
+                new SnmpmanAgent(AgentConfiguration.builder().name("overlay2").walk(EXAMPLE).ip("127.0.0.1").port(10171).overlays(overlays).build()));
+        final Snmpman overlaid = Snmpman.start(agents, Snmpman.Options.builder().workerThreads(2).startThreads(2).persistence(new MemoryPersistence()).build());
+        try {
+            assertEquals(request(PDU.GET, 10170, new VariableBinding(new OID("1.3.6.1.2.1.1.5.0"))).toString(), "overlay");
+            assertEquals(request(PDU.GET, 10171, new VariableBinding(new OID("1.3.6.1.2.1.2.2.1.2.10102"))).toString(), "GigabitEthernet0/2");
+            assertTrue(request(PDU.GET, 10170, new VariableBinding(new OID("1.3.6.1.2.1.31.1.1.1.1.10101"))).isException());
+            assertTrue(request(PDU.GET, 10170, new VariableBinding(new OID("1.3.6.1.2.1.17.2.4.0"))).isException());
+            assertEquals(request(PDU.GET, 10170, new VariableBinding(new OID("1.3.6.1.2.1.2.2.1.2.10101"))).toString(), "GigabitEthernet0/1");
+        } finally {
+            overlaid.stop();
+        }
+    }
+
+    @Test
+    public void testOverlaysShareTemplate() throws Exception {
+        final List<File> overlays = Collections.singletonList(new File("src/test/resources/configuration/overlay.txt"));
+        final SnmpmanAgent plain = new SnmpmanAgent(AgentConfiguration.builder().name("template0").walk(EXAMPLE).ip("127.0.0.1").port(10181).build());
+        final SnmpmanAgent overlaid = new SnmpmanAgent(AgentConfiguration.builder().name("template1").walk(EXAMPLE).ip("127.0.0.1").port(10182).overlays(overlays).build());
+        final Snmpman snmpman = Snmpman.start(Arrays.asList(plain, overlaid), Snmpman.Options.builder().workerThreads(2).startThreads(2).persistence(new MemoryPersistence()).build());
+        try {
+            assertTrue(plain.getStore().sharesBindings(overlaid.getStore()));
+
+            assertEquals(request(PDU.GET, 10181, new VariableBinding(new OID("1.3.6.1.2.1.1.5.0"))).toString(), "device");
+            assertEquals(request(PDU.GET, 10182, new VariableBinding(new OID("1.3.6.1.2.1.1.5.0"))).toString(), "overlay");
+            assertEquals(request(PDU.GET, 10182, new VariableBinding(new OID("1.3.6.1.2.1.2.2.1.2.10102"))).toString(), "GigabitEthernet0/2");
+            assertTrue(request(PDU.GET, 10181, new VariableBinding(new OID("1.3.6.1.2.1.2.2.1.2.10102"))).isException());
+            assertTrue(request(PDU.GET, 10182, new VariableBinding(new OID("1.3.6.1.2.1.31.1.1.1.1.10101"))).isException());
+            assertTrue(request(PDU.GET, 10182, new VariableBinding(new OID("1.3.6.1.2.1.17.2.4.0"))).isException());
+            assertFalse(request(PDU.GET, 10181, new VariableBinding(new OID("1.3.6.1.2.1.17.2.4.0"))).isException());
+            assertEquals(getResponse(new OID("1.3.6.1.2.1"), 10181).size(), 19);
+            assertEquals(getResponse(new OID("1.3.6.1.2.1"), 10182).size(), 18);
+        } finally {
+            snmpman.stop();
+        }
+    }
+
+    @Test
+    public void testSharedBindings() throws Exception {
+        final OID counter = new OID("1.3.6.1.2.1.2.2.1.13.10101");
+        final OID ifName = new OID("1.3.6.1.2.1.31.1.1.1.1.10101");
+        final File cisco = new File("src/test/resources/configuration/cisco.yaml");
+        final List<SnmpmanAgent> agents = Arrays.asList(
+                new SnmpmanAgent(AgentConfiguration.builder().name("shared1").deviceConfiguration(cisco).walk(EXAMPLE).ip("127.0.0.1").port(10172).seed(42L).build()),
+                new SnmpmanAgent(AgentConfiguration.builder().name("shared2").deviceConfiguration(cisco).walk(EXAMPLE).ip("127.0.0.1").port(10173).seed(42L).build()));
+        final Snmpman shared = Snmpman.start(agents, Snmpman.Options.builder().workerThreads(2).startThreads(2).persistence(new MemoryPersistence()).build());
+        try {
+            // each agent continues its own counter from the same seed
+            final long first = request(PDU.GET, 10172, new VariableBinding(counter)).toLong();
+            for (int i = 0; i < 3; i++) {
+                request(PDU.GET, 10172, new VariableBinding(counter));
+            }
+            assertEquals(request(PDU.GET, 10173, new VariableBinding(counter)).toLong(), first);
+
+            assertEquals(request(PDU.SET, 10172, new VariableBinding(ifName, new OctetString("changed"))).toString(), "changed");
+            assertEquals(request(PDU.GET, 10172, new VariableBinding(ifName)).toString(), "changed");
+            assertEquals(request(PDU.GET, 10173, new VariableBinding(ifName)).toString(), "Gi0/1");
+        } finally {
+            shared.stop();
+        }
+    }
+
+    private static Variable request(final int type, final int port, final VariableBinding binding) throws IOException {
+        final Snmp snmp = new Snmp(new DefaultUdpTransportMapping());
+        try {
+            snmp.listen();
+            final PDU pdu = new PDU();
+            pdu.setType(type);
+            pdu.add(binding);
+            final ResponseEvent response = snmp.send(pdu, getCommunityTarget(COMMUNITY, GenericAddress.parse("127.0.0.1/" + port)));
+            assertEquals(response.getResponse().getErrorStatus(), SnmpConstants.SNMP_ERROR_SUCCESS);
+            return response.getResponse().get(0).getVariable();
+        } finally {
+            snmp.close();
+        }
+    }
+
+    private static List<SnmpmanAgent> createAgents(final int port, final int count) {
+        return createAgents(EXAMPLE, port, count);
+    }
+
+    private static List<SnmpmanAgent> createAgents(final File walk, final int port, final int count) {
+        final List<SnmpmanAgent> agents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            agents.add(new SnmpmanAgent(new AgentConfiguration("concurrent" + port + "-" + i, null, walk, "127.0.0.1", port + i, "public")));
+        }
+        return agents;
+    }
+
+    private static void deleteDirectory(final Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
     @Test
     public void testModifier() throws Exception {
         final String oid = "1.3.6.1.2.1.2.2.1.13";
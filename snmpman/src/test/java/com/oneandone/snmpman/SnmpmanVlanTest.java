@@ -0,0 +1,90 @@
+package com.oneandone.snmpman;
+
+import com.oneandone.snmpman.configuration.AgentConfiguration;
+import org.snmp4j.smi.OID;
+import org.snmp4j.util.TableEvent;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.oneandone.snmpman.AbstractSnmpmanTest.containsColumn;
+import static com.oneandone.snmpman.AbstractSnmpmanTest.getResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SnmpmanVlanTest {
+
+    private static final int PORT = 10020;
+
+    private Path device;
+
+    private Snmpman snmpman;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        final List<String> lines = new ArrayList<>();
+        lines.add("name: \"AllVlans\"");
+        lines.add("modifiers:");
+        lines.add("  - oid: \".1.3.6.1.2.1.17.2.4.0\"");
+        lines.add("    class: \"com.oneandone.snmpman.configuration.modifier.CommunityIndexCounter32Modifier\"");
+        lines.add("    properties:");
+        lines.add("      42: 150");
+        lines.add("      4094: 4094");
+        lines.add("vlans:");
+        for (int vlan = 1; vlan <= 4094; vlan++) {
+            lines.add("  - " + vlan);
+        }
+        device = Files.createTempFile("snmpman", ".yaml");
+        Files.write(device, lines);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        if (snmpman != null) {
+            snmpman.stop();
+        }
+        if (device != null) {
+            device.toFile().delete();
+        }
+    }
+
+    @Test(timeOut = 60000)
+    public void testAllVlans() throws Exception {
+        final AgentConfiguration configuration = new AgentConfiguration("vlans", device.toFile(),
+                new File("src/test/resources/configuration/example.txt"), "127.0.0.1", PORT, null);
+        snmpman = Snmpman.start(Collections.singletonList(new SnmpmanAgent(configuration)));
+
+        final String oid = "1.3.6.1.2.1.17.2.4";
+        final List<TableEvent> vlan42 = getResponse(new OID(oid), PORT, "public@42");
+        assertEquals(vlan42.size(), 1);
+        assertTrue(containsColumn(vlan42, oid, "150"));
+
+        final List<TableEvent> vlan4094 = getResponse(new OID(oid), PORT, "public@4094");
+        assertEquals(vlan4094.size(), 1);
+        assertTrue(containsColumn(vlan4094, oid, "4094"));
+
+        final List<TableEvent> defaultContext = getResponse(new OID(oid), PORT, "public");
+        assertTrue(containsColumn(defaultContext, oid, "0"));
+
+        // the binding is not mapped for VLAN 1, but all other bindings are shared
+        assertFalse(containsColumn(getResponse(new OID(oid), PORT, "public@1"), oid, "0"));
+        final List<String> interfaces = columns(getResponse(new OID("1.3.6.1.2.1.2.2.1.2"), PORT, "public@1"));
+        assertFalse(interfaces.isEmpty());
+        assertEquals(interfaces, columns(getResponse(new OID("1.3.6.1.2.1.2.2.1.2"), PORT, "public")));
+    }
+
+    private static List<String> columns(final List<TableEvent> responses) {
+        return responses.stream().map(event -> Arrays.toString(event.getColumns())).collect(Collectors.toList());
+    }
+}
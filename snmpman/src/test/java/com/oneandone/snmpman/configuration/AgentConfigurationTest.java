@@ -1,10 +1,18 @@
 package com.oneandone.snmpman.configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.oneandone.snmpman.configuration.modifier.Modifier;
 import org.testng.annotations.Test;
 
 import java.io.File;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 public class AgentConfigurationTest {
 
@@ -55,4 +63,69 @@ public class AgentConfigurationTest {
         assertEquals(configuration.getDevice(), AgentConfiguration.DeviceFactory.DEFAULT_DEVICE);
         assertEquals(configuration.getAddress().toByteArray(), new byte[]{ 127, 0, 0, 1 });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSeed() {
+        final AgentConfiguration withoutSeed = new AgentConfiguration(
+                "Test",
+                new File("src/test/resources/configuration/cisco.yaml"),
+                new File("src/test/resources/configuration/example.txt"),
+                "127.0.0.1", 8080,
+                "secret");
+        final AgentConfiguration withSeed = AgentConfiguration.builder()
+                .name("Test")
+                .deviceConfiguration(new File("src/test/resources/configuration/cisco.yaml"))
+                .walk(new File("src/test/resources/configuration/example.txt"))
+                .ip("127.0.0.1").port(8080)
+                .community("secret").seed(42L)
+                .build();
+
+        assertNull(withoutSeed.getSeed());
+        assertEquals(withSeed.getSeed(), Long.valueOf(42L));
+    }
+
+    @Test
+    public void testSeedOfDevice() {
+        final Device device = new Device("Seeded", new Modifier[0], null, 42L);
+        final AgentConfiguration first = new AgentConfiguration("first", null, new File("example.txt"), "127.0.0.1", 8080, null) {
+            @Override
+            public Device getDevice() {
+                return device;
+            }
+        };
+        final AgentConfiguration second = new AgentConfiguration("second", null, new File("example.txt"), "127.0.0.1", 8081, null) {
+            @Override
+            public Device getDevice() {
+                return device;
+            }
+        };
+
+        assertNotNull(first.getSeed());
+        assertNotEquals(first.getSeed(), second.getSeed());
+        assertEquals(first.getSeed(), first.getSeed());
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        final AgentConfiguration[] configurations = mapper.readValue(
+                "- walk: \"example.txt\"\n  ip: \"127.0.0.1\"\n  port: 8080\n"
+                        + "- walk: \"example.txt\"\n  ip: \"127.0.0.1\"\n  port: 8081\n  virtualThreads: true\n",
+                AgentConfiguration[].class);
+
+        assertFalse(configurations[0].isVirtualThreads());
+        assertTrue(configurations[1].isVirtualThreads());
+    }
+
+    @Test
+    public void testReceiveThreads() throws Exception {
+        final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        final AgentConfiguration[] configurations = mapper.readValue(
+                "- walk: \"example.txt\"\n  ip: \"127.0.0.1\"\n  port: 8080\n"
+                        + "- walk: \"example.txt\"\n  ip: \"127.0.0.1\"\n  port: 8081\n  receiveThreads: 4\n",
+                AgentConfiguration[].class);
+
+        assertEquals(configurations[0].getReceiveThreads(), 1);
+        assertEquals(configurations[1].getReceiveThreads(), 4);
+    }
+}
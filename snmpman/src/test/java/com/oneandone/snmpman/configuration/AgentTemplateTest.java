@@ -0,0 +1,93 @@
+package com.oneandone.snmpman.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.snmp4j.smi.UdpAddress;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class AgentTemplateTest {
+
+    private static final File WALK = new File("src/test/resources/configuration/example.txt");
+
+    @Test
+    public void testConfigurations() throws Exception {
+        final AgentTemplate template = new ObjectMapper(new YAMLFactory()).readValue(
+                "name: \"switch-${index}\"\nwalk: \"src/test/resources/configuration/example.txt\"\n"
+                        + "ip: \"10.0.0.254\"\nport: 161\ncount: 5\nportCount: 2\ncommunity: \"public${index}\"\n",
+                AgentTemplate.class);
+
+        final List<AgentConfiguration> configurations = template.getConfigurations();
+        assertEquals(configurations.size(), 5);
+        assertEquals(configurations.get(0).getName(), "switch-0");
+        assertEquals(configurations.get(4).getName(), "switch-4");
+        assertEquals(configurations.get(3).getCommunity(), "public3");
+        assertEquals(configurations.get(3).getIndex(), Integer.valueOf(3));
+        assertEquals(configurations.get(0).getAddress(), new UdpAddress("10.0.0.254/161"));
+        assertEquals(configurations.get(1).getAddress(), new UdpAddress("10.0.0.254/162"));
+        assertEquals(configurations.get(2).getAddress(), new UdpAddress("10.0.0.255/161"));
+        assertEquals(configurations.get(4).getAddress(), new UdpAddress("10.0.1.0/161"));
+        assertSame(configurations.get(0).getDevice(), configurations.get(4).getDevice());
+        assertSame(configurations.get(0).getInstanceValues(), configurations.get(4).getInstanceValues());
+    }
+
+    @Test
+    public void testNameWithoutPlaceholder() {
+        final AgentTemplate template = new AgentTemplate("switch", null, WALK, "::1", 10000, 2, null, null, null, null, null);
+        assertEquals(template.getConfiguration(1).getName(), "switch-1");
+        assertEquals(template.getConfiguration(1).getAddress(), new UdpAddress("::1/10001"));
+        assertEquals(AgentTemplate.getIp("::ffff", 1), "::1:0");
+    }
+
+    @Test
+    public void testOverlays() {
+        final AgentTemplate template = AgentTemplate.builder().name("switch").walk(WALK).ip("127.0.0.1").port(10000).count(2)
+                .overlays(Arrays.asList(new File("common.txt"), new File("overlays/switch-${index}.txt"))).build();
+        assertEquals(template.getConfiguration(1).getOverlays(), Arrays.asList(new File("common.txt"), new File("overlays/switch-1.txt")));
+        assertEquals(new AgentTemplate("switch", null, WALK, "127.0.0.1", 10000, 2, null, null, null, null, null)
+                .getConfiguration(0).getOverlays(), Collections.emptyList());
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+        final AgentTemplate template = new ObjectMapper(new YAMLFactory()).readValue(
+                "name: \"switch-${index}\"\nwalk: \"src/test/resources/configuration/example.txt\"\n"
+                        + "ip: \"10.0.0.1\"\nport: 161\ncount: 2\nvirtualThreads: true\nreceiveThreads: 4\n",
+                AgentTemplate.class);
+
+        assertTrue(template.getConfiguration(1).isVirtualThreads());
+        assertEquals(template.getConfiguration(1).getReceiveThreads(), 4);
+        assertFalse(new AgentTemplate("switch", null, WALK, "127.0.0.1", 10000, 2, null, null, null, null, null)
+                .getConfiguration(0).isVirtualThreads());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPortRangeExceeded() {
+        new AgentTemplate("switch", null, WALK, "127.0.0.1", 65000, 1000, null, null, null, null, null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*\"switch\".*")
+    public void testIpRangeExceeded() {
+        new AgentTemplate("switch", null, WALK, "255.255.255.254", 161, 3, 1, null, null, null, null);
+    }
+
+    @Test
+    public void testLastIp() {
+        final AgentTemplate template = new AgentTemplate("switch", null, WALK, "255.255.255.254", 161, 4, 2, null, null, null, null);
+        assertEquals(template.getConfiguration(3).getAddress(), new UdpAddress("255.255.255.255/162"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCount() {
+        new AgentTemplate("switch", null, WALK, "127.0.0.1", 10000, 0, null, null, null, null, null);
+    }
+}
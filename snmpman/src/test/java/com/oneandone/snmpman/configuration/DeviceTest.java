@@ -3,8 +3,15 @@ package com.oneandone.snmpman.configuration;
 import com.oneandone.snmpman.configuration.modifier.Counter32Modifier;
 import com.oneandone.snmpman.configuration.modifier.Modifier;
 import com.oneandone.snmpman.configuration.type.ModifierProperties;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
@@ -24,5 +31,30 @@ public class DeviceTest {
 
         device.getModifiers().add(new Modifier(".1.2.3", Counter32Modifier.class.getName(), new ModifierProperties()));
     }
-    
-}
\ No newline at end of file
+
+    @Test
+    public void testApplicableModifiers() {
+        final Modifier prefix = new Modifier(".1.2.*", Counter32Modifier.class.getName(), new ModifierProperties());
+        final Modifier suffix = new Modifier(".1.2.3.*.5", Counter32Modifier.class.getName(), new ModifierProperties());
+        final Modifier other = new Modifier(".1.3.*", Counter32Modifier.class.getName(), new ModifierProperties());
+        final Modifier root = new Modifier(".1.*", Counter32Modifier.class.getName(), new ModifierProperties());
+        final Device device = new Device("Test", new Modifier[] { suffix, prefix, other, root }, null);
+
+        assertEquals(device.getApplicableModifiers(new OID("1.2.3.4.5")), Arrays.asList(suffix, prefix, root));
+        assertEquals(device.getApplicableModifiers(new OID("1.2.3.4.6")), Arrays.asList(prefix, root));
+        assertEquals(device.getApplicableModifiers(new OID("1.3")), Arrays.asList(other, root));
+        assertTrue(device.getApplicableModifiers(new OID("2.2.3")).isEmpty());
+    }
+
+    @Test
+    public void testApplicableModifiersMatchWildcards() throws Exception {
+        final Device device = new AgentConfiguration.DeviceFactory().getDevice(new File("src/test/resources/configuration/cisco.yaml"));
+        final Map<OID, Variable> bindings = Walks.readWalk(new File("src/test/resources/configuration/example.txt"));
+
+        for (final OID oid : bindings.keySet()) {
+            final Object expected = device.getModifiers().stream().filter(modifier -> modifier.isApplicable(oid)).collect(Collectors.toList());
+            assertEquals(device.getApplicableModifiers(oid), expected, oid.toDottedString());
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.oneandone.snmpman.configuration;
+
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.IpAddress;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Variable;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class InstanceValuesTest {
+
+    private static final File WALK = new File("src/test/resources/configuration/example.txt");
+
+    @Test
+    public void testExpand() {
+        assertEquals(InstanceValues.expand("switch-${index}", placeholder -> 7), "switch-7");
+        assertEquals(InstanceValues.expand("switch-${index:04d}", placeholder -> 7), "switch-0007");
+        assertEquals(InstanceValues.expand("00:00:5e:${index:06x}", placeholder -> 255), "00:00:5e:0000ff");
+        assertEquals(InstanceValues.expand("no placeholder", placeholder -> null), "no placeholder");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testExpandUnknownPlaceholder() {
+        InstanceValues.expand("${unknown}", placeholder -> null);
+    }
+
+    @Test
+    public void testConvert() {
+        assertEquals(InstanceValues.convert("switch-1", new OctetString("device")), new OctetString("switch-1"));
+        assertEquals(InstanceValues.convert("42", new Integer32(1)), new Integer32(42));
+        assertEquals(InstanceValues.convert("10.0.0.1", new IpAddress("127.0.0.1")), new IpAddress("10.0.0.1"));
+        assertEquals(InstanceValues.convert("00:00:5e-00 01ff", OctetString.fromHexString("00:11:22:33:44:55")),
+                OctetString.fromHexString("00:00:5e:00:01:ff"));
+    }
+
+    @Test
+    public void testDerive() {
+        final Map<String, String> expressions = new HashMap<>();
+        expressions.put(".1.3.6.1.2.1.1.5.0", "switch-${index}");
+        expressions.put("1.3.6.1.2.1.2.2.1.2", "${name}-${row}");
+        final InstanceValues values = new InstanceValues(expressions);
+        final AgentConfiguration configuration = AgentConfiguration.builder()
+                .name("agent").walk(WALK).ip("127.0.0.1").port(8080).index(3).instanceValues(values).build();
+
+        assertEquals(values.derive(new OID("1.3.6.1.2.1.1.5.0"), new OctetString("device"), configuration), new OctetString("switch-3"));
+        assertEquals(values.derive(new OID("1.3.6.1.2.1.2.2.1.2.10101"), new OctetString("Gi0/1"), configuration),
+                new OctetString("agent-10101"));
+
+        final Variable unchanged = new Integer32(1);
+        assertSame(values.derive(new OID("1.3.6.1.2.1.2.2.1.7.10101"), unchanged, configuration), unchanged);
+        assertSame(values.derive(new OID("1.3.6.1.2.1.1.5.0"), unchanged, configuration), unchanged);
+        assertTrue(InstanceValues.NONE.isEmpty());
+    }
+}
@@ -0,0 +1,108 @@
+package com.oneandone.snmpman.configuration;
+
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Variable;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+public class LayeredWalkTest {
+
+    private static final File OVERLAY = new File("src/test/resources/configuration/overlay.txt");
+
+    @Test
+    public void testReadOverlay() throws IOException {
+        final WalkOverlay overlay = WalkOverlay.read(OVERLAY);
+
+        assertEquals(overlay.getBindings().size(), 2);
+        assertEquals(overlay.getBindings().get(new OID("1.3.6.1.2.1.1.5.0")), new OctetString("overlay"));
+        assertEquals(overlay.getDeletions(), new TreeSet<>(Arrays.asList(new OID("1.3.6.1.2.1.31.1.1.1.1"), new OID("1.3.6.1.2.1.17"))));
+    }
+
+    @Test
+    public void testLayers() {
+        final SortedMap<OID, Variable> base = new TreeMap<>();
+        base.put(new OID("1.1"), new Integer32(1));
+        base.put(new OID("1.2.1"), new Integer32(2));
+        base.put(new OID("1.2.2"), new Integer32(3));
+        base.put(new OID("1.3"), new Integer32(4));
+
+        final WalkOverlay first = new WalkOverlay(bindings("1.2.3", 5, "1.4", 6), new TreeSet<>(Collections.singleton(new OID("1.2"))));
+        final WalkOverlay second = new WalkOverlay(bindings("1.1", 7, "1.2.1", 8), new TreeSet<>(Collections.singleton(new OID("1.4"))));
+        final LayeredWalk walk = new LayeredWalk(base, Arrays.asList(first, second));
+
+        assertEquals(new ArrayList<>(walk.keySet()), Arrays.asList(new OID("1.1"), new OID("1.2.1"), new OID("1.2.3"), new OID("1.3")));
+        assertEquals(new ArrayList<>(walk.values()), Arrays.asList(new Integer32(7), new Integer32(8), new Integer32(5), new Integer32(4)));
+        assertEquals(walk.size(), 4);
+        assertEquals(walk.get(new OID("1.2.3")), new Integer32(5));
+        assertNull(walk.get(new OID("1.2.2")));
+        assertNull(walk.get(new OID("1.4")));
+        assertFalse(walk.containsKey(new OID("1.2.2")));
+        assertEquals(base.size(), 4);
+    }
+
+    @Test
+    public void testSize() {
+        final Random random = new Random(42L);
+        final SortedMap<OID, Variable> base = new TreeMap<>();
+        for (int i = 0; i < 200; i++) {
+            base.put(new OID(new int[]{1, random.nextInt(10), random.nextInt(10)}), new Integer32(i));
+        }
+        for (int i = 0; i < 20; i++) {
+            final List<WalkOverlay> overlays = new ArrayList<>();
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                final SortedMap<OID, Variable> bindings = new TreeMap<>();
+                for (int k = random.nextInt(20); k > 0; k--) {
+                    bindings.put(new OID(new int[]{1, random.nextInt(12), random.nextInt(12)}), new Integer32(k));
+                }
+                final TreeSet<OID> deletions = new TreeSet<>();
+                for (int k = random.nextInt(3); k > 0; k--) {
+                    deletions.add(random.nextBoolean() ? new OID(new int[]{1, random.nextInt(12)}) : new OID(new int[]{1, random.nextInt(12), random.nextInt(12)}));
+                }
+                overlays.add(new WalkOverlay(bindings, deletions));
+            }
+            final LayeredWalk walk = new LayeredWalk(base, overlays);
+
+            int count = 0;
+            for (final Iterator<OID> it = walk.keySet().iterator(); it.hasNext(); it.next()) {
+                count++;
+            }
+            assertEquals(walk.size(), count);
+        }
+    }
+
+    @Test
+    public void testWithoutOverlays() {
+        final SortedMap<OID, Variable> base = bindings("1.1", 1, "1.2", 2);
+
+        assertEquals(new LayeredWalk(base, Collections.emptyList()), base);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testImmutable() {
+        new LayeredWalk(bindings("1.1", 1, "1.2", 2), Collections.emptyList()).put(new OID("1.3"), new Integer32(3));
+    }
+
+    private static SortedMap<OID, Variable> bindings(final String firstOid, final int first, final String secondOid, final int second) {
+        final SortedMap<OID, Variable> result = new TreeMap<>();
+        result.put(new OID(firstOid), new Integer32(first));
+        result.put(new OID(secondOid), new Integer32(second));
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+package com.oneandone.snmpman.configuration;
+
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Variable;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+public class WalkCacheTest {
+    private Path tmpFile;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        WalkCache.clear();
+        tmpFile = Files.createTempFile("snmpman", "walk");
+        Files.write(tmpFile, Collections.singletonList(".1.3.6.1.2.1.2.2.1.2.10101 = STRING: \"GigabitEthernet0/1\""));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        WalkCache.clear();
+        if (tmpFile != null) {
+            tmpFile.toFile().delete();
+        }
+    }
+
+    @Test
+    public void readWalkTwiceReturnsSameSnapshot() throws IOException {
+        final Map<OID, Variable> first = WalkCache.readWalk(tmpFile.toFile());
+        final Map<OID, Variable> second = WalkCache.readWalk(tmpFile.toFile().getAbsoluteFile());
+
+        assertSame(first, second);
+        assertEquals(first, Collections.singletonMap(new OID(".1.3.6.1.2.1.2.2.1.2.10101"), new OctetString("GigabitEthernet0/1")));
+    }
+
+    @Test
+    public void readWalkAfterModification() throws IOException {
+        final Map<OID, Variable> first = WalkCache.readWalk(tmpFile.toFile());
+
+        Files.write(tmpFile, Arrays.asList(
+                ".1.3.6.1.2.1.2.2.1.2.10101 = STRING: \"GigabitEthernet0/1\"",
+                ".1.3.6.1.2.1.31.1.1.1.1.10101 = STRING: \"Gi0/1\""));
+        final Map<OID, Variable> second = WalkCache.readWalk(tmpFile.toFile());
+
+        assertNotSame(first, second);
+        assertEquals(second.size(), 2);
+    }
+
+    @Test
+    public void readWalkWithOverlays() throws IOException {
+        final Path overlay = Files.createTempFile("snmpman", "overlay");
+        try {
+            Files.write(overlay, Arrays.asList(".1.3.6.1.2.1.31.1.1.1.1.10101 = STRING: \"Gi0/1\"", "-.1.3.6.1.2.1.2.2.1.2"));
+            final Map<OID, Variable> first = WalkCache.readWalk(tmpFile.toFile(), Collections.singletonList(overlay.toFile()));
+            final Map<OID, Variable> second = WalkCache.readWalk(tmpFile.toFile(), Collections.singletonList(overlay.toFile()));
+
+            assertSame(first, second);
+            assertEquals(first, Collections.singletonMap(new OID(".1.3.6.1.2.1.31.1.1.1.1.10101"), new OctetString("Gi0/1")));
+            assertSame(WalkCache.readWalk(tmpFile.toFile(), Collections.emptyList()), WalkCache.readWalk(tmpFile.toFile()));
+
+            Files.write(overlay, Collections.singletonList(".1.3.6.1.2.1.31.1.1.1.1.10101 = STRING: \"Gi0/1-changed\""));
+            final Map<OID, Variable> changed = WalkCache.readWalk(tmpFile.toFile(), Collections.singletonList(overlay.toFile()));
+
+            assertNotSame(changed, first);
+            assertEquals(changed.size(), 2);
+        } finally {
+            overlay.toFile().delete();
+        }
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void readWalkIsImmutable() throws IOException {
+        WalkCache.readWalk(tmpFile.toFile()).put(new OID(".1.2.3"), new OctetString("foo"));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void readWalkWithMissingFile() throws IOException {
+        WalkCache.readWalk(tmpFile.resolveSibling("does-not-exist.walk").toFile());
+    }
+}
@@ -0,0 +1,319 @@
+package com.oneandone.snmpman.configuration;
+
+import com.google.common.primitives.UnsignedLong;
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Gauge32;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.IpAddress;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.TimeTicks;
+import org.snmp4j.smi.Variable;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+/**
+ * Compares the results of {@link Walks#readWalk(File)} with the former regular expression based parser.
+ */
+public class WalkParserParityTest {
+
+    private Path tmpFile;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tmpFile = Files.createTempFile("snmpman", "walk");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        if (tmpFile != null) {
+            tmpFile.toFile().delete();
+        }
+    }
+
+    @DataProvider
+    public Object[][] walkFiles() {
+        return new Object[][]{
+                {new File("src/test/resources/configuration/example.txt")},
+                {new File("src/test/resources/configuration/differentStartingOID.txt")},
+                {new File("src/main/config/walk/example1.walk")}
+        };
+    }
+
+    @Test(dataProvider = "walkFiles")
+    public void testWalkFiles(final File walk) throws IOException {
+        assertParity(walk);
+    }
+
+    @Test
+    public void testEdgeCases() throws IOException {
+        Files.write(tmpFile, Arrays.asList(
+                "iso.3.6.1.2.1.1.1.0 = STRING: \"Cisco IOS Software, C3560 Software",
+                "Technical Support: http://www.cisco.com/techsupport",
+                ".1.3.6.1.2.1.1.1.1 = STRING: \"not closed",
+                "",
+                "second line\"",
+                ".1.3.6.1.2.1.1.2.0 = OID: .1.3.6.1.4.1.9.1.516",
+                ".1.3.6.1.2.1.1.3.0 = Timeticks: (1234567) 3:25:45.67",
+                ".1.3.6.1.2.1.1.3.1 = Timeticks: 1234567",
+                ".1.3.6.1.2.1.1.3.2 = Timeticks: )1(",
+                ".1.3.6.1.2.1.1.4.0 = \"\"",
+                ".1.3.6.1.2.1.1.4.1 = STRING: ",
+                ".1.3.6.1.2.1.1.4.2 = STRING: \"",
+                ".1.3.6.1.2.1.1.4.3 = STRING: \"Straße\"",
+                ".1.3.6.1.2.1.1.7.0 = INTEGER: 72",
+                ".1.3.6.1.2.1.2.2.1.3.1 = INTEGER: ethernetCsmacd(6)",
+                ".1.3.6.1.2.1.2.2.1.3.2 = INTEGER: -5",
+                ".1.3.6.1.2.1.2.2.1.3.3 = INTEGER: 5-3",
+                ".1.3.6.1.2.1.2.2.1.3.4 = INTEGER: ?",
+                ".1.3.6.1.2.1.2.2.1.3.5 = INTEGER: 99999999999",
+                ".1.3.6.1.2.1.2.2.1.3.6 = INTEGER: --5",
+                ".1.3.6.1.2.1.2.2.1.5.1 = Gauge32: 1000000000",
+                ".1.3.6.1.2.1.2.2.1.5.2 = Gauge32: 4294967296",
+                ".1.3.6.1.2.1.2.2.1.5.3 = Gauge32: -1",
+                ".1.3.6.1.2.1.2.2.1.10.1 = Counter32: 123 octets",
+                ".1.3.6.1.2.1.2.2.1.10.2 = Counter32: 99999999999999999999",
+                ".1.3.6.1.2.1.31.1.1.1.6.1 = Counter64: 18446744073709551615",
+                ".1.3.6.1.2.1.31.1.1.1.6.2 = Counter64: 18446744073709551616",
+                ".1.3.6.1.2.1.31.1.1.1.6.3 = Counter64: -1",
+                ".1.3.6.1.2.1.31.1.1.1.6.4 = Counter64: +1",
+                ".1.3.6.1.2.1.31.1.1.1.6.5 = Counter64: ",
+                ".1.3.6.1.2.1.4.20.1.1.10.0.0.1 = IpAddress: 10.0.0.1",
+                ".1.3.6.1.2.1.2.2.1.6.1 = Hex-STRING: 00 1A 2b 3C 4d 5E ",
+                "0F 10 ",
+                "11",
+                "not hex",
+                ".1.3.6.1.2.1.2.2.1.6.2 = Hex-STRING: 0a0b 1 ff",
+                ".1.3.6.1.2.1.2.2.1.6.3 = Hex-STRING: zz",
+                "00 01",
+                ".1.3.6.1.2.1.2.2.1.6.4 = Hex-STRING: ",
+                ".1.3.6.1.2.1.2.2.1.7.1 = BITS: 80 00",
+                "00 01",
+                ".1.3.6.1.2.1.2.2.1.8.1 = Gauge32",
+                ".1.3.6.1.2.1.2.2.1.8.2 =  Gauge32: 1",
+                ".1.3.6.1.2.1.2.2.1.8.3  = Gauge32: 1",
+                ".1.3.6.1.2.1.2.2.1.8.4= Gauge32: 1",
+                ".1.3.6.1.2.1.2.2.1.8.5 = Gauge32:1",
+                "1.3.6.1.2.1.2.2.1.8.6 = Gauge32: 1",
+                ".1.3.6.1.2.1..2.8.7 = Gauge32: 1",
+                ".1.3.6.1.2.1.2.2.1.8.8. = Gauge32: 1",
+                ".1.3iso.6.1.2.1.2.2.1.8.9 = Gauge32: 1",
+                ".1.3.4294967295.1 = Gauge32: 1",
+                ".1.3.4294967296.1 = Gauge32: 1",
+                ".1.3.99999999999999999999.2 = STRING: \"overflow",
+                "continued\"",
+                ".1.3.6.1.2.1.2.2.1.2.1 = STRING: \"duplicate\"",
+                ".1.3.6.1.2.1.2.2.1.2.1 = STRING: \"replaced\"",
+                "this is just an example"), StandardCharsets.UTF_8);
+        assertParity(tmpFile.toFile());
+        assertEquals(Walks.readWalk(tmpFile.toFile()).get(new OID(".1.3.4294967295.1")), new Gauge32(1));
+        assertFalse(Walks.readWalk(tmpFile.toFile()).containsKey(new OID(".1.3.0.1")));
+    }
+
+    @Test
+    public void testRandomWalk() throws IOException {
+        final Random random = new Random(4711L);
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            final String oid = (random.nextInt(10) == 0 ? "iso" : ".1") + ".3.6.1.2.1." + random.nextInt(50) + "." + random.nextInt(50) + "." + i;
+            switch (random.nextInt(9)) {
+                case 0:
+                    lines.add(oid + " = STRING: \"line " + i + "\"");
+                    break;
+                case 1:
+                    lines.add(oid + " = STRING: \"first " + i);
+                    for (int j = random.nextInt(4); j > 0; j--) {
+                        lines.add("continued " + j);
+                    }
+                    lines.add("last\"");
+                    break;
+                case 2:
+                    lines.add(oid + " = Hex-STRING: " + hex(random, 1 + random.nextInt(16)));
+                    for (int j = random.nextInt(3); j > 0; j--) {
+                        lines.add(hex(random, 1 + random.nextInt(16)));
+                    }
+                    break;
+                case 3:
+                    lines.add(oid + " = Counter32: " + (random.nextLong() & 0xFFFFFFFFL));
+                    break;
+                case 4:
+                    lines.add(oid + " = Counter64: " + UnsignedLong.fromLongBits(random.nextLong()));
+                    break;
+                case 5:
+                    lines.add(oid + " = Gauge32: " + (random.nextLong() & 0xFFFFFFFFL));
+                    break;
+                case 6:
+                    lines.add(oid + " = INTEGER: " + (random.nextBoolean() ? "up(" + random.nextInt(7) + ")" : String.valueOf(random.nextInt())));
+                    break;
+                case 7:
+                    lines.add(oid + " = Timeticks: (" + (random.nextLong() & 0xFFFFFFFFL) + ") 1 day, 2:03:04.05");
+                    break;
+                default:
+                    lines.add(oid + " = IpAddress: " + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256));
+                    break;
+            }
+        }
+        Files.write(tmpFile, lines, StandardCharsets.UTF_8);
+        assertParity(tmpFile.toFile());
+    }
+
+    private static String hex(final Random random, final int count) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(String.format("%02X ", random.nextInt(256)));
+        }
+        return builder.toString();
+    }
+
+    private static void assertParity(final File walk) throws IOException {
+        final Map<OID, Variable> expected;
+        try (BufferedReader reader = Files.newBufferedReader(walk.toPath(), StandardCharsets.UTF_8)) {
+            expected = RegexWalkParser.readVariableBindings(reader);
+        }
+        final Map<OID, Variable> actual = Walks.readWalk(walk);
+
+        assertEquals(actual.keySet(), expected.keySet());
+        for (final Map.Entry<OID, Variable> entry : expected.entrySet()) {
+            final Variable variable = actual.get(entry.getKey());
+            assertEquals(variable.getSyntax(), entry.getValue().getSyntax(), "syntax of " + entry.getKey());
+            assertEquals(variable, entry.getValue(), "value of " + entry.getKey());
+        }
+    }
+
+    /** The former regular expression based walk parser, which serves as the reference implementation. */
+    private static final class RegexWalkParser {
+
+        private static final Pattern VARIABLE_BINDING_PATTERN = Pattern.compile("(((iso)?\\.[0-9]+)+) = ((([a-zA-Z0-9-]+): (.*)$)|(\"\"$))");
+
+        private static final BigInteger MAXIMUM_SUB_IDENTIFIER = BigInteger.valueOf(0xFFFFFFFFL);
+
+        private static final Pattern HEX_STRING_PATTERN = Pattern.compile("([0-9a-fA-F]{2})( [0-9a-fA-F]{2})* *");
+
+        private static Map<OID, Variable> readVariableBindings(final BufferedReader reader) throws IOException {
+            final Map<OID, Variable> bindings = new HashMap<>();
+            OID lastOid = null;
+            String lastType = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                boolean match = false;
+                Matcher matcher = VARIABLE_BINDING_PATTERN.matcher(line);
+                if (matcher.matches()) {
+                    match = true;
+                    final OID oid;
+                    try {
+                        oid = new OID(matcher.group(1).replace("iso", ".1"));
+                    } catch (final RuntimeException e) {
+                        continue;
+                    }
+                    // the former parser wrapped sub-identifiers above 2^32 - 1, which are rejected now
+                    if (Arrays.stream(matcher.group(1).replace("iso", ".1").split("\\.")).skip(1).anyMatch(arc -> new BigInteger(arc).compareTo(MAXIMUM_SUB_IDENTIFIER) > 0)) {
+                        lastOid = null;
+                        continue;
+                    }
+                    lastOid = oid;
+
+                    try {
+                        final Variable variable;
+                        if (matcher.group(7) == null) {
+                            lastType = "STRING";
+                            variable = getVariable("STRING", "\"\"");
+                        } else {
+                            lastType = matcher.group(6);
+                            variable = getVariable(lastType, matcher.group(7));
+                        }
+                        bindings.put(oid, variable);
+                    } catch (final Exception e) {
+                        // skip the binding
+                    }
+                }
+
+                if (!match && lastType != null && lastOid != null && lastType.equals("STRING")) {
+                    OctetString octetStringToExtend = (OctetString) bindings.get(lastOid);
+                    if (octetStringToExtend != null) {
+                        match = true;
+                        String newString = line.endsWith("\"") ? line.substring(0, line.length() - 1) : line;
+                        bindings.put(lastOid, new OctetString(octetStringToExtend.toString() + "\n" + newString));
+                    }
+                }
+
+                if (!match && lastType != null && lastOid != null && lastType.equals("Hex-STRING")) {
+                    matcher = HEX_STRING_PATTERN.matcher(line);
+                    if (matcher.matches()) {
+                        OctetString octetStringToExtend = (OctetString) bindings.get(lastOid);
+                        if (octetStringToExtend != null) {
+                            byte[] oldBytes = octetStringToExtend.getValue();
+                            byte[] newBytes = OctetString.fromHexString(matcher.group(0), ' ').toByteArray();
+                            byte[] combined = new byte[oldBytes.length + newBytes.length];
+                            System.arraycopy(oldBytes, 0, combined, 0, oldBytes.length);
+                            System.arraycopy(newBytes, 0, combined, oldBytes.length, newBytes.length);
+                            bindings.put(lastOid, new OctetString(combined));
+                        }
+                    }
+                }
+            }
+            return bindings;
+        }
+
+        private static Variable getVariable(final String type, final String value) {
+            switch (type) {
+                case "STRING":
+                    String use = value;
+                    if (use.startsWith("\"")) {
+                        use = use.substring(1);
+                    }
+                    if (use.endsWith("\"")) {
+                        use = use.substring(0, use.length() - 1);
+                    }
+                    if (use.length() == 0) {
+                        return new OctetString();
+                    }
+                    return new OctetString(use);
+                case "OID":
+                    return new OID(value);
+                case "Gauge32":
+                    return new Gauge32(Long.parseLong(value.replaceAll("[^-?0-9]+", "")));
+                case "Timeticks":
+                    final int openBracket = value.indexOf("(") + 1;
+                    final int closeBracket = value.indexOf(")");
+                    if (openBracket == 0 || closeBracket < 0) {
+                        throw new IllegalArgumentException("could not parse time tick value in " + value);
+                    }
+                    return new TimeTicks(Long.parseLong(value.substring(openBracket, closeBracket)));
+                case "Counter32":
+                    return new Counter32(Long.parseLong(value.replaceAll("[^-?0-9]+", "")));
+                case "Counter64":
+                    return new Counter64(UnsignedLong.valueOf(value).longValue());
+                case "INTEGER":
+                    return new Integer32(Integer.parseInt(value.replaceAll("[^-?0-9]+", "")));
+                case "Hex-STRING":
+                    return OctetString.fromHexString(value, ' ');
+                case "IpAddress":
+                    return new IpAddress(value);
+                default:
+                    throw new IllegalArgumentException("illegal type \"" + type + "\" in walk detected");
+            }
+        }
+    }
+}
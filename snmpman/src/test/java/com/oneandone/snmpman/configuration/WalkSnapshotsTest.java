@@ -0,0 +1,128 @@
+package com.oneandone.snmpman.configuration;
+
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Variable;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class WalkSnapshotsTest {
+    private Path tmpFile;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tmpFile = Files.createTempFile("snmpman", "snapshot");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        if (tmpFile != null) {
+            tmpFile.toFile().delete();
+        }
+    }
+
+    @DataProvider
+    public Object[][] walkFiles() {
+        return new Object[][]{
+                {new File("src/test/resources/configuration/example.txt")},
+                {new File("src/test/resources/configuration/differentStartingOID.txt")},
+                {new File("src/main/config/walk/example1.walk")}
+        };
+    }
+
+    @Test(dataProvider = "walkFiles")
+    public void compileAndRead(final File walk) throws IOException {
+        final int count = WalkSnapshots.compile(walk, tmpFile.toFile());
+        final Map<OID, Variable> expected = Walks.readWalk(walk);
+
+        assertTrue(WalkSnapshots.isSnapshot(tmpFile.toFile()));
+        assertFalse(WalkSnapshots.isSnapshot(walk));
+        assertEquals(count, expected.size());
+        assertEquals(WalkSnapshots.read(tmpFile.toFile()), expected);
+        assertEquals(Walks.readWalk(tmpFile.toFile()), expected);
+    }
+
+    @Test
+    public void writeAndReadManyBlocks() throws IOException {
+        final SortedMap<OID, Variable> bindings = new TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            bindings.put(new OID(".1.3.6.1.2.1.2.2.1.10." + i), new Counter32(i));
+            bindings.put(new OID(".1.3.6.1.2.1.2.2.1.2." + i + ".4294967295"), new OctetString("eth" + i));
+        }
+        WalkSnapshots.write(bindings, tmpFile.toFile());
+        assertEquals(WalkSnapshots.read(tmpFile.toFile()), bindings);
+    }
+
+    @Test
+    public void writeReplacesSnapshot() throws IOException {
+        WalkSnapshots.write(new TreeMap<>(Collections.singletonMap(new OID(".1.3.6.1.2.1.1.5.0"), new OctetString("first"))), tmpFile.toFile());
+        final SortedMap<OID, Variable> bindings = new TreeMap<>(Collections.singletonMap(new OID(".1.3.6.1.2.1.1.5.0"), new OctetString("second")));
+        WalkSnapshots.write(bindings, tmpFile.toFile());
+        assertEquals(WalkSnapshots.read(tmpFile.toFile()), bindings);
+        try (final Stream<Path> files = Files.list(tmpFile.getParent())) {
+            assertFalse(files.anyMatch(file -> file.getFileName().toString().startsWith(tmpFile.getFileName().toString()) && !file.equals(tmpFile)));
+        }
+    }
+
+    @Test
+    public void writeAndReadEmpty() throws IOException {
+        WalkSnapshots.write(new TreeMap<>(), tmpFile.toFile());
+        assertEquals(WalkSnapshots.read(tmpFile.toFile()), Collections.emptyMap());
+    }
+
+    @Test
+    public void writeFailureDeletesTemporaryFile() throws IOException {
+        final Path directory = Files.createTempDirectory("snmpman");
+        try {
+            // a non-empty directory can not be replaced by the snapshot
+            final Path snapshot = Files.createDirectory(directory.resolve("snapshot"));
+            Files.createFile(snapshot.resolve("content"));
+            try {
+                WalkSnapshots.write(new TreeMap<>(Collections.singletonMap(new OID(".1.3.6.1.2.1.1.5.0"), new OctetString("agent"))), snapshot.toFile());
+                fail("the snapshot should not be written");
+            } catch (final IOException e) {
+                try (final Stream<Path> files = Files.list(directory)) {
+                    assertEquals(files.count(), 1L);
+                }
+            }
+        } finally {
+            try (final Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void readWithTextWalk() throws IOException {
+        WalkSnapshots.read(new File("src/test/resources/configuration/example.txt"));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void readWithTruncatedSnapshot() throws IOException {
+        WalkSnapshots.compile(new File("src/test/resources/configuration/example.txt"), tmpFile.toFile());
+        try (final RandomAccessFile file = new RandomAccessFile(tmpFile.toFile(), "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        WalkSnapshots.read(tmpFile.toFile());
+    }
+}
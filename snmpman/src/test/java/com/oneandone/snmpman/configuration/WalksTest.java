@@ -9,12 +9,16 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.testng.Assert.assertEquals;
@@ -107,6 +111,43 @@ public class WalksTest {
                 new OctetString(expected)));
     }
 
+    @Test(timeOut = 10000)
+    public void readWalkWithLongContinuations() throws IOException {
+        final List<String> lines = new ArrayList<>();
+        lines.add(".1.3.6.1.2.1.1.1.0 = STRING: \"first line");
+        final StringBuilder expectedString = new StringBuilder("first line");
+        for (int i = 0; i < 50000; i++) {
+            final String line = "continuation line " + i + " of a multi-kilobyte sysDescr";
+            lines.add(line);
+            expectedString.append('\n').append(line);
+        }
+        lines.set(lines.size() - 1, lines.get(lines.size() - 1) + "\"");
+        lines.add(".1.0.8802.1.1.2.1.4.1.1.0 = Hex-STRING: 00 01 02 03 04 05 06 07 08 09 0A 0B 0C 0D 0E 0F");
+        for (int i = 0; i < 50000; i++) {
+            lines.add("00 01 02 03 04 05 06 07 08 09 0A 0B 0C 0D 0E 0F");
+        }
+        lines.add(".1.3.6.1.2.1.1.3.0 = Timeticks: (42) 0:00:00.42");
+        Files.write(tmpFile, lines);
+
+        final Map<OID, Variable> walk = Walks.readWalk(tmpFile.toFile());
+        assertEquals(walk.size(), 3);
+        assertEquals(walk.get(new OID(".1.3.6.1.2.1.1.1.0")), new OctetString(expectedString.toString()));
+        final byte[] bytes = ((OctetString) walk.get(new OID(".1.0.8802.1.1.2.1.4.1.1.0"))).getValue();
+        assertEquals(bytes.length, 16 * 50001);
+        for (int i = 0; i < bytes.length; i++) {
+            assertEquals(bytes[i], (byte) (i % 16));
+        }
+    }
+
+    @Test
+    public void readWalkWithNonPrintableStringContinuation() throws IOException {
+        Files.write(tmpFile, Arrays.asList(
+                ".1.3.6.1.2.1.1.1.0 = STRING: \"Gr\u00fc\u00dfe",
+                "aus K\u00f6ln\""), StandardCharsets.UTF_8);
+        final Map<OID, Variable> walk = Walks.readWalk(tmpFile.toFile());
+        assertEquals(walk, Collections.singletonMap(new OID(".1.3.6.1.2.1.1.1.0"), new OctetString("Gr\u00fc\u00dfe\naus K\u00f6ln")));
+    }
+
     @Test
     public void readWalkWithMultipleKeys() throws IOException {
         Files.write(tmpFile, Arrays.asList(
@@ -139,4 +180,63 @@ public class WalksTest {
         Map<OID, Variable> walk = Walks.readWalk(tmpFile.toFile());
         assertEquals(walk, Collections.emptyMap());
     }
+
+    @Test
+    public void readWalkParallelWithEmptyFile() throws IOException {
+        assertEquals(Walks.readWalkParallel(tmpFile.toFile(), 16), Collections.emptyMap());
+    }
+
+    @Test
+    public void readWalkParallelWithMultiLineValues() throws IOException {
+        Files.write(tmpFile, Arrays.asList(
+                ".1.3.6.1.2.1.2.2.1.2.10101 = STRING: \"GigabitEthernet0/1\"",
+                ".1.0.8802.1.1.2.1.3.4.0 = STRING: \"Cisco IOS Software, C3560 Software (C3560-IPBASEK9-M), Version 12.2(50)SE3, RELEASE SOFTWARE (fc1)",
+                "Technical Support: http://www.cisco.com/techsupport",
+                "Copyright (c) 1986-2009 by Cisco Systems, Inc.",
+                "Compiled Wed 22-Jul-09 06:41 by prod_rel_team\"",
+                ".1.3.6.1.4.1.9.9.683.1.5.0 = Hex-STRING: 00 01 02 03 04 05 06 07 08 09 0a 0b 0c 0d 0e 0f",
+                "10 11 12 13 14 15 16 17 18 19 1a 1b 1c 1d 1e 1f",
+                "20 21 22 23 24 25 26 27 28 29 2a 2b 2c 2d 2e 2f",
+                ".1.3.6.1.2.1.31.1.1.1.10.10101 = Counter64: 48648257581",
+                ".1.3.6.1.2.1.2.2.1.2.10101 = STRING: \"GigabitEthernet0/2\"",
+                "this is just an example",
+                ".1.3.6.1.2.1.31.1.1.1.15.10101 = Gauge32: 1000"));
+        final Map<OID, Variable> expected = Walks.readWalk(tmpFile.toFile());
+        assertEquals(expected.size(), 5);
+        for (int chunkSize = 1; chunkSize < 512; chunkSize += 7) {
+            assertEquals(Walks.readWalkParallel(tmpFile.toFile(), chunkSize), expected, "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    public void readWalkParallelWithCarriageReturns() throws IOException {
+        Files.write(tmpFile, (".1.3.6.1.2.1.2.2.1.2.10101 = STRING: \"Gigabit\r\nEthernet0/1\"\r\n" +
+                ".1.3.6.1.4.1.9.9.683.1.5.0 = Hex-STRING: 00 01\r\n02 03\r\n" +
+                ".1.3.6.1.2.1.31.1.1.1.15.10101 = Gauge32: 1000").getBytes(StandardCharsets.UTF_8));
+        final Map<OID, Variable> expected = Walks.readWalk(tmpFile.toFile());
+        assertEquals(expected.size(), 3);
+        for (int chunkSize = 1; chunkSize < 128; chunkSize++) {
+            assertEquals(Walks.readWalkParallel(tmpFile.toFile(), chunkSize), expected, "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    public void readWalkParallelWithSmallDecodeBuffer() throws IOException {
+        Files.write(tmpFile, (".1.3.6.1.2.1.1.1.0 = STRING: \"Gr\u00fc\u00dfe aus M\u00fcnchen\r\nund K\u00f6ln\"\r\n" +
+                ".1.3.6.1.2.1.2.2.1.2.10101 = STRING: \"" + String.join("", Collections.nCopies(100, "\u20ac")) + "\"\r" +
+                ".1.3.6.1.4.1.9.9.683.1.5.0 = Hex-STRING: 00 01\n02 03\n" +
+                ".1.3.6.1.2.1.31.1.1.1.15.10101 = Gauge32: 1000").getBytes(StandardCharsets.UTF_8));
+        final Map<OID, Variable> expected = Walks.readWalk(tmpFile.toFile());
+        assertEquals(expected.size(), 4);
+        for (int bufferSize = 1; bufferSize < 64; bufferSize++) {
+            assertEquals(Walks.readWalkParallel(tmpFile.toFile(), 64, bufferSize), expected, "buffer size " + bufferSize);
+        }
+    }
+
+    @Test
+    public void readWalkParallelWithExampleWalk() throws IOException {
+        final File walk = new File("src/main/config/walk/example1.walk");
+        assertEquals(Walks.readWalkParallel(walk, 4096), Walks.readWalk(walk));
+        assertEquals(Walks.readWalkParallel(walk), Walks.readWalk(walk));
+    }
 }
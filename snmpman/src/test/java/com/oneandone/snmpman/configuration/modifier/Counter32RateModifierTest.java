@@ -0,0 +1,176 @@
+package com.oneandone.snmpman.configuration.modifier;
+
+import com.oneandone.snmpman.configuration.type.ModifierProperties;
+import org.snmp4j.smi.Counter32;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class Counter32RateModifierTest {
+
+    private static final long START = 1_500_000_000_000L;
+
+    @Test
+    public void testProperties() {
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("rate", 125.5);
+        modifierProperties.put("jitter", "0.25");
+
+        final Counter32RateModifier modifier = new Counter32RateModifier();
+        modifier.init(modifierProperties);
+
+        assertEquals(modifier.getRate(), 125.5);
+        assertEquals(modifier.getJitter(), 0.25);
+        assertEquals(modifier.getProfile(), null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidJitter() {
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("jitter", 2);
+
+        new Counter32RateModifier().init(modifierProperties);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidProfile() {
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("profile", "1,2,3");
+
+        new Counter32RateModifier().init(modifierProperties);
+    }
+
+    @Test
+    public void testModify() {
+        final AtomicLong clock = new AtomicLong(START);
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("rate", 100);
+
+        final Counter32RateModifier modifier = new Counter32RateModifier(clock::get);
+        modifier.init(modifierProperties);
+
+        final Counter32 initial = new Counter32(5);
+        assertEquals(modifier.modify(initial).getValue(), 5);
+
+        clock.addAndGet(10_500);
+        assertEquals(modifier.modify(initial).getValue(), 1005);
+        assertEquals(modifier.modify(initial).getValue(), 1005);
+        assertEquals(initial.getValue(), 5);
+    }
+
+    @Test
+    public void testWrapAround() {
+        final AtomicLong clock = new AtomicLong(START);
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("rate", 10);
+
+        final Counter32RateModifier modifier = new Counter32RateModifier(clock::get);
+        modifier.init(modifierProperties);
+
+        clock.addAndGet(2_000);
+        assertEquals(modifier.modify(new Counter32(4294967290L)).getValue(), 14);
+    }
+
+    @Test
+    public void testJitterIsMonotonicAndBounded() {
+        final AtomicLong clock = new AtomicLong(START);
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("rate", 1000);
+        modifierProperties.put("jitter", 1);
+
+        final Counter32RateModifier modifier = new Counter32RateModifier(clock::get);
+        modifier.init(modifierProperties);
+
+        final Counter32 initial = new Counter32(0);
+        long previous = modifier.modify(initial).getValue();
+        boolean jittered = false;
+        for (int second = 1; second < 1000; second++) {
+            clock.addAndGet(1_000);
+            final long value = modifier.modify(initial).getValue();
+            assertTrue(value >= previous, "counter decreased at second " + second);
+            assertTrue(value >= second * 1000L && value < (second + 1) * 1000L, "value " + value + " out of range at second " + second);
+            jittered |= value != second * 1000L;
+            previous = value;
+        }
+        assertTrue(jittered);
+    }
+
+    @Test
+    public void testDailyProfile() {
+        final double[] profile = new double[24];
+        Arrays.fill(profile, 1.0);
+        profile[3] = 0.5;
+        profile[20] = 2.5;
+
+        final AtomicLong clock = new AtomicLong(START + 1234);
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("rate", 2);
+        modifierProperties.put("profile", Arrays.asList(1, 1, 1, 0.5, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 2.5, 1, 1, 1));
+
+        final Counter32RateModifier modifier = new Counter32RateModifier(clock::get);
+        modifier.init(modifierProperties);
+        assertEquals(modifier.getProfile(), profile);
+
+        final Counter32 initial = new Counter32(0);
+        long previous = 0;
+        for (int hour = 1; hour <= 24; hour++) {
+            clock.addAndGet(3_600_000);
+            final long value = modifier.modify(initial).getValue();
+            assertTrue(value > previous);
+            previous = value;
+        }
+        assertEquals(previous, 2 * 3600 * 25L);
+    }
+
+    @Test
+    public void testDailyProfileAcrossDaylightSavingTime() {
+        final double[] profile = new double[24];
+        profile[12] = 1;
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("profile", Arrays.stream(profile).boxed().collect(Collectors.toList()));
+
+        // midnight of the day the clocks are set forward from 02:00 to 03:00
+        final AtomicLong clock = new AtomicLong(Instant.parse("2023-03-25T23:00:00Z").toEpochMilli());
+        final Counter32RateModifier modifier = new Counter32RateModifier(clock::get, ZoneId.of("Europe/Berlin"));
+        modifier.init(modifierProperties);
+
+        final Counter32 initial = new Counter32(0);
+        clock.set(Instant.parse("2023-03-26T09:59:59Z").toEpochMilli());
+        assertEquals(modifier.modify(initial).getValue(), 0);
+        // 12:30 local time
+        clock.set(Instant.parse("2023-03-26T10:30:00Z").toEpochMilli());
+        assertEquals(modifier.modify(initial).getValue(), 1800);
+        // 12:30 local time on the day the clocks are set back from 03:00 to 02:00
+        clock.set(Instant.parse("2023-10-29T11:30:00Z").toEpochMilli());
+        assertEquals(modifier.modify(initial).getValue(), 217 * 3600 + 1800);
+    }
+
+    @Test
+    public void testJitterDiffersByVariable() {
+        final AtomicLong clock = new AtomicLong(START);
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("rate", 1000);
+        modifierProperties.put("jitter", 1);
+
+        final Counter32RateModifier modifier = new Counter32RateModifier(clock::get);
+        modifier.init(modifierProperties);
+
+        final Counter32 initial = new Counter32(0);
+        final ModifierRandom first = ModifierRandom.shared().derive(1);
+        final ModifierRandom second = ModifierRandom.shared().derive(2);
+        boolean different = false;
+        for (int i = 0; i < 10; i++) {
+            clock.addAndGet(1_000);
+            assertEquals(modifier.modify(initial, first), modifier.modify(initial, first));
+            different |= !modifier.modify(initial, first).equals(modifier.modify(initial, second));
+        }
+        assertTrue(different);
+    }
+}
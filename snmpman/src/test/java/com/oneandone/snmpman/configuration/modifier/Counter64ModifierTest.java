@@ -5,8 +5,12 @@ import com.oneandone.snmpman.configuration.type.ModifierProperties;
 import org.snmp4j.smi.Counter64;
 import org.testng.annotations.Test;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
 
 public class Counter64ModifierTest {
 
@@ -44,4 +48,66 @@ public class Counter64ModifierTest {
         final Counter64 modifiedVariable = modifier.modify(counter64);
         assertNotEquals(modifiedVariable.getValue(), 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testWrapAround() {
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("minimum", UnsignedLong.valueOf(5L));
+        modifierProperties.put("maximum", UnsignedLong.valueOf(10L));
+        modifierProperties.put("minimumStep", UnsignedLong.valueOf(3L));
+        modifierProperties.put("maximumStep", UnsignedLong.valueOf(3L));
+
+        final Counter64Modifier modifier = new Counter64Modifier();
+        modifier.init(modifierProperties);
+
+        assertEquals(modifier.modify(new Counter64(6)).getValue(), 9);
+        assertEquals(modifier.modify(new Counter64(9)).getValue(), 6);
+        assertEquals(modifier.modify(new Counter64(10)).getValue(), 7);
+        // values out of bounds restart at the minimum
+        assertEquals(modifier.modify(new Counter64(1)).getValue(), 8);
+        assertEquals(modifier.modify(new Counter64(42)).getValue(), 8);
+    }
+
+    @Test
+    public void testUnsignedValues() {
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("minimumStep", UnsignedLong.valueOf(10L));
+        modifierProperties.put("maximumStep", UnsignedLong.valueOf(10L));
+
+        final Counter64Modifier modifier = new Counter64Modifier();
+        modifier.init(modifierProperties);
+
+        final UnsignedLong large = UnsignedLong.valueOf(Long.MAX_VALUE).plus(UnsignedLong.valueOf(5L));
+        assertEquals(UnsignedLong.fromLongBits(modifier.modify(new Counter64(large.longValue())).getValue()), large.plus(UnsignedLong.valueOf(10L)));
+        assertEquals(modifier.modify(new Counter64(UnsignedLong.MAX_VALUE.longValue() - 2)).getValue(), 7);
+    }
+
+    @Test
+    public void testFullStepRange() {
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("minimumStep", UnsignedLong.ZERO);
+        modifierProperties.put("maximumStep", UnsignedLong.valueOf("18446744073709551615"));
+
+        final Counter64Modifier modifier = new Counter64Modifier();
+        modifier.init(modifierProperties);
+
+        // starting at zero, the new value is the step itself
+        final ModifierRandom random = ModifierRandom.seeded(42L);
+        final Set<Long> steps = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            steps.add(modifier.modify(new Counter64(0), random).getValue());
+        }
+        assertEquals(steps.size(), 100);
+        assertTrue(steps.stream().anyMatch(step -> step < 0), "no step above 2^63 was drawn");
+        assertTrue(steps.stream().anyMatch(step -> step > 0), "no step below 2^63 was drawn");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBounds() {
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("minimum", UnsignedLong.valueOf(10L));
+        modifierProperties.put("maximum", UnsignedLong.valueOf(5L));
+
+        new Counter64Modifier().init(modifierProperties);
+    }
+}
@@ -0,0 +1,40 @@
+package com.oneandone.snmpman.configuration.modifier;
+
+import com.oneandone.snmpman.configuration.type.ModifierProperties;
+import org.snmp4j.smi.Counter64;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.assertEquals;
+
+public class Counter64RateModifierTest {
+
+    private static final long START = 1_500_000_000_000L;
+
+    @Test
+    public void testModify() {
+        final AtomicLong clock = new AtomicLong(START);
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("rate", 1_250_000_000L);
+
+        final Counter64RateModifier modifier = new Counter64RateModifier(clock::get);
+        modifier.init(modifierProperties);
+
+        clock.addAndGet(3_600_000);
+        assertEquals(modifier.modify(new Counter64(42)).getValue(), 4_500_000_000_042L);
+    }
+
+    @Test
+    public void testWrapAround() {
+        final AtomicLong clock = new AtomicLong(START);
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("rate", 10);
+
+        final Counter64RateModifier modifier = new Counter64RateModifier(clock::get);
+        modifier.init(modifierProperties);
+
+        clock.addAndGet(2_000);
+        assertEquals(modifier.modify(new Counter64(-6)).getValue(), 14);
+    }
+}
@@ -1,13 +1,22 @@
 package com.oneandone.snmpman.configuration.modifier;
 
 import com.oneandone.snmpman.configuration.type.ModifierProperties;
+import org.snmp4j.smi.Counter32;
 import org.snmp4j.smi.Integer32;
 import org.snmp4j.smi.Variable;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.testng.Assert.*;
 
@@ -90,7 +99,7 @@ public class ModifiedVariableTest {
 
     @Test
     public void testIsDynamic() {
-        assertEquals(modifiedVariable.isDynamic(), variable.isDynamic());
+        assertTrue(modifiedVariable.isDynamic());
     }
 
     @Test
@@ -113,4 +122,71 @@ public class ModifiedVariableTest {
     public void testHashCode() {
         assertEquals(modifiedVariable.hashCode(), variable.hashCode());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCloneWithTimeBasedModifier() {
+        final AtomicLong clock = new AtomicLong(1_500_000_000_000L);
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("rate", 10);
+
+        final Counter32RateModifier modifier = new Counter32RateModifier(clock::get);
+        modifier.init(modifierProperties);
+
+        final Counter32 counter = new Counter32(7);
+        final ModifiedVariable timeBasedVariable = new ModifiedVariable(counter, Collections.singletonList(modifier));
+
+        clock.addAndGet(3_000);
+        assertEquals(timeBasedVariable.clone(), new Counter32(37));
+        assertEquals(timeBasedVariable.clone(), new Counter32(37));
+        assertEquals(timeBasedVariable.toLong(), 7L);
+        assertEquals(counter.getValue(), 7L);
+    }
+
+    @Test(timeOut = 60000)
+    public void testConcurrentCloneIsMonotonic() throws Exception {
+        final int threads = 8;
+        final int clones = 20000;
+
+        final ModifierProperties modifierProperties = new ModifierProperties();
+        modifierProperties.put("minimumStep", 1);
+        modifierProperties.put("maximumStep", 1);
+
+        final Counter32Modifier modifier = new Counter32Modifier();
+        modifier.init(modifierProperties);
+
+        final ModifiedVariable counter = new ModifiedVariable(new Counter32(0), Collections.singletonList(modifier));
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<long[]>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    final long[] values = new long[clones];
+                    start.await();
+                    for (int j = 0; j < clones; j++) {
+                        values[j] = ((Counter32) counter.clone()).getValue();
+                    }
+                    return values;
+                }));
+            }
+            start.countDown();
+
+            final BitSet seen = new BitSet(threads * clones + 1);
+            for (final Future<long[]> future : futures) {
+                final long[] values = future.get();
+                for (int j = 0; j < clones; j++) {
+                    if (j > 0) {
+                        assertTrue(values[j] > values[j - 1], "counter did not increase from " + values[j - 1] + " to " + values[j]);
+                    }
+                    assertFalse(seen.get((int) values[j]), "value " + values[j] + " was returned twice");
+                    seen.set((int) values[j]);
+                }
+            }
+            assertEquals(seen.cardinality(), threads * clones);
+            assertEquals(counter.toLong(), (long) threads * clones);
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
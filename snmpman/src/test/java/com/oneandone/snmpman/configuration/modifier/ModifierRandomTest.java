@@ -0,0 +1,206 @@
+package com.oneandone.snmpman.configuration.modifier;
+
+import com.oneandone.snmpman.configuration.type.ModifierProperties;
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.Variable;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ModifierRandomTest {
+
+    @Test
+    public void testShared() {
+        assertSame(ModifierRandom.of(null), ModifierRandom.shared());
+        for (int i = 0; i < 1000; i++) {
+            final double value = ModifierRandom.shared().nextDouble();
+            assertTrue(value >= 0 && value < 1);
+        }
+    }
+
+    @Test
+    public void testSeededIsReproducible() {
+        final double[] first = draw(ModifierRandom.seeded(42), 100);
+        final double[] second = draw(ModifierRandom.of(42L), 100);
+        final double[] other = draw(ModifierRandom.seeded(43), 100);
+
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+    }
+
+    @Test
+    public void testSeededIsIndependentOfThreads() throws Exception {
+        final double[] expected = draw(ModifierRandom.seeded(42), 200);
+
+        final ModifierRandom random = ModifierRandom.seeded(42);
+        final double[] first = draw(random, 100);
+        final double[] second = CompletableFuture.supplyAsync(() -> draw(random, 100)).get();
+
+        assertEquals(first, Arrays.copyOfRange(expected, 0, 100));
+        assertEquals(second, Arrays.copyOfRange(expected, 100, 200));
+        assertEquals(random.getDraws(), 200);
+    }
+
+    @Test
+    public void testDerivedAndPositioned() {
+        final ModifierRandom random = ModifierRandom.seeded(42);
+        final double[] expected = draw(random.derive(1), 20);
+
+        assertEquals(draw(ModifierRandom.seeded(42).derive(1), 20), expected);
+        assertNotEquals(draw(random.derive(2), 20), expected);
+        assertEquals(draw(random.derive(1).at(10), 10), Arrays.copyOfRange(expected, 10, 20));
+        assertEquals(draw(random, 20), draw(ModifierRandom.seeded(42), 20));
+    }
+
+    @Test
+    public void testModifiersUseSpecifiedRandom() {
+        final ModifierProperties properties = new ModifierProperties();
+        properties.put("minimumStep", 0);
+        properties.put("maximumStep", 1000);
+
+        final Counter32Modifier counter32Modifier = new Counter32Modifier();
+        counter32Modifier.init(properties);
+        final Integer32Modifier integer32Modifier = new Integer32Modifier();
+        integer32Modifier.init(properties);
+        final Counter64Modifier counter64Modifier = new Counter64Modifier();
+        counter64Modifier.init(properties);
+
+        assertEquals(modifyCounter32(counter32Modifier, ModifierRandom.seeded(7)), modifyCounter32(counter32Modifier, ModifierRandom.seeded(7)));
+        assertEquals(modifyInteger32(integer32Modifier, ModifierRandom.seeded(7)), modifyInteger32(integer32Modifier, ModifierRandom.seeded(7)));
+        assertEquals(modifyCounter64(counter64Modifier, ModifierRandom.seeded(7)), modifyCounter64(counter64Modifier, ModifierRandom.seeded(7)));
+    }
+
+    @Test
+    public void testModifierSeedTakesPrecedence() {
+        final ModifierProperties properties = new ModifierProperties();
+        properties.put("minimumStep", 0);
+        properties.put("maximumStep", 1000);
+        properties.put("seed", 7);
+
+        final Counter32Modifier first = new Counter32Modifier();
+        first.init(properties);
+        final Counter32Modifier second = new Counter32Modifier();
+        second.init(properties);
+
+        assertEquals(modifyCounter32(first, ModifierRandom.seeded(1)), modifyCounter32(second, ModifierRandom.seeded(2)));
+        assertEquals(modifyCounter32(first, ModifierRandom.shared()).length, 100);
+        assertEquals(modifyCounter32(first, ModifierRandom.shared().derive(1)), modifyCounter32(second, ModifierRandom.seeded(2).derive(1)));
+        assertNotEquals(modifyCounter32(first, ModifierRandom.shared().derive(1)), modifyCounter32(first, ModifierRandom.shared().derive(2)));
+    }
+
+    @Test
+    public void testModifiedVariablePassesRandom() {
+        final ModifierProperties properties = new ModifierProperties();
+        properties.put("minimumStep", 0);
+        properties.put("maximumStep", 1000);
+
+        final Counter32Modifier modifier = new Counter32Modifier();
+        modifier.init(properties);
+
+        final ModifiedVariable first = new ModifiedVariable(new Counter32(0), Collections.singletonList(modifier), ModifierRandom.seeded(3));
+        final ModifiedVariable second = new ModifiedVariable(new Counter32(0), Collections.singletonList(modifier), ModifierRandom.seeded(3));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first.clone(), second.clone());
+        }
+    }
+
+    @Test
+    public void testInterleavedUpdatesAreReproducible() throws Exception {
+        final ModifierProperties properties = new ModifierProperties();
+        properties.put("minimumStep", 0);
+        properties.put("maximumStep", 1000);
+
+        final Counter32Modifier modifier = new Counter32Modifier();
+        modifier.init(properties);
+        final ModifierRandom random = ModifierRandom.seeded(3).derive(17);
+
+        final ModifiedVariable sequential = new ModifiedVariable(new Counter32(0), Collections.singletonList(modifier), random);
+        final Set<Variable> expected = new HashSet<>();
+        for (int i = 0; i < 4000; i++) {
+            expected.add((Variable) sequential.clone());
+        }
+
+        final ModifiedVariable interleaved = new ModifiedVariable(new Counter32(0), Collections.singletonList(modifier), random);
+        final Set<Variable> values = ConcurrentHashMap.newKeySet();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1000; i++) {
+                        values.add((Variable) interleaved.clone());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(interleaved.getCurrentVariable(), sequential.getCurrentVariable());
+        assertEquals(interleaved.getDraws(), sequential.getDraws());
+        assertEquals(values, expected);
+    }
+
+    private static double[] draw(final ModifierRandom random, final int count) {
+        final double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextDouble();
+        }
+        return values;
+    }
+
+    private static long[] modifyCounter32(final Counter32Modifier modifier, final ModifierRandom random) {
+        final long[] values = new long[100];
+        Counter32 variable = new Counter32(0);
+        for (int i = 0; i < values.length; i++) {
+            variable = modifier.modify(variable, random);
+            values[i] = variable.getValue();
+        }
+        return values;
+    }
+
+    private static long[] modifyInteger32(final Integer32Modifier modifier, final ModifierRandom random) {
+        final long[] values = new long[100];
+        Integer32 variable = new Integer32(0);
+        for (int i = 0; i < values.length; i++) {
+            variable = modifier.modify(variable, random);
+            values[i] = variable.getValue();
+        }
+        return values;
+    }
+
+    private static long[] modifyCounter64(final Counter64Modifier modifier, final ModifierRandom random) {
+        final long[] values = new long[100];
+        Counter64 variable = new Counter64(0);
+        for (int i = 0; i < values.length; i++) {
+            variable = modifier.modify(variable, random);
+            values[i] = variable.getValue();
+        }
+        return values;
+    }
+}
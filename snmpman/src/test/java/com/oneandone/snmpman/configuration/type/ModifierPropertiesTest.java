@@ -11,6 +11,7 @@ import org.testng.annotations.Test;
 import java.io.File;
 import java.lang.reflect.Field;
 import java.math.BigInteger;
+import java.util.Arrays;
 
 import static org.testng.Assert.*;
 
@@ -40,5 +41,32 @@ public class ModifierPropertiesTest {
             fail("no modifier for unsigned long found");
         }
     }
-    
-}
\ No newline at end of file
+
+    @Test
+    public void testGetDoubles() {
+        final ModifierProperties properties = new ModifierProperties();
+        properties.put("list", Arrays.asList(1, 2.5, "3"));
+        properties.put("string", "0.5, 1");
+        properties.put("number", 4);
+
+        assertEquals(properties.getDouble("number"), 4.0);
+        assertNull(properties.getDouble("missing"));
+        assertEquals(properties.getDoubles("list"), new double[] { 1, 2.5, 3 });
+        assertEquals(properties.getDoubles("string"), new double[] { 0.5, 1 });
+        assertNull(properties.getDoubles("missing"));
+    }
+
+    @Test
+    public void testGetUnsignedLong() {
+        final ModifierProperties properties = new ModifierProperties();
+        properties.put("integer", 42);
+        properties.put("bigInteger", new BigInteger("18446744073709551615"));
+        properties.put("string", "18446744073709551615");
+
+        assertEquals(properties.getUnsignedLong("integer"), UnsignedLong.valueOf(42L));
+        assertEquals(properties.getUnsignedLong("bigInteger"), UnsignedLong.MAX_VALUE);
+        assertEquals(properties.getUnsignedLong("string"), UnsignedLong.MAX_VALUE);
+        assertNull(properties.getUnsignedLong("missing"));
+    }
+
+}
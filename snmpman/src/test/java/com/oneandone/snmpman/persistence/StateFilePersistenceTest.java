@@ -0,0 +1,74 @@
+package com.oneandone.snmpman.persistence;
+
+import com.oneandone.snmpman.configuration.AgentConfiguration;
+import com.oneandone.snmpman.exception.InitializationException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class StateFilePersistenceTest {
+
+    private static final File WALK = new File("src/test/resources/configuration/example.txt");
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("snmpman-state");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testEngineBootsAcrossInstances() throws Exception {
+        final File file = directory.resolve("agents.state").toFile();
+        final AgentConfiguration first = new AgentConfiguration("first", null, WALK, "127.0.0.1", 10000, "public");
+        final AgentConfiguration second = new AgentConfiguration("second", null, WALK, "127.0.0.1", 10001, "public");
+
+        final StateFilePersistence persistence = new StateFilePersistence(file);
+        assertEquals(persistence.updateEngineBoots(first), 1);
+        assertEquals(persistence.updateEngineBoots(first), 2);
+        assertEquals(persistence.updateEngineBoots(second), 1);
+        assertFalse(file.exists());
+
+        persistence.flush();
+        assertTrue(file.isFile());
+        try (Stream<Path> paths = Files.list(directory)) {
+            assertEquals(paths.count(), 1L);
+        }
+
+        final StateFilePersistence restored = new StateFilePersistence(file);
+        assertEquals(restored.updateEngineBoots(first), 3);
+        assertEquals(restored.updateEngineBoots(second), 2);
+    }
+
+    @Test
+    public void testFlushWithoutChanges() throws Exception {
+        final File file = directory.resolve("agents.state").toFile();
+        new StateFilePersistence(file).flush();
+        assertFalse(file.exists());
+    }
+
+    @Test(expectedExceptions = InitializationException.class)
+    public void testInvalidStateFile() throws Exception {
+        final File file = directory.resolve("agents.state").toFile();
+        Files.write(file.toPath(), "no state".getBytes());
+        new StateFilePersistence(file);
+    }
+}
@@ -0,0 +1,145 @@
+package com.oneandone.snmpman.snmp;
+
+import com.oneandone.snmpman.configuration.modifier.ModifiedVariable;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class BindingStoreTest {
+
+    private SortedMap<OID, Variable> bindings;
+
+    private BindingStore store;
+
+    @BeforeMethod
+    public void setUp() {
+        bindings = new TreeMap<>();
+        bindings.put(new OID(".1.3.6.1.2.1.1.1.0"), new Integer32(1));
+        bindings.put(new OID(".1.3.6.1.2.1.2.2.1.1.1"), new Integer32(2));
+        bindings.put(new OID(".1.3.6.1.2.1.2.2.1.1.2"), new Integer32(3));
+        bindings.put(new OID(".1.3.6.1.2.1.2.2.1.1.4294967295"), new Integer32(4));
+        bindings.put(new OID(".1.3.6.1.2.1.2.2.1.2.1"), new Integer32(5));
+        bindings.put(new OID(".1.3.6.1.2.1.31"), new Integer32(6));
+        store = new BindingStore(bindings);
+    }
+
+    @Test
+    public void testSortedLikeTreeMap() {
+        assertEquals(store.size(), bindings.size());
+        int index = 0;
+        for (final OID oid : bindings.keySet()) {
+            assertEquals(store.getOid(index), oid);
+            assertEquals(store.getVariable(index).toInt(), bindings.get(oid).toInt());
+            assertEquals(store.indexOf(oid), index);
+            index++;
+        }
+    }
+
+    @Test
+    public void testGet() {
+        assertEquals(store.get(new OID(".1.3.6.1.2.1.2.2.1.1.4294967295")).toInt(), 4);
+        assertNull(store.get(new OID(".1.3.6.1.2.1.2.2.1.1")));
+        assertNull(store.get(new OID(".1.3.6.1.2.1.2.2.1.1.3")));
+        assertNull(store.get(new OID(".1.3.6.1.2.1.32")));
+    }
+
+    @Test
+    public void testCeilingIndex() {
+        assertEquals(store.ceilingIndex(new OID(".1"), true), 0);
+        assertEquals(store.ceilingIndex(new OID(".1.3.6.1.2.1.1.1.0"), true), 0);
+        assertEquals(store.ceilingIndex(new OID(".1.3.6.1.2.1.1.1.0"), false), 1);
+        assertEquals(store.ceilingIndex(new OID(".1.3.6.1.2.1.2.2.1.1.3"), true), 3);
+        assertEquals(store.ceilingIndex(new OID(".1.3.6.1.2.1.31"), false), 6);
+        assertEquals(store.ceilingIndex(new OID(".2"), true), 6);
+    }
+
+    @Test
+    public void testSubtree() {
+        final BindingStore subtree = store.subtree(new OID(".1.3.6.1.2.1.2.2.1.1"));
+        assertEquals(subtree.size(), 3);
+        assertEquals(subtree.getOid(0), new OID(".1.3.6.1.2.1.2.2.1.1.1"));
+        assertEquals(subtree.getOid(2), new OID(".1.3.6.1.2.1.2.2.1.1.4294967295"));
+        assertEquals(subtree.indexOf(new OID(".1.3.6.1.2.1.2.2.1.1.2")), 1);
+        assertEquals(subtree.ceilingIndex(new OID(".1.3.6.1.2.1.1"), true), 0);
+        assertEquals(subtree.ceilingIndex(new OID(".1.3.6.1.2.1.2.2.1.2"), true), 3);
+        assertNull(subtree.get(new OID(".1.3.6.1.2.1.2.2.1.2.1")));
+
+        assertEquals(store.subtree(new OID(".1.3.6.1.2.1.3")).size(), 0);
+    }
+
+    @Test
+    public void testEmpty() {
+        final BindingStore empty = new BindingStore(new TreeMap<>());
+        assertEquals(empty.size(), 0);
+        assertEquals(empty.indexOf(new OID(".1.3")), -1);
+        assertEquals(empty.ceilingIndex(new OID(".1.3"), true), 0);
+    }
+
+    @Test
+    public void testStaticVariablesAreEncoded() {
+        final Variable dynamic = new ModifiedVariable(new Integer32(7), Collections.emptyList());
+        bindings.put(new OID(".1.3.6.1.2.1.2.2.1.10.1"), dynamic);
+        store = new BindingStore(bindings);
+
+        assertTrue(store.get(new OID(".1.3.6.1.2.1.1.1.0")) instanceof EncodedVariable);
+        assertEquals(((EncodedVariable) store.get(new OID(".1.3.6.1.2.1.1.1.0"))).decode(), new Integer32(1));
+        assertSame(store.get(new OID(".1.3.6.1.2.1.2.2.1.10.1")), dynamic);
+    }
+
+    @Test
+    public void testDynamicVariables() {
+        final Variable dynamic = new ModifiedVariable(new Integer32(7), Collections.emptyList());
+        bindings.put(new OID(".1.3.6.1.2.1.2.2.1.10.1"), dynamic);
+        store = new BindingStore(bindings);
+
+        assertEquals(store.getDynamicVariables(), Collections.singletonList(dynamic));
+        assertSame(store.getDynamicVariables().get(0), dynamic);
+        assertTrue(store.subtree(new OID(".1.3.6.1.2.1.1")).getDynamicVariables().isEmpty());
+        assertTrue(store.getMemorySize() > BindingStore.EMPTY.getMemorySize());
+    }
+
+    @Test
+    public void testPrivateVariables() {
+        final ModifiedVariable dynamic = new ModifiedVariable(new Integer32(7), Collections.emptyList());
+        bindings.put(new OID(".1.3.6.1.2.1.2.2.1.10.1"), dynamic);
+        store = new BindingStore(bindings, oid -> oid.startsWith(new OID(".1.3.6.1.2.1.1")));
+        final BindingStore first = store.withPrivateVariables((oid, variable) -> variable instanceof ModifiedVariable
+                ? ((ModifiedVariable) variable).copy(new Integer32(8), null) : new Integer32(oid.size()));
+        final BindingStore second = store.withPrivateVariables((oid, variable) -> variable instanceof ModifiedVariable
+                ? ((ModifiedVariable) variable).copy(new Integer32(9), null) : variable);
+
+        assertEquals(store.getPrivateCount(), 2);
+        assertEquals(first.getPrivateVariables(), new Variable[2]);
+        assertEquals(first.get(new OID(".1.3.6.1.2.1.1.1.0")), new Integer32(9));
+        assertEquals(second.get(new OID(".1.3.6.1.2.1.1.1.0")), new Integer32(1));
+        assertEquals(first.subtree(new OID(".1.3.6.1.2.1.2.2.1.10")).get(new OID(".1.3.6.1.2.1.2.2.1.10.1")).toInt(), 8);
+        assertSame(first.get(new OID(".1.3.6.1.2.1.2.2.1.10.1")), first.getPrivateVariable(1));
+        assertEquals(second.get(new OID(".1.3.6.1.2.1.2.2.1.10.1")).toInt(), 9);
+        assertSame(store.get(new OID(".1.3.6.1.2.1.2.2.1.10.1")), dynamic);
+        assertNotSame(first.get(new OID(".1.3.6.1.2.1.2.2.1.10.1")), second.get(new OID(".1.3.6.1.2.1.2.2.1.10.1")));
+        assertSame(first.get(new OID(".1.3.6.1.2.1.2.2.1.2.1")), second.get(new OID(".1.3.6.1.2.1.2.2.1.2.1")));
+
+        first.setPrivateVariable(0, new Integer32(10));
+        assertEquals(first.get(new OID(".1.3.6.1.2.1.1.1.0")), new Integer32(10));
+        assertFalse(second.getPrivateVariables()[0] == null);
+        assertTrue(first.getMemorySize() < store.getMemorySize());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testSetPrivateVariableWithoutLayer() {
+        store.setPrivateVariable(0, new Integer32(1));
+    }
+}
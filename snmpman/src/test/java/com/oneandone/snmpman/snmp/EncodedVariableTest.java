@@ -0,0 +1,111 @@
+package com.oneandone.snmpman.snmp;
+
+import org.snmp4j.asn1.BERInputStream;
+import org.snmp4j.asn1.BEROutputStream;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Variable;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotSame;
+
+public class EncodedVariableTest {
+
+    @DataProvider
+    public Object[][] variables() {
+        return new Object[][]{
+                {new Integer32(-42)},
+                {new Counter64(Long.MAX_VALUE)},
+                {new OctetString("GigabitEthernet0/1")},
+                {new OID(".1.3.6.1.4.1.9.1.516")}
+        };
+    }
+
+    @Test(dataProvider = "variables")
+    public void testEncodedLikeVariable(final Variable variable) throws IOException {
+        final EncodedVariable encoded = encode(variable);
+
+        assertEquals(encoded.getSyntax(), variable.getSyntax());
+        assertEquals(encoded.getBERLength(), variable.getBERLength());
+        assertEquals(encoded.decode(), variable);
+        assertEquals(encoded.toString(), variable.toString());
+        assertEquals(encoded.hashCode(), variable.hashCode());
+        assertEquals(encoded.compareTo(variable), 0);
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        variable.encodeBER(expected);
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        encoded.encodeBER(actual);
+        assertEquals(actual.toByteArray(), expected.toByteArray());
+    }
+
+    @Test
+    public void testCloneIsCopy() throws IOException {
+        final EncodedVariable encoded = encode(new OctetString("ab"));
+        final EncodedVariable clone = (EncodedVariable) encoded.clone();
+        assertNotSame(clone, encoded);
+        assertEquals(clone, encoded);
+
+        clone.fromSubIndex(new OID(".99.100"), true);
+        assertEquals(clone.decode(), new OctetString("cd"));
+        assertEquals(encoded.decode(), new OctetString("ab"));
+    }
+
+    @Test
+    public void testEquals() throws IOException {
+        assertEquals(encode(new Integer32(42)), encode(new Integer32(42)));
+        assertNotEquals(encode(new Integer32(42)), encode(new Integer32(43)));
+        assertNotEquals(encode(new Integer32(42)), new OctetString("42"));
+        // equality is symmetric, so an encoded variable never equals a decoded value
+        assertFalse(encode(new Integer32(42)).equals(new Integer32(42)));
+        assertFalse(new Integer32(42).equals(encode(new Integer32(42))));
+    }
+
+    @Test
+    public void testFromSubIndex() throws IOException {
+        final byte[] shared = new byte[16];
+        final ByteBuffer buffer = ByteBuffer.wrap(shared);
+        new OctetString("ab").encodeBER(new BEROutputStream(buffer));
+        final EncodedVariable encoded = new EncodedVariable(shared, 0, buffer.position());
+
+        encoded.fromSubIndex(new OID(".99.100"), true);
+        assertEquals(encoded.decode(), new OctetString("cd"));
+        // the shared array is not modified
+        assertEquals(new EncodedVariable(shared, 0, buffer.position()).decode(), new OctetString("ab"));
+    }
+
+    @Test
+    public void testDecodeBER() throws IOException {
+        final EncodedVariable encoded = encode(new Integer32(42));
+        final ByteArrayOutputStream value = new ByteArrayOutputStream();
+        new Integer32(43).encodeBER(value);
+
+        encoded.decodeBER(new BERInputStream(ByteBuffer.wrap(value.toByteArray())));
+        assertEquals(encoded.decode(), new Integer32(43));
+        assertEquals(encoded.getBERLength(), new Integer32(43).getBERLength());
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testDecodeBERWithWrongSyntax() throws IOException {
+        final ByteArrayOutputStream value = new ByteArrayOutputStream();
+        new OctetString("42").encodeBER(value);
+        encode(new Integer32(42)).decodeBER(new BERInputStream(ByteBuffer.wrap(value.toByteArray())));
+    }
+
+    private static EncodedVariable encode(final Variable variable) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(variable.getBERLength() + 3);
+        buffer.position(3);
+        variable.encodeBER(new BEROutputStream(buffer));
+        return new EncodedVariable(buffer.array(), 3, variable.getBERLength());
+    }
+}
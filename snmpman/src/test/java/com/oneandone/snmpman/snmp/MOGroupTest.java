@@ -0,0 +1,117 @@
+package com.oneandone.snmpman.snmp;
+
+import org.snmp4j.agent.DefaultMOScope;
+import org.snmp4j.agent.request.RequestStatus;
+import org.snmp4j.agent.request.SubRequest;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class MOGroupTest {
+
+    private static final OID ROOT = new OID(".1.3.6.1.2.1.2.2.1");
+
+    private MOGroup group;
+
+    @BeforeMethod
+    public void setUp() {
+        final SortedMap<OID, Variable> bindings = new TreeMap<>();
+        bindings.put(new OID(".1.3.6.1.2.1.2.2.1.1.1"), new Integer32(1));
+        bindings.put(new OID(".1.3.6.1.2.1.2.2.1.1.3"), new Integer32(3));
+        group = new MOGroup(ROOT, bindings);
+    }
+
+    @Test
+    public void testFind() {
+        assertEquals(group.find(new DefaultMOScope(ROOT, true, ROOT.nextPeer(), false)), new OID(".1.3.6.1.2.1.2.2.1.1.1"));
+        assertEquals(group.find(new DefaultMOScope(new OID(".1.3.6.1.2.1.2.2.1.1.1"), false, ROOT.nextPeer(), false)), new OID(".1.3.6.1.2.1.2.2.1.1.3"));
+        assertNull(group.find(new DefaultMOScope(new OID(".1.3.6.1.2.1.2.2.1.1.3"), false, ROOT.nextPeer(), false)));
+    }
+
+    @Test
+    public void testSetNewOidAndUndo() {
+        final OID oid = new OID(".1.3.6.1.2.1.2.2.1.1.2");
+        final SubRequest request = request(oid, new Integer32(2));
+        group.prepare(request);
+        group.commit(request);
+        assertEquals(group.find(new DefaultMOScope(new OID(".1.3.6.1.2.1.2.2.1.1.1"), false, ROOT.nextPeer(), false)), oid);
+
+        group.undo(request);
+        assertEquals(group.find(new DefaultMOScope(new OID(".1.3.6.1.2.1.2.2.1.1.1"), false, ROOT.nextPeer(), false)), new OID(".1.3.6.1.2.1.2.2.1.1.3"));
+    }
+
+    @Test
+    public void testSetExistingOid() {
+        final OID oid = new OID(".1.3.6.1.2.1.2.2.1.1.3");
+        final SubRequest request = request(oid, new Integer32(42));
+        group.prepare(request);
+        group.commit(request);
+        assertEquals(request.getUndoValue(), new Integer32(3));
+
+        final SubRequest get = request(oid, null);
+        group.get(get);
+        assertEquals(get.getVariableBinding().getVariable(), new Integer32(42));
+    }
+
+    @Test
+    public void testSetStaticBinding() {
+        final OID oid = new OID(".1.3.6.1.2.1.2.2.1.2.1");
+        final SortedMap<OID, Variable> bindings = new TreeMap<>();
+        bindings.put(oid, new OctetString("eth0"));
+        final MOGroup group = new MOGroup(ROOT, bindings);
+        final SubRequest before = request(oid, null);
+        group.get(before);
+        assertTrue(before.getVariableBinding().getVariable() instanceof EncodedVariable);
+
+        final SubRequest request = request(oid, new OctetString("eth1"));
+        group.prepare(request);
+        group.commit(request);
+        assertEquals(request.getStatus().getErrorStatus(), SnmpConstants.SNMP_ERROR_SUCCESS);
+        assertEquals(request.getUndoValue(), new OctetString("eth0"));
+        final SubRequest after = request(oid, null);
+        group.get(after);
+        assertEquals(after.getVariableBinding().getVariable(), new OctetString("eth1"));
+
+        group.undo(request);
+        final SubRequest undone = request(oid, null);
+        group.get(undone);
+        assertEquals(undone.getVariableBinding().getVariable(), new OctetString("eth0"));
+        assertEquals(((EncodedVariable) before.getVariableBinding().getVariable()).decode(), new OctetString("eth0"));
+    }
+
+    @Test
+    public void testSetWithWrongSyntax() {
+        final SubRequest request = request(new OID(".1.3.6.1.2.1.2.2.1.1.3"), new OctetString("foo"));
+        group.prepare(request);
+        group.commit(request);
+        assertEquals(request.getStatus().getErrorStatus(), SnmpConstants.SNMP_ERROR_INCONSISTENT_VALUE);
+    }
+
+    private static SubRequest request(final OID oid, final Variable variable) {
+        final SubRequest request = mock(SubRequest.class);
+        final VariableBinding binding = variable == null ? new VariableBinding(oid) : new VariableBinding(oid, variable);
+        final RequestStatus status = new RequestStatus();
+        final Object[] undoValue = new Object[1];
+        when(request.getVariableBinding()).thenReturn(binding);
+        when(request.getStatus()).thenReturn(status);
+        doAnswer(invocation -> undoValue[0] = invocation.getArgument(0)).when(request).setUndoValue(any());
+        when(request.getUndoValue()).thenAnswer(invocation -> undoValue[0]);
+        return request;
+    }
+}
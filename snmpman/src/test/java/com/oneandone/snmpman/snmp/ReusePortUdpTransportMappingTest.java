@@ -0,0 +1,148 @@
+package com.oneandone.snmpman.snmp;
+
+import com.oneandone.snmpman.Snmpman;
+import com.oneandone.snmpman.SnmpmanAgent;
+import com.oneandone.snmpman.configuration.AgentConfiguration;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.TransportListener;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.BindException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.oneandone.snmpman.AbstractSnmpmanTest.getResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+public class ReusePortUdpTransportMappingTest {
+
+    private static final int PORT = 10050;
+
+    private static final int AGENT_PORT = 10051;
+
+    private static final int DUPLICATE_PORT = 10180;
+
+    @Test
+    public void testReceivers() throws Exception {
+        final ReusePortUdpTransportMapping mapping = new ReusePortUdpTransportMapping(new UdpAddress(InetAddress.getLoopbackAddress(), PORT), 4);
+        final int messages = 100;
+        final CountDownLatch received = new CountDownLatch(messages);
+        final Set<String> payloads = ConcurrentHashMap.newKeySet();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        mapping.addTransportListener(new TransportListener() {
+            @Override
+            public <A extends Address> void processMessage(final TransportMapping<? super A> transport, final A address,
+                                                           final ByteBuffer message, final TransportStateReference tmStateReference) {
+                final byte[] bytes = new byte[message.remaining()];
+                message.get(bytes);
+                payloads.add(new String(bytes, StandardCharsets.US_ASCII));
+                threads.add(Thread.currentThread().getName());
+                received.countDown();
+            }
+        });
+        mapping.listen();
+        try {
+            assertTrue(mapping.isListening());
+            assertEquals(mapping.getChannelCount(), ReusePortUdpTransportMapping.isReusePortSupported() ? 4 : 1);
+
+            for (int i = 0; i < messages; i++) {
+                try (DatagramSocket socket = new DatagramSocket()) {
+                    final byte[] bytes = ("message" + i).getBytes(StandardCharsets.US_ASCII);
+                    socket.send(new DatagramPacket(bytes, bytes.length, InetAddress.getLoopbackAddress(), PORT));
+                }
+            }
+
+            assertTrue(received.await(10, TimeUnit.SECONDS));
+            assertEquals(payloads.size(), messages);
+            assertTrue(payloads.contains("message42"));
+            assertTrue(threads.stream().allMatch(name -> name.startsWith("ReusePortUdpTransportMapping_")));
+        } finally {
+            mapping.close();
+        }
+        assertFalse(mapping.isListening());
+        assertEquals(mapping.getChannelCount(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNoReceivers() {
+        new ReusePortUdpTransportMapping(new UdpAddress(InetAddress.getLoopbackAddress(), PORT), 0);
+    }
+
+    @Test
+    public void testDuplicateAddress() throws Exception {
+        final UdpAddress address = new UdpAddress(InetAddress.getLoopbackAddress(), DUPLICATE_PORT);
+        final ReusePortUdpTransportMapping first = new ReusePortUdpTransportMapping(address, 4);
+        final ReusePortUdpTransportMapping second = new ReusePortUdpTransportMapping(address, 4);
+        first.listen();
+        try {
+            assertThrows(BindException.class, second::listen);
+            assertFalse(second.isListening());
+        } finally {
+            first.close();
+        }
+        second.listen();
+        second.close();
+    }
+
+    @Test
+    public void testAddressOfOtherSocket() throws Exception {
+        if (!ReusePortUdpTransportMapping.isReusePortSupported()) {
+            throw new SkipException("SO_REUSEPORT is not supported");
+        }
+        final ReusePortUdpTransportMapping mapping = new ReusePortUdpTransportMapping(new UdpAddress(InetAddress.getLoopbackAddress(), DUPLICATE_PORT), 4);
+        try (DatagramChannel other = DatagramChannel.open(StandardProtocolFamily.INET)) {
+            // like the channels of a mapping in another process
+            other.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            other.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), DUPLICATE_PORT));
+            assertThrows(BindException.class, mapping::listen);
+            assertFalse(mapping.isListening());
+        }
+        mapping.listen();
+        mapping.close();
+    }
+
+    @Test
+    public void testAgent() throws Exception {
+        final Snmpman snmpman = Snmpman.start(Collections.singletonList(new SnmpmanAgent(AgentConfiguration.builder().name("reuse-port")
+                .walk(new File("src/test/resources/configuration/example.txt")).ip("127.0.0.1").port(AGENT_PORT).receiveThreads(4).build())));
+        final ExecutorService pollers = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Integer>> responses = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                responses.add(pollers.submit(() -> getResponse(new OID("1.3.6.1.2.1"), AGENT_PORT, "public").size()));
+            }
+            for (final Future<Integer> response : responses) {
+                assertEquals(response.get(30, TimeUnit.SECONDS).intValue(), 19);
+            }
+        } finally {
+            pollers.shutdownNow();
+            snmpman.stop();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.oneandone.snmpman.snmp;
+
+import com.oneandone.snmpman.Snmpman;
+import com.oneandone.snmpman.SnmpmanAgent;
+import com.oneandone.snmpman.configuration.AgentConfiguration;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.TransportListener;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.oneandone.snmpman.AbstractSnmpmanTest.getResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class SharedSelectorLoopTest {
+
+    private static final int PORT = 10060;
+
+    private static final File EXAMPLE = new File("src/test/resources/configuration/example.txt");
+
+    private SharedSelectorLoop loop;
+
+    @BeforeMethod
+    public void setUp() {
+        loop = new SharedSelectorLoop("TestLoop", 1);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        loop.stop();
+    }
+
+    @Test
+    public void testOneThreadForAllMappings() throws Exception {
+        final SelectorUdpTransportMapping[] mappings = new SelectorUdpTransportMapping[3];
+        final List<List<String>> received = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(mappings.length * 10);
+        for (int i = 0; i < mappings.length; i++) {
+            final List<String> messages = new CopyOnWriteArrayList<>();
+            received.add(messages);
+            mappings[i] = new SelectorUdpTransportMapping(new UdpAddress(InetAddress.getLoopbackAddress(), PORT + i), loop);
+            mappings[i].addTransportListener(new Listener(messages, done));
+            mappings[i].listen();
+        }
+        try {
+            assertEquals(loop.getThreadCount(), 1);
+            assertEquals(loop.getChannelCount(), mappings.length);
+            for (int i = 0; i < 10; i++) {
+                for (int port = 0; port < mappings.length; port++) {
+                    send("port" + port, PORT + port);
+                }
+            }
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            for (int port = 0; port < mappings.length; port++) {
+                assertEquals(received.get(port).size(), 10);
+                assertTrue(received.get(port).stream().allMatch(("port" + port)::equals));
+            }
+            assertEquals(loop.getReceivedCount(), mappings.length * 10);
+        } finally {
+            for (final SelectorUdpTransportMapping mapping : mappings) {
+                mapping.close();
+            }
+        }
+        assertEquals(loop.getChannelCount(), 0);
+    }
+
+    @Test
+    public void testRebindAfterClose() throws Exception {
+        final UdpAddress address = new UdpAddress(InetAddress.getLoopbackAddress(), PORT);
+        final SelectorUdpTransportMapping first = new SelectorUdpTransportMapping(address, loop);
+        first.listen();
+        send("first", PORT);
+        first.close();
+        assertFalse(first.isListening());
+
+        final List<String> messages = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final SelectorUdpTransportMapping second = new SelectorUdpTransportMapping(address, loop);
+        second.addTransportListener(new Listener(messages, done));
+        second.listen();
+        try {
+            send("second", PORT);
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(messages, Arrays.asList("second"));
+        } finally {
+            second.close();
+        }
+    }
+
+    @Test
+    public void testAgents() throws Exception {
+        final Snmpman snmpman = Snmpman.start(Arrays.asList(
+                new SnmpmanAgent(new AgentConfiguration("selector1", null, EXAMPLE, "127.0.0.1", PORT + 10, "public")),
+                new SnmpmanAgent(new AgentConfiguration("selector2", null, EXAMPLE, "127.0.0.1", PORT + 11, "public"))), Snmpman.Options.builder().workerThreads(2).selectorThreads(1).build());
+        try {
+            assertEquals(snmpman.getSelectorLoop().getThreadCount(), 1);
+            assertEquals(snmpman.getSelectorLoop().getChannelCount(), 2);
+            assertEquals(getResponse(new OID("1.3.6.1.2.1"), PORT + 10, "public").size(), 19);
+            assertEquals(getResponse(new OID("1.3.6.1.2.1"), PORT + 11, "public").size(), 19);
+        } finally {
+            snmpman.stop();
+        }
+    }
+
+    @Test
+    public void testMultiplexedAgent() throws Exception {
+        final Snmpman snmpman = Snmpman.startMultiplexed(Arrays.asList(
+                new AgentConfiguration("first", null, EXAMPLE, "127.0.0.1", PORT + 20, "public"),
+                new AgentConfiguration("second", null, EXAMPLE, "127.0.0.1", PORT + 21, "public")), Snmpman.Options.builder().workerThreads(2).selectorThreads(1).build());
+        try {
+            assertEquals(snmpman.getSelectorLoop().getChannelCount(), 2);
+            assertEquals(getResponse(new OID("1.3.6.1.2.1"), PORT + 20, "public").size(), 19);
+            assertEquals(getResponse(new OID("1.3.6.1.2.1"), PORT + 21, "public").size(), 19);
+        } finally {
+            snmpman.stop();
+        }
+    }
+
+    @Test
+    public void testWithoutSelectorLoop() {
+        final Snmpman snmpman = Snmpman.start(Arrays.asList(
+                new SnmpmanAgent(new AgentConfiguration("listener", null, EXAMPLE, "127.0.0.1", PORT + 30, "public"))), Snmpman.Options.builder().workerThreads(2).build());
+        try {
+            assertNull(snmpman.getSelectorLoop());
+        } finally {
+            snmpman.stop();
+        }
+    }
+
+    private static void send(final String message, final int port) throws Exception {
+        try (DatagramSocket socket = new DatagramSocket()) {
+            final byte[] bytes = message.getBytes(StandardCharsets.US_ASCII);
+            socket.send(new DatagramPacket(bytes, bytes.length, InetAddress.getLoopbackAddress(), port));
+        }
+    }
+
+    private static final class Listener implements TransportListener {
+
+        private final List<String> messages;
+
+        private final CountDownLatch done;
+
+        private Listener(final List<String> messages, final CountDownLatch done) {
+            this.messages = messages;
+            this.done = done;
+        }
+
+        @Override
+        public <A extends Address> void processMessage(final TransportMapping<? super A> transport, final A address,
+                                                       final ByteBuffer message, final TransportStateReference tmStateReference) {
+            final byte[] bytes = new byte[message.remaining()];
+            message.get(bytes);
+            messages.add(new String(bytes, StandardCharsets.US_ASCII));
+            done.countDown();
+        }
+    }
+}
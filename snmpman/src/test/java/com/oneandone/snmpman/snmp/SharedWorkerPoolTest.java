@@ -0,0 +1,173 @@
+package com.oneandone.snmpman.snmp;
+
+import org.snmp4j.util.WorkerTask;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SharedWorkerPoolTest {
+
+    private SharedWorkerPool pool;
+
+    private CountDownLatch blocked;
+
+    private CountDownLatch release;
+
+    @BeforeMethod
+    public void setUp() {
+        pool = new SharedWorkerPool("TestPool", 1);
+        blocked = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        pool.stop();
+    }
+
+    @Test
+    public void testFairness() throws Exception {
+        final SharedWorkerPool.AgentQueue hot = pool.register("hot");
+        final SharedWorkerPool.AgentQueue cold = pool.register("cold");
+        final List<String> order = new CopyOnWriteArrayList<>();
+        blockWorker(hot);
+
+        for (int i = 0; i < 100; i++) {
+            hot.execute(new Task(() -> order.add("hot")));
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        cold.execute(new Task(() -> {
+            order.add("cold");
+            done.countDown();
+        }));
+        release.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(order.indexOf("cold") <= 1, "cold agent waited for " + order.indexOf("cold") + " tasks");
+    }
+
+    @Test
+    public void testQueueDepth() throws Exception {
+        final SharedWorkerPool.AgentQueue first = pool.register("first");
+        final SharedWorkerPool.AgentQueue second = pool.register("second");
+        blockWorker(first);
+
+        final CountDownLatch done = new CountDownLatch(5);
+        for (int i = 0; i < 3; i++) {
+            first.execute(new Task(done::countDown));
+        }
+        for (int i = 0; i < 2; i++) {
+            second.execute(new Task(done::countDown));
+        }
+
+        assertEquals(pool.getQueueDepth(), 5);
+        assertEquals((int) pool.getQueueDepths().get("first"), 3);
+        assertEquals((int) pool.getQueueDepths().get("second"), 2);
+        assertFalse(second.isIdle());
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(pool.getMaximumQueueDepth(), 5);
+        assertEquals(first.getMaximumQueueDepth(), 3);
+        assertEquals(second.getCompletedTaskCount(), 2);
+        assertTrue(second.isIdle());
+    }
+
+    @Test
+    public void testStoppedQueue() throws Exception {
+        final SharedWorkerPool.AgentQueue queue = pool.register("stopped");
+        queue.stop();
+
+        assertFalse(queue.tryToExecute(new Task(() -> { })));
+        assertFalse(pool.getQueueDepths().containsKey("stopped"));
+    }
+
+    @Test
+    public void testThreadCount() {
+        for (int i = 0; i < 100; i++) {
+            pool.register("agent" + i);
+        }
+        assertEquals(pool.getThreadCount(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDuplicateName() {
+        pool.register("duplicate");
+        pool.register("duplicate");
+    }
+
+    @Test
+    public void testNameOfStoppedQueue() {
+        pool.register("restarted").stop();
+        assertTrue(pool.register("restarted").isIdle());
+    }
+
+    @Test
+    public void testFailingTask() throws Exception {
+        final SharedWorkerPool.AgentQueue queue = pool.register("failing");
+        queue.execute(new Task(() -> {
+            throw new StackOverflowError("test");
+        }));
+        queue.execute(new Task(() -> {
+            throw new IllegalStateException("test");
+        }));
+        final CountDownLatch done = new CountDownLatch(1);
+        queue.execute(new Task(done::countDown));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(pool.getThreadCount(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidThreadCount() {
+        new SharedWorkerPool("TestPool", 0);
+    }
+
+    private void blockWorker(final SharedWorkerPool.AgentQueue queue) throws InterruptedException {
+        queue.execute(new Task(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+    }
+
+    private static final class Task implements WorkerTask {
+
+        private final Runnable runnable;
+
+        private Task(final Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+
+        @Override
+        public void terminate() {
+        }
+
+        @Override
+        public void join() {
+        }
+
+        @Override
+        public void interrupt() {
+        }
+    }
+}
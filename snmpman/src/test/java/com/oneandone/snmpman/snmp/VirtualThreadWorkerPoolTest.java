@@ -0,0 +1,93 @@
+package com.oneandone.snmpman.snmp;
+
+import com.oneandone.snmpman.exception.InitializationException;
+import org.snmp4j.util.WorkerTask;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class VirtualThreadWorkerPoolTest {
+
+    @Test
+    public void testBlockingTasksRunConcurrently() throws Exception {
+        if (!VirtualThreadWorkerPool.isSupported()) {
+            throw new SkipException("virtual threads are not supported by this runtime");
+        }
+        final VirtualThreadWorkerPool pool = new VirtualThreadWorkerPool("virtual");
+        try {
+            final int tasks = 1000;
+            final CountDownLatch started = new CountDownLatch(tasks);
+            final CountDownLatch release = new CountDownLatch(1);
+            for (int i = 0; i < tasks; i++) {
+                pool.execute(new Task(() -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+
+            assertTrue(started.await(10, TimeUnit.SECONDS), "all blocking tasks should be running at once");
+            assertEquals(pool.getActiveTaskCount(), tasks);
+            assertFalse(pool.isIdle());
+
+            release.countDown();
+            pool.stop();
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!pool.isIdle() && System.nanoTime() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertEquals(pool.getCompletedTaskCount(), tasks);
+            assertFalse(pool.tryToExecute(new Task(() -> { })));
+        } finally {
+            pool.cancel();
+        }
+    }
+
+    @Test
+    public void testUnsupportedRuntime() {
+        if (VirtualThreadWorkerPool.isSupported()) {
+            throw new SkipException("virtual threads are supported by this runtime");
+        }
+        try {
+            new VirtualThreadWorkerPool("virtual");
+            throw new AssertionError("expected an initialization exception");
+        } catch (final InitializationException e) {
+            assertTrue(e.getMessage().contains("Java 21"));
+        }
+    }
+
+    private static final class Task implements WorkerTask {
+
+        private final Runnable runnable;
+
+        private Task(final Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+
+        @Override
+        public void terminate() {
+        }
+
+        @Override
+        public void join() {
+        }
+
+        @Override
+        public void interrupt() {
+        }
+    }
+}